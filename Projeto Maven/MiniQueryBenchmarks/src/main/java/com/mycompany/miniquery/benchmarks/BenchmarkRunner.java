@@ -0,0 +1,181 @@
+package com.mycompany.miniquery.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+// Roda os benchmarks com o GCProfiler (bytes alocados por operação), grava o resultado em JSON
+// e o compara com a linha de base versionada. Termina com código 1 se algum benchmark ficou
+// mais lento ou passou a alocar mais do que o limite tolerado, para uso em CI.
+public class BenchmarkRunner {
+
+    private static final String DEFAULT_BASELINE = "baseline/jmh-baseline.json";
+    private static final String DEFAULT_RESULT = "target/jmh-result.json";
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        Path baseline = Paths.get(DEFAULT_BASELINE);
+        Path result = Paths.get(DEFAULT_RESULT);
+        double threshold = 0.10;
+        boolean saveBaseline = false;
+        boolean quick = false;
+        Path compareOnly = null;
+        List<String> includes = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--baseline=")) {
+                baseline = Paths.get(arg.substring("--baseline=".length()));
+            } else if (arg.startsWith("--resultado=")) {
+                result = Paths.get(arg.substring("--resultado=".length()));
+            } else if (arg.startsWith("--limite=")) {
+                threshold = Double.parseDouble(arg.substring("--limite=".length()));
+            } else if (arg.startsWith("--comparar=")) {
+                compareOnly = Paths.get(arg.substring("--comparar=".length()));
+            } else if (arg.equals("--gravar-baseline")) {
+                saveBaseline = true;
+            } else if (arg.equals("--rapido")) {
+                quick = true;
+            } else {
+                includes.add(arg);
+            }
+        }
+
+        if (compareOnly == null) {
+            run(includes, result, quick);
+        } else {
+            result = compareOnly;
+        }
+
+        if (saveBaseline) {
+            if (baseline.getParent() != null) {
+                Files.createDirectories(baseline.getParent());
+            }
+            saveBaseline(result, baseline);
+            System.out.println("Linha de base atualizada: " + baseline.toAbsolutePath());
+            return;
+        }
+        if (!Files.isRegularFile(baseline)) {
+            System.out.println("Linha de base não encontrada (" + baseline + "); comparação ignorada.");
+            return;
+        }
+        List<String> regressions = compare(baseline, result, threshold);
+        if (!regressions.isEmpty()) {
+            System.out.println("\n✖ REGRESSÕES DE DESEMPENHO (limite " + Math.round(threshold * 100) + "%):");
+            regressions.forEach(System.out::println);
+            System.exit(1);
+        }
+        System.out.println("\n✔ Nenhuma regressão acima de " + Math.round(threshold * 100) + "% em relação à linha de base.");
+    }
+
+    private static void run(List<String> includes, Path result, boolean quick) throws IOException, RunnerException {
+        if (result.getParent() != null) {
+            Files.createDirectories(result.getParent());
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.toString());
+        if (includes.isEmpty()) {
+            options.include(BenchmarkRunner.class.getPackageName() + ".*");
+        }
+        includes.forEach(options::include);
+        if (quick) {
+            // Execução curta para verificação rápida; os números são menos estáveis.
+            options.warmupIterations(1).warmupTime(TimeValue.seconds(1))
+                    .measurementIterations(2).measurementTime(TimeValue.seconds(1));
+        }
+        new Runner(options.build()).run();
+    }
+
+    // Copia o resultado sem o caminho do executável da JVM, que só vale para a máquina que gravou.
+    private static void saveBaseline(Path result, Path baseline) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode benchmarks = mapper.readTree(result.toFile());
+        for (JsonNode benchmark : benchmarks) {
+            ((ObjectNode) benchmark).remove("jvm");
+        }
+        mapper.writerWithDefaultPrettyPrinter().writeValue(baseline.toFile(), benchmarks);
+    }
+
+    // Compara tempo (métrica primária) e alocação por operação de cada benchmark presente nos dois arquivos.
+    static List<String> compare(Path baselineFile, Path resultFile, double threshold) throws IOException {
+        Map<String, JsonNode> baseline = index(baselineFile);
+        Map<String, JsonNode> current = index(resultFile);
+        List<String> regressions = new ArrayList<>();
+
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.println("NOVO      " + entry.getKey());
+                continue;
+            }
+            JsonNode after = entry.getValue();
+            boolean higherIsBetter = after.path("mode").asText().equals("thrpt");
+            String time = check(entry.getKey(), "tempo",
+                    before.path("primaryMetric"), after.path("primaryMetric"), higherIsBetter, threshold);
+            String allocation = check(entry.getKey(), "alocação",
+                    allocationMetric(before), allocationMetric(after), false, threshold);
+            if (time != null) {
+                regressions.add(time);
+            }
+            if (allocation != null) {
+                regressions.add(allocation);
+            }
+        }
+        return regressions;
+    }
+
+    private static String check(String name, String label, JsonNode before, JsonNode after, boolean higherIsBetter, double threshold) {
+        if (before.isMissingNode() || after.isMissingNode()) {
+            return null;
+        }
+        double old = before.path("score").asDouble();
+        double now = after.path("score").asDouble();
+        String unit = after.path("scoreUnit").asText();
+        double change = old == 0 ? 0 : (now - old) / old;
+        double worse = higherIsBetter ? -change : change;
+        String line = String.format("%-9s %-8s %+7.1f%%  %12.3f -> %12.3f %s  %s",
+                worse > threshold ? "PIOROU" : "OK", label, change * 100, old, now, unit, name);
+        System.out.println(line);
+        return worse > threshold ? line : null;
+    }
+
+    private static JsonNode allocationMetric(JsonNode benchmark) {
+        Iterator<Map.Entry<String, JsonNode>> metrics = benchmark.path("secondaryMetrics").fields();
+        while (metrics.hasNext()) {
+            Map.Entry<String, JsonNode> metric = metrics.next();
+            if (metric.getKey().endsWith(ALLOCATION_METRIC)) {
+                return metric.getValue();
+            }
+        }
+        return MissingNode.getInstance();
+    }
+
+    // Chave: nome do benchmark + parâmetros em ordem alfabética (ex: "...lexer {commands=10}").
+    private static Map<String, JsonNode> index(Path file) throws IOException {
+        Map<String, JsonNode> byName = new LinkedHashMap<>();
+        for (JsonNode benchmark : new ObjectMapper().readTree(file.toFile())) {
+            Map<String, String> params = new TreeMap<>();
+            benchmark.path("params").fields().forEachRemaining(p -> params.put(p.getKey(), p.getValue().asText()));
+            byName.put(benchmark.path("benchmark").asText() + (params.isEmpty() ? "" : " " + params), benchmark);
+        }
+        return byName;
+    }
+}
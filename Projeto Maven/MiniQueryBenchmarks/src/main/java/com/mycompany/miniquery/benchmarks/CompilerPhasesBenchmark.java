@@ -0,0 +1,97 @@
+package com.mycompany.miniquery.benchmarks;
+
+import com.mycompany.miniquery.JavaScriptGenerator;
+import com.mycompany.miniquery.MiniQueryCompiler;
+import com.mycompany.miniquery.TwoStageParser;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.Command;
+import com.mycompany.miniquery.compiler.MiniQuerySemanticValidator;
+import com.mycompany.miniquery.grammar.MiniQueryLexer;
+import com.mycompany.miniquery.grammar.MiniQueryParser;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Mede cada fase do compilador isoladamente (léxico, sintático, semântico, geração de JS)
+// e o pipeline completo, em um programa pequeno e em um grande. As entradas de cada fase
+// são preparadas no @Setup, de modo que cada benchmark mede apenas a sua própria fase.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompilerPhasesBenchmark {
+
+    // Quantidade de comandos FILTER/SELECT do programa gerado.
+    @Param({"10", "5000"})
+    public int commands;
+
+    private String source;
+    private ParseTree tree;
+    private List<Command> validCommands;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = Workloads.program(commands);
+        tree = parse();
+        MiniQuerySemanticValidator validator = validate();
+        if (!validator.getErrors().isEmpty()) {
+            throw new IllegalStateException("Programa gerado inválido: " + validator.getErrors());
+        }
+        validCommands = validator.getCommands();
+    }
+
+    @Benchmark
+    public int lexer() {
+        return new MiniQueryLexer(CharStreams.fromString(source)).getAllTokens().size();
+    }
+
+    @Benchmark
+    public ParseTree parser() {
+        return parse();
+    }
+
+    @Benchmark
+    public MiniQuerySemanticValidator semantic() {
+        return validate();
+    }
+
+    @Benchmark
+    public String generator() {
+        return new JavaScriptGenerator().generate(validCommands);
+    }
+
+    @Benchmark
+    public String endToEnd() {
+        return new MiniQueryCompiler().compile(source, new ArrayList<>());
+    }
+
+    // Mesmo parse do MiniQueryCompiler: SLL com bail-out e LL apenas se houver erro.
+    private ParseTree parse() {
+        MiniQueryParser parser = new MiniQueryParser(new CommonTokenStream(new MiniQueryLexer(CharStreams.fromString(source))));
+        return new TwoStageParser().parse(parser, new BaseErrorListener());
+    }
+
+    private MiniQuerySemanticValidator validate() {
+        MiniQuerySemanticValidator validator = new MiniQuerySemanticValidator();
+        ParseTreeWalker.DEFAULT.walk(validator, tree);
+        return validator;
+    }
+}
@@ -0,0 +1,88 @@
+package com.mycompany.miniquery.benchmarks;
+
+import com.mycompany.miniquery.MiniQueryCompiler;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.Command;
+import com.mycompany.miniquery.runtime.ExecutionResult;
+import com.mycompany.miniquery.runtime.FieldIndex;
+import com.mycompany.miniquery.runtime.QueryExecutor;
+import com.mycompany.miniquery.runtime.QueryPipeline;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Consultas seletivas (igualdade em .email, faixa de ~1% em .valor) sobre 100 mil registros,
+// com varredura completa e com os índices persistidos criados no @Setup. O índice hash não
+// atende a faixa, então esse caso mede a varredura depois de consultar o índice.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexedQueryBenchmark {
+
+    private static final int RECORDS = 100_000;
+
+    @Param({"igualdade", "faixa"})
+    public String query;
+
+    @Param({"nenhum", "ordenado", "hash"})
+    public String index;
+
+    private Path workDir;
+    private QueryPipeline pipeline;
+    private final QueryExecutor executor = new QueryExecutor();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("miniquery-bench");
+        Path input = workDir.resolve("dados.json");
+        Workloads.writeDataset(input, RECORDS);
+
+        String path = query.equals("igualdade") ? ".email" : ".valor";
+        String filter = query.equals("igualdade") ? "FILTER .email == \"ana500@exemplo.com\"" : "FILTER .valor > 990";
+        if (!index.equals("nenhum")) {
+            FieldIndex.build(input, path, FieldIndex.Kind.of(index));
+        }
+        String program = "LOAD \"" + input + "\"\n" + filter + "\nSELECT .nome, .cliente.idade\n"
+                + "SAVE AS \"" + workDir.resolve("saida.json") + "\"\n";
+        List<Command> commands = new ArrayList<>();
+        String output = new MiniQueryCompiler().compile(program, commands);
+        if (commands.isEmpty()) {
+            throw new IllegalStateException("Consulta de benchmark inválida:\n" + output);
+        }
+        pipeline = QueryPipeline.from(commands);
+    }
+
+    @Benchmark
+    public ExecutionResult execute() throws IOException {
+        return executor.execute(pipeline, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(workDir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.mycompany.miniquery.benchmarks;
+
+import com.mycompany.miniquery.TwoStageParser;
+import com.mycompany.miniquery.grammar.MiniQueryLexer;
+import com.mycompany.miniquery.grammar.MiniQueryParser;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Compara o parse LL com a estratégia de erro padrão (como era feito antes) com o parse em
+// dois estágios do TwoStageParser, em programas grandes válidos e com um erro de sintaxe
+// no meio. Os tokens são gerados no @Setup para medir apenas o parser.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParsingStrategyBenchmark {
+
+    @Param({"1000", "20000"})
+    public int commands;
+
+    @Param({"valido", "erro"})
+    public String program;
+
+    private List<? extends Token> tokens;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String source = Workloads.program(commands);
+        if (program.equals("erro")) {
+            // Um FILTER sem valor no meio do programa.
+            int middle = source.indexOf("\nFILTER", source.length() / 2);
+            source = source.substring(0, middle) + "\nFILTER .idade >" + source.substring(middle);
+        }
+        tokens = new MiniQueryLexer(CharStreams.fromString(source)).getAllTokens();
+    }
+
+    @Benchmark
+    public ParseTree defaultLl() {
+        MiniQueryParser parser = newParser();
+        parser.removeErrorListeners();
+        parser.addErrorListener(new BaseErrorListener());
+        return parser.program();
+    }
+
+    @Benchmark
+    public ParseTree twoStage() {
+        return new TwoStageParser().parse(newParser(), new BaseErrorListener());
+    }
+
+    private MiniQueryParser newParser() {
+        return new MiniQueryParser(new CommonTokenStream(new ListTokenSource(tokens)));
+    }
+}
@@ -0,0 +1,83 @@
+package com.mycompany.miniquery.benchmarks;
+
+import com.mycompany.miniquery.MiniQueryCompiler;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.Command;
+import com.mycompany.miniquery.runtime.ExecutionMode;
+import com.mycompany.miniquery.runtime.ExecutionResult;
+import com.mycompany.miniquery.runtime.QueryExecutor;
+import com.mycompany.miniquery.runtime.QueryPipeline;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Mede a execução da consulta na JVM (LOAD -> FILTER -> FILTER -> SELECT -> SAVE) sobre
+// conjuntos de dados sintéticos de tamanho crescente, com as etapas interpretadas e compiladas.
+// O pipeline é montado no @Setup: o custo do javac do modo compilado não entra na medição.
+// No modo colunar o mesmo executor é reusado, então só a primeira execução carrega as colunas
+// (consultas repetidas sobre o mesmo arquivo).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryExecutionBenchmark {
+
+    @Param({"1000", "100000"})
+    public int records;
+
+    @Param({"interpretado", "compilado", "colunar"})
+    public String mode;
+
+    private Path workDir;
+    private QueryPipeline pipeline;
+    private QueryExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("miniquery-bench");
+        Path input = workDir.resolve("dados.json");
+        Workloads.writeDataset(input, records);
+
+        List<Command> commands = new ArrayList<>();
+        String output = new MiniQueryCompiler().compile(Workloads.query(input, workDir.resolve("saida.json")), commands);
+        if (commands.isEmpty()) {
+            throw new IllegalStateException("Consulta de benchmark inválida:\n" + output);
+        }
+        ExecutionMode executionMode = ExecutionMode.of(mode);
+        pipeline = QueryPipeline.from(commands, executionMode);
+        executor = new QueryExecutor(executionMode);
+    }
+
+    @Benchmark
+    public ExecutionResult execute() throws IOException {
+        return executor.execute(pipeline, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(workDir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.mycompany.miniquery.benchmarks;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+// Programas MiniQuery e conjuntos de dados sintéticos gerados a partir de uma semente fixa,
+// para que cada execução dos benchmarks meça exatamente a mesma entrada.
+final class Workloads {
+
+    static final long SEED = 20240601L;
+
+    private static final String[] NAMES = {"Ana", "Bruno", "Carla", "Diego", "Elisa", "Fábio", "Gabi", "Hugo"};
+    private static final String[] NUMERIC_PATHS = {".idade", ".valor", ".cliente.idade"};
+    private static final String[] TEXT_PATHS = {".nome", ".email", ".cliente.nome"};
+    private static final String[] OPERATORS = {">", "<", ">=", "<=", "==", "!="};
+
+    private Workloads() {
+    }
+
+    // Programa com um LOAD, 'commands' comandos FILTER/SELECT intercalados e um SAVE.
+    // Usa apenas campos conhecidos pelo validador para que a compilação termine sem erros.
+    static String program(int commands) {
+        Random random = new Random(SEED);
+        StringBuilder src = new StringBuilder("# Programa gerado para benchmark\n");
+        src.append("LOAD \"dados.json\"\n");
+        for (int i = 0; i < commands; i++) {
+            if (random.nextInt(3) == 0) {
+                src.append("SELECT ").append(pick(random, NUMERIC_PATHS)).append(", ").append(pick(random, TEXT_PATHS)).append('\n');
+            } else if (random.nextBoolean()) {
+                src.append("FILTER ").append(pick(random, NUMERIC_PATHS)).append(' ')
+                        .append(pick(random, OPERATORS)).append(' ').append(random.nextInt(100)).append('\n');
+            } else {
+                src.append("FILTER ").append(pick(random, TEXT_PATHS)).append(random.nextBoolean() ? " == " : " != ")
+                        .append('"').append(pick(random, NAMES)).append("\"\n");
+            }
+        }
+        src.append("SAVE AS \"saida.json\"\n");
+        return src.toString();
+    }
+
+    // Grava 'records' registros em um array JSON no formato esperado pela consulta de execução.
+    static void writeDataset(Path file, int records) throws IOException {
+        Random random = new Random(SEED);
+        try (JsonGenerator json = new JsonFactory().createGenerator(file.toFile(), JsonEncoding.UTF8)) {
+            json.writeStartArray();
+            for (int i = 0; i < records; i++) {
+                String name = pick(random, NAMES);
+                json.writeStartObject();
+                json.writeStringField("nome", name);
+                json.writeNumberField("idade", 10 + random.nextInt(70));
+                json.writeStringField("email", name.toLowerCase() + i + "@exemplo.com");
+                json.writeNumberField("valor", random.nextInt(100_000) / 100.0);
+                json.writeObjectFieldStart("cliente");
+                json.writeStringField("nome", pick(random, NAMES));
+                json.writeNumberField("idade", 18 + random.nextInt(60));
+                json.writeEndObject();
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+        }
+    }
+
+    // Consulta de execução: dois filtros (numérico e textual), uma projeção aninhada e o SAVE.
+    static String query(Path input, Path output) {
+        return "LOAD \"" + input + "\"\n"
+                + "FILTER .idade >= 18\n"
+                + "FILTER .nome != \"Hugo\"\n"
+                + "SELECT .nome, .cliente.idade, .valor\n"
+                + "SAVE AS \"" + output + "\"\n";
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
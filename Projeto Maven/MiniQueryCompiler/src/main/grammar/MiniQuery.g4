@@ -12,6 +12,9 @@ command
     : loadCommand
     | filterCommand
     | selectCommand
+    | groupByCommand
+    | orderByCommand
+    | limitCommand
     | saveCommand
     ;
 
@@ -29,8 +32,32 @@ selectCommand
     : 'SELECT' jsonPath (',' jsonPath)*
     ;
 
+// Um registro por valor da chave, com as agregações na ordem em que aparecem:
+// GROUP BY .cidade COUNT(.id), AVG(.idade)
+groupByCommand
+    : 'GROUP' 'BY' jsonPath (aggregate (',' aggregate)*)?
+    ;
+
+aggregate
+    : function=('COUNT' | 'SUM' | 'AVG' | 'MIN' | 'MAX') '(' jsonPath ')'
+    ;
+
+// Cada chave do ORDER BY pode ter ASC (padrão) ou DESC.
+orderByCommand
+    : 'ORDER' 'BY' orderKey (',' orderKey)*
+    ;
+
+orderKey
+    : jsonPath direction=('ASC' | 'DESC')?
+    ;
+
+limitCommand
+    : 'LIMIT' NUMBER
+    ;
+
+// O formato é opcional: JSON (padrão), COMPACT_JSON, NDJSON ou COLUMNAR.
 saveCommand
-    : 'SAVE' 'AS' STRING
+    : 'SAVE' 'AS' STRING ('FORMAT' format=IDENTIFIER)?
     ;
 
 jsonPath
@@ -0,0 +1,198 @@
+package com.mycompany.miniquery;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Compila muitos arquivos .mq em paralelo, em um pool de threads limitado.
+// Todas as threads compartilham o cache de DFA do ANTLR (estático no parser gerado);
+// cada compilação cria seu próprio lexer, parser e MiniQuerySemanticValidator, que não são thread-safe.
+// As saídas e o relatório são gravados em ordem de caminho, independentemente da ordem de término.
+public class BatchCompiler {
+
+    private static final String DEFAULT_OUTPUT_DIR = "target/batch-results/";
+
+    private static final String USAGE = "Uso: java -cp <caminho-do-jar> com.mycompany.miniquery.BatchCompiler "
+            + "[--saida=<dir>] [--threads=<n>] <diretório | arquivo.mq | glob>...";
+
+    public static void main(String[] args) throws IOException {
+        Path outputDir = Paths.get(DEFAULT_OUTPUT_DIR);
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> inputs = new ArrayList<>();
+        String invalid = null;
+        for (String arg : args) {
+            // --threads segue a mesma validação do Main.
+            try {
+                if (arg.startsWith("--saida=")) {
+                    outputDir = Paths.get(arg.substring("--saida=".length()));
+                } else if (arg.startsWith("--threads=")) {
+                    threads = (int) Main.positive(arg, "--threads=", Main.MAX_THREADS);
+                } else {
+                    inputs.add(arg);
+                }
+            } catch (IllegalArgumentException e) {
+                invalid = e.getMessage();
+            }
+        }
+        if (invalid != null || inputs.isEmpty()) {
+            if (invalid != null) {
+                System.err.println("ERRO: " + invalid);
+            }
+            System.err.println(USAGE);
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        List<Path> files = collectFiles(inputs);
+        List<BatchResult> results = compileAll(files, outputDir, threads);
+        long duration = System.currentTimeMillis() - startTime;
+
+        generateReport(results, outputDir, threads, duration);
+        System.out.printf("%d arquivos compilados em %dms com %d threads. Relatório em: %s%n",
+                results.size(), duration, threads, outputDir.resolve("RELATORIO_COMPLETO.txt").toAbsolutePath());
+    }
+
+    // Expande diretórios (recursivamente) e globs (ex: "consultas/**/*.mq") em uma lista ordenada e sem repetições.
+    static List<Path> collectFiles(List<String> inputs) throws IOException {
+        TreeSet<Path> files = new TreeSet<>();
+        for (String input : inputs) {
+            if (input.contains("*") || input.contains("?") || input.contains("{")) {
+                // O caminho é comparado como foi percorrido a partir do prefixo do glob (ex: "./consultas/*.mq")
+                // e também normalizado (ex: "*.mq", percorrido a partir de ".").
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input);
+                try (Stream<Path> walk = Files.walk(globBase(input))) {
+                    walk.filter(Files::isRegularFile)
+                            .filter(p -> matcher.matches(p) || matcher.matches(p.normalize()))
+                            .map(Path::normalize)
+                            .forEach(files::add);
+                }
+            } else if (Files.isDirectory(Paths.get(input))) {
+                try (Stream<Path> walk = Files.walk(Paths.get(input))) {
+                    walk.filter(Files::isRegularFile)
+                            .filter(p -> p.toString().endsWith(".mq"))
+                            .map(Path::normalize)
+                            .forEach(files::add);
+                }
+            } else {
+                files.add(Paths.get(input).normalize());
+            }
+        }
+        return new ArrayList<>(files);
+    }
+
+    // Diretório fixo que antecede o primeiro segmento com curinga.
+    private static Path globBase(String glob) {
+        int wildcard = glob.length();
+        for (char c : new char[] {'*', '?', '{', '['}) {
+            int index = glob.indexOf(c);
+            if (index >= 0) {
+                wildcard = Math.min(wildcard, index);
+            }
+        }
+        int slash = glob.lastIndexOf('/', wildcard);
+        return slash < 0 ? Paths.get(".") : Paths.get(glob.substring(0, Math.max(slash, 1)));
+    }
+
+    static List<BatchResult> compileAll(List<Path> files, Path outputDir, int threads) throws IOException {
+        MiniQueryCompiler compiler = new MiniQueryCompiler();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<BatchResult>> futures = new ArrayList<>();
+            for (Path file : files) {
+                futures.add(pool.submit(() -> compileFile(compiler, file, outputDir)));
+            }
+            List<BatchResult> results = new ArrayList<>();
+            for (Future<BatchResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Compilação em lote interrompida", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static BatchResult compileFile(MiniQueryCompiler compiler, Path file, Path outputDir) {
+        BatchResult result = new BatchResult(file);
+        long start = System.nanoTime();
+        try {
+            result.output = compiler.compile(Files.readString(file, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            result.output = "💥 ERRO: Não foi possível ler o arquivo: " + e.getMessage();
+        }
+        result.nanos = System.nanoTime() - start;
+
+        // Uma falha ao gravar a saída fica no relatório deste arquivo, sem interromper o lote.
+        try {
+            Path target = outputDir.resolve(outputName(file, ".result.txt"));
+            Files.createDirectories(target.getParent());
+            Files.writeString(target, result.output, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            result.writeError = "Não foi possível gravar a saída: " + e;
+        }
+        return result;
+    }
+
+    // A saída espelha o caminho de entrada (sem a raiz) para evitar colisões entre diretórios.
+    static Path outputName(Path file, String extension) {
+        Path relative = file.isAbsolute() ? file.getRoot().relativize(file) : file;
+        String name = relative.toString().replace("..", "__");
+        return Paths.get(name.replaceAll("\\.mq$", "") + extension);
+    }
+
+    private static void generateReport(List<BatchResult> results, Path outputDir, int threads, long duration) throws IOException {
+        StringBuilder report = new StringBuilder();
+        report.append("=== RELATORIO DE COMPILACAO EM LOTE ===\n");
+        report.append("Data: ").append(new Date()).append("\n");
+        report.append("Threads: ").append(threads).append(" | Tempo total: ").append(duration).append("ms\n\n");
+
+        report.append("->  RESUMO: ").append(results.size()).append(" arquivos\n");
+        for (String status : List.of("VALIDO", "ERRO DE SINTAXE", "ERRO SEMANTICO", "ERRO INESPERADO", "ERRO DE GRAVACAO")) {
+            long count = results.stream().filter(r -> r.status().equals(status)).count();
+            report.append("    ").append(status).append(": ").append(count).append("\n");
+        }
+        report.append("\n");
+        report.append(results.stream()
+                .map(r -> String.format("%-16s %8.2fms  %s", r.status(), r.nanos / 1_000_000.0, r.file)
+                        + (r.writeError == null ? "" : "  (" + r.writeError + ")"))
+                .collect(Collectors.joining("\n")));
+        report.append("\n");
+
+        Files.createDirectories(outputDir);
+        Files.writeString(outputDir.resolve("RELATORIO_COMPLETO.txt"), report.toString(), StandardCharsets.UTF_8);
+    }
+
+    static class BatchResult {
+        final Path file;
+        String output;
+        String writeError;
+        long nanos;
+        BatchResult(Path file) { this.file = file; }
+
+        String status() {
+            if (writeError != null) return "ERRO DE GRAVACAO";
+            if (output.startsWith("✔")) return "VALIDO";
+            if (output.startsWith("ERRO DE SINTAXE")) return "ERRO DE SINTAXE";
+            if (output.startsWith("✖")) return "ERRO SEMANTICO";
+            return "ERRO INESPERADO";
+        }
+    }
+}
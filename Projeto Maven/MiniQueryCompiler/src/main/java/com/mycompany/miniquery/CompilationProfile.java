@@ -0,0 +1,138 @@
+package com.mycompany.miniquery;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mycompany.miniquery.grammar.MiniQueryLexer;
+import com.mycompany.miniquery.grammar.MiniQueryParser;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.atn.DecisionInfo;
+import org.antlr.v4.runtime.atn.ParseInfo;
+
+// Medições de uma compilação (--profile): tempo e bytes alocados por fase, e as decisões do
+// parser instrumentadas pelo ProfilingATNSimulator do ANTLR (custo de predição, quedas de SLL
+// para LL, ambiguidades e tamanho dos DFAs). O relatório é emitido em JSON.
+public class CompilationProfile {
+
+    // Quantas decisões mais caras entram no relatório.
+    private static final int TOP_DECISIONS = 10;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final List<ObjectNode> phases = new ArrayList<>();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ObjectNode report = mapper.createObjectNode();
+    private long markNanos;
+    private long markBytes;
+    private long totalNanos;
+    private long totalBytes;
+    private String status = "ERRO INESPERADO";
+
+    public CompilationProfile() {
+        mark();
+    }
+
+    // Reinicia a contagem; a próxima chamada a phase() mede a partir daqui.
+    public void mark() {
+        markNanos = System.nanoTime();
+        markBytes = allocatedBytes();
+    }
+
+    // Registra a fase que terminou agora, desde o último mark() ou phase().
+    public void phase(String name) {
+        long nanos = System.nanoTime() - markNanos;
+        long bytes = allocatedBytes();
+        long allocated = bytes < 0 || markBytes < 0 ? -1 : bytes - markBytes;
+
+        ObjectNode phase = mapper.createObjectNode();
+        phase.put("fase", name);
+        phase.put("nanos", nanos);
+        phase.put("bytesAlocados", allocated);
+        phases.add(phase);
+        totalNanos += nanos;
+        totalBytes += Math.max(allocated, 0);
+        mark();
+    }
+
+    // Lê as estatísticas do parser (que precisa ter rodado com setProfile(true)) e o DFA do lexer.
+    // 'llFallback' indica se o TwoStageParser precisou reler o programa em LL.
+    public void recordDecisions(MiniQueryParser parser, MiniQueryLexer lexer, boolean llFallback) {
+        report.put("parseRepetidoEmLl", llFallback);
+        ParseInfo info = parser.getParseInfo();
+        ObjectNode dfa = report.putObject("dfa");
+        dfa.put("estadosParser", info == null ? 0 : info.getDFASize());
+        dfa.put("estadosLexer", lexer.getInterpreter().getDFA(Lexer.DEFAULT_MODE).states.size());
+        if (info == null) {
+            return;
+        }
+
+        DecisionInfo[] decisions = info.getDecisionInfo();
+        long sll = 0;
+        long llFallbacks = 0;
+        for (DecisionInfo decision : decisions) {
+            sll += decision.invocations - decision.LL_Fallback;
+            llFallbacks += decision.LL_Fallback;
+        }
+        // Decisões LL(1) são resolvidas pelo código gerado sem adaptivePredict e não aparecem aqui.
+        ObjectNode prediction = report.putObject("predicao");
+        prediction.put("decisoesDaGramatica", decisions.length);
+        prediction.put("decisoesSll", sll);
+        prediction.put("quedasParaLl", llFallbacks);
+        prediction.put("nanosTotais", info.getTotalTimeInPrediction());
+
+        ArrayNode expensive = report.putArray("decisoesMaisCaras");
+        Arrays.stream(decisions)
+                .filter(d -> d.invocations > 0)
+                .sorted(Comparator.comparingLong((DecisionInfo d) -> d.timeInPrediction).reversed())
+                .limit(TOP_DECISIONS)
+                .forEach(d -> {
+                    ObjectNode node = expensive.addObject();
+                    int rule = parser.getATN().decisionToState.get(d.decision).ruleIndex;
+                    node.put("decisao", d.decision);
+                    node.put("regra", parser.getRuleNames()[rule]);
+                    node.put("invocacoes", d.invocations);
+                    node.put("nanos", d.timeInPrediction);
+                    node.put("lookaheadSll", d.SLL_TotalLook);
+                    node.put("lookaheadSllMaximo", d.SLL_MaxLook);
+                    node.put("quedasParaLl", d.LL_Fallback);
+                    node.put("lookaheadLl", d.LL_TotalLook);
+                    node.put("ambiguidades", d.ambiguities.size());
+                    node.put("erros", d.errors.size());
+                });
+    }
+
+    // Resultado final da compilação: VALIDO, ERRO DE SINTAXE, ERRO SEMANTICO ou ERRO INESPERADO.
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String toJson() {
+        ObjectNode root = mapper.createObjectNode();
+        root.put("status", status);
+        root.put("nanosTotais", totalNanos);
+        root.put("bytesAlocadosTotais", totalBytes);
+        root.putArray("fases").addAll(phases);
+        root.setAll(report);
+        try {
+            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(root);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Bytes alocados pela thread atual (-1 se a JVM não oferece a medição).
+    private long allocatedBytes() {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) threads;
+            if (sun.isThreadAllocatedMemorySupported() && sun.isThreadAllocatedMemoryEnabled()) {
+                return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
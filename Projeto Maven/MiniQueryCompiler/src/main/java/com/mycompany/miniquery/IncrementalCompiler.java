@@ -0,0 +1,349 @@
+package com.mycompany.miniquery;
+
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.Command;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.FilterCondition;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.GroupByCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.LimitCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.LoadCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.OrderByCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.SaveCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.SelectCommand;
+import com.mycompany.miniquery.compiler.MiniQuerySemanticValidator;
+import com.mycompany.miniquery.grammar.MiniQueryLexer;
+import com.mycompany.miniquery.grammar.MiniQueryParser;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+// Recompilação incremental de um arquivo .mq que é editado aos poucos (modo watch).
+// Guarda, para cada comando, o trecho do código-fonte, o Command e as mensagens da validação.
+// A cada versão nova do texto, só o trecho entre o prefixo e o sufixo inalterados é relido
+// (léxico + sintático); os comandos fora dele são reaproveitados com offsets e linhas deslocados.
+// A validação é refeita apenas para os comandos novos ou cujo esquema (LOAD anterior) mudou,
+// e o JavaScriptGenerator reaproveita os laços já gerados. Qualquer erro léxico ou sintático
+// faz a recompilação completa pelo MiniQueryCompiler, então a saída é sempre idêntica à dele.
+public class IncrementalCompiler {
+
+    // Esquema em vigor antes do primeiro LOAD.
+    private static final Map<String, String> NO_SCHEMA = Map.of();
+
+    private final boolean ndjson;
+    private final MiniQueryCompiler fullCompiler;
+    private String text;
+    private List<Chunk> chunks;
+    private Map<Object, String> fragments = new HashMap<>();
+    private int lastOutputLength;
+    // Comandos devolvidos pelo compilador completo quando o caminho incremental não se aplica.
+    private final List<Command> fallbackCommands = new ArrayList<>();
+
+    private boolean lastIncremental;
+    private int lastReparsed;
+    private int lastRevalidated;
+    private int lastRegenerated;
+
+    public IncrementalCompiler() {
+        this(false);
+    }
+
+    public IncrementalCompiler(boolean ndjson) {
+        this.ndjson = ndjson;
+        this.fullCompiler = new MiniQueryCompiler(ndjson, null);
+    }
+
+    // Compila a nova versão do arquivo e devolve a mesma saída que MiniQueryCompiler.compile.
+    public String update(String newText) {
+        List<Chunk> updated = chunks == null ? null : reparseChanged(newText);
+        lastIncremental = updated != null;
+        if (updated == null) {
+            updated = reparse(newText, 0, newText.length(), 1);
+        }
+        if (updated == null || updated.isEmpty()) {
+            // Erro léxico/sintático (ou programa vazio): as mensagens vêm do compilador completo.
+            return compileFully(newText);
+        }
+        chunks = updated;
+        text = newText;
+        try {
+            return validateAndGenerate();
+        } catch (RuntimeException e) {
+            return compileFully(newText);
+        }
+    }
+
+    private String compileFully(String newText) {
+        chunks = null;
+        text = null;
+        fragments = new HashMap<>();
+        lastIncremental = false;
+        lastRevalidated = 0;
+        lastRegenerated = 0;
+        fallbackCommands.clear();
+        return fullCompiler.compile(newText, fallbackCommands);
+    }
+
+    // Comandos da última compilação válida, com as linhas atualizadas (vazio se houve erro).
+    public List<Command> getCommands() {
+        if (chunks == null) {
+            return new ArrayList<>(fallbackCommands);
+        }
+        List<Command> commands = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            commands.add(chunk.currentCommand());
+        }
+        return commands;
+    }
+
+    // Se a última chamada a update() reaproveitou a compilação anterior.
+    public boolean wasIncremental() {
+        return lastIncremental;
+    }
+
+    public int getReparsedCommands() {
+        return lastReparsed;
+    }
+
+    public int getRevalidatedCommands() {
+        return lastRevalidated;
+    }
+
+    public int getRegeneratedFragments() {
+        return lastRegenerated;
+    }
+
+    // Relê só os comandos afetados pela edição; null se for preciso recompilar tudo.
+    private List<Chunk> reparseChanged(String newText) {
+        int oldLength = text.length();
+        int newLength = newText.length();
+        int prefix = 0;
+        int maxPrefix = Math.min(oldLength, newLength);
+        while (prefix < maxPrefix && text.charAt(prefix) == newText.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        int maxSuffix = maxPrefix - prefix;
+        while (suffix < maxSuffix && text.charAt(oldLength - 1 - suffix) == newText.charAt(newLength - 1 - suffix)) {
+            suffix++;
+        }
+        int oldChangeEnd = oldLength - suffix;
+        int newChangeEnd = newLength - suffix;
+        int delta = newLength - oldLength;
+        int lineDelta = countLines(newText, prefix, newChangeEnd) - countLines(text, prefix, oldChangeEnd);
+
+        // Mantidos antes: terminam pelo menos dois caracteres antes da edição, pois o lexer olha
+        // até dois caracteres à frente (NUMBER '.' [0-9]).
+        int before = 0;
+        while (before < chunks.size() && chunks.get(before).stop + 2 < prefix) {
+            before++;
+        }
+        // Mantidos depois: começam após a edição, precedidos por um espaço inalterado, para que
+        // nenhum token do trecho relido possa se estender até eles.
+        int after = chunks.size();
+        while (after > before) {
+            Chunk chunk = chunks.get(after - 1);
+            if (chunk.start - 1 < oldChangeEnd || !Character.isWhitespace(text.charAt(chunk.start - 1))) {
+                break;
+            }
+            after--;
+        }
+
+        int regionStart = before == 0 ? 0 : chunks.get(before - 1).stop + 1;
+        int regionEnd = after == chunks.size() ? newLength : chunks.get(after).start + delta;
+        int regionLine = before == 0 ? 1 : chunks.get(before - 1).endLine;
+        List<Chunk> region = reparse(newText, regionStart, regionEnd, regionLine);
+        if (region == null) {
+            return null;
+        }
+
+        List<Chunk> updated = new ArrayList<>(chunks.size() + region.size());
+        updated.addAll(chunks.subList(0, before));
+        updated.addAll(region);
+        for (Chunk chunk : chunks.subList(after, chunks.size())) {
+            chunk.shift(delta, lineDelta);
+            updated.add(chunk);
+        }
+        return updated;
+    }
+
+    // Analisa o trecho [start, end) do texto; null em caso de erro léxico ou sintático.
+    private List<Chunk> reparse(String source, int start, int end, int line) {
+        String fragment = source.substring(start, end);
+        MiniQueryLexer lexer = new MiniQueryLexer(CharStreams.fromString(fragment));
+        lexer.setLine(line);
+        FailureListener lexerErrors = new FailureListener();
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(lexerErrors);
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+        tokens.fill();
+        List<Chunk> region = new ArrayList<>();
+        lastReparsed = 0;
+        if (lexerErrors.failed) {
+            return null;
+        }
+        if (tokens.size() == 1) {
+            // Só espaços e comentários: nenhum comando no trecho.
+            return region;
+        }
+
+        MiniQueryParser parser = new MiniQueryParser(tokens);
+        FailureListener parserErrors = new FailureListener();
+        MiniQueryParser.ProgramContext program = (MiniQueryParser.ProgramContext) new TwoStageParser().parse(parser, parserErrors);
+        if (parserErrors.failed || parser.getNumberOfSyntaxErrors() > 0) {
+            return null;
+        }
+        MiniQueryBaseProcessor processor = new MiniQueryBaseProcessor();
+        for (MiniQueryParser.CommandContext ctx : program.command()) {
+            ParseTreeWalker.DEFAULT.walk(processor, ctx);
+            List<Command> built = processor.getCommands();
+            Token stop = ctx.getStop();
+            int endLine = stop.getLine() + countLines(stop.getText(), 0, stop.getText().length());
+            region.add(new Chunk(built.get(built.size() - 1), start + charOffset(fragment, ctx.getStart().getStartIndex()),
+                    start + charOffset(fragment, stop.getStopIndex() + 1) - 1, endLine));
+        }
+        lastReparsed = region.size();
+        return region;
+    }
+
+    private String validateAndGenerate() {
+        MiniQuerySemanticValidator validator = new MiniQuerySemanticValidator(null, ndjson);
+        Map<String, String> schema = NO_SCHEMA;
+        List<String> errors = new ArrayList<>();
+        List<Command> commands = new ArrayList<>(chunks.size());
+        lastRevalidated = 0;
+
+        for (Chunk chunk : chunks) {
+            if (chunk.command instanceof LoadCommand) {
+                // O LOAD é sempre verificado: o arquivo de dados pode ter mudado desde a última vez.
+                chunk.messages = validator.check(chunk.command);
+                lastRevalidated++;
+                if (chunk.schema == null || !chunk.schema.equals(validator.getSchema())) {
+                    chunk.schema = new HashMap<>(validator.getSchema());
+                }
+                schema = chunk.schema;
+            } else if (chunk.messages == null || chunk.schema != schema) {
+                chunk.messages = validator.check(chunk.command);
+                chunk.schema = schema;
+                lastRevalidated++;
+            }
+            for (String message : chunk.messages) {
+                errors.add(MiniQuerySemanticValidator.formatError(chunk.line, message));
+            }
+            // As regras de posição dependem dos comandos anteriores e são sempre reavaliadas.
+            for (String message : MiniQuerySemanticValidator.checkPosition(chunk.command, commands)) {
+                errors.add(MiniQuerySemanticValidator.formatError(chunk.line, message));
+            }
+            commands.add(chunk.command);
+        }
+
+        // Em arquivos grandes a saída tem megabytes: um único buffer, já do tamanho da anterior.
+        StringBuilder result = new StringBuilder(lastOutputLength + 1024);
+        if (!errors.isEmpty()) {
+            lastRegenerated = 0;
+            result.append("✖ ERROS SEMÂNTICOS:\n");
+            errors.forEach(err -> result.append(err).append("\n"));
+        } else {
+            Map<Object, String> used = new HashMap<>(fragments.size() * 2);
+            JavaScriptGenerator generator = new JavaScriptGenerator(ndjson, fragments, used);
+            result.append("✔ ANÁLISE BEM-SUCEDIDA. CÓDIGO GERADO:\n\n");
+            generator.generate(commands, result);
+            fragments = used;
+            lastRegenerated = generator.getRegeneratedFragments();
+        }
+        MiniQueryCompiler.appendWarnings(result, validator.getWarnings());
+        // Equivale ao trim() do MiniQueryCompiler: a saída sempre começa com '✔' ou '✖'.
+        int length = result.length();
+        while (length > 0 && result.charAt(length - 1) <= ' ') {
+            length--;
+        }
+        result.setLength(length);
+        lastOutputLength = length;
+        return result.toString();
+    }
+
+    // Os índices dos tokens contam code points; o texto do arquivo é indexado em chars UTF-16.
+    private static int charOffset(String fragment, int codePointIndex) {
+        if (fragment.length() == fragment.codePointCount(0, fragment.length())) {
+            return codePointIndex;
+        }
+        return fragment.offsetByCodePoints(0, codePointIndex);
+    }
+
+    private static int countLines(String source, int from, int to) {
+        int lines = 0;
+        for (int i = from; i < to; i++) {
+            if (source.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    // Um comando e o trecho [start, stop] do texto que o originou.
+    private static final class Chunk {
+        final Command command;
+        int start;
+        int stop;
+        int line;
+        int endLine;
+        // Resultado da validação e o esquema com que foi obtido (no LOAD, o esquema que ele define).
+        List<String> messages;
+        Map<String, String> schema;
+
+        Chunk(Command command, int start, int stop, int endLine) {
+            this.command = command;
+            this.start = start;
+            this.stop = stop;
+            this.line = command.lineNumber;
+            this.endLine = endLine;
+        }
+
+        void shift(int delta, int lineDelta) {
+            start += delta;
+            stop += delta;
+            line += lineDelta;
+            endLine += lineDelta;
+        }
+
+        // O Command guarda a linha em que foi lido; depois de um deslocamento, é recriado.
+        Command currentCommand() {
+            if (line == command.lineNumber) {
+                return command;
+            }
+            if (command instanceof LoadCommand) {
+                return new LoadCommand(((LoadCommand) command).filePath, line);
+            } else if (command instanceof FilterCondition) {
+                FilterCondition filter = (FilterCondition) command;
+                return new FilterCondition(filter.jsonPath, filter.operator, filter.value, filter.operand, line);
+            } else if (command instanceof SelectCommand) {
+                return new SelectCommand(((SelectCommand) command).fields, line);
+            } else if (command instanceof GroupByCommand) {
+                GroupByCommand group = (GroupByCommand) command;
+                return new GroupByCommand(group.keyPath, group.functions, group.fields, line);
+            } else if (command instanceof OrderByCommand) {
+                OrderByCommand order = (OrderByCommand) command;
+                return new OrderByCommand(order.fields, order.descending, line);
+            } else if (command instanceof LimitCommand) {
+                return new LimitCommand(((LimitCommand) command).count, line);
+            }
+            SaveCommand save = (SaveCommand) command;
+            return new SaveCommand(save.outputFile, save.explicitFormat ? save.format : null, line);
+        }
+    }
+
+    private static final class FailureListener extends BaseErrorListener {
+        boolean failed;
+
+        @Override
+        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+            failed = true;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.mycompany.miniquery;
+
+import com.mycompany.miniquery.runtime.FieldIndex;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Cria índices persistidos (FieldIndex) para caminhos de um arquivo JSON. O QueryExecutor passa a
+// usá-los sozinho nos FILTERs que comparam o caminho com uma constante; um índice fica obsoleto
+// quando a origem muda de tamanho ou de data de modificação e precisa ser recriado.
+public class IndexBuilder {
+
+    public static void main(String[] args) {
+        List<FieldIndex.Kind> kinds = Arrays.asList(FieldIndex.Kind.values());
+        List<String> inputs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--tipo=")) {
+                kinds = Collections.singletonList(FieldIndex.Kind.of(arg.substring("--tipo=".length())));
+            } else {
+                inputs.add(arg);
+            }
+        }
+        if (inputs.size() < 2 || inputs.subList(1, inputs.size()).stream().anyMatch(p -> !p.startsWith("."))) {
+            System.err.println("Uso: java -cp <caminho-do-jar> com.mycompany.miniquery.IndexBuilder "
+                    + "[--tipo=ordenado|hash] <arquivo.json> <.caminho>...");
+            return;
+        }
+
+        Path source = Paths.get(inputs.get(0));
+        for (String jsonPath : inputs.subList(1, inputs.size())) {
+            for (FieldIndex.Kind kind : kinds) {
+                long start = System.nanoTime();
+                try {
+                    FieldIndex index = FieldIndex.build(source, jsonPath, kind);
+                    System.out.printf("✔ Índice %s de %s: %d registros em %s (%.1f ms)%n", kind.label, jsonPath,
+                            index.rowCount(), FieldIndex.sidecar(source, jsonPath, kind),
+                            (System.nanoTime() - start) / 1_000_000.0);
+                } catch (IOException e) {
+                    System.err.println("ERRO: Não foi possível criar o índice de " + jsonPath + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -1,39 +1,623 @@
 package com.mycompany.miniquery;
 
 import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.GroupByCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.LimitCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.OrderByCommand;
 import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.SaveCommand;
+import com.mycompany.miniquery.runtime.QueryOptimizer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 public class JavaScriptGenerator {
 
+    // Registros ordenados em memória por lote no modo streaming; acima disso, a ordenação é externa.
+    static final int RUN_SIZE = 100000;
+
+    // Ordem do ORDER BY, a mesma da execução na JVM (RecordOrder).
+    private static final String COMPARE_VALUES =
+            "// Ordem do ORDER BY: ausente/null < booleanos < números < strings < objetos e arrays (empatados).\n"
+            + "function compareValues(a, b) {\n"
+            + "  const rank = v => v === undefined || v === null ? 0 : typeof v === 'boolean' ? 1\n"
+            + "    : typeof v === 'number' ? 2 : typeof v === 'string' ? 3 : 4;\n"
+            + "  const ra = rank(a);\n"
+            + "  const rb = rank(b);\n"
+            + "  if (ra !== rb) return ra - rb;\n"
+            + "  return ra === 0 || ra === 4 || a === b ? 0 : a < b ? -1 : 1;\n"
+            + "}\n\n";
+
+    // Heap binário e top-k estável (ORDER BY seguido de LIMIT): só k candidatos ficam em memória.
+    private static final String TOP_K =
+            "// Heap binário: before(a, b) diz se 'a' sai antes de 'b'.\n"
+            + "class Heap {\n"
+            + "  constructor(before) { this.items = []; this.before = before; }\n"
+            + "  get size() { return this.items.length; }\n"
+            + "  peek() { return this.items[0]; }\n"
+            + "  push(value) {\n"
+            + "    const items = this.items;\n"
+            + "    items.push(value);\n"
+            + "    for (let c = items.length - 1; c > 0;) {\n"
+            + "      const p = (c - 1) >> 1;\n"
+            + "      if (!this.before(items[c], items[p])) break;\n"
+            + "      [items[c], items[p]] = [items[p], items[c]];\n"
+            + "      c = p;\n"
+            + "    }\n"
+            + "  }\n"
+            + "  pop() {\n"
+            + "    const items = this.items;\n"
+            + "    const top = items[0];\n"
+            + "    const last = items.pop();\n"
+            + "    if (items.length > 0) {\n"
+            + "      items[0] = last;\n"
+            + "      for (let p = 0;;) {\n"
+            + "        const l = 2 * p + 1;\n"
+            + "        let m = p;\n"
+            + "        if (l < items.length && this.before(items[l], items[m])) m = l;\n"
+            + "        if (l + 1 < items.length && this.before(items[l + 1], items[m])) m = l + 1;\n"
+            + "        if (m === p) break;\n"
+            + "        [items[p], items[m]] = [items[m], items[p]];\n"
+            + "        p = m;\n"
+            + "      }\n"
+            + "    }\n"
+            + "    return top;\n"
+            + "  }\n"
+            + "}\n\n"
+            + "// Os 'k' primeiros valores na ordem de 'compare', com empates na ordem de chegada; o topo do heap é o pior.\n"
+            + "class TopK {\n"
+            + "  constructor(k, compare) {\n"
+            + "    this.k = k;\n"
+            + "    this.compare = compare;\n"
+            + "    this.seq = 0;\n"
+            + "    this.heap = new Heap((a, b) => (compare(a.value, b.value) || a.seq - b.seq) > 0);\n"
+            + "  }\n"
+            + "  offer(value) {\n"
+            + "    const entry = { value, seq: this.seq++ };\n"
+            + "    if (this.heap.size < this.k) this.heap.push(entry);\n"
+            + "    else if (this.k > 0 && this.heap.before(this.heap.peek(), entry)) { this.heap.pop(); this.heap.push(entry); }\n"
+            + "  }\n"
+            + "  sorted() {\n"
+            + "    return this.heap.items.sort((a, b) => this.compare(a.value, b.value) || a.seq - b.seq).map(entry => entry.value);\n"
+            + "  }\n"
+            + "}\n\n";
+
+    private static final String TOP_K_ARRAY =
+            "function topK(items, k, compare) {\n"
+            + "  const top = new TopK(k, compare);\n"
+            + "  for (const item of items) top.offer(item);\n"
+            + "  return top.sorted();\n"
+            + "}\n\n";
+
+    // Ordenação externa do modo streaming: lotes de RUN_SIZE registros são ordenados e gravados em
+    // arquivos temporários e intercalados no fim (no máximo FAN_IN por vez), sempre de forma estável.
+    private static final String EXTERNAL_SORT =
+            "const RUN_SIZE = " + RUN_SIZE + ";\n"
+            + "const FAN_IN = 64;\n\n"
+            + "class ExternalSort {\n"
+            + "  constructor(compare) {\n"
+            + "    this.compare = compare;\n"
+            + "    this.buffer = [];\n"
+            + "    this.runs = [];\n"
+            + "    this.files = [];\n"
+            + "  }\n"
+            + "  runFile() {\n"
+            + "    const file = path.join(os.tmpdir(), `miniquery-${process.pid}-${Date.now()}-${this.files.length}.run`);\n"
+            + "    this.files.push(file);\n"
+            + "    return file;\n"
+            + "  }\n"
+            + "  add(entry) {\n"
+            + "    this.buffer.push(entry);\n"
+            + "    if (this.buffer.length === RUN_SIZE) {\n"
+            + "      const file = this.runFile();\n"
+            + "      fs.writeFileSync(file, this.buffer.sort(this.compare).map(e => JSON.stringify([e.key, e.item]) + '\\n').join(''));\n"
+            + "      this.runs.push(file);\n"
+            + "      this.buffer = [];\n"
+            + "    }\n"
+            + "  }\n"
+            + "  static async *read(file) {\n"
+            + "    const lines = readline.createInterface({ input: fs.createReadStream(file, 'utf-8'), crlfDelay: Infinity });\n"
+            + "    for await (const line of lines) {\n"
+            + "      const [key, item] = JSON.parse(line);\n"
+            + "      yield { key, item };\n"
+            + "    }\n"
+            + "  }\n"
+            + "  // Intercala fontes já ordenadas; no empate, sai a fonte de menor índice (a mais antiga).\n"
+            + "  async *merge(sources) {\n"
+            + "    const heap = new Heap((a, b) => (this.compare(a.entry, b.entry) || a.source - b.source) < 0);\n"
+            + "    const iterators = sources.map(source => (source[Symbol.asyncIterator] || source[Symbol.iterator]).call(source));\n"
+            + "    for (let i = 0; i < iterators.length; i++) {\n"
+            + "      const next = await iterators[i].next();\n"
+            + "      if (!next.done) heap.push({ entry: next.value, source: i });\n"
+            + "    }\n"
+            + "    while (heap.size > 0) {\n"
+            + "      const head = heap.pop();\n"
+            + "      yield head.entry;\n"
+            + "      const next = await iterators[head.source].next();\n"
+            + "      if (!next.done) heap.push({ entry: next.value, source: head.source });\n"
+            + "    }\n"
+            + "  }\n"
+            + "  async *sorted() {\n"
+            + "    this.buffer.sort(this.compare);\n"
+            + "    try {\n"
+            + "      while (this.runs.length > FAN_IN) {\n"
+            + "        const merged = [];\n"
+            + "        for (let i = 0; i < this.runs.length; i += FAN_IN) {\n"
+            + "          const group = this.runs.slice(i, i + FAN_IN);\n"
+            + "          const file = this.runFile();\n"
+            + "          const out = fs.createWriteStream(file);\n"
+            + "          for await (const e of this.merge(group.map(run => ExternalSort.read(run)))) {\n"
+            + "            if (!out.write(JSON.stringify([e.key, e.item]) + '\\n')) await once(out, 'drain');\n"
+            + "          }\n"
+            + "          out.end();\n"
+            + "          await once(out, 'finish');\n"
+            + "          group.forEach(run => fs.rmSync(run, { force: true }));\n"
+            + "          merged.push(file);\n"
+            + "        }\n"
+            + "        this.runs = merged;\n"
+            + "      }\n"
+            + "      yield* this.merge([...this.runs.map(run => ExternalSort.read(run)), this.buffer]);\n"
+            + "    } finally {\n"
+            + "      this.files.forEach(file => fs.rmSync(file, { force: true }));\n"
+            + "    }\n"
+            + "  }\n"
+            + "}\n\n";
+
+    // Contadores do --metricas: etapa() conta um registro que entrou na etapa e, se 'ok', saiu dela;
+    // lap() soma à fase o tempo desde a marca anterior. O relatório sai no arquivo do --metricas.
+    private static final String METRICS =
+            "function etapa(stage, ok) {\n"
+            + "  stage.entrada++;\n"
+            + "  if (ok) stage.saida++;\n"
+            + "  return ok;\n"
+            + "}\n"
+            + "function lap(fase) {\n"
+            + "  const now = process.hrtime.bigint();\n"
+            + "  metrics.fases[fase] = (metrics.fases[fase] || 0) + Number(now - metrics.mark);\n"
+            + "  metrics.mark = now;\n"
+            + "}\n"
+            + "function writeMetrics(file) {\n"
+            + "  const total = Number(process.hrtime.bigint() - metrics.start);\n"
+            + "  const seconds = total / 1e9;\n"
+            + "  const report = {\n"
+            + "    carga: metrics.carga,\n"
+            + "    registrosLidos: metrics.registrosLidos,\n"
+            + "    registrosGravados: metrics.registrosGravados,\n"
+            + "    bytesLidos: metrics.bytesLidos,\n"
+            + "    bytesGravados: metrics.bytesGravados,\n"
+            + "    nanosTotais: total,\n"
+            + "    registrosPorSegundo: seconds > 0 ? Math.round(metrics.registrosLidos / seconds) : 0,\n"
+            + "    bytesLidosPorSegundo: seconds > 0 && metrics.bytesLidos > 0 ? Math.round(metrics.bytesLidos / seconds) : 0,\n"
+            + "    fases: Object.entries(metrics.fases).map(([fase, nanos]) => ({ fase, nanos })),\n"
+            + "    etapas: metrics.etapas.map(stage => !stage.etapa.startsWith('FILTER') ? stage\n"
+            + "      : { ...stage, seletividade: stage.entrada === 0 ? 0 : stage.saida / stage.entrada })\n"
+            + "  };\n"
+            + "  fs.writeFileSync(file, JSON.stringify(report, null, 2));\n"
+            + "}\n\n";
+
+    private final boolean streaming;
+    // Arquivo do relatório do --metricas; null gera o script sem contadores.
+    private final String metricsFile;
+    // Posição de cada FILTER/SELECT em metrics.etapas, pela instância do comando.
+    private final Map<MiniQueryBaseProcessor.Command, Integer> stages = new IdentityHashMap<>();
+    // Laços já gerados na compilação anterior e os usados nesta (IncrementalCompiler); null = sem reaproveitamento.
+    private final Map<Object, String> previousFragments;
+    private final Map<Object, String> fragments;
+    private int regeneratedFragments;
+
+    public JavaScriptGenerator() {
+        this(false);
+    }
+
+    // Com 'streaming', o script lê e grava JSON delimitado por linha (NDJSON) registro a registro.
+    public JavaScriptGenerator(boolean streaming) {
+        this(streaming, (String) null);
+    }
+
+    // Com 'metricsFile', o script conta os registros que entram e saem de cada FILTER/SELECT, mede o
+    // tempo das fases e grava o relatório nesse arquivo ao terminar.
+    public JavaScriptGenerator(boolean streaming, String metricsFile) {
+        this(streaming, metricsFile, null, null);
+    }
+
+    // Reaproveita de 'previousFragments' os laços cujos comandos e variáveis não mudaram
+    // e registra em 'fragments' todos os laços usados nesta geração.
+    JavaScriptGenerator(boolean streaming, Map<Object, String> previousFragments, Map<Object, String> fragments) {
+        this(streaming, null, previousFragments, fragments);
+    }
+
+    private JavaScriptGenerator(boolean streaming, String metricsFile, Map<Object, String> previousFragments,
+            Map<Object, String> fragments) {
+        this.streaming = streaming;
+        this.metricsFile = metricsFile;
+        this.previousFragments = previousFragments;
+        this.fragments = fragments;
+    }
+
+    // Quantos laços precisaram ser gerados de novo na última chamada a generate().
+    int getRegeneratedFragments() {
+        return regeneratedFragments;
+    }
+
     // Percorre a lista de comandos e constrói o script JavaScript final.
     public String generate(List<MiniQueryBaseProcessor.Command> commands) {
+        if (streaming) {
+            return generateStreaming(commands);
+        }
         StringBuilder jsCode = new StringBuilder();
+        generate(commands, jsCode);
+        return jsCode.toString();
+    }
+
+    // Escreve o script diretamente em 'jsCode', sem cópia intermediária (usado pelo IncrementalCompiler).
+    void generate(List<MiniQueryBaseProcessor.Command> commands, StringBuilder jsCode) {
+        if (streaming) {
+            jsCode.append(generateStreaming(commands));
+            return;
+        }
         jsCode.append("// Código gerado automaticamente\n");
         jsCode.append("const fs = require('fs');\n\n");
+        appendOrderHelpers(commands, jsCode);
+        appendMetrics(commands, jsCode);
+        String saved = null;
 
         String currentDataVariable = null;
-        boolean filterApplied = false;
+        int loopCount = 0;
+        regeneratedFragments = 0;
+        // FILTERs consecutivos aguardando o próximo SELECT para serem fundidos em um único laço.
+        List<MiniQueryBaseProcessor.FilterCondition> pendingFilters = new ArrayList<>();
+
+        for (int c = 0; c < commands.size(); c++) {
+            MiniQueryBaseProcessor.Command cmd = commands.get(c);
+            // Um LIMIT logo em seguida é fundido ao laço (interrompe a leitura) ou ao ORDER BY (top-k).
+            LimitCommand nextLimit = c + 1 < commands.size() && commands.get(c + 1) instanceof LimitCommand
+                    ? (LimitCommand) commands.get(c + 1) : null;
 
-        for (MiniQueryBaseProcessor.Command cmd : commands) {
             if (cmd instanceof MiniQueryBaseProcessor.LoadCommand) {
                 jsCode.append(generateLoadCode((MiniQueryBaseProcessor.LoadCommand) cmd));
                 currentDataVariable = "input";
+                if (metricsFile != null) {
+                    jsCode.append("metrics.registrosLidos = input.length;\n");
+                    jsCode.append(String.format("metrics.bytesLidos = fs.statSync('%s').size;\n",
+                            ((MiniQueryBaseProcessor.LoadCommand) cmd).filePath));
+                    jsCode.append("lap('leitura');\n");
+                }
 
             } else if (cmd instanceof MiniQueryBaseProcessor.FilterCondition) {
-                jsCode.append(generateFilterCode((MiniQueryBaseProcessor.FilterCondition) cmd, currentDataVariable, filterApplied));
-                currentDataVariable = "filteredData";
-                filterApplied = true;
+                pendingFilters.add((MiniQueryBaseProcessor.FilterCondition) cmd);
 
             } else if (cmd instanceof MiniQueryBaseProcessor.SelectCommand) {
-                jsCode.append(generateSelectCode((MiniQueryBaseProcessor.SelectCommand) cmd, currentDataVariable));
-                currentDataVariable = "result";
+                String target = resultVariable(loopCount++);
+                jsCode.append(fusedLoop(pendingFilters, (MiniQueryBaseProcessor.SelectCommand) cmd, nextLimit, currentDataVariable, target));
+                currentDataVariable = target;
+                pendingFilters.clear();
+                c += nextLimit == null ? 0 : 1;
+
+            } else if (cmd instanceof GroupByCommand) {
+                // Os FILTERs pendentes entram no laço de agregação.
+                String target = resultVariable(loopCount++);
+                jsCode.append(generateGroupBy(pendingFilters, (GroupByCommand) cmd, currentDataVariable, target));
+                currentDataVariable = target;
+                pendingFilters.clear();
+
+            } else if (cmd instanceof OrderByCommand) {
+                if (!pendingFilters.isEmpty()) {
+                    String target = resultVariable(loopCount++);
+                    jsCode.append(fusedLoop(pendingFilters, null, null, currentDataVariable, target));
+                    currentDataVariable = target;
+                    pendingFilters.clear();
+                }
+                String compare = generateComparator((OrderByCommand) cmd, "a", "b");
+                if (nextLimit == null) {
+                    // Array.prototype.sort é estável: registros empatados mantêm a ordem.
+                    jsCode.append(String.format("%s.sort(%s);\n", currentDataVariable, compare));
+                } else {
+                    String target = resultVariable(loopCount++);
+                    jsCode.append(String.format("const %s = topK(%s, %s, %s);\n", target, currentDataVariable, nextLimit.count, compare));
+                    currentDataVariable = target;
+                    c++;
+                }
+
+            } else if (cmd instanceof LimitCommand) {
+                String target = resultVariable(loopCount++);
+                if (!pendingFilters.isEmpty()) {
+                    jsCode.append(fusedLoop(pendingFilters, null, (LimitCommand) cmd, currentDataVariable, target));
+                    pendingFilters.clear();
+                } else {
+                    jsCode.append(String.format("const %s = %s.slice(0, %s);\n", target, currentDataVariable, ((LimitCommand) cmd).count));
+                }
+                currentDataVariable = target;
 
             } else if (cmd instanceof MiniQueryBaseProcessor.SaveCommand) {
+                if (!pendingFilters.isEmpty()) {
+                    String target = resultVariable(loopCount++);
+                    jsCode.append(fusedLoop(pendingFilters, null, null, currentDataVariable, target));
+                    currentDataVariable = target;
+                    pendingFilters.clear();
+                }
+                if (metricsFile != null) {
+                    jsCode.append("lap('processamento');\n");
+                }
                 jsCode.append(generateSaveCode((SaveCommand) cmd, currentDataVariable));
+                if (metricsFile != null) {
+                    saved = ((SaveCommand) cmd).outputFile;
+                    jsCode.append(String.format("metrics.registrosGravados = %s.length;\n", currentDataVariable));
+                    jsCode.append(String.format("metrics.bytesGravados = fs.statSync('%s').size;\n", saved));
+                    jsCode.append("lap('gravacao');\n");
+                }
             }
         }
-        return jsCode.toString();
+        if (!pendingFilters.isEmpty()) {
+            jsCode.append(fusedLoop(pendingFilters, null, null, currentDataVariable, resultVariable(loopCount)));
+        }
+        if (metricsFile != null) {
+            if (saved == null) {
+                jsCode.append("lap('processamento');\n");
+            }
+            jsCode.append(String.format("writeMetrics('%s');\n", metricsFile));
+        }
+    }
+
+    // Objeto 'metrics' com uma entrada por FILTER/SELECT, na ordem dos comandos, e as funções do
+    // relatório; nada é gerado sem --metricas.
+    private void appendMetrics(List<MiniQueryBaseProcessor.Command> commands, StringBuilder jsCode) {
+        stages.clear();
+        if (metricsFile == null) {
+            return;
+        }
+        String load = "";
+        StringBuilder entries = new StringBuilder();
+        for (MiniQueryBaseProcessor.Command cmd : commands) {
+            if (cmd instanceof MiniQueryBaseProcessor.LoadCommand) {
+                load = ((MiniQueryBaseProcessor.LoadCommand) cmd).filePath;
+            } else if (cmd instanceof MiniQueryBaseProcessor.FilterCondition || cmd instanceof MiniQueryBaseProcessor.SelectCommand) {
+                stages.put(cmd, stages.size());
+                entries.append(String.format("    { linha: %d, etapa: '%s', entrada: 0, saida: 0 },\n",
+                        cmd.lineNumber, QueryOptimizer.text(cmd).replace("\\", "\\\\").replace("'", "\\'")));
+            }
+        }
+        jsCode.append("const metrics = {\n");
+        jsCode.append(String.format("  carga: '%s',\n", load));
+        jsCode.append("  registrosLidos: 0,\n");
+        jsCode.append("  registrosGravados: 0,\n");
+        jsCode.append("  bytesLidos: 0,\n");
+        jsCode.append("  bytesGravados: -1,\n");
+        jsCode.append("  etapas: [\n").append(entries).append("  ],\n");
+        jsCode.append("  fases: {},\n");
+        jsCode.append("  start: process.hrtime.bigint()\n");
+        jsCode.append("};\n");
+        jsCode.append("metrics.mark = metrics.start;\n");
+        jsCode.append(METRICS);
+    }
+
+    // Condição do FILTER, contada em metrics.etapas com --metricas.
+    private String measuredCondition(MiniQueryBaseProcessor.FilterCondition filter) {
+        String condition = generateCondition(filter);
+        return metricsFile == null ? condition : String.format("etapa(metrics.etapas[%d], %s)", stages.get(filter), condition);
+    }
+
+    // Contagem de um registro que passou pelo SELECT; vazio sem --metricas.
+    private String countSelect(MiniQueryBaseProcessor.SelectCommand select, String indent) {
+        return metricsFile == null ? "" : String.format("%setapa(metrics.etapas[%d], true);\n", indent, stages.get(select));
+    }
+
+    // Funções auxiliares do ORDER BY, só quando a consulta ordena.
+    private static void appendOrderHelpers(List<MiniQueryBaseProcessor.Command> commands, StringBuilder jsCode) {
+        boolean topK = false;
+        boolean ordered = false;
+        for (int c = 0; c < commands.size(); c++) {
+            if (commands.get(c) instanceof OrderByCommand) {
+                ordered = true;
+                topK |= c + 1 < commands.size() && commands.get(c + 1) instanceof LimitCommand;
+            }
+        }
+        if (ordered) {
+            jsCode.append(COMPARE_VALUES);
+        }
+        if (topK) {
+            jsCode.append(TOP_K).append(TOP_K_ARRAY);
+        }
+    }
+
+    // Função de comparação entre os registros 'a' e 'b' pelas chaves do ORDER BY (DESC troca os lados).
+    private String generateComparator(OrderByCommand cmd, String a, String b) {
+        StringBuilder compare = new StringBuilder("(").append(a).append(", ").append(b).append(") => ");
+        for (int i = 0; i < cmd.fields.size(); i++) {
+            String path = convertJsonPathToJs(cmd.fields.get(i));
+            boolean descending = cmd.descending.get(i);
+            compare.append(i == 0 ? "" : " || ").append(String.format("compareValues(%s%s, %s%s)",
+                    descending ? b : a, path, descending ? a : b, path));
+        }
+        return compare.toString();
+    }
+
+    private String resultVariable(int loopIndex) {
+        return loopIndex == 0 ? "result" : "result" + (loopIndex + 1);
+    }
+
+    private String fusedLoop(List<MiniQueryBaseProcessor.FilterCondition> filters,
+            MiniQueryBaseProcessor.SelectCommand select, LimitCommand limit, String sourceVariable, String targetVariable) {
+        if (fragments == null) {
+            return generateFusedLoop(filters, select, limit, sourceVariable, targetVariable);
+        }
+        FragmentKey key = new FragmentKey(sourceVariable, targetVariable, filters, select, limit);
+        String fragment = previousFragments.get(key);
+        if (fragment == null) {
+            fragment = generateFusedLoop(filters, select, limit, sourceVariable, targetVariable);
+            regeneratedFragments++;
+        }
+        fragments.put(key, fragment);
+        return fragment;
+    }
+
+    // Identifica um laço pelas variáveis e pelas instâncias dos comandos (imutáveis), sem formatá-los.
+    private static final class FragmentKey {
+        private final String sourceVariable;
+        private final String targetVariable;
+        private final Object[] commands;
+        private final int hash;
+
+        FragmentKey(String sourceVariable, String targetVariable, List<MiniQueryBaseProcessor.FilterCondition> filters,
+                MiniQueryBaseProcessor.SelectCommand select, LimitCommand limit) {
+            this.sourceVariable = sourceVariable;
+            this.targetVariable = targetVariable;
+            this.commands = filters.toArray(new Object[filters.size() + 2]);
+            this.commands[filters.size()] = select;
+            this.commands[filters.size() + 1] = limit;
+            int h = Objects.hash(sourceVariable, targetVariable);
+            for (Object command : commands) {
+                h = 31 * h + System.identityHashCode(command);
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof FragmentKey)) {
+                return false;
+            }
+            FragmentKey key = (FragmentKey) other;
+            if (hash != key.hash || commands.length != key.commands.length
+                    || !Objects.equals(sourceVariable, key.sourceVariable) || !Objects.equals(targetVariable, key.targetVariable)) {
+                return false;
+            }
+            for (int i = 0; i < commands.length; i++) {
+                if (commands[i] != key.commands[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // Funde os FILTERs consecutivos e o SELECT seguinte (se houver) em um único laço 'for':
+    // um predicado combinado com '&&' e um push do objeto projetado, sem arrays intermediários.
+    // Com LIMIT, o laço para assim que o resultado tem registros suficientes.
+    private String generateFusedLoop(List<MiniQueryBaseProcessor.FilterCondition> filters,
+            MiniQueryBaseProcessor.SelectCommand select, LimitCommand limit, String sourceVariable, String targetVariable) {
+        StringBuilder js = new StringBuilder();
+        js.append(String.format("const %s = [];\n", targetVariable));
+        String bound = limit == null ? "" : String.format(" && %s.length < %s", targetVariable, limit.count);
+        js.append(String.format("for (let i = 0; i < %s.length%s; i++) {\n", sourceVariable, bound));
+        js.append(String.format("  const item = %s[i];\n", sourceVariable));
+
+        String indent = "  ";
+        if (!filters.isEmpty()) {
+            StringBuilder condition = new StringBuilder();
+            for (MiniQueryBaseProcessor.FilterCondition filter : filters) {
+                if (condition.length() > 0) {
+                    condition.append(" && ");
+                }
+                condition.append(measuredCondition(filter));
+            }
+            js.append(String.format("  if (%s) {\n", condition));
+            indent = "    ";
+        }
+
+        String pushed = select == null ? "item" : generateProjection(select, indent);
+        if (select != null) {
+            js.append(countSelect(select, indent));
+        }
+        js.append(String.format("%s%s.push(%s);\n", indent, targetVariable, pushed));
+
+        if (!filters.isEmpty()) {
+            js.append("  }\n");
+        }
+        js.append("}\n");
+        return js.toString();
+    }
+
+    // GROUP BY: um Map da chave (em JSON, para que 30 e "30" fiquem em grupos diferentes) para os
+    // acumuladores de cada agregação, preenchido no mesmo laço dos FILTERs; os grupos saem na ordem
+    // em que cada chave apareceu pela primeira vez.
+    private String generateGroupBy(List<MiniQueryBaseProcessor.FilterCondition> filters, GroupByCommand cmd,
+            String sourceVariable, String targetVariable) {
+        StringBuilder js = new StringBuilder();
+        js.append("const groups = new Map();\n");
+        js.append(String.format("for (let i = 0; i < %s.length; i++) {\n", sourceVariable));
+        js.append(String.format("  const item = %s[i];\n", sourceVariable));
+        String indent = "  ";
+        if (!filters.isEmpty()) {
+            StringBuilder condition = new StringBuilder();
+            for (MiniQueryBaseProcessor.FilterCondition filter : filters) {
+                condition.append(condition.length() == 0 ? "" : " && ").append(measuredCondition(filter));
+            }
+            js.append(String.format("  if (%s) {\n", condition));
+            indent = "    ";
+        }
+        appendAggregation(js, cmd, indent);
+        if (!filters.isEmpty()) {
+            js.append("  }\n");
+        }
+        js.append("}\n");
+        js.append(String.format("const %s = [];\n", targetVariable));
+        js.append("for (const group of groups.values()) {\n");
+        js.append(String.format("  %s.push(%s);\n", targetVariable, generateGroupRecord(cmd, "  ")));
+        js.append("}\n");
+        return js.toString();
+    }
+
+    // Atualiza o grupo do registro 'item': nI conta os valores usados pela agregação I (não nulos no
+    // COUNT, números nas demais) e vI guarda a soma, o mínimo ou o máximo.
+    private void appendAggregation(StringBuilder js, GroupByCommand cmd, String indent) {
+        js.append(String.format("%sconst key = item%s ?? null;\n", indent, convertJsonPathToJs(cmd.keyPath)));
+        js.append(String.format("%sconst id = JSON.stringify(key);\n", indent));
+        js.append(String.format("%slet group = groups.get(id);\n", indent));
+        js.append(String.format("%sif (group === undefined) {\n", indent));
+        StringBuilder init = new StringBuilder("{ key");
+        for (int i = 0; i < cmd.functions.size(); i++) {
+            init.append(", n").append(i).append(": 0");
+            if (!cmd.functions.get(i).equals("COUNT")) {
+                init.append(", v").append(i).append(": 0");
+            }
+        }
+        js.append(String.format("%s  group = %s };\n", indent, init));
+        js.append(String.format("%s  groups.set(id, group);\n", indent));
+        js.append(String.format("%s}\n", indent));
+        for (int i = 0; i < cmd.functions.size(); i++) {
+            String value = "item" + convertJsonPathToJs(cmd.fields.get(i));
+            switch (cmd.functions.get(i)) {
+                case "COUNT":
+                    js.append(String.format("%sif (%s != null) group.n%d++;\n", indent, value, i));
+                    break;
+                case "MIN":
+                case "MAX":
+                    js.append(String.format("%sif (typeof %s === 'number' && (group.n%d++ === 0 || %s %s group.v%d)) group.v%d = %s;\n",
+                            indent, value, i, value, cmd.functions.get(i).equals("MIN") ? "<" : ">", i, i, value));
+                    break;
+                default:
+                    js.append(String.format("%sif (typeof %s === 'number') { group.n%d++; group.v%d += %s; }\n",
+                            indent, value, i, i, value));
+            }
+        }
+    }
+
+    // Registro de saída de um grupo: a chave e uma propriedade por agregação (null sem valores numéricos).
+    private String generateGroupRecord(GroupByCommand cmd, String indent) {
+        StringBuilder js = new StringBuilder("{\n");
+        js.append(String.format("%s  %s: group.key", indent, cmd.keyName()));
+        for (int i = 0; i < cmd.functions.size(); i++) {
+            String value;
+            switch (cmd.functions.get(i)) {
+                case "COUNT":
+                    value = "group.n" + i;
+                    break;
+                case "AVG":
+                    value = String.format("group.n%d > 0 ? group.v%d / group.n%d : null", i, i, i);
+                    break;
+                default:
+                    value = String.format("group.n%d > 0 ? group.v%d : null", i, i);
+            }
+            js.append(",\n").append(String.format("%s  %s: %s", indent, cmd.outputName(i), value));
+        }
+        js.append("\n").append(indent).append("}");
+        return js.toString();
     }
 
     // Gera o código JS para carregar e decodificar o arquivo JSON inicial.
@@ -41,14 +625,174 @@ public class JavaScriptGenerator {
         return String.format("const input = JSON.parse(fs.readFileSync('%s', 'utf-8'));\n", cmd.filePath);
     }
 
-    // Cria a lógica de filtro (.filter) do JavaScript, tratando os operandos e operadores.
-    private String generateFilterCode(MiniQueryBaseProcessor.FilterCondition cmd, String sourceVariable, boolean isChained) {
+    // Gera um pipeline assíncrono sobre NDJSON: readline na entrada e write stream com backpressure na saída.
+    // Cada registro passa pelos FILTER/SELECT na ordem dos comandos, sem materializar o conjunto de dados.
+    // O ORDER BY guarda a chave de cada registro e ordena no fim: top-k em um heap quando seguido de
+    // LIMIT, senão ordenação externa em lotes de RUN_SIZE. Um LIMIT sem ORDER BY antes dele
+    // interrompe a leitura. Com GROUP BY, o laço de leitura só agrega e os comandos seguintes
+    // (ORDER BY, LIMIT) passam a valer para os grupos, em um segundo laço sobre o Map.
+    private String generateStreaming(List<MiniQueryBaseProcessor.Command> commands) {
+        String loadFile = null;
+        String saveFile = null;
+        GroupByCommand group = null;
+        OrderByCommand order = null;
+        LimitCommand limit = null;
+        boolean limitFirst = false;
+        StringBuilder metricsCode = new StringBuilder();
+        appendMetrics(commands, metricsCode);
+        StringBuilder body = new StringBuilder();
+        StringBuilder readBody = body;
+        for (MiniQueryBaseProcessor.Command cmd : commands) {
+            if (cmd instanceof MiniQueryBaseProcessor.LoadCommand) {
+                loadFile = ((MiniQueryBaseProcessor.LoadCommand) cmd).filePath;
+
+            } else if (cmd instanceof MiniQueryBaseProcessor.FilterCondition) {
+                body.append(String.format("    if (!(%s)) continue;\n",
+                        measuredCondition((MiniQueryBaseProcessor.FilterCondition) cmd)));
+
+            } else if (cmd instanceof MiniQueryBaseProcessor.SelectCommand) {
+                body.append(countSelect((MiniQueryBaseProcessor.SelectCommand) cmd, "    "));
+                body.append("    item = ").append(generateProjection((MiniQueryBaseProcessor.SelectCommand) cmd, "    ")).append(";\n");
+
+            } else if (cmd instanceof GroupByCommand) {
+                group = (GroupByCommand) cmd;
+                appendAggregation(readBody, group, "    ");
+                body = new StringBuilder();
+
+            } else if (cmd instanceof OrderByCommand) {
+                order = (OrderByCommand) cmd;
+                StringBuilder key = new StringBuilder();
+                for (String field : order.fields) {
+                    key.append(key.length() == 0 ? "" : ", ").append("item").append(convertJsonPathToJs(field));
+                }
+                body.append("    const key = [").append(key).append("];\n");
+
+            } else if (cmd instanceof LimitCommand) {
+                limit = (LimitCommand) cmd;
+                if (order == null) {
+                    limitFirst = true;
+                    body.append(String.format("    if (taken === %s) break;\n", limit.count));
+                    body.append("    taken++;\n");
+                }
+
+            } else if (cmd instanceof SaveCommand) {
+                saveFile = ((SaveCommand) cmd).outputFile;
+            }
+        }
+        boolean topK = order != null && limit != null && !limitFirst && Long.parseLong(limit.count) <= RUN_SIZE;
+        boolean external = order != null && !topK;
+
+        StringBuilder jsCode = new StringBuilder();
+        jsCode.append("// Código gerado automaticamente (modo streaming NDJSON)\n");
+        jsCode.append("const fs = require('fs');\n");
+        if (external) {
+            jsCode.append("const os = require('os');\n");
+            jsCode.append("const path = require('path');\n");
+        }
+        jsCode.append("const readline = require('readline');\n");
+        jsCode.append("const { once } = require('events');\n\n");
+        if (order != null) {
+            jsCode.append(COMPARE_VALUES).append(TOP_K);
+        }
+        if (external) {
+            jsCode.append(EXTERNAL_SORT);
+        }
+        jsCode.append(metricsCode);
+
+        String output = saveFile == null ? "process.stdout" : String.format("fs.createWriteStream('%s')", saveFile);
+        String write = "if (!out.write(JSON.stringify(item) + '\\n')) await once(out, 'drain');\n";
+        if (metricsFile != null) {
+            write = "metrics.registrosGravados++;\n    " + write;
+        }
+        jsCode.append("async function main() {\n");
+        if (metricsFile == null) {
+            jsCode.append(String.format("  const lines = readline.createInterface({ input: fs.createReadStream('%s', 'utf-8'), crlfDelay: Infinity });\n", loadFile));
+        } else {
+            // O stream fica em uma variável para o relatório ler o bytesRead.
+            jsCode.append(String.format("  const source = fs.createReadStream('%s', 'utf-8');\n", loadFile));
+            jsCode.append("  const lines = readline.createInterface({ input: source, crlfDelay: Infinity });\n");
+        }
+        jsCode.append(String.format("  const out = %s;\n", output));
+        if (limitFirst) {
+            jsCode.append("  let taken = 0;\n");
+        }
+        if (order != null) {
+            StringBuilder compare = new StringBuilder("(a, b) => ");
+            for (int i = 0; i < order.fields.size(); i++) {
+                boolean descending = order.descending.get(i);
+                compare.append(i == 0 ? "" : " || ").append(String.format("compareValues(%s.key[%d], %s.key[%d])",
+                        descending ? "b" : "a", i, descending ? "a" : "b", i));
+            }
+            jsCode.append(topK
+                    ? String.format("  const sorter = new TopK(%s, %s);\n", limit.count, compare)
+                    : String.format("  const sorter = new ExternalSort(%s);\n", compare));
+        }
+        if (group != null) {
+            jsCode.append("  const groups = new Map();\n");
+        }
+        jsCode.append("  for await (const line of lines) {\n");
+        jsCode.append("    if (line.trim() === '') continue;\n");
+        jsCode.append("    let item = JSON.parse(line);\n");
+        if (metricsFile != null) {
+            jsCode.append("    metrics.registrosLidos++;\n");
+        }
+        jsCode.append(readBody);
+        if (group != null) {
+            jsCode.append("  }\n");
+            jsCode.append("  for (const group of groups.values()) {\n");
+            jsCode.append("    let item = ").append(generateGroupRecord(group, "    ")).append(";\n");
+            jsCode.append(body);
+        }
+        if (order == null) {
+            jsCode.append("    ").append(write);
+        } else {
+            jsCode.append(topK ? "    sorter.offer({ key, item });\n" : "    sorter.add({ key, item });\n");
+        }
+        jsCode.append("  }\n");
+        if (metricsFile != null) {
+            jsCode.append("  lap('varredura');\n");
+        }
+        if (topK) {
+            jsCode.append("  for (const { item } of sorter.sorted()) {\n");
+            jsCode.append("    ").append(write);
+            jsCode.append("  }\n");
+        } else if (external) {
+            boolean truncate = limit != null && !limitFirst;
+            if (truncate) {
+                jsCode.append("  let written = 0;\n");
+            }
+            jsCode.append("  for await (const { item } of sorter.sorted()) {\n");
+            if (truncate) {
+                jsCode.append(String.format("    if (written++ === %s) break;\n", limit.count));
+            }
+            jsCode.append("    ").append(write);
+            jsCode.append("  }\n");
+        }
+        if (saveFile != null) {
+            jsCode.append("  out.end();\n");
+            jsCode.append("  await once(out, 'finish');\n");
+        }
+        if (metricsFile != null) {
+            jsCode.append("  lap('gravacao');\n");
+            jsCode.append("  metrics.bytesLidos = source.bytesRead;\n");
+            if (saveFile != null) {
+                jsCode.append(String.format("  metrics.bytesGravados = fs.statSync('%s').size;\n", saveFile));
+            }
+            jsCode.append(String.format("  writeMetrics('%s');\n", metricsFile));
+        }
+        jsCode.append("}\n\n");
+        jsCode.append("main().catch(err => { console.error(err); process.exit(1); });\n");
+        return jsCode.toString();
+    }
+
+    // Monta a expressão booleana de um FILTER sobre a variável 'item' (ex: item.idade > 18).
+    private String generateCondition(MiniQueryBaseProcessor.FilterCondition cmd) {
         String leftPath = convertJsonPathToJs(cmd.jsonPath);
         String rightOperand;
 
-        if (cmd.value.startsWith(".")) {
+        if (cmd.isPath()) {
             rightOperand = "item" + convertJsonPathToJs(cmd.value);
-        } else if (cmd.value.matches("-?\\d+(\\.\\d+)?")) {
+        } else if (cmd.isNumber()) {
             rightOperand = cmd.value;
         } else {
             rightOperand = "\"" + cmd.value + "\"";
@@ -62,37 +806,69 @@ public class JavaScriptGenerator {
             operator = "!==";
         }
 
-        String declaration = isChained ? "filteredData = filteredData" : "const filteredData = " + sourceVariable;
-
-        return String.format(
-                "%s.filter(item => item%s %s %s);\n",
-                declaration, leftPath, operator, rightOperand
-        );
+        return String.format("item%s %s %s", leftPath, operator, rightOperand);
     }
 
-    // Produz o código de mapeamento (.map) para selecionar campos e criar novos objetos.
-    private String generateSelectCode(MiniQueryBaseProcessor.SelectCommand cmd, String sourceVariable) {
-        StringBuilder js = new StringBuilder(String.format("const result = %s.map(item => ({\n", sourceVariable));
+    // Literal de objeto com os campos do SELECT, com uma propriedade por linha.
+    private String generateProjection(MiniQueryBaseProcessor.SelectCommand cmd, String indent) {
+        StringBuilder js = new StringBuilder("{\n");
         for (int i = 0; i < cmd.fields.size(); i++) {
             String field = cmd.fields.get(i);
             String cleanField = field.substring(1).replace(".", "_");
             String jsPath = convertJsonPathToJs(field);
-            js.append(String.format("  %s: item%s", cleanField, jsPath));
+            js.append(String.format("%s  %s: item%s", indent, cleanField, jsPath));
             if (i < cmd.fields.size() - 1) {
                 js.append(",");
             }
             js.append("\n");
         }
-        js.append("}));\n");
+        js.append(indent).append("}");
         return js.toString();
     }
 
-    // Gera o comando para salvar o resultado final em um novo arquivo JSON.
+    // Gera o comando para salvar o resultado final no formato do SAVE (JSON indentado por padrão).
     private String generateSaveCode(MiniQueryBaseProcessor.SaveCommand cmd, String sourceVariable) {
-        return String.format(
-                "fs.writeFileSync('%s', JSON.stringify(%s, null, 2));\n",
-                cmd.outputFile, sourceVariable
-        );
+        switch (cmd.format) {
+            case "COMPACT_JSON":
+                return String.format("fs.writeFileSync('%s', JSON.stringify(%s));\n", cmd.outputFile, sourceVariable);
+            case "NDJSON":
+                return String.format("fs.writeFileSync('%s', %s.map(item => JSON.stringify(item) + '\\n').join(''));\n",
+                        cmd.outputFile, sourceVariable);
+            case "COLUMNAR":
+                return generateColumnarSave(cmd.outputFile, sourceVariable);
+            default:
+                return String.format(
+                        "fs.writeFileSync('%s', JSON.stringify(%s, null, 2));\n",
+                        cmd.outputFile, sourceVariable
+                );
+        }
+    }
+
+    // O script grava o formato colunar do MiniQuery (format.ColumnarFile) com um único bloco de
+    // registros inteiros, comprimido com zlib; a versão com colunas tipadas e estatísticas por
+    // bloco é gravada pela execução na JVM (--executar). O LOAD lê as duas.
+    private String generateColumnarSave(String outputFile, String sourceVariable) {
+        StringBuilder js = new StringBuilder();
+        js.append("{\n");
+        js.append("  const zlib = require('zlib');\n");
+        js.append("  const magic = Buffer.from('MQCOL1');\n");
+        js.append(String.format("  const rows = %s;\n", sourceVariable));
+        js.append("  const states = Buffer.from(rows.map(item => item === null ? 1 : 2));\n");
+        js.append("  const values = rows.filter(item => item !== null).map(item => JSON.stringify(item) + '\\n').join('');\n");
+        js.append("  const text = Buffer.from(values, 'utf-8');\n");
+        js.append("  const size = Buffer.alloc(4);\n");
+        js.append("  size.writeInt32BE(text.length);\n");
+        js.append("  const raw = Buffer.concat([states, size, text]);\n");
+        js.append("  const data = rows.length === 0 ? Buffer.alloc(0) : zlib.deflateSync(raw);\n");
+        js.append("  const blocks = rows.length === 0 ? [] : [{ registros: rows.length, linhas: { nome: '', tipo: 'json',\n");
+        js.append("    posicao: magic.length, tamanho: data.length, bruto: raw.length, compressao: true,\n");
+        js.append("    ausentes: 0, nulos: rows.filter(item => item === null).length } }];\n");
+        js.append("  const footer = Buffer.from(JSON.stringify({ versao: 1, registros: rows.length, blocos: blocks }), 'utf-8');\n");
+        js.append("  const footerSize = Buffer.alloc(4);\n");
+        js.append("  footerSize.writeInt32BE(footer.length);\n");
+        js.append(String.format("  fs.writeFileSync('%s', Buffer.concat([magic, data, footer, footerSize, magic]));\n", outputFile));
+        js.append("}\n");
+        return js.toString();
     }
 
     // Converte um caminho de acesso MiniQuery (ex: .cliente.idade) para um formato JS seguro (ex: .cliente?.idade).
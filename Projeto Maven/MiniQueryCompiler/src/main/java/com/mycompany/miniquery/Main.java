@@ -1,90 +1,166 @@
 package com.mycompany.miniquery;
 
-import com.mycompany.miniquery.compiler.MiniQuerySemanticValidator;
-import com.mycompany.miniquery.grammar.MiniQueryLexer;
-import com.mycompany.miniquery.grammar.MiniQueryParser;
+import com.mycompany.miniquery.cache.CompilationCache;
+import com.mycompany.miniquery.cache.ResultCache;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor;
+import com.mycompany.miniquery.runtime.ExecutionMetrics;
+import com.mycompany.miniquery.runtime.ExecutionMode;
+import com.mycompany.miniquery.runtime.ExecutionResult;
+import com.mycompany.miniquery.runtime.QueryExecutor;
+import com.mycompany.miniquery.runtime.QueryOptimizer;
+import com.mycompany.miniquery.runtime.QueryPipeline;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import org.antlr.v4.runtime.BaseErrorListener;
-import org.antlr.v4.runtime.CharStream;
-import org.antlr.v4.runtime.CharStreams;
-import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.RecognitionException;
-import org.antlr.v4.runtime.Recognizer;
-import org.antlr.v4.runtime.tree.ParseTree;
-import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
 
  // para compilação de um único arquivo.
  
 public class Main {
 
+    // Maior tamanho de cache aceito, em MB, para que o limite em bytes caiba em um long.
+    static final long MAX_MB = Long.MAX_VALUE >> 20;
+    // Maior valor aceito em --threads: o paralelismo máximo do ForkJoinPool usado pela varredura paralela.
+    static final int MAX_THREADS = 0x7fff;
+
+    private static final String USAGE = "Uso: java -jar <caminho-do-jar> [--executar] [--explain] [--modo=interpretado|compilado|verificado|colunar] [--threads=<n>] [--ndjson] [--cache-dir=<dir>] [--cache-max-mb=<n>] [--cache-resultados=<dir> [--cache-resultados-max-mb=<n>] [--cache-resultados-conteudo]] [--profile[=<arquivo.json>]] [--metricas=<arquivo.json>] <arquivo-de-entrada.mq>";
+
     public static void main(String[] args) {
-        if (args.length == 0) {
-            System.err.println("Uso: java -jar <caminho-do-jar> <arquivo-de-entrada.mq>");
+        boolean execute = false;
+        boolean explain = false;
+        boolean ndjson = false;
+        ExecutionMode mode = ExecutionMode.INTERPRETED;
+        String cacheDir = System.getProperty("miniquery.cache.dir");
+        long cacheMaxMb = 256;
+        String resultCacheDir = null;
+        long resultCacheMaxMb = 1024;
+        boolean resultContentHash = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String filePath = null;
+        String profileOutput = null;
+        String metricsFile = null;
+        String invalid = null;
+        for (String arg : args) {
+            try {
+                if (arg.equals("--executar")) {
+                    execute = true;
+                } else if (arg.equals("--explain")) {
+                    explain = true;
+                } else if (arg.equals("--ndjson")) {
+                    ndjson = true;
+                } else if (arg.startsWith("--modo=")) {
+                    mode = ExecutionMode.of(arg.substring("--modo=".length()));
+                } else if (arg.startsWith("--threads=")) {
+                    threads = (int) positive(arg, "--threads=", MAX_THREADS);
+                } else if (arg.startsWith("--cache-dir=")) {
+                    cacheDir = arg.substring("--cache-dir=".length());
+                } else if (arg.startsWith("--cache-max-mb=")) {
+                    cacheMaxMb = positive(arg, "--cache-max-mb=", MAX_MB);
+                } else if (arg.startsWith("--cache-resultados=")) {
+                    resultCacheDir = arg.substring("--cache-resultados=".length());
+                } else if (arg.startsWith("--cache-resultados-max-mb=")) {
+                    resultCacheMaxMb = positive(arg, "--cache-resultados-max-mb=", MAX_MB);
+                } else if (arg.equals("--cache-resultados-conteudo")) {
+                    resultContentHash = true;
+                } else if (arg.equals("--profile")) {
+                    profileOutput = "-";
+                } else if (arg.startsWith("--profile=")) {
+                    profileOutput = arg.substring("--profile=".length());
+                } else if (arg.startsWith("--metricas=")) {
+                    metricsFile = arg.substring("--metricas=".length());
+                } else {
+                    filePath = arg;
+                }
+            } catch (IllegalArgumentException e) {
+                invalid = e.getMessage();
+            }
+        }
+        if (invalid != null || filePath == null) {
+            if (invalid != null) {
+                System.err.println("ERRO: " + invalid);
+            }
+            System.err.println(USAGE);
             return;
         }
 
-        String filePath = args[0];
         try {
             String input = Files.readString(Paths.get(filePath), StandardCharsets.UTF_8);
-            String output = runCompiler(input);
-            System.out.println(output);
+            CompilationCache cache = cacheDir == null ? null
+                    : new CompilationCache(64, Paths.get(cacheDir), cacheMaxMb * 1024 * 1024);
+            MiniQueryCompiler compiler = new MiniQueryCompiler(ndjson, cache, metricsFile);
+            ResultCache results = resultCacheDir == null ? null
+                    : new ResultCache(Paths.get(resultCacheDir), resultCacheMaxMb * 1024 * 1024, resultContentHash);
+
+            if (profileOutput != null) {
+                // O perfil mede a compilação real, então o cache também não é consultado.
+                List<MiniQueryBaseProcessor.Command> commands = new ArrayList<>();
+                CompilationProfile profile = new CompilationProfile();
+                String output = compiler.compile(input, commands, profile);
+                if (profileOutput.equals("-")) {
+                    System.out.println(profile.toJson());
+                } else {
+                    Files.writeString(Paths.get(profileOutput), profile.toJson(), StandardCharsets.UTF_8);
+                    System.out.println(output);
+                }
+                if (explain && !commands.isEmpty()) {
+                    System.out.println("\n" + QueryOptimizer.optimize(commands).explain());
+                }
+                if (execute && !commands.isEmpty()) {
+                    runQuery(commands, mode, threads, results, metricsFile);
+                }
+            } else if (execute || explain) {
+                // A execução e o EXPLAIN precisam dos comandos validados, então o cache não é consultado.
+                List<MiniQueryBaseProcessor.Command> commands = new ArrayList<>();
+                System.out.println(compiler.compile(input, commands));
+                if (explain && !commands.isEmpty()) {
+                    System.out.println("\n" + QueryOptimizer.optimize(commands).explain());
+                }
+                if (execute && !commands.isEmpty()) {
+                    runQuery(commands, mode, threads, results, metricsFile);
+                }
+            } else {
+                System.out.println(compiler.compile(input));
+            }
         } catch (IOException e) {
             System.err.println("ERRO: Não foi possível ler o arquivo: " + filePath);
             e.printStackTrace();
         }
     }
 
-    
-    private static String runCompiler(String input) {
-        StringBuilder result = new StringBuilder();
+    // Valor de uma opção numérica "--nome=<n>" entre 1 e 'max'; opções inválidas encerram com a linha de uso.
+    static long positive(String arg, String prefix, long max) {
         try {
-            CharStream stream = CharStreams.fromString(input);
-            MiniQueryLexer lexer = new MiniQueryLexer(stream);
-            CommonTokenStream tokens = new CommonTokenStream(lexer);
-            MiniQueryParser parser = new MiniQueryParser(tokens);
-            parser.removeErrorListeners();
-            SyntaxErrorListener errorListener = new SyntaxErrorListener();
-            parser.addErrorListener(errorListener);
-
-            ParseTree tree = parser.program();
-
-            if (!errorListener.getErrors().isEmpty()) {
-                errorListener.getErrors().forEach(err -> result.append("ERRO DE SINTAXE: ").append(err).append("\n"));
-                return result.toString().trim();
-            }
-
-            MiniQuerySemanticValidator validator = new MiniQuerySemanticValidator();
-            ParseTreeWalker.DEFAULT.walk(validator, tree);
-
-            if (!validator.getErrors().isEmpty()) {
-                result.append("✖ ERROS SEMÂNTICOS:\n");
-                validator.getErrors().forEach(err -> result.append(err).append("\n"));
-            } else {
-                result.append("✔ ANÁLISE BEM-SUCEDIDA. CÓDIGO GERADO:\n\n");
-                JavaScriptGenerator generator = new JavaScriptGenerator();
-                result.append(generator.generate(validator.getCommands()));
+            long value = Long.parseLong(arg.substring(prefix.length()));
+            if (value >= 1 && value <= max) {
+                return value;
             }
-        } catch (Exception e) {
-            result.append("💥 ERRO INESPERADO DURANTE A COMPILAÇÃO:\n");
-            result.append(e.getMessage());
+        } catch (NumberFormatException e) {
+            // Cai na mensagem abaixo.
         }
-        return result.toString().trim();
+        throw new IllegalArgumentException("Valor inválido em " + arg + ": use um inteiro entre 1 e " + max);
     }
 
-    // Classe interna para capturar erros de sintaxe
-    private static class SyntaxErrorListener extends BaseErrorListener {
-        private final List<String> errors = new ArrayList<>();
-        @Override
-        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
-            errors.add("Linha " + line + ":" + charPositionInLine + " - " + msg);
+    // Executa a consulta validada na JVM pelo QueryExecutor, sem passar pelo Node. Com 'metricsFile',
+    // o relatório da execução (ExecutionMetrics) é gravado nesse arquivo.
+    private static void runQuery(List<MiniQueryBaseProcessor.Command> commands, ExecutionMode mode, int threads,
+            ResultCache results, String metricsFile) {
+        try {
+            QueryPipeline pipeline = QueryPipeline.from(QueryOptimizer.optimize(commands), mode);
+            ExecutionMetrics metrics = metricsFile == null ? null : pipeline.measure();
+            ExecutionResult execution = new QueryExecutor(mode, threads, results).execute(pipeline, System.out);
+            System.out.println("\n✔ EXECUÇÃO CONCLUÍDA: " + execution);
+            if (metrics != null) {
+                Files.writeString(Paths.get(metricsFile), metrics.toJson(), StandardCharsets.UTF_8);
+                System.out.println("Métricas da execução gravadas em " + metricsFile);
+            }
+            if (results != null) {
+                System.out.println("Cache de resultados: " + results.getStats());
+            }
+        } catch (IOException | IllegalArgumentException | IllegalStateException e) {
+            System.out.println("\n💥 ERRO DURANTE A EXECUÇÃO:\n" + e.getMessage());
         }
-        public List<String> getErrors() { return Collections.unmodifiableList(errors); }
     }
-}
\ No newline at end of file
+}
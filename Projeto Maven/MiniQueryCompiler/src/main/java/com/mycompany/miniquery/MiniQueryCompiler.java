@@ -0,0 +1,186 @@
+package com.mycompany.miniquery;
+
+import com.mycompany.miniquery.cache.CompilationCache;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor;
+import com.mycompany.miniquery.compiler.MiniQuerySemanticValidator;
+import com.mycompany.miniquery.grammar.MiniQueryLexer;
+import com.mycompany.miniquery.grammar.MiniQueryParser;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+// Pipeline completo de compilação (léxico, sintático, semântico e geração de JS),
+// compartilhado pelo Main e pelos demais modos de execução.
+public class MiniQueryCompiler {
+
+    // Versão do compilador; deve mudar sempre que a saída gerada mudar, pois faz parte da chave do cache.
+    public static final String VERSION = "1.0-SNAPSHOT";
+
+    private final boolean ndjson;
+    private final CompilationCache cache;
+    private final String metricsFile;
+
+    public MiniQueryCompiler() {
+        this(false, null);
+    }
+
+    // 'cache' pode ser null para desativar o cache de compilação.
+    public MiniQueryCompiler(boolean ndjson, CompilationCache cache) {
+        this(ndjson, cache, null);
+    }
+
+    // Com 'metricsFile' (--metricas), o script gerado grava nesse arquivo o relatório da execução.
+    public MiniQueryCompiler(boolean ndjson, CompilationCache cache, String metricsFile) {
+        this.ndjson = ndjson;
+        this.cache = cache;
+        this.metricsFile = metricsFile;
+    }
+
+    // Compila o código-fonte, consultando o cache antes de rodar o pipeline do ANTLR.
+    public String compile(String input) {
+        return compile(input, (Path) null);
+    }
+
+    // Como compile(input), mas com os caminhos relativos do LOAD resolvidos contra 'baseDirectory'.
+    public String compile(String input, Path baseDirectory) {
+        if (cache == null) {
+            return run(input, new ArrayList<>(), new ArrayList<>(), null, baseDirectory);
+        }
+        // Os LOADs relativos dependem do diretório de trabalho (o do processo quando 'baseDirectory' é null),
+        // então o mesmo código compilado em outro diretório não reaproveita o esquema de outros arquivos.
+        Path directory = (baseDirectory == null ? Paths.get("") : baseDirectory).toAbsolutePath().normalize();
+        String variant = (ndjson ? "ndjson" : "js") + (metricsFile == null ? "" : "|metricas=" + metricsFile)
+                + "|dir=" + directory;
+        String cached = cache.get(input, variant);
+        if (cached != null) {
+            return cached;
+        }
+        List<String> dataSources = new ArrayList<>();
+        String output = run(input, new ArrayList<>(), dataSources, null, baseDirectory);
+        if (!output.startsWith("💥")) {
+            cache.put(input, variant, output, dataSources);
+        }
+        return output;
+    }
+
+    // Compila sem cache; em caso de sucesso, os comandos validados são copiados para 'validCommands'.
+    public String compile(String input, List<MiniQueryBaseProcessor.Command> validCommands) {
+        return run(input, validCommands, new ArrayList<>());
+    }
+
+    // Compila sem cache registrando em 'profile' o custo de cada fase e as decisões do parser.
+    public String compile(String input, List<MiniQueryBaseProcessor.Command> validCommands, CompilationProfile profile) {
+        return run(input, validCommands, new ArrayList<>(), profile, null);
+    }
+
+    private String run(String input, List<MiniQueryBaseProcessor.Command> validCommands, List<String> dataSources) {
+        return run(input, validCommands, dataSources, null, null);
+    }
+
+    // 'dataSources' recebe os arquivos de dados consultados pelo validador para inferir o esquema.
+    // Com 'profile', os tokens são lidos antes do parse para separar as fases léxica e sintática.
+    private String run(String input, List<MiniQueryBaseProcessor.Command> validCommands, List<String> dataSources,
+            CompilationProfile profile, Path baseDirectory) {
+        StringBuilder result = new StringBuilder();
+        try {
+            if (profile != null) {
+                profile.mark();
+            }
+            CharStream stream = CharStreams.fromString(input);
+            MiniQueryLexer lexer = new MiniQueryLexer(stream);
+            CommonTokenStream tokens = new CommonTokenStream(lexer);
+            if (profile != null) {
+                tokens.fill();
+                profile.phase("lexico");
+            }
+            MiniQueryParser parser = new MiniQueryParser(tokens);
+            SyntaxErrorListener errorListener = new SyntaxErrorListener();
+            if (profile != null) {
+                parser.setProfile(true);
+            }
+
+            TwoStageParser twoStage = new TwoStageParser();
+            ParseTree tree = twoStage.parse(parser, errorListener);
+            if (profile != null) {
+                profile.phase("sintatico");
+                profile.recordDecisions(parser, lexer, twoStage.usedFallback());
+            }
+
+            if (!errorListener.getErrors().isEmpty()) {
+                errorListener.getErrors().forEach(err -> result.append("ERRO DE SINTAXE: ").append(err).append("\n"));
+                setStatus(profile, "ERRO DE SINTAXE");
+                return result.toString().trim();
+            }
+
+            if (profile != null) {
+                profile.mark();
+            }
+            MiniQuerySemanticValidator validator = new MiniQuerySemanticValidator(baseDirectory, ndjson);
+            ParseTreeWalker.DEFAULT.walk(validator, tree);
+            dataSources.addAll(validator.getDataSources());
+            if (profile != null) {
+                profile.phase("semantico");
+            }
+
+            if (!validator.getErrors().isEmpty()) {
+                result.append("✖ ERROS SEMÂNTICOS:\n");
+                validator.getErrors().forEach(err -> result.append(err).append("\n"));
+                setStatus(profile, "ERRO SEMANTICO");
+            } else {
+                result.append("✔ ANÁLISE BEM-SUCEDIDA. CÓDIGO GERADO:\n\n");
+                result.append(new JavaScriptGenerator(ndjson, metricsFile).generate(validator.getCommands()));
+                validCommands.addAll(validator.getCommands());
+                if (profile != null) {
+                    profile.phase("geracao");
+                }
+                setStatus(profile, "VALIDO");
+            }
+            appendWarnings(result, validator.getWarnings());
+        } catch (Exception e) {
+            result.append("💥 ERRO INESPERADO DURANTE A COMPILAÇÃO:\n");
+            result.append(e.getMessage());
+            setStatus(profile, "ERRO INESPERADO");
+        }
+        return result.toString().trim();
+    }
+
+    // Os avisos do validador (ex: esquema que não pôde ser inferido) vão ao fim da saída, após uma linha em branco.
+    static void appendWarnings(StringBuilder result, List<String> warnings) {
+        if (warnings.isEmpty()) {
+            return;
+        }
+        int length = result.length();
+        while (length > 0 && result.charAt(length - 1) <= ' ') {
+            length--;
+        }
+        result.setLength(length);
+        result.append("\n\n");
+        warnings.forEach(warning -> result.append(warning).append("\n"));
+    }
+
+    private static void setStatus(CompilationProfile profile, String status) {
+        if (profile != null) {
+            profile.setStatus(status);
+        }
+    }
+
+    // Classe interna para capturar erros de sintaxe
+    static class SyntaxErrorListener extends BaseErrorListener {
+        private final List<String> errors = new ArrayList<>();
+        @Override
+        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+            errors.add("Linha " + line + ":" + charPositionInLine + " - " + msg);
+        }
+        public List<String> getErrors() { return Collections.unmodifiableList(errors); }
+    }
+}
@@ -0,0 +1,178 @@
+package com.mycompany.miniquery;
+
+import com.mycompany.miniquery.cache.ResultCache;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor;
+import com.mycompany.miniquery.runtime.ExecutionMode;
+import com.mycompany.miniquery.runtime.ExecutionResult;
+import com.mycompany.miniquery.runtime.QueryExecutor;
+import com.mycompany.miniquery.runtime.QueryOptimizer;
+import com.mycompany.miniquery.runtime.QueryPipeline;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Executa muitas consultas .mq agrupadas pelo arquivo do LOAD: cada arquivo de entrada é lido uma
+// única vez (QueryExecutor.executeShared) e cada registro passa pelos FILTER/SELECT de todas as
+// consultas do grupo. O custo de leitura e parse cresce com o número de entradas distintas, não
+// com o número de consultas. Consultas sem SAVE gravam em <saida>/<consulta>.json.
+public class MultiQueryRunner {
+
+    private static final String DEFAULT_OUTPUT_DIR = "target/multi-results/";
+
+    private static final String USAGE = "Uso: java -cp <caminho-do-jar> com.mycompany.miniquery.MultiQueryRunner "
+            + "[--saida=<dir>] [--modo=interpretado|compilado|verificado|colunar] "
+            + "[--cache-resultados=<dir> [--cache-resultados-max-mb=<n>] [--cache-resultados-conteudo]] "
+            + "<diretório | arquivo.mq | glob>...";
+
+    public static void main(String[] args) throws IOException {
+        Path outputDir = Paths.get(DEFAULT_OUTPUT_DIR);
+        ExecutionMode mode = ExecutionMode.INTERPRETED;
+        String resultCacheDir = null;
+        long resultCacheMaxMb = 1024;
+        boolean resultContentHash = false;
+        List<String> inputs = new ArrayList<>();
+        String invalid = null;
+        for (String arg : args) {
+            // As opções do cache de resultados seguem as do Main.
+            try {
+                if (arg.startsWith("--saida=")) {
+                    outputDir = Paths.get(arg.substring("--saida=".length()));
+                } else if (arg.startsWith("--cache-resultados=")) {
+                    resultCacheDir = arg.substring("--cache-resultados=".length());
+                } else if (arg.startsWith("--cache-resultados-max-mb=")) {
+                    resultCacheMaxMb = Main.positive(arg, "--cache-resultados-max-mb=", Main.MAX_MB);
+                } else if (arg.equals("--cache-resultados-conteudo")) {
+                    resultContentHash = true;
+                } else if (arg.startsWith("--modo=")) {
+                    mode = ExecutionMode.of(arg.substring("--modo=".length()));
+                } else {
+                    inputs.add(arg);
+                }
+            } catch (IllegalArgumentException e) {
+                invalid = e.getMessage();
+            }
+        }
+        if (invalid != null || inputs.isEmpty()) {
+            if (invalid != null) {
+                System.err.println("ERRO: " + invalid);
+            }
+            System.err.println(USAGE);
+            return;
+        }
+        ResultCache results = resultCacheDir == null ? null
+                : new ResultCache(Paths.get(resultCacheDir), resultCacheMaxMb * 1024 * 1024, resultContentHash);
+
+        long startTime = System.currentTimeMillis();
+        List<Path> files = BatchCompiler.collectFiles(inputs);
+        Map<Path, List<Query>> groups = compileAll(files, outputDir, mode);
+        QueryExecutor executor = new QueryExecutor(mode, 1, results);
+        int queries = 0;
+        for (Map.Entry<Path, List<Query>> group : groups.entrySet()) {
+            runGroup(executor, group.getKey(), group.getValue());
+            queries += group.getValue().size();
+        }
+        System.out.printf("%d consultas sobre %d arquivos de entrada em %dms%n",
+                queries, groups.size(), System.currentTimeMillis() - startTime);
+        if (results != null) {
+            System.out.println("Cache de resultados: " + results.getStats());
+        }
+    }
+
+    // Compila e otimiza cada consulta; as válidas são agrupadas pelo caminho absoluto do LOAD.
+    static Map<Path, List<Query>> compileAll(List<Path> files, Path outputDir, ExecutionMode mode) {
+        MiniQueryCompiler compiler = new MiniQueryCompiler();
+        Map<Path, List<Query>> groups = new LinkedHashMap<>();
+        Map<Path, Path> saveOwners = new HashMap<>();
+        for (Path file : files) {
+            List<MiniQueryBaseProcessor.Command> commands = new ArrayList<>();
+            String output;
+            try {
+                output = compiler.compile(Files.readString(file, StandardCharsets.UTF_8), commands);
+            } catch (IOException e) {
+                System.out.println("✖ " + file + ": Não foi possível ler o arquivo: " + e.getMessage());
+                continue;
+            }
+            if (commands.isEmpty()) {
+                System.out.println("✖ " + file + ": " + output.lines().findFirst().orElse(""));
+                continue;
+            }
+            try {
+                QueryPipeline pipeline = QueryPipeline.from(QueryOptimizer.optimize(commands), mode);
+                Path target = pipeline.savePath != null
+                        ? Paths.get(pipeline.savePath)
+                        : outputDir.resolve(BatchCompiler.outputName(file, ".json"));
+                Path owner = saveOwners.putIfAbsent(target.toAbsolutePath().normalize(), file);
+                if (owner != null) {
+                    System.out.println("✖ " + file + ": o resultado iria para " + target + ", já usado por " + owner);
+                    continue;
+                }
+                Path source = Paths.get(pipeline.loadPath).toAbsolutePath().normalize();
+                groups.computeIfAbsent(source, s -> new ArrayList<>()).add(new Query(file, pipeline, target));
+            } catch (IllegalArgumentException e) {
+                System.out.println("✖ " + file + ": " + e.getMessage());
+            }
+        }
+        return groups;
+    }
+
+    private static void runGroup(QueryExecutor executor, Path source, List<Query> group) {
+        long start = System.nanoTime();
+        List<QueryPipeline> pipelines = new ArrayList<>();
+        List<OutputStream> outputs = new ArrayList<>();
+        try {
+            for (Query query : group) {
+                pipelines.add(query.pipeline);
+                outputs.add(query.pipeline.savePath != null ? null : openFallback(query.target));
+            }
+            List<ExecutionResult> results = executor.executeShared(pipelines, outputs);
+            long read = results.stream().mapToLong(r -> r.recordsRead).max().orElse(0);
+            System.out.printf("✔ %s: %d consultas, %d registros lidos em uma passada (%.1f ms)%n",
+                    source, group.size(), read, (System.nanoTime() - start) / 1_000_000.0);
+            for (int i = 0; i < group.size(); i++) {
+                ExecutionResult result = results.get(i);
+                System.out.printf("    %s: %s%n", group.get(i).file, result.cached ? result
+                        : result.recordsWritten + " gravados em " + group.get(i).target);
+            }
+        } catch (IOException | IllegalArgumentException | IllegalStateException e) {
+            System.out.println("💥 " + source + ": ERRO DURANTE A EXECUÇÃO: " + e.getMessage());
+        } finally {
+            for (OutputStream out : outputs) {
+                closeQuietly(out);
+            }
+        }
+    }
+
+    private static OutputStream openFallback(Path target) throws IOException {
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        return new BufferedOutputStream(Files.newOutputStream(target));
+    }
+
+    private static void closeQuietly(OutputStream out) {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            System.err.println("AVISO: não foi possível fechar a saída: " + e.getMessage());
+        }
+    }
+
+    static class Query {
+        final Path file;
+        final QueryPipeline pipeline;
+        final Path target; // SAVE da consulta ou o arquivo em <saida>
+        Query(Path file, QueryPipeline pipeline, Path target) { this.file = file; this.pipeline = pipeline; this.target = target; }
+    }
+}
@@ -1,18 +1,35 @@
 package com.mycompany.miniquery;
 
+import com.mycompany.miniquery.cache.ResultCache;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor;
 import com.mycompany.miniquery.compiler.MiniQuerySemanticValidator;
 import com.mycompany.miniquery.grammar.MiniQueryLexer;
 import com.mycompany.miniquery.grammar.MiniQueryParser;
+import com.mycompany.miniquery.runtime.ExecutionMode;
+import com.mycompany.miniquery.runtime.ExecutionResult;
+import com.mycompany.miniquery.runtime.FieldIndex;
+import com.mycompany.miniquery.runtime.QueryExecutor;
+import com.mycompany.miniquery.runtime.QueryOptimizer;
+import com.mycompany.miniquery.runtime.QueryPipeline;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
@@ -27,9 +44,24 @@ public class TestRunner {
     private static final String TEST_DIR = "src/test/resources/";
     private static final String OUTPUT_DIR = "target/test-results/";
     private static final String EXPECTED_DIR = "src/test/expected/";
+    // Linhas "# verificar: <o quê>" pedem verificações além da compilação (ex: execucao, explain).
+    private static final Pattern DIRECTIVE = Pattern.compile("(?m)^#\\s*verificar:\\s*(.+?)\\s*$");
+    private static boolean nodeAvailable = true;
 
     public static void main(String[] args) throws IOException {
         System.out.println("Iniciando execucao dos testes...");
+        // Trechos pequenos, para que o modo paralelo divida até os arquivos das fixtures. Precisa
+        // vir antes do primeiro uso do ParallelScan, que lê as propriedades uma vez.
+        setDefault("miniquery.paralelo.minimo", "1");
+        setDefault("miniquery.paralelo.trecho", "512");
+        // Os índices das fixtures são usados mesmo quando pouco seletivos.
+        setDefault("miniquery.indice.seletividade", "1.0");
+        // Lotes pequenos, para que a ordenação externa grave e intercale vários arquivos nas fixtures.
+        setDefault("miniquery.ordenacao.lote", "4");
+        setDefault("miniquery.ordenacao.intercalacao", "2");
+        // Poucos grupos em memória, para que o GROUP BY particione as chaves em disco nas fixtures.
+        setDefault("miniquery.agrupamento.grupos", "2");
+        setDefault("miniquery.agrupamento.particoes", "2");
         long startTime = System.currentTimeMillis();
 
         Files.createDirectories(Paths.get(OUTPUT_DIR));
@@ -54,7 +86,23 @@ public class TestRunner {
         try {
             String testContent = Files.readString(testFile, StandardCharsets.UTF_8);
             result.input = testContent;
-            result.output = runCompiler(testContent);
+            List<MiniQueryBaseProcessor.Command> commands = new ArrayList<>();
+            result.output = runCompiler(testContent, commands);
+            for (String directive : directives(testContent)) {
+                if (directive.equals("execucao") && !commands.isEmpty()) {
+                    result.output += "\n\n" + runExecution(testName, commands, result.output);
+                } else if (directive.equals("incremental")) {
+                    result.output += "\n\n" + runIncremental(testContent);
+                } else if (directive.equals("ndjson")) {
+                    result.output += "\n\nCOMPILAÇÃO COM --ndjson:\n" + new MiniQueryCompiler(true, null).compile(testContent, new ArrayList<>());
+                } else if (directive.equals("cache") && !commands.isEmpty()) {
+                    result.output += "\n\n" + runCached(testName, commands);
+                } else if (directive.equals("explain") && !commands.isEmpty()) {
+                    result.output += "\n\n" + QueryOptimizer.optimize(commands).explain();
+                } else if (directive.startsWith("indice ") && !commands.isEmpty()) {
+                    result.output += "\n\n" + runIndexed(commands, directive.substring("indice ".length()).trim());
+                }
+            }
 
             Path expectedFile = Paths.get(EXPECTED_DIR, testName + ".expected.txt");
             if (Files.exists(expectedFile)) {
@@ -81,18 +129,16 @@ public class TestRunner {
         return result;
     }
 
-    private static String runCompiler(String input) {
+    private static String runCompiler(String input, List<MiniQueryBaseProcessor.Command> commands) {
         StringBuilder result = new StringBuilder();
         try {
             CharStream stream = CharStreams.fromString(input);
             MiniQueryLexer lexer = new MiniQueryLexer(stream);
             CommonTokenStream tokens = new CommonTokenStream(lexer);
             MiniQueryParser parser = new MiniQueryParser(tokens);
-            parser.removeErrorListeners();
             SyntaxErrorListener errorListener = new SyntaxErrorListener();
-            parser.addErrorListener(errorListener);
 
-            ParseTree tree = parser.program();
+            ParseTree tree = new TwoStageParser().parse(parser, errorListener);
 
             if (!errorListener.getErrors().isEmpty()) {
                 errorListener.getErrors().forEach(err -> result.append("ERRO DE SINTAXE: ").append(err).append("\n"));
@@ -113,10 +159,12 @@ public class TestRunner {
             } else {
                 // Se não há erros, o  mesmo validator é usado para obter os comandos e gerar o código.
                 result.append("ANÁLISE SEMÂNTICA VÁLIDA\n\n");
+                commands.addAll(validator.getCommands());
                 JavaScriptGenerator generator = new JavaScriptGenerator();
                 result.append("CÓDIGO JS GERADO:\n")
                       .append(generator.generate(validator.getCommands()));
             }
+            MiniQueryCompiler.appendWarnings(result, validator.getWarnings());
         } catch (Exception e) {
             result.append("ERRO DURANTE A ANÁLISE:\n")
                   .append(e.getClass().getSimpleName())
@@ -126,6 +174,248 @@ public class TestRunner {
         return result.toString().trim();
     }
 
+    private static List<String> directives(String input) {
+        List<String> directives = new ArrayList<>();
+        Matcher matcher = DIRECTIVE.matcher(input);
+        while (matcher.find()) {
+            directives.add(matcher.group(1));
+        }
+        return directives;
+    }
+
+    private static void setDefault(String property, String value) {
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, value);
+        }
+    }
+
+    // Executa a consulta em todos os modos da JVM e, se o Node estiver instalado, o script gerado.
+    // Todas as saídas precisam ser idênticas byte a byte; o resultado vai para a saída do teste
+    // uma vez, seguido de cada saída divergente.
+    private static String runExecution(String testName, List<MiniQueryBaseProcessor.Command> commands, String compilerOutput) {
+        Map<String, String> outputs = new LinkedHashMap<>();
+        for (String mode : new String[] {"interpretado", "compilado", "verificado", "colunar", "paralelo"}) {
+            outputs.put(mode, runJvm(commands, mode));
+        }
+        String js = compilerOutput.substring(compilerOutput.indexOf("CÓDIGO JS GERADO:\n") + "CÓDIGO JS GERADO:\n".length());
+        String node = runNode(testName, commands, js);
+        if (node != null) {
+            outputs.put("node", node);
+        }
+
+        String reference = outputs.values().iterator().next();
+        StringBuilder result = new StringBuilder("RESULTADO DA EXECUÇÃO (").append(String.join(", ", outputs.keySet()))
+                .append("):\n").append(reference.trim());
+        for (Map.Entry<String, String> output : outputs.entrySet()) {
+            if (!output.getValue().equals(reference)) {
+                result.append("\n\nDIVERGÊNCIA (").append(output.getKey()).append("):\n").append(output.getValue().trim());
+            }
+        }
+        return result.toString();
+    }
+
+    // Aplica edições em sequência ao comando do meio do arquivo (inserção, edição, remoção e um erro de
+    // sintaxe corrigido em seguida) e compara cada saída do IncrementalCompiler com a compilação completa.
+    // O resultado registra também se o passo aproveitou a compilação anterior.
+    private static String runIncremental(String input) {
+        List<String> lines = new ArrayList<>(List.of(input.split("\n", -1)));
+        List<Integer> commandLines = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                commandLines.add(i);
+            }
+        }
+        if (commandLines.isEmpty()) {
+            return "VERIFICAÇÃO INCREMENTAL: arquivo sem comandos";
+        }
+        int middle = commandLines.get(commandLines.size() / 2);
+        String original = lines.get(middle);
+
+        Map<String, String> steps = new LinkedHashMap<>();
+        steps.put("inicial", String.join("\n", lines));
+        lines.add(middle + 1, original);
+        steps.put("insercao", String.join("\n", lines));
+        // A edição acrescenta um zero ao primeiro número da linha (ex: 65 vira 650) ou, sem números, espaços.
+        lines.set(middle, original.matches(".*\\d.*") ? original.replaceFirst("(\\d+)", "$10") : original + "  ");
+        steps.put("edicao", String.join("\n", lines));
+        lines.remove(middle + 1);
+        steps.put("remocao", String.join("\n", lines));
+        lines.add(middle + 1, "FILTER .idade >");
+        steps.put("erro de sintaxe", String.join("\n", lines));
+        lines.remove(middle + 1);
+        steps.put("correcao", String.join("\n", lines));
+
+        IncrementalCompiler incremental = new IncrementalCompiler();
+        StringBuilder result = new StringBuilder("VERIFICAÇÃO INCREMENTAL:");
+        for (Map.Entry<String, String> step : steps.entrySet()) {
+            String output = incremental.update(step.getValue());
+            String full = new MiniQueryCompiler().compile(step.getValue(), new ArrayList<>());
+            result.append("\n").append(step.getKey()).append(": ")
+                    .append(incremental.wasIncremental() ? "incremental" : "completa")
+                    .append(output.equals(full) ? ", saída idêntica" : ", DIVERGÊNCIA");
+            if (!output.equals(full)) {
+                result.append("\n--- incremental ---\n").append(output).append("\n--- completa ---\n").append(full);
+            }
+        }
+        return result.toString();
+    }
+
+    // Cria, um de cada vez, o índice ordenado e o hash de 'jsonPath' sobre o arquivo do LOAD e compara a
+    // execução com a varredura completa. Em seguida verifica que um índice anterior a uma mudança da
+    // origem (data de modificação) é recusado; a data original é restaurada ao final.
+    private static String runIndexed(List<MiniQueryBaseProcessor.Command> commands, String jsonPath) {
+        Path source = null;
+        for (MiniQueryBaseProcessor.Command cmd : commands) {
+            if (cmd instanceof MiniQueryBaseProcessor.LoadCommand) {
+                source = Paths.get(((MiniQueryBaseProcessor.LoadCommand) cmd).filePath);
+            }
+        }
+        StringBuilder result = new StringBuilder("VERIFICAÇÃO DO ÍNDICE DE ").append(jsonPath).append(":");
+        try {
+            deleteIndexes(source, jsonPath);
+            long[] read = new long[1];
+            String fullScan = runJvm(commands, "interpretado", read);
+            result.append("\nvarredura completa: ").append(read[0]).append(" registros lidos");
+            for (FieldIndex.Kind kind : FieldIndex.Kind.values()) {
+                FieldIndex.build(source, jsonPath, kind);
+                String indexed = runJvm(commands, "interpretado", read);
+                result.append("\n").append(kind.label).append(": ").append(read[0]).append(" registros lidos, ")
+                        .append(indexed.equals(fullScan) ? "saída idêntica" : "DIVERGÊNCIA:\n" + indexed.trim());
+                deleteIndexes(source, jsonPath);
+            }
+
+            FieldIndex.build(source, jsonPath, FieldIndex.Kind.SORTED);
+            FileTime modified = Files.getLastModifiedTime(source);
+            try {
+                Files.setLastModifiedTime(source, FileTime.fromMillis(modified.toMillis() + 2000));
+                boolean rejected = FieldIndex.open(source, jsonPath, FieldIndex.Kind.SORTED) == null;
+                String stale = runJvm(commands, "interpretado", read);
+                result.append("\níndice desatualizado: ").append(rejected ? "recusado" : "ACEITO").append(", ")
+                        .append(read[0]).append(" registros lidos, ")
+                        .append(stale.equals(fullScan) ? "saída idêntica" : "DIVERGÊNCIA:\n" + stale.trim());
+            } finally {
+                Files.setLastModifiedTime(source, modified);
+                deleteIndexes(source, jsonPath);
+            }
+        } catch (IOException | RuntimeException e) {
+            result.append("\nERRO: ").append(e.getMessage());
+        }
+        return result.toString();
+    }
+
+    // Grava no cache de resultados, vazio, uma cópia simples do LOAD (LOAD e SAVE) e depois executa a
+    // consulta duas vezes no mesmo cache; cada saída precisa ser idêntica à execução sem cache.
+    private static String runCached(String testName, List<MiniQueryBaseProcessor.Command> commands) {
+        StringBuilder result = new StringBuilder("VERIFICAÇÃO DO CACHE DE RESULTADOS:");
+        try {
+            Path directory = Paths.get(OUTPUT_DIR, testName + ".cache");
+            if (Files.exists(directory)) {
+                try (Stream<Path> walk = Files.walk(directory)) {
+                    for (Path path : walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                        Files.delete(path);
+                    }
+                }
+            }
+            ResultCache cache = new ResultCache(directory, 64L << 20, false);
+            String load = null;
+            for (MiniQueryBaseProcessor.Command cmd : commands) {
+                if (cmd instanceof MiniQueryBaseProcessor.LoadCommand) {
+                    load = ((MiniQueryBaseProcessor.LoadCommand) cmd).filePath;
+                }
+            }
+            List<MiniQueryBaseProcessor.Command> copy = List.of(new MiniQueryBaseProcessor.LoadCommand(load, 1),
+                    new MiniQueryBaseProcessor.SaveCommand(OUTPUT_DIR + testName + ".copia.json", 2));
+            result.append("\ncópia do LOAD: ").append(runCachedOnce(copy, cache)[0]);
+
+            String expected = runJvm(commands, "interpretado");
+            for (String step : new String[] {"primeira execução", "segunda execução"}) {
+                String[] run = runCachedOnce(commands, cache);
+                result.append("\n").append(step).append(": ").append(run[0]).append(", ")
+                        .append(run[1].equals(expected) ? "saída idêntica" : "DIVERGÊNCIA:\n" + run[1].trim());
+            }
+        } catch (IOException | RuntimeException e) {
+            result.append("\nERRO: ").append(e.getMessage());
+        }
+        return result.toString();
+    }
+
+    // Executa com o cache de resultados: {"do cache" ou "executada", conteúdo do SAVE}.
+    private static String[] runCachedOnce(List<MiniQueryBaseProcessor.Command> commands, ResultCache cache) throws IOException {
+        QueryPipeline pipeline = QueryPipeline.from(QueryOptimizer.optimize(commands), ExecutionMode.INTERPRETED);
+        ExecutionResult execution = new QueryExecutor(ExecutionMode.INTERPRETED, 1, cache)
+                .execute(pipeline, new ByteArrayOutputStream());
+        if (execution.outputFile == null) {
+            throw new IOException("a verificação do cache precisa de um SAVE");
+        }
+        return new String[] {execution.cached ? "do cache" : "executada",
+                Files.readString(Paths.get(execution.outputFile), StandardCharsets.UTF_8)};
+    }
+
+    private static void deleteIndexes(Path source, String jsonPath) throws IOException {
+        for (FieldIndex.Kind kind : FieldIndex.Kind.values()) {
+            Files.deleteIfExists(FieldIndex.sidecar(source, jsonPath, kind));
+        }
+    }
+
+    // Saída da execução na JVM: o arquivo do SAVE ou, sem SAVE, o que foi escrito na saída.
+    private static String runJvm(List<MiniQueryBaseProcessor.Command> commands, String mode) {
+        return runJvm(commands, mode, new long[1]);
+    }
+
+    // Como runJvm(commands, mode), guardando em read[0] os registros lidos do LOAD.
+    private static String runJvm(List<MiniQueryBaseProcessor.Command> commands, String mode, long[] read) {
+        try {
+            ExecutionMode executionMode = ExecutionMode.of(mode.equals("paralelo") ? "interpretado" : mode);
+            int threads = mode.equals("paralelo") ? 4 : 1;
+            QueryPipeline pipeline = QueryPipeline.from(QueryOptimizer.optimize(commands), executionMode);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ExecutionResult execution = new QueryExecutor(executionMode, threads).execute(pipeline, output);
+            read[0] = execution.recordsRead;
+            return execution.outputFile == null ? output.toString(StandardCharsets.UTF_8)
+                    : Files.readString(Paths.get(execution.outputFile), StandardCharsets.UTF_8);
+        } catch (IOException | RuntimeException e) {
+            return "ERRO NA EXECUÇÃO: " + e.getMessage();
+        }
+    }
+
+    // Saída do script gerado no Node, ou null quando o Node não está instalado.
+    private static String runNode(String testName, List<MiniQueryBaseProcessor.Command> commands, String js) {
+        if (!nodeAvailable) {
+            return null;
+        }
+        String savePath = null;
+        for (MiniQueryBaseProcessor.Command cmd : commands) {
+            if (cmd instanceof MiniQueryBaseProcessor.SaveCommand) {
+                savePath = ((MiniQueryBaseProcessor.SaveCommand) cmd).outputFile;
+            }
+        }
+        try {
+            Path script = Paths.get(OUTPUT_DIR, testName + ".js");
+            Files.writeString(script, js, StandardCharsets.UTF_8);
+            if (savePath != null) {
+                Files.deleteIfExists(Paths.get(savePath));
+            }
+            Process process;
+            try {
+                process = new ProcessBuilder("node", script.toString()).redirectErrorStream(true).start();
+            } catch (IOException e) {
+                nodeAvailable = false;
+                System.err.println("AVISO: Node não encontrado; as execuções comparam só os modos da JVM.");
+                return null;
+            }
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            if (!process.waitFor(60, TimeUnit.SECONDS) || process.exitValue() != 0) {
+                return "ERRO NO NODE:\n" + output;
+            }
+            return savePath == null ? output : Files.readString(Paths.get(savePath), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return "ERRO NO NODE: " + e.getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "ERRO NO NODE: interrompido";
+        }
+    }
 
     private static void generateReport(List<TestResult> results) throws IOException {
         StringBuilder report = new StringBuilder();
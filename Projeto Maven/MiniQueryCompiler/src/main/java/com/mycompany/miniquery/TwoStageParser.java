@@ -0,0 +1,41 @@
+package com.mycompany.miniquery;
+
+import com.mycompany.miniquery.grammar.MiniQueryParser;
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+// Parse em dois estágios: primeiro em PredictionMode.SLL com BailErrorStrategy, que é mais
+// rápido e abandona o parse no primeiro erro; só se ele falhar, o programa é relido em LL
+// completo com a estratégia padrão e o listener de erros, produzindo as mesmas mensagens
+// de sempre. Esta gramática não tem decisões sensíveis a contexto, então SLL e LL aceitam os
+// mesmos programas e o segundo estágio só roda quando há erro de sintaxe.
+public class TwoStageParser {
+
+    private boolean usedFallback;
+
+    public ParseTree parse(MiniQueryParser parser, ANTLRErrorListener errorListener) {
+        parser.removeErrorListeners();
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.setErrorHandler(new BailErrorStrategy());
+        try {
+            usedFallback = false;
+            return parser.program();
+        } catch (ParseCancellationException e) {
+            usedFallback = true;
+            parser.reset();
+            parser.addErrorListener(errorListener);
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            return parser.program();
+        }
+    }
+
+    // Indica se o último parse precisou do estágio LL.
+    public boolean usedFallback() {
+        return usedFallback;
+    }
+}
@@ -0,0 +1,173 @@
+package com.mycompany.miniquery;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// Modo watch: observa arquivos .mq (ou diretórios, recursivamente) com o WatchService do NIO
+// e recompila cada arquivo salvo por um IncrementalCompiler próprio, que mantém os tokens,
+// os comandos e a validação da versão anterior e só reprocessa o trecho alterado.
+public class WatchCompiler {
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final boolean ndjson;
+    private final Path outputDir;
+    private final Map<Path, IncrementalCompiler> compilers = new HashMap<>();
+    private final Map<Path, String> lastTexts = new HashMap<>();
+
+    public WatchCompiler(boolean ndjson, Path outputDir) {
+        this.ndjson = ndjson;
+        this.outputDir = outputDir;
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean ndjson = false;
+        Path outputDir = null;
+        List<Path> inputs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--ndjson")) {
+                ndjson = true;
+            } else if (arg.startsWith("--saida=")) {
+                outputDir = Paths.get(arg.substring("--saida=".length()));
+            } else {
+                inputs.add(Paths.get(arg).toAbsolutePath().normalize());
+            }
+        }
+        if (inputs.isEmpty()) {
+            System.err.println("Uso: java -cp <caminho-do-jar> com.mycompany.miniquery.WatchCompiler "
+                    + "[--ndjson] [--saida=<dir>] <diretório | arquivo.mq>...");
+            return;
+        }
+        new WatchCompiler(ndjson, outputDir).watch(inputs);
+    }
+
+    // Compila tudo uma vez e depois recompila a cada alteração, até o processo ser interrompido.
+    public void watch(List<Path> inputs) throws IOException {
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            Map<WatchKey, Path> directories = new HashMap<>();
+            List<Path> files = new ArrayList<>();
+            for (Path input : inputs) {
+                if (Files.isDirectory(input)) {
+                    try (Stream<Path> walk = Files.walk(input)) {
+                        walk.forEach(path -> {
+                            if (Files.isDirectory(path)) {
+                                directories.put(register(watcher, path), path);
+                            } else if (isQuery(path)) {
+                                files.add(path);
+                            }
+                        });
+                    }
+                } else {
+                    directories.put(register(watcher, input.getParent()), input.getParent());
+                    files.add(input);
+                }
+            }
+            files.forEach(this::recompile);
+            System.out.println("Observando " + files.size() + " arquivo(s). Ctrl+C para sair.");
+
+            while (true) {
+                WatchKey key;
+                try {
+                    key = watcher.take();
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    return;
+                }
+                Path dir = directories.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (dir == null || event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        continue;
+                    }
+                    Path path = dir.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        compilers.remove(path);
+                        lastTexts.remove(path);
+                    } else if (Files.isDirectory(path) && event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        directories.put(register(watcher, path), path);
+                    } else if (isQuery(path) && watched(inputs, path)) {
+                        recompile(path);
+                    }
+                }
+                if (!key.reset()) {
+                    directories.remove(key);
+                }
+            }
+        }
+    }
+
+    private static WatchKey register(WatchService watcher, Path dir) {
+        try {
+            return dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Arquivos passados diretamente ou que estejam dentro de um dos diretórios observados.
+    private static boolean watched(List<Path> inputs, Path path) {
+        for (Path input : inputs) {
+            if (path.equals(input) || (Files.isDirectory(input) && path.startsWith(input))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isQuery(Path path) {
+        return path.getFileName().toString().endsWith(".mq");
+    }
+
+    void recompile(Path file) {
+        String text;
+        try {
+            text = Files.readString(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            // Editores costumam apagar e recriar o arquivo ao salvar; o próximo evento traz a versão nova.
+            return;
+        }
+        if (text.equals(lastTexts.get(file))) {
+            return;
+        }
+        lastTexts.put(file, text);
+
+        IncrementalCompiler compiler = compilers.computeIfAbsent(file, f -> new IncrementalCompiler(ndjson));
+        long start = System.nanoTime();
+        String output = compiler.update(text);
+        double millis = (System.nanoTime() - start) / 1_000_000.0;
+
+        String detail = compiler.wasIncremental()
+                ? String.format("incremental: %d comando(s) relido(s), %d revalidado(s), %d laço(s) gerado(s)",
+                        compiler.getReparsedCommands(), compiler.getRevalidatedCommands(), compiler.getRegeneratedFragments())
+                : "completa";
+        System.out.printf("[%s] %s: %.3f ms (%s)%n", LocalTime.now().format(TIME), file, millis, detail);
+        if (outputDir == null) {
+            System.out.println(output);
+            System.out.println();
+            return;
+        }
+        try {
+            Path target = outputDir.resolve(file.getFileName().toString().replaceAll("\\.mq$", "") + ".result.txt");
+            Files.createDirectories(outputDir);
+            Files.writeString(target, output, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("ERRO: Não foi possível gravar a saída de " + file + ": " + e.getMessage());
+        }
+    }
+}
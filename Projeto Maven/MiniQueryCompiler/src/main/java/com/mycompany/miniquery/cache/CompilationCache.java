@@ -0,0 +1,160 @@
+package com.mycompany.miniquery.cache;
+
+import com.mycompany.miniquery.MiniQueryCompiler;
+import com.mycompany.miniquery.compiler.SchemaInference;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Cache da saída do compilador endereçado por conteúdo: a chave é o hash do código-fonte
+// normalizado, do modo de geração (com o diretório dos LOADs relativos) e da versão do compilador.
+// Há uma camada LRU em memória e, opcionalmente, uma camada em disco com limite de tamanho,
+// compartilhável entre processos.
+// Como o esquema é inferido dos arquivos do LOAD, cada entrada guarda a impressão digital
+// (tamanho/data) desses arquivos e deixa de valer quando algum deles muda.
+public class CompilationCache {
+
+    private final Map<String, Entry> memory;
+    private final DiskCache disk;
+    private final String compilerFingerprint = compilerFingerprint();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // 'directory' pode ser null para usar apenas a camada em memória.
+    public CompilationCache(int maxMemoryEntries, Path directory, long maxDiskBytes) {
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxMemoryEntries;
+            }
+        };
+        this.disk = directory == null ? null : new DiskCache(directory, maxDiskBytes);
+    }
+
+    public String get(String source, String variant) {
+        String key = key(source, variant);
+        Entry entry;
+        synchronized (memory) {
+            entry = memory.get(key);
+        }
+        if (entry != null && entry.isFresh()) {
+            memoryHits.incrementAndGet();
+            return entry.output;
+        }
+        if (disk != null) {
+            byte[] stored = disk.get(key);
+            entry = stored == null ? null : Entry.decode(new String(stored, StandardCharsets.UTF_8));
+            if (entry != null && entry.isFresh()) {
+                synchronized (memory) {
+                    memory.put(key, entry);
+                }
+                diskHits.incrementAndGet();
+                return entry.output;
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    // 'dataSources' são os arquivos lidos pelo validador para inferir o esquema.
+    public void put(String source, String variant, String output, List<String> dataSources) {
+        String key = key(source, variant);
+        List<String> fingerprints = new ArrayList<>();
+        for (String dataSource : dataSources) {
+            fingerprints.add(SchemaInference.fingerprint(dataSource));
+        }
+        Entry entry = new Entry(fingerprints, output);
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+        if (disk != null) {
+            try {
+                disk.put(key, entry.encode().getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                // Uma falha no disco não deve impedir a compilação; a entrada fica apenas em memória.
+            }
+        }
+    }
+
+    // Quebras de linha CRLF e LF geram a mesma saída, então são normalizadas antes do hash.
+    String key(String source, String variant) {
+        return Hashing.sha256Hex(compilerFingerprint, variant, source.replace("\r\n", "\n"));
+    }
+
+    public long getMemoryHits() { return memoryHits.get(); }
+    public long getDiskHits() { return diskHits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    public String getStats() {
+        long hits = memoryHits.get() + diskHits.get();
+        long total = hits + misses.get();
+        return String.format("acertos em memória: %d, acertos em disco: %d, faltas: %d, taxa de acerto: %.1f%%",
+                memoryHits.get(), diskHits.get(), misses.get(), total == 0 ? 0.0 : 100.0 * hits / total);
+    }
+
+    // Versão do compilador mais o tamanho/data do jar (ou diretório de classes), para que um
+    // novo build invalide as entradas antigas mesmo sem alterar a constante VERSION.
+    static String compilerFingerprint() {
+        StringBuilder fingerprint = new StringBuilder(MiniQueryCompiler.VERSION);
+        try {
+            Path location = Paths.get(MiniQueryCompiler.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            if (Files.isRegularFile(location)) {
+                fingerprint.append('|').append(Files.size(location))
+                        .append('|').append(Files.getLastModifiedTime(location).toMillis());
+            }
+        } catch (Exception e) {
+            // Sem acesso ao jar, vale apenas a constante de versão.
+        }
+        return fingerprint.toString();
+    }
+
+    // Saída compilada e as impressões digitais dos arquivos de dados de que ela depende.
+    // Em disco: uma linha com a quantidade de dependências, uma linha por dependência e a saída.
+    private static final class Entry {
+        final List<String> dataFingerprints;
+        final String output;
+
+        Entry(List<String> dataFingerprints, String output) {
+            this.dataFingerprints = dataFingerprints;
+            this.output = output;
+        }
+
+        boolean isFresh() {
+            for (String fingerprint : dataFingerprints) {
+                String path = fingerprint.substring(0, fingerprint.indexOf('|'));
+                if (!fingerprint.equals(SchemaInference.fingerprint(path))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        String encode() {
+            StringBuilder text = new StringBuilder().append(dataFingerprints.size()).append('\n');
+            dataFingerprints.forEach(f -> text.append(f).append('\n'));
+            return text.append(output).toString();
+        }
+
+        static Entry decode(String text) {
+            try {
+                String[] lines = text.split("\n", -1);
+                int count = Integer.parseInt(lines[0]);
+                List<String> fingerprints = new ArrayList<>(Arrays.asList(lines).subList(1, count + 1));
+                String output = String.join("\n", Arrays.asList(lines).subList(count + 1, lines.length));
+                return new Entry(fingerprints, output);
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.mycompany.miniquery.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Armazenamento em disco endereçado por chave, com limite de tamanho total.
+// Cada leitura renova a data de modificação do arquivo, e a evicção remove
+// os arquivos menos usados recentemente (LRU) até voltar abaixo do limite.
+public class DiskCache {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long maxBytes;
+    private long totalBytes;
+
+    public DiskCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        try {
+            Files.createDirectories(directory);
+            for (Path entry : entries()) {
+                totalBytes += Files.size(entry);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível preparar o cache em " + directory, e);
+        }
+    }
+
+    // Caminho da entrada, ou null se ela não existe; a entrada passa a ser a mais recente.
+    public synchronized Path find(String key) {
+        Path entry = directory.resolve(key);
+        if (!Files.isRegularFile(entry)) {
+            return null;
+        }
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Sem permissão para atualizar a data, a entrada apenas envelhece mais rápido.
+        }
+        return entry;
+    }
+
+    public byte[] get(String key) {
+        Path entry = find(key);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return Files.readAllBytes(entry);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public void put(String key, byte[] data) throws IOException {
+        Path temp = Files.createTempFile(directory, key, TEMP_SUFFIX);
+        Files.write(temp, data);
+        commit(key, temp);
+    }
+
+    // Copia um arquivo para o cache (usado para materializar resultados de consultas).
+    public void putFile(String key, Path source) throws IOException {
+        Path temp = Files.createTempFile(directory, key, TEMP_SUFFIX);
+        Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+        commit(key, temp);
+    }
+
+    // A gravação é feita em um arquivo temporário e movida de forma atômica para o nome final,
+    // para que processos concorrentes nunca leiam uma entrada pela metade.
+    private synchronized void commit(String key, Path temp) throws IOException {
+        Path entry = directory.resolve(key);
+        long previous = Files.isRegularFile(entry) ? Files.size(entry) : 0;
+        long size = Files.size(temp);
+        Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        totalBytes += size - previous;
+        evictIfNeeded(entry);
+    }
+
+    private void evictIfNeeded(Path justWritten) throws IOException {
+        if (totalBytes <= maxBytes) {
+            return;
+        }
+        List<Path> candidates = entries();
+        candidates.sort(Comparator.comparingLong(DiskCache::lastModified));
+        for (Path candidate : candidates) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            if (candidate.equals(justWritten)) {
+                continue;
+            }
+            long size = Files.size(candidate);
+            if (Files.deleteIfExists(candidate)) {
+                totalBytes -= size;
+            }
+        }
+    }
+
+    public synchronized long sizeInBytes() {
+        return totalBytes;
+    }
+
+    private List<Path> entries() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> entries = new ArrayList<>();
+            files.filter(Files::isRegularFile)
+                    .filter(p -> !p.getFileName().toString().endsWith(TEMP_SUFFIX))
+                    .forEach(entries::add);
+            return entries;
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.mycompany.miniquery.cache;
+
+import com.mycompany.miniquery.compiler.SchemaInference;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Cache de resultados materializados: a saída do SAVE fica guardada no DiskCache (LRU por tamanho)
+// sob o hash do plano normalizado e da impressão digital do arquivo do LOAD. Quando a mesma consulta
+// roda de novo sobre a mesma entrada, o SAVE é atendido por uma cópia da entrada do cache, sem ler
+// o JSON. A cópia (e não um hard link) é proposital: o SAVE é regravado no lugar em uma execução
+// seguinte, o que alteraria também a entrada do cache.
+public class ResultCache {
+
+    private final DiskCache disk;
+    private final boolean contentHash;
+    private final String compilerFingerprint = CompilationCache.compilerFingerprint();
+    // Hash do conteúdo por tamanho/data, para não reler arquivos que não mudaram.
+    private final Map<String, String> contentHashes = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+
+    // Com 'contentHash', a entrada é identificada pelo SHA-256 do conteúdo em vez do tamanho/data,
+    // então um arquivo regravado com o mesmo conteúdo continua valendo.
+    public ResultCache(Path directory, long maxBytes, boolean contentHash) {
+        this.disk = new DiskCache(directory, maxBytes);
+        this.contentHash = contentHash;
+    }
+
+    // Chave do resultado de 'plan' (comandos FILTER/SELECT normalizados) sobre 'loadPath'; null
+    // quando o arquivo não pode ser identificado.
+    public String key(String plan, String loadPath) {
+        String fingerprint = SchemaInference.fingerprint(loadPath);
+        if (fingerprint.endsWith("|ausente")) {
+            return null;
+        }
+        if (contentHash) {
+            try {
+                fingerprint = Paths.get(loadPath).toAbsolutePath().normalize() + "|" + contentHash(fingerprint, loadPath);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return Hashing.sha256Hex(compilerFingerprint, "resultado", plan, fingerprint);
+    }
+
+    // Grava em 'target' a saída guardada sob 'key'; falso (uma falta) quando não há entrada.
+    public boolean materialize(String key, Path target) {
+        Path entry = disk.find(key);
+        if (entry != null) {
+            try {
+                Path parent = target.toAbsolutePath().getParent();
+                Path temp = Files.createTempFile(parent, target.getFileName().toString(), ".tmp");
+                try {
+                    Files.copy(entry, temp, StandardCopyOption.REPLACE_EXISTING);
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+                hits.incrementAndGet();
+                bytesServed.addAndGet(Files.size(target));
+                return true;
+            } catch (IOException e) {
+                // Entrada removida por outro processo ou destino inválido: a consulta roda normalmente.
+            }
+        }
+        misses.incrementAndGet();
+        return false;
+    }
+
+    // Guarda 'output' sob 'key', se o arquivo do LOAD não mudou durante a execução.
+    public void store(String key, String plan, String loadPath, Path output) {
+        if (!key.equals(key(plan, loadPath))) {
+            return;
+        }
+        try {
+            disk.putFile(key, output);
+            stored.incrementAndGet();
+        } catch (IOException e) {
+            // Uma falha no disco não deve impedir a consulta; o resultado só não fica em cache.
+        }
+    }
+
+    private String contentHash(String fingerprint, String loadPath) throws IOException {
+        String hash = contentHashes.get(fingerprint);
+        if (hash == null) {
+            MessageDigest digest = Hashing.sha256();
+            byte[] buffer = new byte[1 << 16];
+            try (InputStream in = Files.newInputStream(Paths.get(loadPath))) {
+                for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                    digest.update(buffer, 0, n);
+                }
+            }
+            hash = Hashing.hex(digest.digest());
+            contentHashes.put(fingerprint, hash);
+        }
+        return hash;
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    public String getStats() {
+        long total = hits.get() + misses.get();
+        return String.format("acertos: %d, faltas: %d, taxa de acerto: %.1f%%, resultados guardados: %d, "
+                        + "servidos do cache: %.1f MB, em disco: %.1f MB",
+                hits.get(), misses.get(), total == 0 ? 0.0 : 100.0 * hits.get() / total, stored.get(),
+                bytesServed.get() / 1048576.0, disk.sizeInBytes() / 1048576.0);
+    }
+}
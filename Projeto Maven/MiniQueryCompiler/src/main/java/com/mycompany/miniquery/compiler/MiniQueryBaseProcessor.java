@@ -45,7 +45,7 @@ public class MiniQueryBaseProcessor extends MiniQueryBaseListener {
 
         // Cria o comando 'FilterCondition' com os argumentos corretos.
         // O primeiro argumento é o caminho do campo a ser filtrado.
-        commands.add(new FilterCondition(leftOperand, operator, rightOperand, ctx.start.getLine()));
+        commands.add(new FilterCondition(leftOperand, operator, rightOperand, operandOf(ctx.right), ctx.start.getLine()));
     }
 
    
@@ -59,6 +59,14 @@ public class MiniQueryBaseProcessor extends MiniQueryBaseListener {
         }
     }
 
+    // O tipo vem do token: "5" e ".x" entre aspas continuam strings.
+    private FilterCondition.Operand operandOf(MiniQueryParser.ValueContext valueCtx) {
+        if (valueCtx.STRING() != null) {
+            return FilterCondition.Operand.STRING;
+        }
+        return valueCtx.NUMBER() != null ? FilterCondition.Operand.NUMBER : FilterCondition.Operand.PATH;
+    }
+
     @Override
     public void enterSelectCommand(MiniQueryParser.SelectCommandContext ctx) {
         List<String> fields = new ArrayList<>();
@@ -68,10 +76,38 @@ public class MiniQueryBaseProcessor extends MiniQueryBaseListener {
         commands.add(new SelectCommand(fields, ctx.start.getLine()));
     }
 
+    @Override
+    public void enterGroupByCommand(MiniQueryParser.GroupByCommandContext ctx) {
+        List<String> functions = new ArrayList<>();
+        List<String> fields = new ArrayList<>();
+        for (MiniQueryParser.AggregateContext aggregate : ctx.aggregate()) {
+            functions.add(aggregate.function.getText());
+            fields.add(aggregate.jsonPath().getText());
+        }
+        commands.add(new GroupByCommand(ctx.jsonPath().getText(), functions, fields, ctx.start.getLine()));
+    }
+
+    @Override
+    public void enterOrderByCommand(MiniQueryParser.OrderByCommandContext ctx) {
+        List<String> fields = new ArrayList<>();
+        List<Boolean> descending = new ArrayList<>();
+        for (MiniQueryParser.OrderKeyContext key : ctx.orderKey()) {
+            fields.add(key.jsonPath().getText());
+            descending.add(key.direction != null && key.direction.getText().equals("DESC"));
+        }
+        commands.add(new OrderByCommand(fields, descending, ctx.start.getLine()));
+    }
+
+    @Override
+    public void enterLimitCommand(MiniQueryParser.LimitCommandContext ctx) {
+        commands.add(new LimitCommand(ctx.NUMBER().getText(), ctx.start.getLine()));
+    }
+
     @Override
     public void enterSaveCommand(MiniQueryParser.SaveCommandContext ctx) {
         String outputFile = unquoteString(ctx.STRING().getText());
-        commands.add(new SaveCommand(outputFile, ctx.start.getLine()));
+        String format = ctx.format == null ? null : ctx.format.getText();
+        commands.add(new SaveCommand(outputFile, format, ctx.start.getLine()));
     }
 
     
@@ -91,14 +127,19 @@ public class MiniQueryBaseProcessor extends MiniQueryBaseListener {
         public final String jsonPath; // Representa o operando da esquerda
         public final String operator;
         public final String value;    // Representa o operando da direita
-        public FilterCondition(String jsonPath, String operator, String value, int lineNumber) {
+        public final Operand operand; // Tipo do operando da direita
+        public enum Operand { PATH, NUMBER, STRING }
+        public FilterCondition(String jsonPath, String operator, String value, Operand operand, int lineNumber) {
             super(lineNumber);
             this.jsonPath = jsonPath;
             this.operator = operator;
             this.value = value;
+            this.operand = operand;
         }
+        public boolean isPath() { return operand == Operand.PATH; }
+        public boolean isNumber() { return operand == Operand.NUMBER; }
         @Override public String toString() {
-            String formattedValue = value.matches("-?\\d+(\\.\\d+)?") ? value : "\"" + value + "\"";
+            String formattedValue = isNumber() ? value : "\"" + value + "\"";
             return String.format("FILTER %s %s %s", jsonPath, operator, formattedValue);
         }
     }
@@ -109,9 +150,73 @@ public class MiniQueryBaseProcessor extends MiniQueryBaseListener {
         @Override public String toString() { return "SELECT " + String.join(", ", fields); }
     }
 
+    public static class GroupByCommand extends Command {
+        public static final List<String> NUMERIC_FUNCTIONS = List.of("SUM", "AVG", "MIN", "MAX");
+        public final String keyPath;
+        public final List<String> functions; // COUNT, SUM, AVG, MIN ou MAX
+        public final List<String> fields;    // caminho de cada agregação
+        public GroupByCommand(String keyPath, List<String> functions, List<String> fields, int lineNumber) {
+            super(lineNumber);
+            this.keyPath = keyPath;
+            this.functions = functions;
+            this.fields = fields;
+        }
+        // Nome do campo gerado pela agregação 'i' (ex: AVG(.cliente.idade) -> avg_cliente_idade).
+        public String outputName(int i) {
+            return functions.get(i).toLowerCase(Locale.ROOT) + "_" + fields.get(i).substring(1).replace(".", "_");
+        }
+        public String keyName() {
+            return keyPath.substring(1).replace(".", "_");
+        }
+        @Override public String toString() {
+            StringBuilder text = new StringBuilder("GROUP BY ").append(keyPath);
+            for (int i = 0; i < fields.size(); i++) {
+                text.append(i == 0 ? " " : ", ").append(functions.get(i)).append('(').append(fields.get(i)).append(')');
+            }
+            return text.toString();
+        }
+    }
+
+    public static class OrderByCommand extends Command {
+        public final List<String> fields;
+        public final List<Boolean> descending; // um por campo; false = ASC
+        public OrderByCommand(List<String> fields, List<Boolean> descending, int lineNumber) {
+            super(lineNumber);
+            this.fields = fields;
+            this.descending = descending;
+        }
+        @Override public String toString() {
+            StringBuilder text = new StringBuilder("ORDER BY ");
+            for (int i = 0; i < fields.size(); i++) {
+                text.append(i == 0 ? "" : ", ").append(fields.get(i)).append(descending.get(i) ? " DESC" : "");
+            }
+            return text.toString();
+        }
+    }
+
+    public static class LimitCommand extends Command {
+        public final String count; // texto do NUMBER; o validador exige um inteiro
+        public LimitCommand(String count, int lineNumber) { super(lineNumber); this.count = count; }
+        @Override public String toString() { return "LIMIT " + count; }
+    }
+
     public static class SaveCommand extends Command {
+        public static final String DEFAULT_FORMAT = "JSON";
+        public static final List<String> FORMATS = List.of("JSON", "COMPACT_JSON", "NDJSON", "COLUMNAR");
         public final String outputFile;
-        public SaveCommand(String outputFile, int lineNumber) { super(lineNumber); this.outputFile = outputFile; }
-        @Override public String toString() { return String.format("SAVE AS \"%s\"", outputFile); }
+        public final String format;
+        public final boolean explicitFormat; // FORMAT escrito no código, mesmo que seja o padrão
+        public SaveCommand(String outputFile, int lineNumber) { this(outputFile, null, lineNumber); }
+        // 'format' null usa o DEFAULT_FORMAT.
+        public SaveCommand(String outputFile, String format, int lineNumber) {
+            super(lineNumber);
+            this.outputFile = outputFile;
+            this.format = format == null ? DEFAULT_FORMAT : format;
+            this.explicitFormat = format != null;
+        }
+        @Override public String toString() {
+            String save = String.format("SAVE AS \"%s\"", outputFile);
+            return format.equals(DEFAULT_FORMAT) ? save : save + " FORMAT " + format;
+        }
     }
 }
\ No newline at end of file
@@ -3,12 +3,36 @@ package com.mycompany.miniquery.compiler;
 import com.mycompany.miniquery.grammar.*;
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.tree.*;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 
 public class MiniQuerySemanticValidator extends MiniQueryBaseProcessor {
 
     private final List<String> errors = new ArrayList<>();
     private final Map<String, String> fieldTypes = new HashMap<>();
+    private final List<String> dataSources = new ArrayList<>();
+    private final Path baseDirectory;
+    private final boolean streaming;
+
+    public MiniQuerySemanticValidator() {
+        this(null);
+    }
+
+    // Caminhos relativos do LOAD são resolvidos contra 'baseDirectory' (ex: o diretório do cliente
+    // no CompileServer); null usa o diretório de trabalho deste processo.
+    public MiniQuerySemanticValidator(Path baseDirectory) {
+        this(baseDirectory, false);
+    }
+
+    // Com 'streaming' (--ndjson), o script gerado lê e grava NDJSON, e as verificações de formato seguem esse modo.
+    public MiniQuerySemanticValidator(Path baseDirectory, boolean streaming) {
+        this.baseDirectory = baseDirectory;
+        this.streaming = streaming;
+    }
 
     public List<String> getErrors() {
         return Collections.unmodifiableList(errors);
@@ -17,14 +41,150 @@ public class MiniQuerySemanticValidator extends MiniQueryBaseProcessor {
     @Override
     public void enterLoadCommand(MiniQueryParser.LoadCommandContext ctx) {
         super.enterLoadCommand(ctx);
-        LoadCommand cmd = (LoadCommand) commands.get(commands.size() - 1);
+        checkLast(ctx);
+    }
+
+    @Override
+    public void enterFilterCommand(MiniQueryParser.FilterCommandContext ctx) {
+        super.enterFilterCommand(ctx);
+        checkLast(ctx);
+    }
+
+    @Override
+    public void enterGroupByCommand(MiniQueryParser.GroupByCommandContext ctx) {
+        super.enterGroupByCommand(ctx);
+        checkLast(ctx);
+    }
+
+    @Override
+    public void enterOrderByCommand(MiniQueryParser.OrderByCommandContext ctx) {
+        super.enterOrderByCommand(ctx);
+        checkLast(ctx);
+    }
+
+    @Override
+    public void enterLimitCommand(MiniQueryParser.LimitCommandContext ctx) {
+        super.enterLimitCommand(ctx);
+        checkLast(ctx);
+    }
+
+    @Override
+    public void enterSaveCommand(MiniQueryParser.SaveCommandContext ctx) {
+        super.enterSaveCommand(ctx);
+        checkLast(ctx);
+    }
+
+    private void checkLast(ParserRuleContext ctx) {
+        Command command = commands.get(commands.size() - 1);
+        report(ctx, check(command));
+        report(ctx, checkPosition(command, commands.subList(0, commands.size() - 1)));
+    }
+
+    // Arquivos consultados para montar o esquema; a saída do compilador depende deles.
+    public List<String> getDataSources() {
+        return Collections.unmodifiableList(dataSources);
+    }
+
+    // Esquema em vigor (o do último LOAD verificado).
+    public Map<String, String> getSchema() {
+        return Collections.unmodifiableMap(fieldTypes);
+    }
+
+    // Valida um comando isolado, no contexto do último LOAD verificado, e devolve as mensagens
+    // de erro sem o prefixo de linha. Permite revalidar só os comandos alterados (IncrementalCompiler).
+    public List<String> check(Command command) {
+        List<String> messages = new ArrayList<>();
+        if (command instanceof LoadCommand) {
+            checkLoad((LoadCommand) command, messages);
+        } else if (command instanceof FilterCondition) {
+            checkFilter((FilterCondition) command, messages);
+        } else if (command instanceof GroupByCommand) {
+            checkGroupBy((GroupByCommand) command, messages);
+        } else if (command instanceof LimitCommand) {
+            String count = ((LimitCommand) command).count;
+            if (!count.matches("\\d{1,18}")) {
+                messages.add("LIMIT deve ser um número inteiro: '" + count + "'");
+            }
+        } else if (command instanceof SaveCommand) {
+            SaveCommand save = (SaveCommand) command;
+            if (save.outputFile.trim().isEmpty()) {
+                messages.add("Nome do arquivo de saída não pode ser vazio");
+            }
+            if (!SaveCommand.FORMATS.contains(save.format)) {
+                messages.add("Formato de saída desconhecido: '" + save.format + "'. Use "
+                        + String.join(", ", SaveCommand.FORMATS));
+            } else if (streaming && save.explicitFormat && !save.format.equals("NDJSON")) {
+                messages.add("O modo --ndjson grava sempre NDJSON: FORMAT " + save.format + " não é suportado");
+            }
+        }
+        return messages;
+    }
 
+    // Regras que dependem dos comandos anteriores ('previous', na ordem do código). Ficam fora de
+    // check() porque o IncrementalCompiler guarda o resultado de check() por comando.
+    public static List<String> checkPosition(Command command, List<Command> previous) {
+        for (Command before : previous) {
+            if (command instanceof GroupByCommand && before instanceof GroupByCommand) {
+                return List.of("Apenas um GROUP BY é permitido por consulta (o anterior está na linha " + before.lineNumber + ")");
+            } else if (command instanceof GroupByCommand && (before instanceof OrderByCommand || before instanceof LimitCommand)) {
+                return List.of("GROUP BY depois do " + keyword(before) + " da linha " + before.lineNumber
+                        + " não é suportado: o GROUP BY deve vir antes do ORDER BY e do LIMIT");
+            } else if ((command instanceof FilterCondition || command instanceof SelectCommand) && before instanceof GroupByCommand) {
+                return List.of(keyword(command) + " depois do GROUP BY da linha " + before.lineNumber
+                        + " não é suportado: os registros agrupados só podem ser ordenados e limitados");
+            } else if (command instanceof OrderByCommand && before instanceof OrderByCommand) {
+                return List.of("Apenas um ORDER BY é permitido por consulta (o anterior está na linha " + before.lineNumber + ")");
+            } else if (command instanceof LimitCommand && before instanceof LimitCommand) {
+                return List.of("Apenas um LIMIT é permitido por consulta (o anterior está na linha " + before.lineNumber + ")");
+            } else if (command instanceof FilterCondition && before instanceof LimitCommand) {
+                return List.of("FILTER depois do LIMIT da linha " + before.lineNumber + " não é suportado: os FILTERs devem vir antes do LIMIT");
+            }
+        }
+        return List.of();
+    }
+
+    private static String keyword(Command command) {
+        return command instanceof OrderByCommand ? "ORDER BY" : command.toString().split(" ")[0];
+    }
+
+    // SUM, AVG, MIN e MAX só se aplicam a números; cada campo gerado precisa de um nome próprio.
+    private void checkGroupBy(GroupByCommand cmd, List<String> messages) {
+        Set<String> names = new HashSet<>();
+        names.add(cmd.keyName());
+        for (int i = 0; i < cmd.fields.size(); i++) {
+            String function = cmd.functions.get(i);
+            String type = typeOf(cmd.fields.get(i));
+            if (GroupByCommand.NUMERIC_FUNCTIONS.contains(function) && !type.equals("unknown") && !type.equals("number")) {
+                messages.add(String.format("%s só se aplica a campos numéricos: o campo '%s' é do tipo %s",
+                        function, cmd.fields.get(i), type));
+            }
+            if (!names.add(cmd.outputName(i))) {
+                messages.add("O GROUP BY gera o campo '" + cmd.outputName(i) + "' mais de uma vez");
+            }
+        }
+    }
+
+    private void checkLoad(LoadCommand cmd, List<String> messages) {
         if (cmd.filePath.trim().isEmpty()) {
-            addError(ctx, "Caminho do arquivo não pode ser vazio");
+            messages.add("Caminho do arquivo não pode ser vazio");
         }
 
-        // Atualizado o mapa para incluir os campos usados nos testes.
-        // Na prática, isso viria de um schema ou da leitura do próprio JSON.
+        // O esquema vem dos próprios dados: uma amostra do arquivo do LOAD, com cache por tamanho/data.
+        String source = baseDirectory == null ? cmd.filePath : baseDirectory.resolve(cmd.filePath).toString();
+        dataSources.add(source);
+        fieldTypes.clear();
+        if (Files.isRegularFile(Paths.get(source))) {
+            try {
+                fieldTypes.putAll(SchemaInference.schemaOf(source));
+                checkReadable(cmd, source);
+                return;
+            } catch (IOException | RuntimeException e) {
+                warnings.add("AVISO (Linha " + cmd.lineNumber + "): não foi possível inferir o esquema de '"
+                        + cmd.filePath + "': " + describe(e));
+            }
+        }
+
+        // Sem arquivo para amostrar, vale o esquema padrão dos exemplos e testes.
         fieldTypes.put(".idade", "number");
         fieldTypes.put(".nome", "string");
         fieldTypes.put(".email", "string"); // Adicionado para o teste 02
@@ -33,42 +193,66 @@ public class MiniQuerySemanticValidator extends MiniQueryBaseProcessor {
         fieldTypes.put(".valor", "number");
     }
 
-    @Override
-    public void enterFilterCommand(MiniQueryParser.FilterCommandContext ctx) {
-        super.enterFilterCommand(ctx);
+    // O script gerado só lê arrays JSON (NDJSON no --ndjson); a execução na JVM (--executar) lê todos os formatos.
+    private void checkReadable(LoadCommand cmd, String source) {
+        String format;
+        try {
+            format = SchemaInference.formatOf(Paths.get(source));
+        } catch (IOException e) {
+            return;
+        }
+        String readable = streaming ? "NDJSON" : "array JSON";
+        if (!format.equals(readable)) {
+            warnings.add("AVISO (Linha " + cmd.lineNumber + "): o script gerado só lê " + readable + ", mas '"
+                    + cmd.filePath + "' está no formato " + format + " (a execução na JVM, --executar, lê todos os formatos)");
+        }
+    }
 
-        FilterCondition cmd = (FilterCondition) commands.get(commands.size() - 1);
+    // Mensagem do Jackson sem o trecho da origem, que ocupa linhas extras no aviso.
+    private static String describe(Exception e) {
+        if (e instanceof JsonProcessingException) {
+            JsonProcessingException json = (JsonProcessingException) e;
+            return json.getOriginalMessage()
+                    + (json.getLocation() == null ? "" : " (linha " + json.getLocation().getLineNr() + ")");
+        }
+        return e.getMessage();
+    }
 
+    private void checkFilter(FilterCondition cmd, List<String> messages) {
         // Verificação de tipos
-        String leftType = fieldTypes.getOrDefault(cmd.jsonPath, "unknown");
-        String rightType = cmd.value.startsWith(".")
-                ? fieldTypes.getOrDefault(cmd.value, "unknown")
-                : (cmd.value.matches("-?\\d+(\\.\\d+)?") ? "number" : "string");
+        String leftType = typeOf(cmd.jsonPath);
+        String rightType = cmd.isPath()
+                ? typeOf(cmd.value)
+                : (cmd.isNumber() ? "number" : "string");
 
         if (!leftType.equals("unknown") && !leftType.equals(rightType)) {
-            addError(ctx, String.format(
+            messages.add(String.format(
                     "Tipo incompatível: o campo '%s' é do tipo %s, mas o valor '%s' é do tipo %s",
                     cmd.jsonPath, leftType, cmd.value, rightType
             ));
         }
 
         if ("string".equals(leftType) && !cmd.operator.equals("==") && !cmd.operator.equals("!=")) {
-            addError(ctx, "Operador '" + cmd.operator + "' inválido para strings. Use '==' ou '!='.");
+            messages.add("Operador '" + cmd.operator + "' inválido para strings. Use '==' ou '!='.");
         }
     }
 
-    @Override
-    public void enterSaveCommand(MiniQueryParser.SaveCommandContext ctx) {
-        super.enterSaveCommand(ctx);
-        SaveCommand cmd = (SaveCommand) commands.get(commands.size() - 1);
+    // Campos ausentes da amostra, sempre nulos ou com tipos misturados não são verificados.
+    private String typeOf(String jsonPath) {
+        String type = fieldTypes.getOrDefault(jsonPath, "unknown");
+        if (type.equals(SchemaInference.MIXED) || type.equals(SchemaInference.NULL)) {
+            return "unknown";
+        }
+        return type;
+    }
 
-        if (cmd.outputFile.trim().isEmpty()) {
-            addError(ctx, "Nome do arquivo de saída não pode ser vazio");
+    private void report(ParserRuleContext ctx, List<String> messages) {
+        for (String message : messages) {
+            errors.add(formatError(ctx.getStart().getLine(), message));
         }
     }
 
-    private void addError(ParserRuleContext ctx, String message) {
-        Token startToken = ctx.getStart();
-        errors.add("ERRO (Linha " + startToken.getLine() + "): " + message);
+    public static String formatError(int line, String message) {
+        return "ERRO (Linha " + line + "): " + message;
     }
 }
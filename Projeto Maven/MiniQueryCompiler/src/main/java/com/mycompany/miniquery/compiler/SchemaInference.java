@@ -0,0 +1,226 @@
+package com.mycompany.miniquery.compiler;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mycompany.miniquery.format.ColumnarFile;
+import com.mycompany.miniquery.format.ColumnarFileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Infere o esquema (caminho -> tipo) do arquivo usado no LOAD a partir de uma amostra
+// limitada de registros, lida em streaming com o JsonParser do Jackson. O resultado é
+// guardado em um arquivo auxiliar "<arquivo>.mqschema", identificado pelo tamanho e pela
+// data de modificação da origem, para que compilações seguintes não releiam os dados.
+public final class SchemaInference {
+
+    public static final String SIDECAR_SUFFIX = ".mqschema";
+    public static final int DEFAULT_SAMPLE_SIZE = Integer.getInteger("miniquery.schema.amostra", 1000);
+
+    // Tipos usados pelo MiniQuerySemanticValidator; "mixed" indica valores de tipos diferentes.
+    public static final String NUMBER = "number";
+    public static final String STRING = "string";
+    public static final String BOOLEAN = "boolean";
+    public static final String OBJECT = "object";
+    public static final String ARRAY = "array";
+    public static final String NULL = "null";
+    public static final String MIXED = "mixed";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonFactory FACTORY = MAPPER.getFactory();
+    private static final Map<String, Map<String, String>> MEMORY = new ConcurrentHashMap<>();
+
+    private SchemaInference() {
+    }
+
+    // Identifica a versão do arquivo de dados: caminho absoluto, tamanho e data de modificação.
+    public static String fingerprint(String filePath) {
+        Path path = Paths.get(filePath).toAbsolutePath().normalize();
+        try {
+            return path + "|" + Files.size(path) + "|" + Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return path + "|ausente";
+        }
+    }
+
+    // Esquema do arquivo, consultando antes o cache em memória e o arquivo auxiliar.
+    public static Map<String, String> schemaOf(String filePath) throws IOException {
+        return schemaOf(filePath, DEFAULT_SAMPLE_SIZE);
+    }
+
+    public static Map<String, String> schemaOf(String filePath, int sampleSize) throws IOException {
+        String fingerprint = fingerprint(filePath) + "|" + sampleSize;
+        Map<String, String> cached = MEMORY.get(fingerprint);
+        if (cached != null) {
+            return cached;
+        }
+
+        Path source = Paths.get(filePath);
+        Path sidecar = Paths.get(filePath + SIDECAR_SUFFIX);
+        Map<String, String> schema = readSidecar(sidecar, fingerprint);
+        if (schema == null) {
+            schema = infer(source, sampleSize);
+            writeSidecar(sidecar, fingerprint, schema);
+        }
+        schema = Collections.unmodifiableMap(schema);
+        if (MEMORY.size() >= 256) {
+            MEMORY.clear();
+        }
+        MEMORY.put(fingerprint, schema);
+        return schema;
+    }
+
+    // Formato do arquivo de dados pelo conteúdo: "colunar", "array JSON" ou "NDJSON" (registros soltos).
+    public static String formatOf(Path source) throws IOException {
+        if (ColumnarFile.isColumnar(source)) {
+            return "colunar";
+        }
+        try (JsonParser parser = FACTORY.createParser(source.toFile())) {
+            return parser.nextToken() == JsonToken.START_ARRAY ? "array JSON" : "NDJSON";
+        }
+    }
+
+    // Lê até 'sampleSize' registros de um array JSON (ou de NDJSON, ou do formato colunar) e acumula
+    // o tipo de cada caminho.
+    public static Map<String, String> infer(Path source, int sampleSize) throws IOException {
+        Map<String, String> schema = new TreeMap<>();
+        if (ColumnarFile.isColumnar(source)) {
+            inferColumnar(source, sampleSize, schema);
+            return schema;
+        }
+        try (JsonParser parser = FACTORY.createParser(source.toFile())) {
+            JsonToken first = parser.nextToken();
+            boolean array = first == JsonToken.START_ARRAY;
+            JsonToken token = array ? parser.nextToken() : first;
+
+            int records = 0;
+            while (token != null && token != JsonToken.END_ARRAY && records < sampleSize) {
+                if (token == JsonToken.START_OBJECT) {
+                    walkObject(parser, "", schema);
+                } else {
+                    parser.skipChildren();
+                }
+                records++;
+                token = parser.nextToken();
+            }
+        }
+        return schema;
+    }
+
+    // No formato colunar os registros são lidos bloco a bloco e percorridos como tokens.
+    private static void inferColumnar(Path source, int sampleSize, Map<String, String> schema) throws IOException {
+        int records = 0;
+        try (ColumnarFileReader reader = ColumnarFileReader.open(source)) {
+            for (ColumnarFile.Block block : reader.blocks()) {
+                ColumnarFileReader.Rows rows = reader.read(block, null);
+                for (int row = 0; row < rows.size(); row++) {
+                    if (records++ == sampleSize) {
+                        return;
+                    }
+                    JsonNode record = rows.record(row);
+                    if (record.isObject()) {
+                        try (JsonParser parser = record.traverse(MAPPER)) {
+                            parser.nextToken();
+                            walkObject(parser, "", schema);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Percorre um objeto token a token (sem montar a árvore), registrando ".a", ".a.b", ...
+    private static void walkObject(JsonParser parser, String prefix, Map<String, String> schema) throws IOException {
+        Deque<String> prefixes = new ArrayDeque<>();
+        prefixes.push(prefix);
+        JsonToken token;
+        while (!prefixes.isEmpty() && (token = parser.nextToken()) != null) {
+            if (token == JsonToken.END_OBJECT) {
+                prefixes.pop();
+                continue;
+            }
+            String path = prefixes.peek() + "." + parser.currentName();
+            JsonToken value = parser.nextToken();
+            merge(schema, path, typeOf(value));
+            if (value == JsonToken.START_OBJECT) {
+                prefixes.push(path);
+            } else if (value == JsonToken.START_ARRAY) {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static String typeOf(JsonToken token) {
+        switch (token) {
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return NUMBER;
+            case VALUE_STRING:
+                return STRING;
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                return BOOLEAN;
+            case START_OBJECT:
+                return OBJECT;
+            case START_ARRAY:
+                return ARRAY;
+            default:
+                return NULL;
+        }
+    }
+
+    // Valores null não mudam o tipo de um campo já conhecido; tipos diferentes viram "mixed".
+    private static void merge(Map<String, String> schema, String path, String type) {
+        String previous = schema.get(path);
+        if (previous == null || previous.equals(NULL)) {
+            schema.put(path, type);
+        } else if (!type.equals(NULL) && !previous.equals(type)) {
+            schema.put(path, MIXED);
+        }
+    }
+
+    private static Map<String, String> readSidecar(Path sidecar, String fingerprint) {
+        if (!Files.isRegularFile(sidecar)) {
+            return null;
+        }
+        try {
+            ObjectNode stored = (ObjectNode) MAPPER.readTree(sidecar.toFile());
+            if (!fingerprint.equals(stored.path("origem").asText())) {
+                return null;
+            }
+            Map<String, String> schema = new TreeMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = stored.path("campos").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                schema.put(field.getKey(), field.getValue().asText());
+            }
+            return schema;
+        } catch (IOException | ClassCastException e) {
+            return null;
+        }
+    }
+
+    private static void writeSidecar(Path sidecar, String fingerprint, Map<String, String> schema) {
+        ObjectNode stored = MAPPER.createObjectNode();
+        stored.put("origem", fingerprint);
+        ObjectNode fields = stored.putObject("campos");
+        schema.forEach(fields::put);
+        try {
+            MAPPER.writerWithDefaultPrettyPrinter().writeValue(sidecar.toFile(), stored);
+        } catch (IOException e) {
+            // Diretório somente leitura: o esquema continua disponível no cache em memória.
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.mycompany.miniquery.format;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Formato colunar binário gravado por SAVE AS "x" FORMAT COLUMNAR e lido de volta pelo LOAD.
+//
+//   "MQCOL1" | blocos de colunas | rodapé (JSON UTF-8) | tamanho do rodapé (int) | "MQCOL1"
+//
+// Os registros são gravados em blocos de até ColumnarFileWriter.BLOCK_ROWS linhas. Em cada bloco,
+// cada campo de primeiro nível vira uma coluna tipada (long, double, number, string, bool, object,
+// json ou nulo); strings usam um dicionário por bloco e objetos guardam uma coluna aninhada por
+// campo. Cada coluna guarda primeiro um byte de estado por linha (ausente, null ou valor) e depois
+// só os valores presentes (na coluna json, um valor JSON por linha de texto), opcionalmente
+// comprimida com Deflate.
+// Um bloco cujos registros não cabem em colunas (não são objetos ou têm os campos em ordens
+// incompatíveis) é gravado como uma única coluna json com os registros inteiros ("linhas").
+// O rodapé descreve cada bloco: posição e tamanho de cada coluna, contagens de ausentes/nulos e
+// mínimo/máximo, o que permite ler só as colunas usadas e pular blocos que nenhum FILTER aceita.
+public final class ColumnarFile {
+
+    static final byte[] MAGIC = "MQCOL1".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+
+    // Estado de uma linha na coluna.
+    static final byte ABSENT = 0;
+    static final byte NULL = 1;
+    static final byte VALUE = 2;
+
+    public static final String LONG = "long";
+    public static final String DOUBLE = "double";
+    public static final String NUMBER = "number"; // inteiros e reais misturados
+    public static final String STRING = "string";
+    public static final String BOOL = "bool";
+    public static final String OBJECT = "object";
+    public static final String JSON = "json";
+    public static final String NULLS = "nulo"; // só ausentes e nulls
+
+    private ColumnarFile() {
+    }
+
+    // Verdadeiro quando o arquivo começa com a assinatura do formato colunar.
+    public static boolean isColumnar(Path path) {
+        byte[] head = new byte[MAGIC.length];
+        try (InputStream in = Files.newInputStream(path)) {
+            return in.readNBytes(head, 0, head.length) == head.length && Arrays.equals(head, MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Uma coluna de um bloco, como descrita no rodapé.
+    public static final class Chunk {
+        public final String name;
+        public final String type;
+        final long position;
+        final int size;
+        final int rawSize;
+        final boolean compressed;
+        public final int absent;
+        public final int nulls;
+        public final JsonNode min; // null quando o tipo não tem ordem ou não há valores
+        public final JsonNode max;
+
+        Chunk(String name, String type, long position, int size, int rawSize, boolean compressed,
+              int absent, int nulls, JsonNode min, JsonNode max) {
+            this.name = name;
+            this.type = type;
+            this.position = position;
+            this.size = size;
+            this.rawSize = rawSize;
+            this.compressed = compressed;
+            this.absent = absent;
+            this.nulls = nulls;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    // Um bloco de linhas: colunas na ordem dos campos ou, sem colunas, os registros inteiros.
+    public static final class Block {
+        public final int rows;
+        private final Map<String, Chunk> columns;
+        final Chunk records;
+
+        Block(int rows, List<Chunk> columns, Chunk records) {
+            this.rows = rows;
+            Map<String, Chunk> byName = new LinkedHashMap<>();
+            for (Chunk chunk : columns) {
+                byName.put(chunk.name, chunk);
+            }
+            this.columns = Collections.unmodifiableMap(byName);
+            this.records = records;
+        }
+
+        // Falso quando o bloco guarda registros inteiros e não há estatísticas por campo.
+        public boolean hasColumns() {
+            return records == null;
+        }
+
+        // Coluna do campo de primeiro nível 'name'; null quando nenhum registro do bloco o tem.
+        public Chunk column(String name) {
+            return columns.get(name);
+        }
+
+        public Map<String, Chunk> columns() {
+            return columns;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.mycompany.miniquery.format;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+// Lê arquivos no formato de ColumnarFile: o rodapé é carregado na abertura e cada bloco é
+// decodificado sob demanda, lendo do disco só as colunas pedidas.
+public final class ColumnarFileReader implements Closeable {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Path path;
+    private final FileChannel channel;
+    private final long rows;
+    private final List<ColumnarFile.Block> blocks;
+    private final Inflater inflater = new Inflater();
+
+    private ColumnarFileReader(Path path, FileChannel channel) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        long size = channel.size();
+        int magic = ColumnarFile.MAGIC.length;
+        if (size < 2L * magic + 4 || !Arrays.equals(read(0, magic), ColumnarFile.MAGIC)
+                || !Arrays.equals(read(size - magic, magic), ColumnarFile.MAGIC)) {
+            throw corrupted("assinatura ausente");
+        }
+        int footerSize = ByteBuffer.wrap(read(size - magic - 4, 4)).getInt();
+        if (footerSize < 0 || footerSize > size - 2L * magic - 4) {
+            throw corrupted("rodapé inválido");
+        }
+        JsonNode footer = mapper.readTree(read(size - magic - 4 - footerSize, footerSize));
+        if (footer.path("versao").asInt() != ColumnarFile.VERSION) {
+            throw new IOException("O arquivo '" + path + "' usa a versão " + footer.path("versao").asText()
+                    + " do formato colunar; esta versão lê a " + ColumnarFile.VERSION);
+        }
+        this.rows = footer.path("registros").asLong();
+        List<ColumnarFile.Block> blocks = new ArrayList<>();
+        for (JsonNode block : footer.path("blocos")) {
+            List<ColumnarFile.Chunk> columns = new ArrayList<>();
+            for (JsonNode column : block.path("colunas")) {
+                columns.add(chunk(column));
+            }
+            JsonNode records = block.get("linhas");
+            blocks.add(new ColumnarFile.Block(block.path("registros").asInt(), columns,
+                    records == null ? null : chunk(records)));
+        }
+        this.blocks = Collections.unmodifiableList(blocks);
+    }
+
+    public static ColumnarFileReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new ColumnarFileReader(path, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long rowCount() {
+        return rows;
+    }
+
+    public List<ColumnarFile.Block> blocks() {
+        return blocks;
+    }
+
+    // Registros do bloco; com 'fields', só esses campos de primeiro nível são lidos (null = todos).
+    public Rows read(ColumnarFile.Block block, Set<String> fields) throws IOException {
+        if (!block.hasColumns()) {
+            JsonNode[] records = decode(block.records, block.rows);
+            for (JsonNode record : records) {
+                if (record == null) {
+                    throw corrupted("registro ausente em um bloco de linhas");
+                }
+            }
+            return new Rows(block.rows, null, new JsonNode[][] {records});
+        }
+        List<String> names = new ArrayList<>();
+        List<JsonNode[]> columns = new ArrayList<>();
+        for (ColumnarFile.Chunk chunk : block.columns().values()) {
+            if (fields == null || fields.contains(chunk.name)) {
+                names.add(chunk.name);
+                columns.add(decode(chunk, block.rows));
+            }
+        }
+        return new Rows(block.rows, names.toArray(new String[0]), columns.toArray(new JsonNode[0][]));
+    }
+
+    // Linhas de um bloco já decodificado. Os objetos são montados um a um em record(), para que o
+    // bloco inteiro não precise existir na memória como registros.
+    public static final class Rows {
+        private final int size;
+        private final String[] names; // null: bloco de registros inteiros
+        private final JsonNode[][] columns;
+
+        Rows(int size, String[] names, JsonNode[][] columns) {
+            this.size = size;
+            this.names = names;
+            this.columns = columns;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        // Registro da linha, com os campos na ordem das colunas (nos blocos de colunas, cada chamada
+        // monta um objeto novo).
+        public JsonNode record(int row) {
+            if (names == null) {
+                return columns[0][row];
+            }
+            ObjectNode record = JsonNodeFactory.instance.objectNode();
+            for (int i = 0; i < names.length; i++) {
+                JsonNode value = columns[i][row];
+                if (value != null) {
+                    record.set(names[i], value);
+                }
+            }
+            return record;
+        }
+    }
+
+    // Valores da coluna por linha; null = campo ausente.
+    private JsonNode[] decode(ColumnarFile.Chunk chunk, int rowCount) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(load(chunk));
+        try {
+            return decode(chunk.type, data, rowCount);
+        } catch (RuntimeException e) {
+            throw corrupted("coluna '" + chunk.name + "' inválida (" + e + ")");
+        }
+    }
+
+    private JsonNode[] decode(String type, ByteBuffer data, int rowCount) throws IOException {
+        JsonNode[] values = new JsonNode[rowCount];
+        byte[] states = new byte[rowCount];
+        data.get(states);
+        int present = 0;
+        for (byte state : states) {
+            present += state == ColumnarFile.VALUE ? 1 : 0;
+        }
+        JsonNode[] decoded = new JsonNode[present];
+        switch (type) {
+            case ColumnarFile.NULLS:
+                break;
+            case ColumnarFile.LONG:
+                for (int i = 0; i < present; i++) {
+                    decoded[i] = longNode(data.getLong());
+                }
+                break;
+            case ColumnarFile.DOUBLE:
+                for (int i = 0; i < present; i++) {
+                    decoded[i] = DoubleNode.valueOf(data.getDouble());
+                }
+                break;
+            case ColumnarFile.NUMBER:
+                for (int i = 0; i < present; i++) {
+                    decoded[i] = data.get() != 0 ? longNode(data.getLong()) : DoubleNode.valueOf(data.getDouble());
+                }
+                break;
+            case ColumnarFile.BOOL:
+                for (int i = 0; i < present; i++) {
+                    decoded[i] = BooleanNode.valueOf(data.get() != 0);
+                }
+                break;
+            case ColumnarFile.STRING: {
+                TextNode[] dictionary = new TextNode[data.getInt()];
+                for (int i = 0; i < dictionary.length; i++) {
+                    dictionary[i] = TextNode.valueOf(readText(data));
+                }
+                int width = data.get();
+                for (int i = 0; i < present; i++) {
+                    decoded[i] = dictionary[width == 1 ? data.get() & 0xff : width == 2 ? data.getShort() & 0xffff : data.getInt()];
+                }
+                break;
+            }
+            case ColumnarFile.OBJECT: {
+                ObjectNode[] objects = new ObjectNode[present];
+                for (int i = 0; i < present; i++) {
+                    objects[i] = JsonNodeFactory.instance.objectNode();
+                }
+                int fields = data.getInt();
+                for (int f = 0; f < fields; f++) {
+                    String name = readText(data);
+                    JsonNode[] children = decode(readText(data), data, present);
+                    for (int i = 0; i < present; i++) {
+                        if (children[i] != null) {
+                            objects[i].set(name, children[i]);
+                        }
+                    }
+                }
+                decoded = objects;
+                break;
+            }
+            case ColumnarFile.JSON: {
+                int size = data.getInt();
+                try (JsonParser parser = mapper.getFactory().createParser(data.array(), data.position(), size)) {
+                    for (int i = 0; i < present; i++) {
+                        parser.nextToken();
+                        decoded[i] = mapper.readTree(parser);
+                    }
+                }
+                data.position(data.position() + size);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("tipo de coluna desconhecido: " + type);
+        }
+        for (int row = 0, next = 0; row < rowCount; row++) {
+            if (states[row] == ColumnarFile.VALUE) {
+                values[row] = decoded[next++];
+            } else if (states[row] == ColumnarFile.NULL) {
+                values[row] = NullNode.getInstance();
+            }
+        }
+        return values;
+    }
+
+    // Como o readTree do Jackson: IntNode quando o valor cabe em um int.
+    private static JsonNode longNode(long v) {
+        return v == (int) v ? IntNode.valueOf((int) v) : LongNode.valueOf(v);
+    }
+
+    private static String readText(ByteBuffer data) {
+        byte[] bytes = new byte[data.getInt()];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Bytes da coluna já descomprimidos.
+    private byte[] load(ColumnarFile.Chunk chunk) throws IOException {
+        byte[] stored = read(chunk.position, chunk.size);
+        if (!chunk.compressed) {
+            return stored;
+        }
+        byte[] raw = new byte[chunk.rawSize];
+        inflater.reset();
+        inflater.setInput(stored);
+        try {
+            int n = 0;
+            while (n < raw.length && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, n, raw.length - n);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += inflated;
+            }
+            if (n != raw.length) {
+                throw corrupted("coluna '" + chunk.name + "' truncada");
+            }
+        } catch (DataFormatException e) {
+            throw corrupted("coluna '" + chunk.name + "' com compressão inválida");
+        }
+        return raw;
+    }
+
+    private byte[] read(long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Fim inesperado do arquivo '" + path + "'");
+            }
+        }
+        return buffer.array();
+    }
+
+    private static ColumnarFile.Chunk chunk(JsonNode column) {
+        return new ColumnarFile.Chunk(column.path("nome").asText(), column.path("tipo").asText(),
+                column.path("posicao").asLong(), column.path("tamanho").asInt(), column.path("bruto").asInt(),
+                column.path("compressao").asBoolean(), column.path("ausentes").asInt(), column.path("nulos").asInt(),
+                column.get("min"), column.get("max"));
+    }
+
+    private IOException corrupted(String reason) {
+        return new IOException("O arquivo '" + path + "' não é um arquivo colunar válido: " + reason);
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+}
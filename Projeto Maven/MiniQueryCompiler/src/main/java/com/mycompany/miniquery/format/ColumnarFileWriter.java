@@ -0,0 +1,418 @@
+package com.mycompany.miniquery.format;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+// Grava registros no formato de ColumnarFile. Os registros de um bloco ficam na memória até o
+// bloco ser gravado; o rodapé é escrito no close().
+public final class ColumnarFileWriter implements Closeable {
+
+    public static final int BLOCK_ROWS = Integer.getInteger("miniquery.colunar.bloco", 4096);
+    public static final boolean COMPRESS = Boolean.parseBoolean(System.getProperty("miniquery.colunar.compressao", "true"));
+    // Strings maiores que isso não entram no mínimo/máximo do rodapé.
+    private static final int MAX_STAT_LENGTH = 256;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final DataOutputStream out;
+    private final boolean closeTarget;
+    private final int blockRows;
+    private final boolean compress;
+    private final List<JsonNode> pending = new ArrayList<>();
+    private final ArrayNode blocks = mapper.createArrayNode();
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private long position;
+    private long rows;
+    private boolean closed;
+
+    public ColumnarFileWriter(OutputStream out, boolean closeTarget) throws IOException {
+        this(out, closeTarget, BLOCK_ROWS, COMPRESS);
+    }
+
+    public ColumnarFileWriter(OutputStream out, boolean closeTarget, int blockRows, boolean compress) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.closeTarget = closeTarget;
+        this.blockRows = Math.max(1, blockRows);
+        this.compress = compress;
+        this.out.write(ColumnarFile.MAGIC);
+        this.position = ColumnarFile.MAGIC.length;
+    }
+
+    public void write(JsonNode record) throws IOException {
+        pending.add(record);
+        if (pending.size() == blockRows) {
+            writeBlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeBlock();
+            ObjectNode footer = mapper.createObjectNode();
+            footer.put("versao", ColumnarFile.VERSION);
+            footer.put("registros", rows);
+            footer.set("blocos", blocks);
+            byte[] bytes = mapper.writeValueAsBytes(footer);
+            out.write(bytes);
+            out.writeInt(bytes.length);
+            out.write(ColumnarFile.MAGIC);
+            out.flush();
+        } finally {
+            deflater.end();
+            if (closeTarget) {
+                out.close();
+            }
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        ObjectNode block = blocks.addObject();
+        block.put("registros", pending.size());
+        List<String> names = columnOrder(pending);
+        if (names == null) {
+            block.set("linhas", writeChunk("", pending));
+        } else {
+            ArrayNode columns = block.putArray("colunas");
+            List<JsonNode> values = new ArrayList<>(pending.size());
+            for (String name : names) {
+                values.clear();
+                for (JsonNode record : pending) {
+                    values.add(record.get(name));
+                }
+                columns.add(writeChunk(name, values));
+            }
+        }
+        rows += pending.size();
+        pending.clear();
+    }
+
+    // Ordem das colunas compatível com a ordem dos campos de todos os registros (para que a leitura
+    // devolva os objetos com os campos na mesma ordem); null se o bloco não cabe em colunas.
+    private static List<String> columnOrder(List<JsonNode> records) {
+        Map<String, Integer> firstSeen = new LinkedHashMap<>();
+        Map<String, Set<String>> next = new HashMap<>();
+        List<String> previous = null;
+        List<String> current = new ArrayList<>();
+        for (JsonNode record : records) {
+            if (!record.isObject()) {
+                return null;
+            }
+            current.clear();
+            record.fieldNames().forEachRemaining(current::add);
+            if (current.equals(previous)) {
+                continue;
+            }
+            for (int i = 0; i < current.size(); i++) {
+                firstSeen.putIfAbsent(current.get(i), firstSeen.size());
+                if (i > 0) {
+                    next.computeIfAbsent(current.get(i - 1), k -> new HashSet<>()).add(current.get(i));
+                }
+            }
+            previous = new ArrayList<>(current);
+        }
+
+        // Ordenação topológica das arestas "a vem antes de b"; entre candidatos, vale a primeira aparição.
+        Map<String, Integer> incoming = new HashMap<>();
+        for (String name : firstSeen.keySet()) {
+            incoming.put(name, 0);
+        }
+        for (Set<String> targets : next.values()) {
+            for (String target : targets) {
+                incoming.merge(target, 1, Integer::sum);
+            }
+        }
+        PriorityQueue<String> ready = new PriorityQueue<>((a, b) -> firstSeen.get(a) - firstSeen.get(b));
+        incoming.forEach((name, count) -> {
+            if (count == 0) {
+                ready.add(name);
+            }
+        });
+        List<String> order = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            String name = ready.poll();
+            order.add(name);
+            for (String target : next.getOrDefault(name, Set.of())) {
+                if (incoming.merge(target, -1, Integer::sum) == 0) {
+                    ready.add(target);
+                }
+            }
+        }
+        return order.size() == firstSeen.size() ? order : null;
+    }
+
+    // Grava uma coluna (null na lista = campo ausente) e devolve a sua descrição para o rodapé.
+    private ObjectNode writeChunk(String name, List<JsonNode> values) throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(values.size() * 9);
+        DataOutputStream data = new DataOutputStream(raw);
+        Stats stats = new Stats();
+        String type = typeOf(values);
+        encode(values, type, data, stats);
+        data.flush();
+
+        byte[] bytes = raw.toByteArray();
+        byte[] stored = compress ? deflate(bytes) : null;
+        boolean compressed = stored != null && stored.length < bytes.length;
+        if (!compressed) {
+            stored = bytes;
+        }
+        ObjectNode chunk = mapper.createObjectNode();
+        chunk.put("nome", name);
+        chunk.put("tipo", type);
+        chunk.put("posicao", position);
+        chunk.put("tamanho", stored.length);
+        chunk.put("bruto", bytes.length);
+        chunk.put("compressao", compressed);
+        chunk.put("ausentes", stats.absent);
+        chunk.put("nulos", stats.nulls);
+        if (stats.min != null) {
+            chunk.set("min", stats.min);
+            chunk.set("max", stats.max);
+        }
+        out.write(stored);
+        position += stored.length;
+        return chunk;
+    }
+
+    // Contagens e mínimo/máximo de uma coluna de primeiro nível, para o rodapé.
+    private static final class Stats {
+        int absent;
+        int nulls;
+        JsonNode min;
+        JsonNode max;
+    }
+
+    // Grava os estados e os valores presentes; 'stats' é null nas colunas de um objeto aninhado.
+    private void encode(List<JsonNode> values, String type, DataOutputStream data, Stats stats) throws IOException {
+        for (JsonNode value : values) {
+            byte state = value == null ? ColumnarFile.ABSENT : value.isNull() ? ColumnarFile.NULL : ColumnarFile.VALUE;
+            if (stats != null) {
+                stats.absent += state == ColumnarFile.ABSENT ? 1 : 0;
+                stats.nulls += state == ColumnarFile.NULL ? 1 : 0;
+            }
+            data.writeByte(state);
+        }
+
+        List<JsonNode> present = new ArrayList<>(values.size());
+        for (JsonNode value : values) {
+            if (isValue(value)) {
+                present.add(value);
+            }
+        }
+        JsonNode min = null;
+        JsonNode max = null;
+        switch (type) {
+            case ColumnarFile.LONG: {
+                long low = Long.MAX_VALUE;
+                long high = Long.MIN_VALUE;
+                for (JsonNode value : present) {
+                    long v = value.longValue();
+                    data.writeLong(v);
+                    low = Math.min(low, v);
+                    high = Math.max(high, v);
+                }
+                min = LongNode.valueOf(low);
+                max = LongNode.valueOf(high);
+                break;
+            }
+            case ColumnarFile.DOUBLE:
+            case ColumnarFile.NUMBER: {
+                // Na coluna number, cada valor leva um byte dizendo se era inteiro (1) ou real (0).
+                double low = Double.POSITIVE_INFINITY;
+                double high = Double.NEGATIVE_INFINITY;
+                boolean tagged = type.equals(ColumnarFile.NUMBER);
+                for (JsonNode value : present) {
+                    double v = value.doubleValue();
+                    if (tagged) {
+                        data.writeBoolean(!value.isDouble());
+                        if (!value.isDouble()) {
+                            data.writeLong(value.longValue());
+                        } else {
+                            data.writeDouble(v);
+                        }
+                    } else {
+                        data.writeDouble(v);
+                    }
+                    low = Math.min(low, v);
+                    high = Math.max(high, v);
+                }
+                min = DoubleNode.valueOf(low);
+                max = DoubleNode.valueOf(high);
+                break;
+            }
+            case ColumnarFile.STRING: {
+                Map<String, Integer> dictionary = new LinkedHashMap<>();
+                int[] codes = new int[present.size()];
+                String low = null;
+                String high = null;
+                for (int i = 0; i < codes.length; i++) {
+                    String text = present.get(i).textValue();
+                    Integer code = dictionary.putIfAbsent(text, dictionary.size());
+                    codes[i] = code == null ? dictionary.size() - 1 : code;
+                    if (code == null) {
+                        low = low == null || text.compareTo(low) < 0 ? text : low;
+                        high = high == null || text.compareTo(high) > 0 ? text : high;
+                    }
+                }
+                data.writeInt(dictionary.size());
+                for (String text : dictionary.keySet()) {
+                    writeText(data, text);
+                }
+                // Códigos com 1, 2 ou 4 bytes, conforme o tamanho do dicionário.
+                int width = dictionary.size() <= 256 ? 1 : dictionary.size() <= 65536 ? 2 : 4;
+                data.writeByte(width);
+                for (int code : codes) {
+                    if (width == 1) {
+                        data.writeByte(code);
+                    } else if (width == 2) {
+                        data.writeShort(code);
+                    } else {
+                        data.writeInt(code);
+                    }
+                }
+                if (low.length() <= MAX_STAT_LENGTH && high.length() <= MAX_STAT_LENGTH) {
+                    min = TextNode.valueOf(low);
+                    max = TextNode.valueOf(high);
+                }
+                break;
+            }
+            case ColumnarFile.BOOL:
+                for (JsonNode value : present) {
+                    data.writeBoolean(value.booleanValue());
+                }
+                break;
+            case ColumnarFile.OBJECT: {
+                // Cada campo dos objetos vira uma coluna aninhada, com uma linha por objeto presente.
+                List<String> names = columnOrder(present);
+                data.writeInt(names.size());
+                List<JsonNode> children = new ArrayList<>(present.size());
+                for (String name : names) {
+                    children.clear();
+                    for (JsonNode value : present) {
+                        children.add(value.get(name));
+                    }
+                    String childType = typeOf(children);
+                    writeText(data, name);
+                    writeText(data, childType);
+                    encode(children, childType, data, null);
+                }
+                break;
+            }
+            case ColumnarFile.JSON: {
+                // Um valor por linha de texto, lido depois com um único parser para a coluna inteira.
+                ByteArrayOutputStream text = new ByteArrayOutputStream();
+                for (JsonNode value : present) {
+                    text.write(mapper.writeValueAsBytes(value));
+                    text.write('\n');
+                }
+                data.writeInt(text.size());
+                text.writeTo(data);
+                break;
+            }
+            default:
+                break;
+        }
+        if (stats != null) {
+            stats.min = min;
+            stats.max = max;
+        }
+    }
+
+    private static void writeText(DataOutputStream data, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    // Tipo da coluna: o tipo comum a todos os valores presentes. Inteiros e reais juntos formam uma
+    // coluna number, que guarda qual era cada um para que 1 e 1.0 voltem como estavam; objetos com
+    // campos em ordens compatíveis formam uma coluna object; o resto vira json.
+    private static String typeOf(List<JsonNode> values) {
+        String type = ColumnarFile.NULLS;
+        boolean objects = false;
+        for (JsonNode value : values) {
+            if (!isValue(value)) {
+                continue;
+            }
+            String valueType;
+            if (value.isInt() || value.isLong()) {
+                valueType = ColumnarFile.LONG;
+            } else if (value.isDouble()) {
+                valueType = ColumnarFile.DOUBLE;
+            } else if (value.isTextual()) {
+                valueType = ColumnarFile.STRING;
+            } else if (value.isBoolean()) {
+                valueType = ColumnarFile.BOOL;
+            } else if (value.isObject()) {
+                valueType = ColumnarFile.OBJECT;
+                objects = true;
+            } else {
+                return ColumnarFile.JSON;
+            }
+            if (type.equals(ColumnarFile.NULLS)) {
+                type = valueType;
+            } else if (isNumber(type) && isNumber(valueType)) {
+                type = type.equals(valueType) ? type : ColumnarFile.NUMBER;
+            } else if (!type.equals(valueType)) {
+                return ColumnarFile.JSON;
+            }
+        }
+        if (objects) {
+            List<JsonNode> present = new ArrayList<>(values.size());
+            for (JsonNode value : values) {
+                if (isValue(value)) {
+                    present.add(value);
+                }
+            }
+            return columnOrder(present) != null ? type : ColumnarFile.JSON;
+        }
+        return type;
+    }
+
+    private static boolean isNumber(String type) {
+        return type.equals(ColumnarFile.LONG) || type.equals(ColumnarFile.DOUBLE) || type.equals(ColumnarFile.NUMBER);
+    }
+
+    private static boolean isValue(JsonNode value) {
+        return value != null && !value.isNull();
+    }
+
+    private byte[] deflate(byte[] bytes) {
+        deflater.reset();
+        deflater.setInput(bytes);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 2 + 64);
+        byte[] buffer = new byte[1 << 16];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            compressed.write(buffer, 0, n);
+        }
+        return compressed.toByteArray();
+    }
+}
@@ -0,0 +1,460 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Valores de um caminho JSON em todas as linhas do ColumnarDataset. Cada subclasse guarda um tipo
+// em arrays primitivos e os filtros compactam o vetor de seleção (sel[0..count)) em laços sem
+// JsonNode, com a mesma semântica de Comparisons: '==' exige o tipo da constante, ausente nunca
+// passa em '<', '<=', '>' e '>=', e null vale 0 nessas comparações, como no JS.
+abstract class Column {
+
+    // Linhas em que o campo existe com valor JSON null (diferente de ausente na projeção).
+    final long[] nulls;
+
+    Column(long[] nulls) {
+        this.nulls = nulls;
+    }
+
+    // O campo existe e tem o tipo da coluna.
+    abstract boolean hasValue(int row);
+
+    abstract JsonNode valueNode(int row);
+
+    abstract void writeValue(JsonGenerator generator, int row) throws IOException;
+
+    abstract int filterNumber(Operator op, double right, int[] sel, int count);
+
+    abstract int filterString(Operator op, String right, int[] sel, int count);
+
+    boolean isNumeric() {
+        return false;
+    }
+
+    double doubleAt(int row) {
+        throw new UnsupportedOperationException();
+    }
+
+    boolean exists(int row) {
+        return hasValue(row) || bit(nulls, row);
+    }
+
+    // Mesmo valor que JsonPaths.resolve devolveria: null quando o campo não existe.
+    JsonNode node(int row) {
+        if (hasValue(row)) {
+            return valueNode(row);
+        }
+        return bit(nulls, row) ? NullNode.instance : null;
+    }
+
+    void write(JsonGenerator generator, int row) throws IOException {
+        if (hasValue(row)) {
+            writeValue(generator, row);
+        } else {
+            generator.writeNull();
+        }
+    }
+
+    static long[] bitmap(int size) {
+        return new long[(size + 63) >>> 6];
+    }
+
+    static boolean bit(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    static void setBit(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    // Coluna sem nenhum valor do tipo comparado: todas as linhas se comportam como ausentes.
+    static int onlyNotEqual(Operator op, int count) {
+        return op == Operator.NE ? count : 0;
+    }
+
+    // Linhas null passam em 'null op right' (ex: null <= 2.5 é true no JS).
+    boolean nullsMatch(Operator op, double right) {
+        if (op == Operator.EQ || op == Operator.NE || !op.matches(0, right)) {
+            return false;
+        }
+        for (long word : nulls) {
+            if (word != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Avaliação linha a linha com Comparisons, para os casos que o laço tipado não cobre; 'text'
+    // null compara com o número.
+    int filterNodes(Operator op, double number, String text, int[] sel, int count) {
+        int out = 0;
+        for (int k = 0; k < count; k++) {
+            int r = sel[k];
+            sel[out] = r;
+            JsonNode value = node(r);
+            out += (text == null ? Comparisons.compareNumber(value, op, number)
+                    : Comparisons.compareString(value, op, text)) ? 1 : 0;
+        }
+        return out;
+    }
+
+    // Coluna numérica comparada com uma string: '===' nunca vale e os demais operadores comparam
+    // com Number(string), NaN para texto comum.
+    int filterNumbersByString(Operator op, String right, int[] sel, int count) {
+        if (op == Operator.EQ || op == Operator.NE) {
+            return onlyNotEqual(op, count);
+        }
+        return filterNumber(op, Comparisons.toNumber(right), sel, count);
+    }
+
+    // Inteiros que cabem em long; IntNode e LongNode são gravados com o mesmo texto.
+    static final class LongColumn extends Column {
+
+        private final long[] values;
+        private final long[] present;
+
+        LongColumn(long[] values, long[] present, long[] nulls) {
+            super(nulls);
+            this.values = values;
+            this.present = present;
+        }
+
+        @Override
+        boolean hasValue(int row) {
+            return bit(present, row);
+        }
+
+        @Override
+        boolean isNumeric() {
+            return true;
+        }
+
+        @Override
+        double doubleAt(int row) {
+            return values[row];
+        }
+
+        @Override
+        JsonNode valueNode(int row) {
+            return LongNode.valueOf(values[row]);
+        }
+
+        @Override
+        void writeValue(JsonGenerator generator, int row) throws IOException {
+            generator.writeNumber(values[row]);
+        }
+
+        @Override
+        int filterNumber(Operator op, double right, int[] sel, int count) {
+            if (nullsMatch(op, right)) {
+                return filterNodes(op, right, null, sel, count);
+            }
+            long[] v = values;
+            long[] p = present;
+            int out = 0;
+            switch (op) {
+                case GT:
+                    for (int k = 0; k < count; k++) {
+                        int r = sel[k];
+                        sel[out] = r;
+                        out += bit(p, r) && v[r] > right ? 1 : 0;
+                    }
+                    break;
+                case LT:
+                    for (int k = 0; k < count; k++) {
+                        int r = sel[k];
+                        sel[out] = r;
+                        out += bit(p, r) && v[r] < right ? 1 : 0;
+                    }
+                    break;
+                case GE:
+                    for (int k = 0; k < count; k++) {
+                        int r = sel[k];
+                        sel[out] = r;
+                        out += bit(p, r) && v[r] >= right ? 1 : 0;
+                    }
+                    break;
+                case LE:
+                    for (int k = 0; k < count; k++) {
+                        int r = sel[k];
+                        sel[out] = r;
+                        out += bit(p, r) && v[r] <= right ? 1 : 0;
+                    }
+                    break;
+                case EQ:
+                    for (int k = 0; k < count; k++) {
+                        int r = sel[k];
+                        sel[out] = r;
+                        out += bit(p, r) && v[r] == right ? 1 : 0;
+                    }
+                    break;
+                default:
+                    for (int k = 0; k < count; k++) {
+                        int r = sel[k];
+                        sel[out] = r;
+                        out += !bit(p, r) || v[r] != right ? 1 : 0;
+                    }
+            }
+            return out;
+        }
+
+        @Override
+        int filterString(Operator op, String right, int[] sel, int count) {
+            return filterNumbersByString(op, right, sel, count);
+        }
+    }
+
+    // Números com casas decimais (ou mistura de inteiros e decimais). Linhas sem valor guardam NaN,
+    // que já responde às comparações como um campo ausente: falso em tudo, exceto '!='.
+    static final class DoubleColumn extends Column {
+
+        private final double[] values;
+        private final long[] integral; // linhas que vieram como inteiro e são gravadas sem ".0"
+
+        DoubleColumn(double[] values, long[] integral, long[] nulls) {
+            super(nulls);
+            this.values = values;
+            this.integral = integral;
+        }
+
+        @Override
+        boolean hasValue(int row) {
+            return !Double.isNaN(values[row]);
+        }
+
+        @Override
+        boolean isNumeric() {
+            return true;
+        }
+
+        @Override
+        double doubleAt(int row) {
+            return values[row];
+        }
+
+        @Override
+        JsonNode valueNode(int row) {
+            return bit(integral, row) ? LongNode.valueOf((long) values[row]) : DoubleNode.valueOf(values[row]);
+        }
+
+        @Override
+        void writeValue(JsonGenerator generator, int row) throws IOException {
+            if (bit(integral, row)) {
+                generator.writeNumber((long) values[row]);
+            } else {
+                generator.writeNumber(values[row]);
+            }
+        }
+
+        @Override
+        int filterNumber(Operator op, double right, int[] sel, int count) {
+            if (nullsMatch(op, right)) {
+                return filterNodes(op, right, null, sel, count);
+            }
+            double[] v = values;
+            int out = 0;
+            switch (op) {
+                case GT:
+                    for (int k = 0; k < count; k++) {
+                        int r = sel[k];
+                        sel[out] = r;
+                        out += v[r] > right ? 1 : 0;
+                    }
+                    break;
+                case LT:
+                    for (int k = 0; k < count; k++) {
+                        int r = sel[k];
+                        sel[out] = r;
+                        out += v[r] < right ? 1 : 0;
+                    }
+                    break;
+                case GE:
+                    for (int k = 0; k < count; k++) {
+                        int r = sel[k];
+                        sel[out] = r;
+                        out += v[r] >= right ? 1 : 0;
+                    }
+                    break;
+                case LE:
+                    for (int k = 0; k < count; k++) {
+                        int r = sel[k];
+                        sel[out] = r;
+                        out += v[r] <= right ? 1 : 0;
+                    }
+                    break;
+                case EQ:
+                    for (int k = 0; k < count; k++) {
+                        int r = sel[k];
+                        sel[out] = r;
+                        out += v[r] == right ? 1 : 0;
+                    }
+                    break;
+                default:
+                    for (int k = 0; k < count; k++) {
+                        int r = sel[k];
+                        sel[out] = r;
+                        out += v[r] != right ? 1 : 0;
+                    }
+            }
+            return out;
+        }
+
+        @Override
+        int filterString(Operator op, String right, int[] sel, int count) {
+            return filterNumbersByString(op, right, sel, count);
+        }
+    }
+
+    // Strings codificadas por dicionário. O dicionário é ordenado, então comparar códigos equivale
+    // a comparar as strings: cada operador vira um intervalo [lo, hi) de códigos. Sem valor: -1.
+    static final class StringColumn extends Column {
+
+        private final int[] codes;
+        private final String[] dictionary;
+
+        StringColumn(int[] codes, String[] dictionary, long[] nulls) {
+            super(nulls);
+            this.codes = codes;
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        boolean hasValue(int row) {
+            return codes[row] >= 0;
+        }
+
+        @Override
+        JsonNode valueNode(int row) {
+            return TextNode.valueOf(dictionary[codes[row]]);
+        }
+
+        @Override
+        void writeValue(JsonGenerator generator, int row) throws IOException {
+            generator.writeString(dictionary[codes[row]]);
+        }
+
+        // Cada string do dicionário é convertida uma vez com Number(texto).
+        @Override
+        int filterNumber(Operator op, double right, int[] sel, int count) {
+            if (op == Operator.EQ || op == Operator.NE) {
+                return onlyNotEqual(op, count);
+            }
+            boolean[] passes = new boolean[dictionary.length];
+            for (int i = 0; i < dictionary.length; i++) {
+                passes[i] = op.matches(Comparisons.toNumber(dictionary[i]), right);
+            }
+            boolean nulls = nullsMatch(op, right);
+            int[] c = codes;
+            int out = 0;
+            for (int k = 0; k < count; k++) {
+                int r = sel[k];
+                int code = c[r];
+                sel[out] = r;
+                out += (code >= 0 ? passes[code] : nulls && bit(this.nulls, r)) ? 1 : 0;
+            }
+            return out;
+        }
+
+        @Override
+        int filterString(Operator op, String right, int[] sel, int count) {
+            if (nullsMatch(op, Comparisons.toNumber(right))) {
+                return filterNodes(op, Double.NaN, right, sel, count);
+            }
+            int found = Arrays.binarySearch(dictionary, right);
+            boolean exact = found >= 0;
+            int at = exact ? found : -found - 1; // posição da constante no dicionário ordenado
+            int lo;
+            int hi;
+            boolean negate = false;
+            switch (op) {
+                case LT: lo = 0; hi = at; break;
+                case LE: lo = 0; hi = exact ? at + 1 : at; break;
+                case GT: lo = exact ? at + 1 : at; hi = dictionary.length; break;
+                case GE: lo = at; hi = dictionary.length; break;
+                case EQ: lo = at; hi = exact ? at + 1 : at; break;
+                default: lo = at; hi = exact ? at + 1 : at; negate = true;
+            }
+            // Linhas sem valor têm código -1 e ficam fora de qualquer intervalo; com 'negate' (só '!=') passam.
+            int[] c = codes;
+            int out = 0;
+            for (int k = 0; k < count; k++) {
+                int r = sel[k];
+                int code = c[r];
+                sel[out] = r;
+                out += (code >= lo && code < hi) != negate ? 1 : 0;
+            }
+            return out;
+        }
+    }
+
+    // Qualquer outro conteúdo (booleanos, objetos, arrays, tipos misturados): guarda os nós e
+    // avalia linha a linha com Comparisons.
+    static final class NodeColumn extends Column {
+
+        private final JsonNode[] values; // null = ausente; NullNode = JSON null
+
+        NodeColumn(JsonNode[] values) {
+            super(bitmap(0));
+            this.values = values;
+        }
+
+        @Override
+        boolean hasValue(int row) {
+            return values[row] != null && !values[row].isNull();
+        }
+
+        @Override
+        boolean exists(int row) {
+            return values[row] != null;
+        }
+
+        @Override
+        JsonNode node(int row) {
+            return values[row];
+        }
+
+        @Override
+        JsonNode valueNode(int row) {
+            return values[row];
+        }
+
+        @Override
+        void write(JsonGenerator generator, int row) throws IOException {
+            writeValue(generator, row);
+        }
+
+        @Override
+        void writeValue(JsonGenerator generator, int row) throws IOException {
+            generator.writeTree(values[row]);
+        }
+
+        @Override
+        int filterNumber(Operator op, double right, int[] sel, int count) {
+            int out = 0;
+            for (int k = 0; k < count; k++) {
+                int r = sel[k];
+                sel[out] = r;
+                out += Comparisons.compareNumber(values[r], op, right) ? 1 : 0;
+            }
+            return out;
+        }
+
+        @Override
+        int filterString(Operator op, String right, int[] sel, int count) {
+            int out = 0;
+            for (int k = 0; k < count; k++) {
+                int r = sel[k];
+                sel[out] = r;
+                out += Comparisons.compareString(values[r], op, right) ? 1 : 0;
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Monta uma Column linha a linha durante a leitura do arquivo. Começa no tipo mais compacto que
+// comporta os valores vistos (long, depois double, ou string) e só recorre a JsonNode[] quando
+// o caminho mistura tipos que os arrays primitivos não representam.
+final class ColumnBuilder {
+
+    // Acima de 2^53 um inteiro não é representado exatamente em double.
+    private static final long EXACT_IN_DOUBLE = 1L << 53;
+
+    private enum Kind { EMPTY, LONG, DOUBLE, STRING, NODE }
+
+    private Kind kind = Kind.EMPTY;
+    private int size;
+    private int capacity;
+    private long[] nulls;
+    private long[] present;
+    private long[] integral;
+    private long[] longs;
+    private double[] doubles;
+    private int[] codes;
+    private JsonNode[] nodes;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    ColumnBuilder(int expectedRows) {
+        capacity = Math.max(expectedRows, 16);
+        nulls = Column.bitmap(capacity);
+        present = Column.bitmap(capacity);
+        longs = new long[capacity];
+    }
+
+    // Acrescenta o valor da próxima linha; null significa campo ausente.
+    void add(JsonNode value) {
+        if (size == capacity) {
+            grow();
+        }
+        int row = size++;
+        if (value == null || value.isMissingNode() || value.isNull()) {
+            if (value != null && value.isNull()) {
+                Column.setBit(nulls, row);
+            }
+            if (kind == Kind.DOUBLE) {
+                doubles[row] = Double.NaN;
+            } else if (kind == Kind.STRING) {
+                codes[row] = -1;
+            } else if (kind == Kind.NODE) {
+                nodes[row] = value == null || value.isMissingNode() ? null : NullNode.instance;
+            }
+            return;
+        }
+        if (kind != Kind.NODE) {
+            if (value.isIntegralNumber() && value.canConvertToLong()) {
+                if (addLong(row, value.longValue())) {
+                    return;
+                }
+            } else if (value.isDouble()) {
+                if (addDouble(row, value.doubleValue())) {
+                    return;
+                }
+            } else if (value.isTextual()) {
+                if (addString(row, value.textValue())) {
+                    return;
+                }
+            }
+            toNodes(row);
+        }
+        nodes[row] = value;
+    }
+
+    Column build() {
+        switch (kind) {
+            case DOUBLE:
+                return new Column.DoubleColumn(Arrays.copyOf(doubles, size), trim(integral), trim(nulls));
+            case STRING:
+                return buildStrings();
+            case NODE:
+                return new Column.NodeColumn(Arrays.copyOf(nodes, size));
+            default:
+                return new Column.LongColumn(Arrays.copyOf(longs, size), trim(present), trim(nulls));
+        }
+    }
+
+    private boolean addLong(int row, long value) {
+        if (kind == Kind.EMPTY) {
+            kind = Kind.LONG;
+        }
+        if (kind == Kind.LONG) {
+            longs[row] = value;
+            Column.setBit(present, row);
+            return true;
+        }
+        if (kind == Kind.DOUBLE && Math.abs(value) <= EXACT_IN_DOUBLE) {
+            doubles[row] = value;
+            Column.setBit(integral, row);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean addDouble(int row, double value) {
+        if (kind == Kind.EMPTY || kind == Kind.LONG) {
+            if (!longsToDoubles(row)) {
+                return false;
+            }
+        }
+        if (kind != Kind.DOUBLE) {
+            return false;
+        }
+        doubles[row] = value;
+        return true;
+    }
+
+    private boolean addString(int row, String value) {
+        if (kind == Kind.EMPTY) {
+            kind = Kind.STRING;
+            codes = new int[capacity];
+            Arrays.fill(codes, 0, row, -1);
+            longs = null;
+            present = null;
+        }
+        if (kind != Kind.STRING) {
+            return false;
+        }
+        Integer code = dictionary.get(value);
+        if (code == null) {
+            code = strings.size();
+            dictionary.put(value, code);
+            strings.add(value);
+        }
+        codes[row] = code;
+        return true;
+    }
+
+    // Converte as linhas [0, row) de long para double; falha se algum inteiro perderia precisão.
+    private boolean longsToDoubles(int row) {
+        double[] converted = new double[capacity];
+        long[] integralRows = Column.bitmap(capacity);
+        for (int i = 0; i < row; i++) {
+            if (kind == Kind.LONG && Column.bit(present, i)) {
+                if (Math.abs(longs[i]) > EXACT_IN_DOUBLE) {
+                    return false;
+                }
+                converted[i] = longs[i];
+                Column.setBit(integralRows, i);
+            } else {
+                converted[i] = Double.NaN;
+            }
+        }
+        kind = Kind.DOUBLE;
+        doubles = converted;
+        integral = integralRows;
+        longs = null;
+        present = null;
+        return true;
+    }
+
+    // Materializa as linhas [0, row) como JsonNode; a partir daqui a coluna guarda os nós.
+    private void toNodes(int row) {
+        JsonNode[] converted = new JsonNode[capacity];
+        for (int i = 0; i < row; i++) {
+            converted[i] = nodeAt(i);
+        }
+        kind = Kind.NODE;
+        nodes = converted;
+        longs = null;
+        doubles = null;
+        codes = null;
+        present = null;
+        integral = null;
+        dictionary.clear();
+        strings.clear();
+    }
+
+    private JsonNode nodeAt(int row) {
+        if (Column.bit(nulls, row)) {
+            return NullNode.instance;
+        }
+        switch (kind) {
+            case LONG:
+                return Column.bit(present, row) ? LongNode.valueOf(longs[row]) : null;
+            case DOUBLE:
+                if (Double.isNaN(doubles[row])) {
+                    return null;
+                }
+                return Column.bit(integral, row) ? LongNode.valueOf((long) doubles[row]) : DoubleNode.valueOf(doubles[row]);
+            case STRING:
+                return codes[row] < 0 ? null : TextNode.valueOf(strings.get(codes[row]));
+            default:
+                return null;
+        }
+    }
+
+    private void grow() {
+        capacity = capacity + (capacity >> 1);
+        nulls = Arrays.copyOf(nulls, (capacity + 63) >>> 6);
+        if (present != null) {
+            present = Arrays.copyOf(present, (capacity + 63) >>> 6);
+        }
+        if (integral != null) {
+            integral = Arrays.copyOf(integral, (capacity + 63) >>> 6);
+        }
+        if (longs != null) {
+            longs = Arrays.copyOf(longs, capacity);
+        }
+        if (doubles != null) {
+            doubles = Arrays.copyOf(doubles, capacity);
+        }
+        if (codes != null) {
+            codes = Arrays.copyOf(codes, capacity);
+        }
+        if (nodes != null) {
+            nodes = Arrays.copyOf(nodes, capacity);
+        }
+    }
+
+    private long[] trim(long[] bits) {
+        return Arrays.copyOf(bits, (size + 63) >>> 6);
+    }
+
+    // Ordena o dicionário e renumera os códigos, para que a ordem dos códigos seja a das strings.
+    private Column buildStrings() {
+        String[] sorted = strings.toArray(new String[0]);
+        Arrays.sort(sorted);
+        int[] rank = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            rank[dictionary.get(sorted[i])] = i;
+        }
+        int[] remapped = new int[size];
+        for (int i = 0; i < size; i++) {
+            remapped[i] = codes[i] < 0 ? -1 : rank[codes[i]];
+        }
+        return new Column.StringColumn(remapped, sorted, trim(nulls));
+    }
+}
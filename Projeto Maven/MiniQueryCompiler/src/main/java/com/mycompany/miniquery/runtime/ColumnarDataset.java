@@ -0,0 +1,137 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Arquivo do LOAD (array JSON, NDJSON ou formato colunar) carregado em colunas, uma por caminho usado pelas consultas (ex: .cliente.idade).
+// Os registros em si não ficam na memória: guardamos só a posição de cada um no arquivo, para
+// reler os que forem selecionados quando a consulta devolve o registro inteiro (sem SELECT).
+// Caminhos novos são acrescentados por ensureColumns, com uma nova leitura do arquivo.
+public final class ColumnarDataset {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Path source;
+    private final long sourceSize;
+    private final long sourceModified;
+    private final Map<String, Column> columns = new HashMap<>();
+    private int rows;
+    private long[] offsets; // byte inicial de cada registro; null se o arquivo não é JSON em UTF-8
+    private int[] lengths;
+
+    private ColumnarDataset(Path source) throws IOException {
+        this.source = source;
+        this.sourceSize = Files.size(source);
+        this.sourceModified = Files.getLastModifiedTime(source).toMillis();
+    }
+
+    public static ColumnarDataset load(Path source, Collection<String> paths) throws IOException {
+        ColumnarDataset dataset = new ColumnarDataset(source);
+        dataset.scan(new ArrayList<>(paths), true);
+        return dataset;
+    }
+
+    // Carrega os caminhos que ainda não têm coluna.
+    public void ensureColumns(Collection<String> paths) throws IOException {
+        List<String> missing = new ArrayList<>();
+        for (String path : paths) {
+            if (!columns.containsKey(path) && !missing.contains(path)) {
+                missing.add(path);
+            }
+        }
+        if (!missing.isEmpty()) {
+            scan(missing, false);
+        }
+    }
+
+    // Falso quando o arquivo foi alterado depois da carga (tamanho ou data de modificação).
+    public boolean isFresh() {
+        try {
+            return Files.size(source) == sourceSize && Files.getLastModifiedTime(source).toMillis() == sourceModified;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public Path getSource() {
+        return source;
+    }
+
+    public int rowCount() {
+        return rows;
+    }
+
+    public Set<String> columnPaths() {
+        return Collections.unmodifiableSet(columns.keySet());
+    }
+
+    Column column(String path) {
+        return columns.get(path);
+    }
+
+    boolean hasRecordOffsets() {
+        return offsets != null;
+    }
+
+    // Posição e tamanho (em bytes) do registro no arquivo, para o RecordReader.
+    long recordOffset(int row) {
+        return offsets[row];
+    }
+
+    int recordLength(int row) {
+        return lengths[row];
+    }
+
+    private void scan(List<String> paths, boolean first) throws IOException {
+        String[][] segments = new String[paths.size()][];
+        ColumnBuilder[] builders = new ColumnBuilder[paths.size()];
+        for (int i = 0; i < builders.length; i++) {
+            segments[i] = JsonPaths.split(paths.get(i));
+            builders[i] = new ColumnBuilder(first ? 1024 : rows);
+        }
+        long[] starts = first ? new long[1024] : null;
+        int[] sizes = first ? new int[1024] : null;
+        int row = 0;
+        RecordDecoder decoder = RecordDecoder.of(paths);
+
+        try (RecordSource records = RecordSource.open(MAPPER, source.toString(), decoder, null)) {
+            for (JsonNode record = records.next(); record != null; record = records.next()) {
+                if (first) {
+                    if (row == starts.length) {
+                        starts = Arrays.copyOf(starts, row + (row >> 1));
+                        sizes = Arrays.copyOf(sizes, starts.length);
+                    }
+                    starts[row] = records.recordOffset();
+                    sizes[row] = records.recordLength();
+                }
+                for (int i = 0; i < builders.length; i++) {
+                    builders[i].add(JsonPaths.resolve(record, segments[i]));
+                }
+                row++;
+            }
+        }
+
+        if (first) {
+            rows = row;
+            boolean byteOffsets = row == 0 || starts[0] >= 0;
+            offsets = byteOffsets ? Arrays.copyOf(starts, row) : null;
+            lengths = byteOffsets ? Arrays.copyOf(sizes, row) : null;
+        } else if (row != rows) {
+            throw new IOException("O arquivo '" + source + "' foi alterado durante a leitura");
+        }
+        for (int i = 0; i < builders.length; i++) {
+            columns.put(paths.get(i), builders[i].build());
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.Command;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.SelectCommand;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Execução colunar (--modo=colunar) de um SourcePlan: cada FILTER compacta um vetor de seleção
+// sobre as colunas do ColumnarDataset e o SELECT final lê só as linhas escolhidas; as chaves do
+// ORDER BY vêm das colunas e o OrderedWriter do 'writer' ordena e corta o resultado. Os datasets
+// ficam guardados entre execuções, então consultas repetidas sobre o mesmo arquivo não voltam a
+// ler o JSON. Com métricas, cada FILTER conta as linhas exatas que entram e saem do vetor de seleção
+// e, numa amostra das linhas, também as que passariam por ele sozinho (ExecutionMetrics).
+final class ColumnarExecutor {
+
+    private final Map<Path, ColumnarDataset> datasets = new HashMap<>();
+
+    ExecutionResult execute(QueryPipeline pipeline, SourcePlan plan, ResultWriter writer) throws IOException {
+        Path source = Paths.get(pipeline.loadPath);
+        ColumnarDataset cached = datasets.get(source);
+        ColumnarDataset dataset = dataset(source, plan.paths);
+        ExecutionMetrics metrics = pipeline.metrics();
+        if (metrics != null) {
+            // Um dataset reaproveitado não lê nada do arquivo.
+            metrics.read(dataset == cached ? 0 : Files.size(source));
+            sampleFilters(metrics, dataset, plan);
+        }
+        if (plan.projection == null && !dataset.hasRecordOffsets()) {
+            throw new IllegalStateException("O modo colunar só relê registros inteiros de arquivos UTF-8: " + pipeline.loadPath);
+        }
+
+        int rows = dataset.rowCount();
+        int[] sel = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            sel[i] = i;
+        }
+        int count = rows;
+        for (SourcePlan.Filter filter : plan.filters) {
+            if (metrics == null) {
+                count = apply(dataset, filter, sel, count);
+                continue;
+            }
+            long start = System.nanoTime();
+            int in = count;
+            count = apply(dataset, filter, sel, count);
+            metrics.stage(metrics.stageOf(filter.command), in, count, System.nanoTime() - start);
+        }
+        long passed = count;
+        if (plan.limit != null && (plan.orderBy == null || plan.limitFirst)) {
+            count = (int) Math.min(count, Long.parseLong(plan.limit.count));
+        }
+        Column[] keys = null;
+        if (plan.orderBy != null) {
+            keys = new Column[plan.orderPaths.size()];
+            for (int i = 0; i < keys.length; i++) {
+                String path = plan.orderPaths.get(i);
+                keys[i] = path == null ? null : dataset.column(path);
+            }
+        }
+
+        if (metrics != null) {
+            // O SELECT final só lê as colunas das linhas escolhidas, na gravação.
+            for (Command cmd : pipeline.getStageCommands()) {
+                if (cmd instanceof SelectCommand) {
+                    metrics.stage(metrics.stageOf(cmd), count, count, 0);
+                }
+            }
+        }
+        long start = System.nanoTime();
+        if (plan.projection == null) {
+            try (RecordReader records = new RecordReader(dataset.getSource())) {
+                for (int k = 0; k < count; k++) {
+                    int row = sel[k];
+                    writer.write(records.read(dataset.recordOffset(row), dataset.recordLength(row)), key(keys, row));
+                }
+            }
+        } else {
+            String[] names = plan.projection.keySet().toArray(new String[0]);
+            Column[] columns = new Column[names.length];
+            for (int i = 0; i < names.length; i++) {
+                columns[i] = dataset.column(plan.projection.get(names[i]));
+            }
+            // Nos formatos em array JSON, cada linha é escrita campo a campo, sem montar o objeto.
+            JsonGenerator generator = writer.arrayGenerator();
+            for (int k = 0; k < count; k++) {
+                int row = sel[k];
+                if (generator == null) {
+                    ObjectNode record = JsonNodeFactory.instance.objectNode();
+                    for (int i = 0; i < columns.length; i++) {
+                        if (columns[i].exists(row)) {
+                            record.set(names[i], columns[i].node(row));
+                        }
+                    }
+                    writer.write(record, key(keys, row));
+                    continue;
+                }
+                generator.writeStartObject();
+                for (int i = 0; i < columns.length; i++) {
+                    if (columns[i].exists(row)) {
+                        generator.writeFieldName(names[i]);
+                        columns[i].write(generator, row);
+                    }
+                }
+                generator.writeEndObject();
+            }
+            if (metrics != null && generator != null) {
+                metrics.writeAll(count, System.nanoTime() - start);
+            }
+        }
+        // Registros entregues ao 'writer'; o QueryExecutor desconta o LIMIT (ResultWriter.resultCount).
+        return new ExecutionResult(rows, passed, pipeline.savePath);
+    }
+
+    // Avalia cada FILTER sobre a origem sozinho nas linhas amostradas (as EXACT_ROWS primeiras e
+    // depois 1 em SAMPLE, com o peso de SAMPLE), para a seletividade guardada pelo FilterStatistics.
+    private static void sampleFilters(ExecutionMetrics metrics, ColumnarDataset dataset, SourcePlan plan) {
+        int rows = dataset.rowCount();
+        int head = Math.min(rows, ExecutionMetrics.EXACT_ROWS);
+        int[] headRows = new int[head];
+        int[] tailRows = new int[(rows - head) / ExecutionMetrics.SAMPLE + 1];
+        int tail = 0;
+        for (int r = 0; r < head; r++) {
+            headRows[r] = r;
+        }
+        for (int r = head; r < rows; r += ExecutionMetrics.SAMPLE) {
+            tailRows[tail++] = r;
+        }
+        metrics.sampled(head, 1);
+        metrics.sampled(tail, ExecutionMetrics.SAMPLE);
+        int[] sel = new int[Math.max(head, tail)];
+        for (SourcePlan.Filter filter : plan.filters) {
+            int stage = metrics.stageOf(filter.command);
+            if (stage >= 0 && stage < metrics.sourceFilters()) {
+                System.arraycopy(headRows, 0, sel, 0, head);
+                metrics.isolated(stage, apply(dataset, filter, sel, head), 1);
+                System.arraycopy(tailRows, 0, sel, 0, tail);
+                metrics.isolated(stage, apply(dataset, filter, sel, tail), ExecutionMetrics.SAMPLE);
+            }
+        }
+    }
+
+    // Chave do ORDER BY da linha; null sem ORDER BY.
+    private static JsonNode[] key(Column[] keys, int row) {
+        if (keys == null) {
+            return null;
+        }
+        JsonNode[] key = new JsonNode[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            key[i] = keys[i] == null ? null : keys[i].node(row);
+        }
+        return key;
+    }
+
+    // Carrega de uma vez as colunas de várias consultas sobre o mesmo arquivo.
+    void preload(Path path, Set<String> paths) throws IOException {
+        dataset(path, paths);
+    }
+
+    private ColumnarDataset dataset(Path path, Set<String> paths) throws IOException {
+        ColumnarDataset dataset = datasets.get(path);
+        if (dataset == null || !dataset.isFresh()) {
+            dataset = ColumnarDataset.load(path, paths);
+            datasets.put(path, dataset);
+        } else {
+            dataset.ensureColumns(paths);
+        }
+        return dataset;
+    }
+
+    private static int apply(ColumnarDataset dataset, SourcePlan.Filter filter, int[] sel, int count) {
+        Column left = filter.left == null ? null : dataset.column(filter.left);
+        if (filter.rightIsPath) {
+            Column right = filter.rightPath == null ? null : dataset.column(filter.rightPath);
+            return compareColumns(left, filter.operator, right, sel, count);
+        }
+        if (left == null) {
+            return Column.onlyNotEqual(filter.operator, count);
+        }
+        return filter.numeric
+                ? left.filterNumber(filter.operator, filter.number, sel, count)
+                : left.filterString(filter.operator, filter.text, sel, count);
+    }
+
+    // FILTER .a op .b: números dos dois lados são comparados direto nos arrays; o resto
+    // (ausentes, null, tipos diferentes) segue Comparisons.compareNodes.
+    private static int compareColumns(Column left, Operator op, Column right, int[] sel, int count) {
+        boolean numeric = left != null && right != null && left.isNumeric() && right.isNumeric();
+        int out = 0;
+        for (int k = 0; k < count; k++) {
+            int r = sel[k];
+            boolean match;
+            if (numeric && left.hasValue(r) && right.hasValue(r)) {
+                match = op.matches(left.doubleAt(r), right.doubleAt(r));
+            } else {
+                match = Comparisons.compareNodes(left == null ? null : left.node(r), op,
+                        right == null ? null : right.node(r));
+            }
+            sel[out] = r;
+            out += match ? 1 : 0;
+        }
+        return out;
+    }
+}
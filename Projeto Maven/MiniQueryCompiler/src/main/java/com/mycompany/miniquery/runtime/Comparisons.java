@@ -0,0 +1,165 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.math.BigInteger;
+import java.util.regex.Pattern;
+
+// Semântica das comparações do FILTER, espelhando o código gerado pelo JavaScriptGenerator:
+// '==' e '!=' viram '===' e '!==' estritos; '<', '<=', '>' e '>=' seguem a comparação relacional do
+// JS, que compara strings entre si e converte o resto para número (null vale 0, true vale 1, "7"
+// vale 7, objetos e texto inválido viram NaN). Campos ausentes se comportam como undefined (NaN).
+public final class Comparisons {
+
+    // Literal decimal aceito pelo Number() do JS, já sem os espaços das pontas.
+    private static final Pattern DECIMAL = Pattern.compile("[+-]?(Infinity|(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?)");
+    private static final Pattern RADIX = Pattern.compile("0([xX][0-9a-fA-F]+|[oO][0-7]+|[bB][01]+)");
+
+    private Comparisons() {
+    }
+
+    // Compara o campo com uma constante numérica já convertida para double.
+    public static boolean compareNumber(JsonNode left, Operator op, double right) {
+        if (op == Operator.EQ || op == Operator.NE) {
+            boolean equal = left != null && left.isNumber() && left.doubleValue() == right;
+            return (op == Operator.EQ) == equal;
+        }
+        return op.matches(toNumber(left), right);
+    }
+
+    // Compara o campo com uma constante string.
+    public static boolean compareString(JsonNode left, Operator op, String right) {
+        if (op == Operator.EQ || op == Operator.NE) {
+            boolean equal = left != null && left.isTextual() && left.textValue().equals(right);
+            return (op == Operator.EQ) == equal;
+        }
+        String text = primitiveText(left);
+        if (text != null) {
+            return op.matches(text.compareTo(right));
+        }
+        return op.matches(toNumber(left), toNumber(right));
+    }
+
+    // Compara dois campos do mesmo registro (ex: FILTER .idade < .valor).
+    public static boolean compareNodes(JsonNode left, Operator op, JsonNode right) {
+        if (op == Operator.EQ || op == Operator.NE) {
+            return (op == Operator.EQ) == strictEquals(left, right);
+        }
+        String leftText = primitiveText(left);
+        String rightText = primitiveText(right);
+        if (leftText != null && rightText != null) {
+            return op.matches(leftText.compareTo(rightText));
+        }
+        return op.matches(toNumber(left), toNumber(right));
+    }
+
+    // Valor numérico do campo no JS (Number(x)); NaN para ausentes, objetos e texto inválido.
+    public static double toNumber(JsonNode node) {
+        if (isMissing(node)) {
+            return Double.NaN;
+        }
+        if (node.isNumber()) {
+            return node.doubleValue();
+        }
+        if (node.isNull()) {
+            return 0;
+        }
+        if (node.isBoolean()) {
+            return node.booleanValue() ? 1 : 0;
+        }
+        String text = primitiveText(node);
+        return text == null ? Double.NaN : toNumber(text);
+    }
+
+    // Number(texto) do JS: espaços nas pontas são ignorados e o texto vazio vale 0.
+    public static double toNumber(String text) {
+        String trimmed = trim(text);
+        if (trimmed.isEmpty()) {
+            return 0;
+        }
+        if (DECIMAL.matcher(trimmed).matches()) {
+            return trimmed.endsWith("Infinity")
+                    ? (trimmed.startsWith("-") ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY)
+                    : Double.parseDouble(trimmed);
+        }
+        if (RADIX.matcher(trimmed).matches()) {
+            char base = Character.toLowerCase(trimmed.charAt(1));
+            int radix = base == 'x' ? 16 : base == 'o' ? 8 : 2;
+            return new BigInteger(trimmed.substring(2), radix).doubleValue();
+        }
+        return Double.NaN;
+    }
+
+    // Texto do valor primitivo de strings, objetos e arrays (ToPrimitive do JS); null para os demais.
+    static String primitiveText(JsonNode node) {
+        if (isMissing(node)) {
+            return null;
+        }
+        if (node.isTextual()) {
+            return node.textValue();
+        }
+        if (node.isObject()) {
+            return "[object Object]";
+        }
+        if (node.isArray()) {
+            StringBuilder joined = new StringBuilder();
+            for (int i = 0; i < node.size(); i++) {
+                if (i > 0) {
+                    joined.append(',');
+                }
+                joined.append(elementText(node.get(i)));
+            }
+            return joined.toString();
+        }
+        return null;
+    }
+
+    // Elemento de array no Array.prototype.join: null vira texto vazio.
+    private static String elementText(JsonNode element) {
+        if (element.isNull()) {
+            return "";
+        }
+        if (element.isNumber()) {
+            return JsStyleGenerator.numberText(element.doubleValue());
+        }
+        if (element.isBoolean()) {
+            return element.asText();
+        }
+        return primitiveText(element);
+    }
+
+    // '===': mesmo tipo e valor; objetos e arrays só são iguais a eles mesmos (o mesmo caminho).
+    private static boolean strictEquals(JsonNode left, JsonNode right) {
+        if (isMissing(left) || isMissing(right)) {
+            return isMissing(left) && isMissing(right);
+        }
+        if (left.isNumber() && right.isNumber()) {
+            return left.doubleValue() == right.doubleValue();
+        }
+        if (left.isContainerNode() || right.isContainerNode()) {
+            return left == right;
+        }
+        return left.getNodeType() == right.getNodeType() && left.equals(right);
+    }
+
+    // Espaços removidos pelo trim() do JS (brancos Unicode, quebras de linha e BOM).
+    private static String trim(String text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && isJsSpace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && isJsSpace(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(start, end);
+    }
+
+    private static boolean isJsSpace(char c) {
+        return c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r' || c == ' ' || c == 0xA0
+                || c == 0x2028 || c == 0x2029 || c == 0xFEFF || Character.getType(c) == Character.SPACE_SEPARATOR;
+    }
+
+    private static boolean isMissing(JsonNode node) {
+        return node == null || node.isMissingNode();
+    }
+}
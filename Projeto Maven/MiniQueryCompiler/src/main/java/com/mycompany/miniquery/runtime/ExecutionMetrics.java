@@ -0,0 +1,320 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.Command;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.FilterCondition;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.SelectCommand;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Métricas de uma execução na JVM (--metricas): registros e bytes lidos e gravados, registros que
+// entram e saem de cada etapa FILTER/SELECT e o tempo das fases. Os contadores são LongAdder, pois a
+// ParallelScan chama o pipeline de várias threads. O tempo das etapas só é medido nos registros
+// amostrados (os EXACT_ROWS primeiros e depois 1 em SAMPLE) e extrapolado; nesses registros os
+// FILTERs sobre a origem também são avaliados cada um isoladamente, e essa seletividade, que não
+// depende da ordem dos filtros, é a guardada pelo FilterStatistics para o QueryOptimizer. Cada
+// registro amostrado depois dos EXACT_ROWS primeiros vale por SAMPLE, para que o início do
+// arquivo (em dados ordenados, diferente do resto) não pese mais que o resto nas estimativas.
+public final class ExecutionMetrics {
+
+    static final int SAMPLE = Math.max(1, Integer.getInteger("miniquery.metricas.amostra", 64));
+    static final int EXACT_ROWS = 1000;
+
+    private final String loadPath;
+    private final Command[] commands;
+    private final String[] names;
+    private final int[] lines;
+    private final boolean[] filters;
+    // Chave de cada FILTER sobre a origem (os anteriores ao primeiro SELECT) no FilterStatistics.
+    private final String[] statisticKeys;
+    private final int sourceFilters;
+    private final LongAdder[] in;
+    private final LongAdder[] out;
+    private final LongAdder[] nanos;
+    private final LongAdder[] measured;
+    private final LongAdder[] isolatedPasses;
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder sampleWeight = new LongAdder();
+
+    private long start;
+    private long totalNanos;
+    private long recordsRead;
+    private long recordsWritten;
+    private long bytesRead = -1;
+    private long bytesWritten = -1;
+    private long writeNanos;
+    private long writes;
+    private long measuredWrites;
+    private long closeNanos;
+    private boolean parallel;
+    private boolean cached;
+    private boolean prefiltered;
+
+    ExecutionMetrics(String loadPath, List<Command> stageCommands) {
+        this.loadPath = loadPath;
+        List<Command> stages = new ArrayList<>();
+        for (Command cmd : stageCommands) {
+            if (cmd instanceof FilterCondition || cmd instanceof SelectCommand) {
+                stages.add(cmd);
+            }
+        }
+        int n = stages.size();
+        commands = stages.toArray(new Command[0]);
+        names = new String[n];
+        lines = new int[n];
+        filters = new boolean[n];
+        statisticKeys = new String[n];
+        in = adders(n);
+        out = adders(n);
+        nanos = adders(n);
+        measured = adders(n);
+        int leading = 0;
+        for (int i = 0; i < n; i++) {
+            Command cmd = stages.get(i);
+            names[i] = QueryOptimizer.text(cmd);
+            lines[i] = cmd.lineNumber;
+            filters[i] = cmd instanceof FilterCondition;
+            if (filters[i] && leading == i) {
+                statisticKeys[i] = FilterStatistics.key((FilterCondition) cmd);
+                leading++;
+            }
+        }
+        sourceFilters = leading;
+        isolatedPasses = adders(leading);
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    // Peso do próximo registro na amostra: 1 entre os EXACT_ROWS primeiros, SAMPLE para os
+    // sorteados depois e 0 quando ele não é medido.
+    int sample() {
+        int weight = sampled.sum() < EXACT_ROWS ? 1 : ThreadLocalRandom.current().nextInt(SAMPLE) == 0 ? SAMPLE : 0;
+        if (weight > 0) {
+            sampled.increment();
+            sampleWeight.add(weight);
+        }
+        return weight;
+    }
+
+    // Avalia cada FILTER sobre a origem isoladamente no registro amostrado.
+    void sampleSourceFilters(RecordStage[] stages, JsonNode record, int weight) {
+        for (int i = 0; i < sourceFilters; i++) {
+            if (stages[i].apply(record) != null) {
+                isolatedPasses[i].add(weight);
+            }
+        }
+    }
+
+    // Um registro entrou na etapa 'i' e saiu (ou foi filtrado); 'elapsed' só vale com 'weight' > 0.
+    void stage(int i, boolean passed, long elapsed, int weight) {
+        in[i].increment();
+        if (passed) {
+            out[i].increment();
+        }
+        if (weight > 0) {
+            nanos[i].add(elapsed * weight);
+            measured[i].add(weight);
+        }
+    }
+
+    // Contagens e tempo exatos de uma etapa inteira (execução colunar, que filtra um vetor por vez).
+    void stage(int i, long rowsIn, long rowsOut, long elapsed) {
+        in[i].add(rowsIn);
+        out[i].add(rowsOut);
+        nanos[i].add(elapsed);
+        measured[i].add(rowsIn);
+    }
+
+    // Linhas amostradas pela execução colunar, com o peso de cada uma, e quantas delas passam pelo
+    // FILTER 'i' sobre a origem.
+    void sampled(long rows, int weight) {
+        sampled.add(rows);
+        sampleWeight.add(rows * weight);
+    }
+
+    void isolated(int i, long passes, int weight) {
+        isolatedPasses[i].add(passes * weight);
+    }
+
+    int sourceFilters() {
+        return sourceFilters;
+    }
+
+    // Posição da etapa do comando; -1 se ele não é uma etapa FILTER/SELECT do pipeline.
+    int stageOf(Command cmd) {
+        for (int i = 0; i < commands.length; i++) {
+            if (commands[i] == cmd) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Gravação de um registro no ResultWriter; 'elapsed' < 0 quando não foi medida.
+    void write(long elapsed) {
+        writes++;
+        if (elapsed >= 0) {
+            writeNanos += elapsed;
+            measuredWrites++;
+        }
+    }
+
+    // Gravação de 'rows' registros medida de uma vez (execução colunar, que escreve campo a campo, e
+    // varredura paralela, que grava os trechos já serializados).
+    void writeAll(long rows, long elapsed) {
+        writes += rows;
+        measuredWrites += rows;
+        writeNanos += elapsed;
+    }
+
+    boolean sampleWrite() {
+        return writes < EXACT_ROWS || writes % SAMPLE == 0;
+    }
+
+    void close(long elapsed) {
+        closeNanos += elapsed;
+    }
+
+    void start() {
+        start = System.nanoTime();
+    }
+
+    // Bytes do LOAD lidos pela execução; -1 quando o formato não informa.
+    void read(long bytes) {
+        bytesRead = bytes;
+    }
+
+    void finish(long recordsRead, long recordsWritten, long bytesWritten) {
+        this.totalNanos = System.nanoTime() - start;
+        this.recordsRead = recordsRead;
+        this.recordsWritten = recordsWritten;
+        this.bytesWritten = bytesWritten;
+    }
+
+    void markParallel() {
+        parallel = true;
+    }
+
+    void markCached() {
+        cached = true;
+    }
+
+    // A origem entregou só parte dos registros (índice, blocos colunares pulados): a seletividade
+    // isolada não representa o arquivo e não é guardada.
+    void markPrefiltered() {
+        prefiltered = true;
+    }
+
+    // Verdadeiro quando as seletividades isoladas podem ir para o FilterStatistics.
+    boolean isRepresentative() {
+        return !cached && !prefiltered;
+    }
+
+    public long getRecordsRead() {
+        return recordsRead;
+    }
+
+    public long getRecordsWritten() {
+        return recordsWritten;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    // Seletividade de cada FILTER sobre a origem avaliado isoladamente, pela chave do FilterStatistics.
+    Map<String, Double> isolatedSelectivities() {
+        Map<String, Double> selectivities = new LinkedHashMap<>();
+        long weight = sampleWeight.sum();
+        for (int i = 0; i < sourceFilters && weight > 0; i++) {
+            selectivities.put(statisticKeys[i], (double) isolatedPasses[i].sum() / weight);
+        }
+        return selectivities;
+    }
+
+    long samples() {
+        return sampled.sum();
+    }
+
+    // Tempo estimado da etapa 'i' para todos os registros que passaram por ela.
+    private long stageNanos(int i) {
+        long rows = measured[i].sum();
+        return rows == 0 ? 0 : Math.round((double) nanos[i].sum() * in[i].sum() / rows);
+    }
+
+    // Relatório em JSON; a leitura é o tempo total menos o processamento e a gravação estimados.
+    public String toJson() {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode root = mapper.createObjectNode();
+        root.put("carga", loadPath);
+        root.put("cache", cached);
+        root.put("varreduraParalela", parallel);
+        root.put("origemFiltrada", prefiltered);
+        root.put("registrosLidos", recordsRead);
+        root.put("registrosGravados", recordsWritten);
+        root.put("bytesLidos", bytesRead);
+        root.put("bytesGravados", bytesWritten);
+        root.put("nanosTotais", totalNanos);
+        double seconds = totalNanos / 1e9;
+        root.put("registrosPorSegundo", seconds > 0 ? Math.round(recordsRead / seconds) : 0);
+        root.put("bytesLidosPorSegundo", seconds > 0 && bytesRead > 0 ? Math.round(bytesRead / seconds) : 0);
+
+        long processing = 0;
+        ArrayNode stages = mapper.createArrayNode();
+        long samples = sampled.sum();
+        long weight = sampleWeight.sum();
+        for (int i = 0; i < names.length; i++) {
+            long rowsIn = in[i].sum();
+            long rowsOut = out[i].sum();
+            long elapsed = stageNanos(i);
+            processing += elapsed;
+            ObjectNode stage = stages.addObject();
+            stage.put("linha", lines[i]);
+            stage.put("etapa", names[i]);
+            stage.put("entrada", rowsIn);
+            stage.put("saida", rowsOut);
+            stage.put("nanos", elapsed);
+            if (filters[i]) {
+                stage.put("seletividade", rowsIn == 0 ? 0 : (double) rowsOut / rowsIn);
+                if (i < sourceFilters && weight > 0) {
+                    stage.put("seletividadeIsolada", (double) isolatedPasses[i].sum() / weight);
+                }
+            }
+        }
+        long writing = closeNanos + (measuredWrites == 0 ? 0 : Math.round((double) writeNanos * writes / measuredWrites));
+        ArrayNode phases = root.putArray("fases");
+        phases.addObject().put("fase", "leitura").put("nanos", Math.max(0, totalNanos - processing - writing));
+        phases.addObject().put("fase", "processamento").put("nanos", processing);
+        phases.addObject().put("fase", "gravacao").put("nanos", writing);
+        root.set("etapas", stages);
+        ObjectNode sample = root.putObject("amostra");
+        sample.put("registrosMedidos", samples);
+        sample.put("fracao", "todos os " + EXACT_ROWS + " primeiros e 1 em " + SAMPLE + " depois");
+        try {
+            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(root);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.mycompany.miniquery.runtime;
+
+// Como as etapas FILTER/SELECT são avaliadas pelo QueryExecutor.
+public enum ExecutionMode {
+    // Avaliação direta dos comandos (InterpretedPredicate/InterpretedProjector).
+    INTERPRETED,
+    // Classes geradas em tempo de execução pelo StageCompiler, com fallback para o interpretador.
+    COMPILED,
+    // Executa as duas versões e falha na primeira divergência; útil para validar o StageCompiler.
+    VERIFIED,
+    // Dataset carregado em colunas (ColumnarExecutor), mantido entre execuções do mesmo QueryExecutor.
+    COLUMNAR;
+
+    public static ExecutionMode of(String name) {
+        switch (name) {
+            case "interpretado": return INTERPRETED;
+            case "compilado": return COMPILED;
+            case "verificado": return VERIFIED;
+            case "colunar": return COLUMNAR;
+            default: throw new IllegalArgumentException("Modo de execução desconhecido: " + name);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.mycompany.miniquery.runtime;
+
+// Resumo de uma execução: registros lidos do LOAD e gravados no SAVE.
+public final class ExecutionResult {
+
+    public final long recordsRead;
+    public final long recordsWritten;
+    public final String outputFile; // null quando não há SAVE
+    public final boolean cached; // SAVE atendido pelo ResultCache, sem ler o LOAD
+
+    public ExecutionResult(long recordsRead, long recordsWritten, String outputFile) {
+        this(recordsRead, recordsWritten, outputFile, false);
+    }
+
+    private ExecutionResult(long recordsRead, long recordsWritten, String outputFile, boolean cached) {
+        this.recordsRead = recordsRead;
+        this.recordsWritten = recordsWritten;
+        this.outputFile = outputFile;
+        this.cached = cached;
+    }
+
+    // Resultado copiado do cache; as contagens da execução original não são guardadas.
+    public static ExecutionResult cached(String outputFile) {
+        return new ExecutionResult(0, 0, outputFile, true);
+    }
+
+    @Override
+    public String toString() {
+        if (cached) {
+            return "resultado reaproveitado do cache em " + outputFile;
+        }
+        return String.format("%d registros lidos, %d gravados em %s",
+                recordsRead, recordsWritten, outputFile == null ? "<saída padrão>" : outputFile);
+    }
+}
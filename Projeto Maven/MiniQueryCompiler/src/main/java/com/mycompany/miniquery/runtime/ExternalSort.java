@@ -0,0 +1,234 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Ordenação externa do ORDER BY: até RUN_ROWS registros ficam em memória; cada lote cheio é
+// ordenado (List.sort é estável) e gravado em um arquivo temporário, uma linha JSON
+// [chave..., registro] por registro. No fim, os lotes são intercalados com um heap, no máximo
+// FAN_IN arquivos por vez; nos empates sai o lote mais antigo, então o resultado é o mesmo de uma
+// ordenação estável em memória.
+final class ExternalSort implements Closeable {
+
+    static final int RUN_ROWS = Integer.getInteger("miniquery.ordenacao.lote", 100_000);
+    static final int FAN_IN = Math.max(2, Integer.getInteger("miniquery.ordenacao.intercalacao", 64));
+    static final String DIRECTORY = System.getProperty("miniquery.ordenacao.dir", System.getProperty("java.io.tmpdir"));
+
+    static final class Entry {
+        final JsonNode[] key;
+        final JsonNode record;
+
+        Entry(JsonNode[] key, JsonNode record) {
+            this.key = key;
+            this.record = record;
+        }
+    }
+
+    private final ObjectMapper mapper;
+    private final RecordOrder order;
+    private final Comparator<Entry> byKey;
+    private List<Entry> buffer = new ArrayList<>();
+    private List<Path> runs = new ArrayList<>();
+    // Todos os arquivos temporários ainda não apagados.
+    private final List<Path> files = new ArrayList<>();
+
+    ExternalSort(ObjectMapper mapper, RecordOrder order) {
+        this.mapper = mapper;
+        this.order = order;
+        this.byKey = (a, b) -> order.compare(a.key, b.key);
+    }
+
+    void add(JsonNode[] key, JsonNode record) throws IOException {
+        buffer.add(new Entry(key, record));
+        if (buffer.size() >= RUN_ROWS) {
+            buffer.sort(byKey);
+            Path run = newRun();
+            try (RunWriter out = new RunWriter(run)) {
+                for (Entry entry : buffer) {
+                    out.accept(entry);
+                }
+            }
+            runs.add(run);
+            buffer = new ArrayList<>();
+        }
+    }
+
+    // Grava os registros em ordem em 'target', no máximo 'limit' (-1 = todos).
+    void drain(ResultWriter target, long limit) throws IOException {
+        buffer.sort(byKey);
+        if (runs.isEmpty()) {
+            long n = limit < 0 ? buffer.size() : Math.min(limit, buffer.size());
+            for (int i = 0; i < n; i++) {
+                target.write(buffer.get(i).record);
+            }
+            return;
+        }
+        while (runs.size() > FAN_IN) {
+            List<Path> merged = new ArrayList<>();
+            for (int i = 0; i < runs.size(); i += FAN_IN) {
+                List<Path> group = runs.subList(i, Math.min(i + FAN_IN, runs.size()));
+                Path run = newRun();
+                try (RunWriter out = new RunWriter(run)) {
+                    merge(group, null, out);
+                }
+                for (Path file : group) {
+                    delete(file);
+                }
+                merged.add(run);
+            }
+            runs = merged;
+        }
+        long[] written = {0};
+        merge(runs, buffer, entry -> {
+            if (limit >= 0 && written[0] == limit) {
+                return false;
+            }
+            target.write(entry.record);
+            written[0]++;
+            return true;
+        });
+    }
+
+    private interface Sink {
+        // Falso para encerrar a intercalação.
+        boolean accept(Entry entry) throws IOException;
+    }
+
+    // Intercala os lotes gravados (e, por último, o lote em memória já ordenado).
+    private void merge(List<Path> sorted, List<Entry> memory, Sink sink) throws IOException {
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            for (Path run : sorted) {
+                readers.add(new RunReader(run));
+            }
+            int sources = readers.size() + (memory == null ? 0 : 1);
+            int[] position = new int[1];
+            PriorityQueue<Head> heads = new PriorityQueue<>(sources, (a, b) -> {
+                int c = byKey.compare(a.entry, b.entry);
+                return c != 0 ? c : Integer.compare(a.source, b.source);
+            });
+            for (int i = 0; i < sources; i++) {
+                Entry first = i < readers.size() ? readers.get(i).next() : next(memory, position);
+                if (first != null) {
+                    heads.add(new Head(i, first));
+                }
+            }
+            while (!heads.isEmpty()) {
+                Head head = heads.poll();
+                if (!sink.accept(head.entry)) {
+                    return;
+                }
+                Entry next = head.source < readers.size() ? readers.get(head.source).next() : next(memory, position);
+                if (next != null) {
+                    heads.add(new Head(head.source, next));
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    // Próximo registro de uma das fontes da intercalação.
+    private static final class Head {
+        final int source;
+        final Entry entry;
+
+        Head(int source, Entry entry) {
+            this.source = source;
+            this.entry = entry;
+        }
+    }
+
+    private static Entry next(List<Entry> memory, int[] position) {
+        return position[0] < memory.size() ? memory.get(position[0]++) : null;
+    }
+
+    private Path newRun() throws IOException {
+        Path run = Files.createTempFile(Paths.get(DIRECTORY), "miniquery-", ".ordenacao");
+        files.add(run);
+        return run;
+    }
+
+    private void delete(Path file) throws IOException {
+        Files.deleteIfExists(file);
+        files.remove(file);
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        for (Path file : new ArrayList<>(files)) {
+            delete(file);
+        }
+    }
+
+    private final class RunWriter implements Sink, Closeable {
+        private final JsonGenerator generator;
+
+        RunWriter(Path run) throws IOException {
+            generator = mapper.getFactory().createGenerator(new BufferedOutputStream(Files.newOutputStream(run)), JsonEncoding.UTF8);
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public boolean accept(Entry entry) throws IOException {
+            generator.writeStartArray();
+            for (JsonNode value : entry.key) {
+                if (value == null) {
+                    generator.writeNull();
+                } else {
+                    mapper.writeTree(generator, value);
+                }
+            }
+            mapper.writeTree(generator, entry.record);
+            generator.writeEndArray();
+            generator.writeRaw('\n');
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    private final class RunReader implements Closeable {
+        private final JsonParser parser;
+
+        RunReader(Path run) throws IOException {
+            parser = mapper.getFactory().createParser(run.toFile());
+        }
+
+        Entry next() throws IOException {
+            if (parser.nextToken() == null) {
+                return null;
+            }
+            JsonNode line = mapper.readTree(parser);
+            JsonNode[] key = new JsonNode[order.keyCount()];
+            for (int i = 0; i < key.length; i++) {
+                key[i] = line.get(i);
+            }
+            return new Entry(key, line.get(key.length));
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+}
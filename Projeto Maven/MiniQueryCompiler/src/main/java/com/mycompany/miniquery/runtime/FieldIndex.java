@@ -0,0 +1,576 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mycompany.miniquery.compiler.SchemaInference;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Índice persistido de um caminho (ex: .cliente.idade) de um arquivo JSON, gravado ao lado dos dados
+// em "<arquivo><caminho>.<tipo>.mqidx" e identificado pela mesma impressão digital do .mqschema
+// (caminho, tamanho e data de modificação da origem). O arquivo é mapeado em memória, então uma
+// busca custa poucas leituras de página; os registros encontrados são relidos do JSON pela posição
+// guardada na tabela de registros do próprio índice.
+//
+// Formato: cabeçalho, tabela de registros (posição e tamanho em bytes de cada linha) e, conforme o
+// tipo, entradas (valor, linha) ordenadas ou uma tabela hash de valores distintos com suas linhas.
+// Só números e strings entram no índice; o cabeçalho marca se há null ou outros valores (booleanos,
+// objetos, arrays), que o JS converte nas comparações com '<', '<=', '>' e '>='.
+public final class FieldIndex {
+
+    public enum Kind {
+        // Entradas ordenadas por valor: atende a todos os operadores.
+        SORTED("ordenado"),
+        // Valores distintos em uma tabela hash: atende a '==' e '!='.
+        HASH("hash");
+
+        public final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+
+        public static Kind of(String label) {
+            for (Kind kind : values()) {
+                if (kind.label.equals(label)) {
+                    return kind;
+                }
+            }
+            throw new IllegalArgumentException("Tipo de índice desconhecido: " + label);
+        }
+    }
+
+    public static final String SUFFIX = ".mqidx";
+
+    private static final int MAGIC = 0x4D514958; // "MQIX"
+    private static final int VERSION = 2;
+    private static final int RECORD_ENTRY = 12;  // long posição + int tamanho
+    private static final int NUMBER_ENTRY = 12;  // double valor + int linha
+    private static final int STRING_ENTRY = 8;   // int chave + int linha
+    private static final byte NUMBER = 0;
+    private static final byte STRING = 1;
+    // Valores fora do índice, no cabeçalho.
+    private static final byte HAS_NULLS = 1;
+    private static final byte HAS_OTHERS = 2;
+
+    private final Kind kind;
+    private final String path;
+    private final String fingerprint;
+    private final ByteBuffer data;
+    private final int rows;
+    private final byte unindexed;
+    private final int recordTable;
+    // Índice ordenado: números, chaves distintas de string (ponteiros para o heap) e entradas de string.
+    private int numbers;
+    private int numberTable;
+    private int keys;
+    private int keyTable;
+    private int strings;
+    private int stringTable;
+    private int heap;
+    // Índice hash: slots com a posição de cada grupo (valor distinto) ou -1.
+    private int slots;
+    private int slotTable;
+    private int groups;
+
+    private FieldIndex(Kind kind, ByteBuffer data) {
+        this.kind = kind;
+        this.data = data;
+        if (data.getInt() != MAGIC || data.getInt() != VERSION || data.get() != kind.ordinal()) {
+            throw new IllegalArgumentException("cabeçalho inválido");
+        }
+        this.fingerprint = readString(data);
+        this.path = readString(data);
+        this.rows = data.getInt();
+        this.unindexed = data.get();
+        this.recordTable = data.position();
+        data.position(recordTable + rows * RECORD_ENTRY);
+
+        if (kind == Kind.SORTED) {
+            numbers = data.getInt();
+            numberTable = data.position();
+            data.position(numberTable + numbers * NUMBER_ENTRY);
+            keys = data.getInt();
+            keyTable = data.position();
+            data.position(keyTable + keys * 4);
+            strings = data.getInt();
+            stringTable = data.position();
+            data.position(stringTable + strings * STRING_ENTRY);
+            data.getInt(); // tamanho do heap
+            heap = data.position();
+        } else {
+            slots = data.getInt();
+            slotTable = data.position();
+            data.position(slotTable + slots * 4);
+            data.getInt(); // tamanho da área de grupos
+            groups = data.position();
+        }
+    }
+
+    public static Path sidecar(Path source, String jsonPath, Kind kind) {
+        return Paths.get(source + jsonPath + "." + kind.label + SUFFIX);
+    }
+
+    // Índice atual do caminho, ou null se não existe ou se a origem mudou desde que foi criado.
+    public static FieldIndex open(Path source, String jsonPath, Kind kind) {
+        Path file = sidecar(source, jsonPath, kind);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            FieldIndex index = new FieldIndex(kind, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            if (!index.fingerprint.equals(SchemaInference.fingerprint(source.toString())) || !index.path.equals(jsonPath)) {
+                System.err.println("AVISO: índice desatualizado ignorado: " + file);
+                return null;
+            }
+            return index;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            System.err.println("AVISO: índice inválido ignorado: " + file);
+            return null;
+        }
+    }
+
+    // Lê o caminho em todos os registros da origem e grava o índice ao lado dela.
+    public static FieldIndex build(Path source, String jsonPath, Kind kind) throws IOException {
+        String fingerprint = SchemaInference.fingerprint(source.toString());
+        ColumnarDataset dataset = ColumnarDataset.load(source, Collections.singletonList(jsonPath));
+        if (!dataset.hasRecordOffsets()) {
+            throw new IOException("Índices exigem um arquivo JSON em UTF-8: " + source);
+        }
+        Column column = dataset.column(jsonPath);
+        TreeMap<Double, IntList> numberRows = new TreeMap<>();
+        TreeMap<String, IntList> stringRows = new TreeMap<>();
+        byte unindexed = 0;
+        for (int row = 0; row < dataset.rowCount(); row++) {
+            JsonNode value = column.node(row);
+            if (value == null) {
+                continue;
+            }
+            if (value.isNumber()) {
+                numberRows.computeIfAbsent(normalize(value.doubleValue()), k -> new IntList()).add(row);
+            } else if (value.isTextual()) {
+                stringRows.computeIfAbsent(value.textValue(), k -> new IntList()).add(row);
+            } else {
+                unindexed |= value.isNull() ? HAS_NULLS : HAS_OTHERS;
+            }
+        }
+
+        Path file = sidecar(source, jsonPath, kind);
+        Path temp = Paths.get(file + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeByte(kind.ordinal());
+            writeString(out, fingerprint);
+            writeString(out, jsonPath);
+            out.writeInt(dataset.rowCount());
+            out.writeByte(unindexed);
+            for (int row = 0; row < dataset.rowCount(); row++) {
+                out.writeLong(dataset.recordOffset(row));
+                out.writeInt(dataset.recordLength(row));
+            }
+            if (kind == Kind.SORTED) {
+                writeSorted(out, numberRows, stringRows);
+            } else {
+                writeHash(out, numberRows, stringRows);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        FieldIndex index = open(source, jsonPath, kind);
+        if (index == null) {
+            throw new IOException("O arquivo '" + source + "' foi alterado durante a criação do índice");
+        }
+        return index;
+    }
+
+    private static void writeSorted(DataOutputStream out, TreeMap<Double, IntList> numberRows,
+                                    TreeMap<String, IntList> stringRows) throws IOException {
+        out.writeInt(total(numberRows));
+        for (Map.Entry<Double, IntList> entry : numberRows.entrySet()) {
+            IntList rows = entry.getValue();
+            for (int i = 0; i < rows.size; i++) {
+                out.writeDouble(entry.getKey());
+                out.writeInt(rows.values[i]);
+            }
+        }
+
+        List<byte[]> encoded = new ArrayList<>();
+        out.writeInt(stringRows.size());
+        int position = 0;
+        for (String key : stringRows.keySet()) {
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            out.writeInt(position);
+            position += 4 + bytes.length;
+        }
+        out.writeInt(total(stringRows));
+        int keyIndex = 0;
+        for (IntList rows : stringRows.values()) {
+            for (int i = 0; i < rows.size; i++) {
+                out.writeInt(keyIndex);
+                out.writeInt(rows.values[i]);
+            }
+            keyIndex++;
+        }
+        out.writeInt(position);
+        for (byte[] bytes : encoded) {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    // Cada grupo: tipo, valor, quantidade de linhas e as linhas em ordem crescente.
+    private static void writeHash(DataOutputStream out, TreeMap<Double, IntList> numberRows,
+                                  TreeMap<String, IntList> stringRows) throws IOException {
+        int distinct = numberRows.size() + stringRows.size();
+        int slotCount = Integer.highestOneBit(Math.max(2, distinct * 2 - 1)) << 1;
+        int[] slotTable = new int[slotCount];
+        Arrays.fill(slotTable, -1);
+        List<byte[]> keys = new ArrayList<>();
+        List<IntList> postings = new ArrayList<>();
+        int position = 0;
+        for (Map.Entry<Double, IntList> entry : numberRows.entrySet()) {
+            place(slotTable, hash(entry.getKey()), position);
+            keys.add(null);
+            postings.add(entry.getValue());
+            position += 1 + 8 + 4 + entry.getValue().size * 4;
+        }
+        for (Map.Entry<String, IntList> entry : stringRows.entrySet()) {
+            byte[] bytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            place(slotTable, hash(entry.getKey()), position);
+            keys.add(bytes);
+            postings.add(entry.getValue());
+            position += 1 + 4 + bytes.length + 4 + entry.getValue().size * 4;
+        }
+
+        out.writeInt(slotCount);
+        for (int slot : slotTable) {
+            out.writeInt(slot);
+        }
+        out.writeInt(position);
+        Double[] numberKeys = numberRows.keySet().toArray(new Double[0]);
+        for (int g = 0; g < postings.size(); g++) {
+            byte[] bytes = keys.get(g);
+            if (bytes == null) {
+                out.writeByte(NUMBER);
+                out.writeDouble(numberKeys[g]);
+            } else {
+                out.writeByte(STRING);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            IntList rows = postings.get(g);
+            out.writeInt(rows.size);
+            for (int i = 0; i < rows.size; i++) {
+                out.writeInt(rows.values[i]);
+            }
+        }
+    }
+
+    private static void place(int[] slotTable, int hash, int position) {
+        int mask = slotTable.length - 1;
+        int slot = hash & mask;
+        while (slotTable[slot] != -1) {
+            slot = (slot + 1) & mask;
+        }
+        slotTable[slot] = position;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int rowCount() {
+        return rows;
+    }
+
+    // Posição e tamanho (em bytes) do registro na origem, para o RecordReader.
+    long recordOffset(int row) {
+        return data.getLong(recordTable + row * RECORD_ENTRY);
+    }
+
+    int recordLength(int row) {
+        return data.getInt(recordTable + row * RECORD_ENTRY + 8);
+    }
+
+    // Linhas em que 'campo op número' é verdadeiro (como em Comparisons.compareNumber);
+    // null quando este tipo de índice não atende o operador.
+    public Match matchNumber(Operator op, double constant) {
+        double key = normalize(constant);
+        if (kind == Kind.HASH) {
+            return matchGroup(op, findGroup(NUMBER, hash(key), key, null));
+        }
+        // Strings, null e booleanos convertidos para número também podem passar.
+        if (!coversConversions(op, constant, strings > 0)) {
+            return null;
+        }
+        int lower = numberBound(key, false);
+        int upper = numberBound(key, true);
+        return range(op, numberTable, NUMBER_ENTRY, 8, numbers, lower, upper);
+    }
+
+    // Linhas em que 'campo op string' é verdadeiro (como em Comparisons.compareString).
+    public Match matchString(Operator op, String constant) {
+        if (kind == Kind.HASH) {
+            return matchGroup(op, findGroup(STRING, hash(constant), 0, constant.getBytes(StandardCharsets.UTF_8)));
+        }
+        // Números (e null, booleanos) só passam quando Number(constante) não é NaN.
+        if (!coversConversions(op, Comparisons.toNumber(constant), numbers > 0)) {
+            return null;
+        }
+        int lower = stringEntryBound(keyBound(constant, false));
+        int upper = stringEntryBound(keyBound(constant, true));
+        return range(op, stringTable, STRING_ENTRY, 4, strings, lower, upper);
+    }
+
+    // Se as entradas do tipo da constante bastam para '<', '<=', '>' e '>=' (com número 'converted'):
+    // nenhuma linha do outro tipo ('otherType'), null ou outro valor pode passar pela conversão do JS.
+    private boolean coversConversions(Operator op, double converted, boolean otherType) {
+        if (op == Operator.EQ || op == Operator.NE) {
+            return true;
+        }
+        if ((unindexed & HAS_OTHERS) != 0) {
+            return false;
+        }
+        if ((unindexed & HAS_NULLS) != 0 && op.matches(0, converted)) {
+            return false;
+        }
+        return !otherType || Double.isNaN(converted);
+    }
+
+    // [lower, upper) são as entradas iguais à constante; os demais operadores são intervalos vizinhos.
+    private Match range(Operator op, int table, int stride, int rowOffset, int count, int lower, int upper) {
+        switch (op) {
+            case LT: return new Match(table, stride, rowOffset, 0, lower, false);
+            case LE: return new Match(table, stride, rowOffset, 0, upper, false);
+            case GT: return new Match(table, stride, rowOffset, upper, count, false);
+            case GE: return new Match(table, stride, rowOffset, lower, count, false);
+            case EQ: return new Match(table, stride, rowOffset, lower, upper, false);
+            default: return new Match(table, stride, rowOffset, lower, upper, true);
+        }
+    }
+
+    private Match matchGroup(Operator op, int group) {
+        if (op != Operator.EQ && op != Operator.NE) {
+            return null;
+        }
+        int postings = 0;
+        int size = 0;
+        if (group >= 0) {
+            int at = groups + group;
+            at += data.get(at) == NUMBER ? 1 + 8 : 1 + 4 + data.getInt(at + 1);
+            size = data.getInt(at);
+            postings = at + 4;
+        }
+        return new Match(postings, 4, 0, 0, size, op == Operator.NE);
+    }
+
+    // Primeira entrada com valor >= key (ou > key, se 'after').
+    private int numberBound(double key, boolean after) {
+        int lo = 0;
+        int hi = numbers;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            double value = data.getDouble(numberTable + mid * NUMBER_ENTRY);
+            if (value < key || (after && value == key)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Primeira chave distinta >= constant (ou > constant, se 'after'); chaves seguem String.compareTo.
+    private int keyBound(String constant, boolean after) {
+        int lo = 0;
+        int hi = keys;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int comparison = keyAt(mid).compareTo(constant);
+            if (comparison < 0 || (after && comparison == 0)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Primeira entrada de string cuja chave tem índice >= keyIndex.
+    private int stringEntryBound(int keyIndex) {
+        int lo = 0;
+        int hi = strings;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (data.getInt(stringTable + mid * STRING_ENTRY) < keyIndex) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private String keyAt(int keyIndex) {
+        int at = heap + data.getInt(keyTable + keyIndex * 4);
+        return decode(at + 4, data.getInt(at));
+    }
+
+    // Posição do grupo (relativa à área de grupos) com o valor procurado, ou -1.
+    private int findGroup(byte type, int hash, double number, byte[] text) {
+        int mask = slots - 1;
+        int slot = hash & mask;
+        int group;
+        while ((group = data.getInt(slotTable + slot * 4)) != -1) {
+            int at = groups + group;
+            if (data.get(at) == type) {
+                if (type == NUMBER ? data.getDouble(at + 1) == number : sameBytes(at + 1, text)) {
+                    return group;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean sameBytes(int at, byte[] text) {
+        if (data.getInt(at) != text.length) {
+            return false;
+        }
+        for (int i = 0; i < text.length; i++) {
+            if (data.get(at + 4 + i) != text[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String decode(int at, int length) {
+        byte[] bytes = new byte[length];
+        data.get(at, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // -0.0 e 0.0 são iguais no FILTER; guardamos só 0.0 para que a ordem e o hash concordem.
+    private static double normalize(double value) {
+        return value + 0.0;
+    }
+
+    private static int hash(double key) {
+        return mix(Double.hashCode(key));
+    }
+
+    private static int hash(String key) {
+        return mix(key.hashCode());
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int total(Map<?, IntList> groups) {
+        int total = 0;
+        for (IntList rows : groups.values()) {
+            total += rows.size;
+        }
+        return total;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer data) {
+        byte[] bytes = new byte[data.getInt()];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Resultado de uma busca: entradas [from, to) de uma tabela do índice, ou o complemento delas
+    // ('!='). A contagem sai sem ler as linhas, para o planejador decidir se o índice compensa.
+    public final class Match {
+
+        private final int table;
+        private final int stride;
+        private final int rowOffset;
+        private final int from;
+        private final int to;
+        private final boolean complement;
+        public final int count;
+
+        private Match(int table, int stride, int rowOffset, int from, int to, boolean complement) {
+            this.table = table;
+            this.stride = stride;
+            this.rowOffset = rowOffset;
+            this.from = from;
+            this.to = Math.max(from, to);
+            this.complement = complement;
+            this.count = complement ? rows - (this.to - from) : this.to - from;
+        }
+
+        public FieldIndex index() {
+            return FieldIndex.this;
+        }
+
+        // Linhas em ordem crescente, que é a ordem dos registros no arquivo.
+        public int[] rows() {
+            int[] matched = new int[to - from];
+            for (int i = from; i < to; i++) {
+                matched[i - from] = data.getInt(table + i * stride + rowOffset);
+            }
+            Arrays.sort(matched);
+            if (!complement) {
+                return matched;
+            }
+            int[] others = new int[count];
+            int next = 0;
+            int k = 0;
+            for (int row = 0; row < rows; row++) {
+                if (k < matched.length && matched[k] == row) {
+                    k++;
+                } else {
+                    others[next++] = row;
+                }
+            }
+            return others;
+        }
+    }
+
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.FilterCondition;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Seletividades observadas dos FILTERs sobre um arquivo do LOAD, guardadas pelas execuções com
+// --metricas no arquivo auxiliar "<arquivo>.mqstats" e usadas pelo QueryOptimizer no lugar das
+// estimativas padrão. Cada execução entra com o peso das suas amostras e as anteriores valem a
+// metade, então a estatística acompanha mudanças nos dados sem oscilar a cada execução. Ao
+// contrário do .mqschema, o arquivo não é invalidado quando os dados mudam: uma seletividade
+// antiga ainda é uma estimativa melhor que a padrão.
+final class FilterStatistics {
+
+    static final String SUFFIX = ".mqstats";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    static final FilterStatistics NONE = new FilterStatistics(Collections.emptyMap(), Collections.emptyMap());
+    // Estatísticas lidas, por arquivo auxiliar e data de modificação.
+    private static final Map<String, FilterStatistics> MEMORY = new ConcurrentHashMap<>();
+
+    private final Map<String, Double> selectivities;
+    private final Map<String, Double> weights;
+
+    private FilterStatistics(Map<String, Double> selectivities, Map<String, Double> weights) {
+        this.selectivities = selectivities;
+        this.weights = weights;
+    }
+
+    // Chave do FILTER: o caminho, o operador e a constante (ou o caminho) comparada, sem a linha.
+    static String key(FilterCondition filter) {
+        return filter.jsonPath + " " + filter.operator + " " + filter.value;
+    }
+
+    static Path sidecar(String loadPath) {
+        return Paths.get(loadPath + SUFFIX);
+    }
+
+    // Estatísticas do arquivo do LOAD; vazias quando nenhuma execução com métricas as gravou.
+    static FilterStatistics of(String loadPath) {
+        Path sidecar = sidecar(loadPath);
+        if (!Files.isRegularFile(sidecar)) {
+            return NONE;
+        }
+        String version;
+        try {
+            version = sidecar.toAbsolutePath().normalize() + "|" + Files.getLastModifiedTime(sidecar).toMillis();
+        } catch (IOException e) {
+            return NONE;
+        }
+        FilterStatistics cached = MEMORY.get(version);
+        if (cached != null) {
+            return cached;
+        }
+        FilterStatistics statistics = read(sidecar);
+        if (MEMORY.size() >= 256) {
+            MEMORY.clear();
+        }
+        MEMORY.put(version, statistics);
+        return statistics;
+    }
+
+    // Seletividade observada do FILTER; null quando não há estatística.
+    Double selectivity(FilterCondition filter) {
+        return selectivities.get(key(filter));
+    }
+
+    private static FilterStatistics read(Path sidecar) {
+        try {
+            JsonNode stored = MAPPER.readTree(sidecar.toFile());
+            Map<String, Double> selectivities = new TreeMap<>();
+            Map<String, Double> weights = new TreeMap<>();
+            Iterator<Map.Entry<String, JsonNode>> filters = stored.path("filtros").fields();
+            while (filters.hasNext()) {
+                Map.Entry<String, JsonNode> filter = filters.next();
+                double selectivity = filter.getValue().path("seletividade").asDouble(Double.NaN);
+                if (selectivity >= 0 && selectivity <= 1) {
+                    selectivities.put(filter.getKey(), selectivity);
+                    weights.put(filter.getKey(), filter.getValue().path("peso").asDouble(1));
+                }
+            }
+            return new FilterStatistics(selectivities, weights);
+        } catch (IOException | RuntimeException e) {
+            return NONE;
+        }
+    }
+
+    // Junta as seletividades de uma execução, medidas em 'samples' registros, às já guardadas.
+    static void record(String loadPath, Map<String, Double> observed, long samples) {
+        if (observed.isEmpty() || samples == 0) {
+            return;
+        }
+        Path sidecar = sidecar(loadPath);
+        FilterStatistics previous = Files.isRegularFile(sidecar) ? read(sidecar) : NONE;
+        Map<String, Double> selectivities = new TreeMap<>(previous.selectivities);
+        Map<String, Double> weights = new TreeMap<>(previous.weights);
+        for (Map.Entry<String, Double> filter : observed.entrySet()) {
+            double oldWeight = weights.getOrDefault(filter.getKey(), 0.0) / 2;
+            double oldValue = selectivities.getOrDefault(filter.getKey(), 0.0);
+            double weight = oldWeight + samples;
+            selectivities.put(filter.getKey(), (oldValue * oldWeight + filter.getValue() * samples) / weight);
+            weights.put(filter.getKey(), weight);
+        }
+        ObjectNode stored = MAPPER.createObjectNode();
+        ObjectNode filters = stored.putObject("filtros");
+        for (Map.Entry<String, Double> filter : selectivities.entrySet()) {
+            filters.putObject(filter.getKey())
+                    .put("seletividade", filter.getValue())
+                    .put("peso", weights.get(filter.getKey()));
+        }
+        try {
+            // Gravado ao lado e renomeado, para que uma leitura concorrente não veja o arquivo pela metade.
+            Path parent = sidecar.toAbsolutePath().getParent();
+            Path temp = Files.createTempFile(parent, sidecar.getFileName().toString(), ".tmp");
+            try {
+                MAPPER.writerWithDefaultPrettyPrinter().writeValue(temp.toFile(), stored);
+                Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            // Diretório somente leitura: as próximas execuções usam as estimativas padrão.
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.Arrays;
+
+// Tabela hash do GROUP BY com endereçamento aberto (sondagem linear) e acumuladores primitivos:
+// a chave de cada grupo fica em vetores por tipo (número como double, texto como String) e cada
+// agregação ocupa uma posição de long[] (contagem) e de double[] (soma, mínimo ou máximo), então
+// um registro de um grupo já existente não aloca nada. Os grupos são numerados na ordem em que a
+// chave apareceu pela primeira vez, a mesma do Map do script gerado.
+final class GroupTable {
+
+    static final int COUNT = 0;
+    static final int SUM = 1;
+    static final int AVG = 2;
+    static final int MIN = 3;
+    static final int MAX = 4;
+
+    // Tipos de chave; ausente e null formam um único grupo, como o '?? null' do script.
+    private static final byte NULL = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte NUMBER = 3;
+    private static final byte TEXT = 4;
+    private static final byte OTHER = 5; // objetos e arrays, comparados pelo texto JSON
+
+    private final int[] functions;
+    private final int seed;
+    private int[] slots; // índice do grupo + 1; 0 = vazio
+    private int size;
+    private int[] hashes;
+    private byte[] kinds;
+    private double[] numbers;
+    private String[] texts;
+    private JsonNode[] keys; // a chave como apareceu no primeiro registro do grupo
+    private long[] firstSeq;
+    private long[] counts;
+    private double[] values;
+
+    // 'seed' muda a função hash, para que as partições de um nível se espalhem na tabela do seguinte.
+    GroupTable(int[] functions, int seed) {
+        this.functions = functions;
+        this.seed = seed;
+        this.slots = new int[64];
+        allocate(32);
+    }
+
+    static int function(String name) {
+        switch (name) {
+            case "COUNT": return COUNT;
+            case "SUM": return SUM;
+            case "AVG": return AVG;
+            case "MIN": return MIN;
+            default: return MAX;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    long firstSeq(int group) {
+        return firstSeq[group];
+    }
+
+    // Grupo da chave, criado se preciso com 'seq' como primeiro registro; -1 quando a chave é nova
+    // e a tabela já tem 'maxGroups' grupos.
+    int group(JsonNode key, long seq, int maxGroups) {
+        byte kind = kind(key);
+        double number = kind == NUMBER ? normalize(key.doubleValue()) : 0;
+        String text = kind == TEXT ? key.textValue() : kind == OTHER ? key.toString() : null;
+        int hash = mix(hash(kind, number, text), seed);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        for (int entry = slots[slot]; entry != 0; entry = slots[slot]) {
+            int group = entry - 1;
+            if (hashes[group] == hash && kinds[group] == kind
+                    && (kind == NUMBER ? numbers[group] == number : kind < NUMBER || texts[group].equals(text))) {
+                return group;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size >= maxGroups) {
+            return -1;
+        }
+        if (size == hashes.length) {
+            allocate(size * 2);
+        }
+        int group = size++;
+        hashes[group] = hash;
+        kinds[group] = kind;
+        numbers[group] = number;
+        texts[group] = text;
+        keys[group] = key == null ? NullNode.getInstance() : key;
+        firstSeq[group] = seq;
+        slots[slot] = group + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return group;
+    }
+
+    // Soma 'value' à agregação 'aggregate' do grupo: o COUNT conta valores não nulos e as demais
+    // usam só números (os outros valores são ignorados, como no script).
+    void add(int group, int aggregate, JsonNode value) {
+        int i = group * functions.length + aggregate;
+        if (functions[aggregate] == COUNT) {
+            if (value != null && !value.isNull()) {
+                counts[i]++;
+            }
+            return;
+        }
+        if (value == null || !value.isNumber()) {
+            return;
+        }
+        double v = value.doubleValue();
+        long n = counts[i]++;
+        switch (functions[aggregate]) {
+            case MIN:
+                if (n == 0 || v < values[i]) {
+                    values[i] = v;
+                }
+                break;
+            case MAX:
+                if (n == 0 || v > values[i]) {
+                    values[i] = v;
+                }
+                break;
+            default:
+                values[i] += v;
+        }
+    }
+
+    // Registro de saída do grupo: a chave e uma agregação por nome, na ordem do GROUP BY.
+    ObjectNode record(int group, String keyName, String[] names) {
+        ObjectNode record = JsonNodeFactory.instance.objectNode();
+        record.set(keyName, keys[group]);
+        for (int a = 0; a < functions.length; a++) {
+            int i = group * functions.length + a;
+            long n = counts[i];
+            JsonNode value;
+            if (functions[a] == COUNT) {
+                value = n == (int) n ? IntNode.valueOf((int) n) : LongNode.valueOf(n);
+            } else if (n == 0) {
+                value = NullNode.getInstance();
+            } else {
+                value = number(functions[a] == AVG ? values[i] / n : values[i]);
+            }
+            record.set(names[a], value);
+        }
+        return record;
+    }
+
+    // Como o JSON.stringify: números inteiros sem casa decimal.
+    private static JsonNode number(double v) {
+        if (v == Math.rint(v) && Math.abs(v) < 9.0e18) {
+            long l = (long) v;
+            return l == (int) l ? IntNode.valueOf((int) l) : LongNode.valueOf(l);
+        }
+        return DoubleNode.valueOf(v);
+    }
+
+    // Hash da chave com outra semente, para escolher a partição em disco.
+    static int partition(JsonNode key, int seed, int partitions) {
+        byte kind = kind(key);
+        double number = kind == NUMBER ? normalize(key.doubleValue()) : 0;
+        String text = kind == TEXT ? key.textValue() : kind == OTHER ? key.toString() : null;
+        return Math.floorMod(mix(hash(kind, number, text), seed), partitions);
+    }
+
+    private static byte kind(JsonNode key) {
+        if (key == null || key.isNull()) {
+            return NULL;
+        }
+        if (key.isBoolean()) {
+            return key.booleanValue() ? TRUE : FALSE;
+        }
+        if (key.isNumber()) {
+            return NUMBER;
+        }
+        return key.isTextual() ? TEXT : OTHER;
+    }
+
+    // 0 e -0 são a mesma chave (o JSON.stringify grava os dois como 0).
+    private static double normalize(double v) {
+        return v == 0 ? 0 : v;
+    }
+
+    private static int hash(byte kind, double number, String text) {
+        if (kind == NUMBER) {
+            return Double.hashCode(number);
+        }
+        return text == null ? kind : text.hashCode() * 31 + kind;
+    }
+
+    // Finalizador do MurmurHash3, para que chaves próximas não caiam em posições vizinhas.
+    private static int mix(int h, int seed) {
+        h ^= seed * 0x9E3779B9;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    private void allocate(int capacity) {
+        int aggregates = Math.max(1, functions.length);
+        hashes = hashes == null ? new int[capacity] : Arrays.copyOf(hashes, capacity);
+        kinds = kinds == null ? new byte[capacity] : Arrays.copyOf(kinds, capacity);
+        numbers = numbers == null ? new double[capacity] : Arrays.copyOf(numbers, capacity);
+        texts = texts == null ? new String[capacity] : Arrays.copyOf(texts, capacity);
+        keys = keys == null ? new JsonNode[capacity] : Arrays.copyOf(keys, capacity);
+        firstSeq = firstSeq == null ? new long[capacity] : Arrays.copyOf(firstSeq, capacity);
+        counts = counts == null ? new long[capacity * aggregates] : Arrays.copyOf(counts, capacity * aggregates);
+        values = values == null ? new double[capacity * aggregates] : Arrays.copyOf(values, capacity * aggregates);
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int group = 0; group < size; group++) {
+            int slot = hashes[group] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = group + 1;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.GroupByCommand;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Aplica o GROUP BY aos registros que saem das etapas FILTER/SELECT e entrega um registro por
+// grupo ao 'target' (o OrderedWriter do ORDER BY/LIMIT seguinte, se houver) no close().
+// As agregações ficam em uma GroupTable de até MAX_GROUPS grupos; com a tabela cheia, os registros
+// de chaves novas vão para PARTITIONS arquivos temporários, uma linha JSON [seq, chave, valores...]
+// por registro, escolhidos pelo hash da chave. Cada partição é agregada depois com uma tabela nova
+// (e particionada de novo se ainda não couber, até MAX_LEVEL níveis). Todas as linhas de uma chave
+// caem na mesma partição, na ordem de leitura, então as somas são as mesmas da agregação em memória;
+// os grupos das partições voltam à ordem de primeira ocorrência por um ExternalSort sobre 'seq'.
+final class GroupWriter extends ResultWriter {
+
+    static final int MAX_GROUPS = Math.max(1, Integer.getInteger("miniquery.agrupamento.grupos", 1_000_000));
+    static final int PARTITIONS = Math.max(2, Integer.getInteger("miniquery.agrupamento.particoes", 16));
+    private static final int MAX_LEVEL = 8;
+
+    private final ObjectMapper mapper;
+    private final ResultWriter target;
+    private final QueryPipeline pipeline;
+    private final String[] keyPath;
+    private final String[][] fieldPaths;
+    private final int[] functions;
+    private final String keyName;
+    private final String[] names;
+    private final GroupTable table;
+    private final JsonNode[] values;
+    private Partitions spill;
+    private long seq;
+    private long groups;
+
+    GroupWriter(ObjectMapper mapper, ResultWriter target, QueryPipeline pipeline) {
+        GroupByCommand group = pipeline.group();
+        this.mapper = mapper;
+        this.target = target;
+        this.pipeline = pipeline;
+        this.keyPath = JsonPaths.split(group.keyPath);
+        this.fieldPaths = new String[group.fields.size()][];
+        this.functions = new int[fieldPaths.length];
+        this.names = new String[fieldPaths.length];
+        for (int i = 0; i < fieldPaths.length; i++) {
+            fieldPaths[i] = JsonPaths.split(group.fields.get(i));
+            functions[i] = GroupTable.function(group.functions.get(i));
+            names[i] = group.outputName(i);
+        }
+        this.keyName = group.keyName();
+        this.table = new GroupTable(functions, 0);
+        this.values = new JsonNode[fieldPaths.length];
+    }
+
+    @Override
+    void write(JsonNode record) throws IOException {
+        JsonNode key = JsonPaths.resolve(record, keyPath);
+        int group = table.group(key, seq, MAX_GROUPS);
+        if (group >= 0) {
+            for (int i = 0; i < fieldPaths.length; i++) {
+                table.add(group, i, JsonPaths.resolve(record, fieldPaths[i]));
+            }
+        } else {
+            if (spill == null) {
+                spill = new Partitions(1);
+            }
+            for (int i = 0; i < fieldPaths.length; i++) {
+                values[i] = JsonPaths.resolve(record, fieldPaths[i]);
+            }
+            spill.add(seq, key, values);
+        }
+        seq++;
+    }
+
+    // Quantos grupos o 'target' recebeu, depois de cortados pelo LIMIT; válido depois do close().
+    @Override
+    long resultCount(long written) {
+        return target.resultCount(groups);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            emit(table);
+            if (spill != null && !target.isFull()) {
+                // As chaves das partições apareceram depois de todas as da tabela em memória.
+                try (ExternalSort bySeq = new ExternalSort(mapper, new RecordOrder(new boolean[] {false}))) {
+                    spill.aggregate(bySeq);
+                    bySeq.drain(new Emitter(), -1);
+                }
+            }
+        } finally {
+            try {
+                if (spill != null) {
+                    spill.close();
+                }
+            } finally {
+                target.close();
+            }
+        }
+    }
+
+    private void emit(GroupTable groups) throws IOException {
+        for (int group = 0; group < groups.size() && !target.isFull(); group++) {
+            emit(groups.record(group, keyName, names));
+        }
+    }
+
+    // Entrega o registro do grupo com a chave do ORDER BY seguinte, lida no próprio registro.
+    private void emit(JsonNode record) throws IOException {
+        groups++;
+        target.write(record, pipeline.orderKey(record));
+    }
+
+    // Destino do ExternalSort que devolve os grupos das partições à ordem de primeira ocorrência.
+    private final class Emitter extends ResultWriter {
+        @Override
+        void write(JsonNode record) throws IOException {
+            if (!target.isFull()) {
+                emit(record);
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    // Arquivos temporários de um nível de particionamento.
+    private final class Partitions implements Closeable {
+        private final int level;
+        private final Path[] files = new Path[PARTITIONS];
+        private final JsonGenerator[] outputs = new JsonGenerator[PARTITIONS];
+
+        Partitions(int level) {
+            this.level = level;
+        }
+
+        void add(long seq, JsonNode key, JsonNode[] values) throws IOException {
+            int p = GroupTable.partition(key, level, PARTITIONS);
+            if (outputs[p] == null) {
+                files[p] = Files.createTempFile(Paths.get(ExternalSort.DIRECTORY), "miniquery-", ".agrupamento");
+                outputs[p] = mapper.getFactory().createGenerator(
+                        new BufferedOutputStream(Files.newOutputStream(files[p])), JsonEncoding.UTF8);
+                outputs[p].setRootValueSeparator(null);
+            }
+            JsonGenerator out = outputs[p];
+            out.writeStartArray();
+            out.writeNumber(seq);
+            write(out, key);
+            for (JsonNode value : values) {
+                write(out, value);
+            }
+            out.writeEndArray();
+            out.writeRaw('\n');
+        }
+
+        private void write(JsonGenerator out, JsonNode value) throws IOException {
+            if (value == null) {
+                out.writeNull();
+            } else {
+                mapper.writeTree(out, value);
+            }
+        }
+
+        // Agrega cada partição com uma tabela nova e manda os grupos, com a posição da primeira
+        // ocorrência como chave, para 'bySeq'. As linhas que ainda não cabem vão para o nível seguinte.
+        void aggregate(ExternalSort bySeq) throws IOException {
+            for (int p = 0; p < PARTITIONS; p++) {
+                if (outputs[p] == null) {
+                    continue;
+                }
+                outputs[p].close();
+                outputs[p] = null;
+                GroupTable partition = new GroupTable(functions, MAX_LEVEL + level);
+                int maxGroups = level < MAX_LEVEL ? MAX_GROUPS : Integer.MAX_VALUE;
+                JsonNode[] row = new JsonNode[functions.length];
+                try (Partitions next = new Partitions(level + 1);
+                     JsonParser parser = mapper.getFactory().createParser(files[p].toFile())) {
+                    while (parser.nextToken() != null) {
+                        JsonNode line = mapper.readTree(parser);
+                        long rowSeq = line.get(0).longValue();
+                        JsonNode key = line.get(1);
+                        int group = partition.group(key, rowSeq, maxGroups);
+                        for (int i = 0; i < row.length; i++) {
+                            row[i] = line.get(2 + i);
+                            if (group >= 0) {
+                                partition.add(group, i, row[i]);
+                            }
+                        }
+                        if (group < 0) {
+                            next.add(rowSeq, key, row);
+                        }
+                    }
+                    Files.deleteIfExists(files[p]);
+                    files[p] = null;
+                    for (int group = 0; group < partition.size(); group++) {
+                        bySeq.add(new JsonNode[] {LongNode.valueOf(partition.firstSeq(group))},
+                                partition.record(group, keyName, names));
+                    }
+                    next.aggregate(bySeq);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (int p = 0; p < PARTITIONS; p++) {
+                try {
+                    if (outputs[p] != null) {
+                        outputs[p].close();
+                    }
+                } finally {
+                    if (files[p] != null) {
+                        Files.deleteIfExists(files[p]);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.mycompany.miniquery.runtime;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// Escolhe índices persistidos (FieldIndex) para os FILTERs que comparam um caminho com uma constante.
+// Só compensa quando poucas linhas passam: acima de SELECTIVITY das linhas, ler os registros um a um
+// sai mais caro que a varredura sequencial do arquivo. As linhas encontradas ainda passam pelo
+// pipeline inteiro, então os demais FILTERs e os SELECTs continuam valendo.
+final class IndexPlanner {
+
+    static final double SELECTIVITY = Double.parseDouble(System.getProperty("miniquery.indice.seletividade", "0.2"));
+
+    // Linhas candidatas (crescentes) e o índice cuja tabela de registros localiza cada uma.
+    static final class Candidates {
+        final FieldIndex index;
+        final int[] rows;
+
+        Candidates(FieldIndex index, int[] rows) {
+            this.index = index;
+            this.rows = rows;
+        }
+    }
+
+    private IndexPlanner() {
+    }
+
+    // null quando nenhum índice seletivo atende à consulta (varredura completa).
+    static Candidates choose(QueryPipeline pipeline) {
+        SourcePlan plan = SourcePlan.of(pipeline.getStageCommands());
+        if (plan.unsupported != null) {
+            return null;
+        }
+        Path source = Paths.get(pipeline.loadPath);
+        List<FieldIndex.Match> selective = new ArrayList<>();
+        for (SourcePlan.Filter filter : plan.filters) {
+            if (filter.left == null || filter.rightIsPath) {
+                continue;
+            }
+            FieldIndex.Match best = null;
+            for (FieldIndex.Kind kind : FieldIndex.Kind.values()) {
+                FieldIndex index = FieldIndex.open(source, filter.left, kind);
+                if (index == null) {
+                    continue;
+                }
+                FieldIndex.Match match = filter.numeric
+                        ? index.matchNumber(filter.operator, filter.number)
+                        : index.matchString(filter.operator, filter.text);
+                if (match != null && (best == null || match.count < best.count)) {
+                    best = match;
+                }
+            }
+            if (best != null && best.count <= best.index().rowCount() * SELECTIVITY) {
+                selective.add(best);
+            }
+        }
+        if (selective.isEmpty()) {
+            return null;
+        }
+        // Interseção das linhas de todos os índices seletivos, a partir do menor.
+        selective.sort(Comparator.comparingInt(match -> match.count));
+        int[] rows = selective.get(0).rows();
+        for (int i = 1; i < selective.size() && rows.length > 0; i++) {
+            rows = intersect(rows, selective.get(i).rows());
+        }
+        return new Candidates(selective.get(0).index(), rows);
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
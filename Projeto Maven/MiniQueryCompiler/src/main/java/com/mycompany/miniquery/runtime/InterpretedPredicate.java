@@ -0,0 +1,48 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.FilterCondition;
+
+// Avalia um FilterCondition diretamente, com caminhos e constantes preparados na construção.
+public final class InterpretedPredicate implements RecordPredicate {
+
+    private final String[] leftPath;
+    private final Operator operator;
+    private final String[] rightPath;
+    private final String rightString;
+    private final double rightNumber;
+    private final boolean numeric;
+
+    public InterpretedPredicate(FilterCondition cmd) {
+        this.leftPath = JsonPaths.split(cmd.jsonPath);
+        this.operator = Operator.of(cmd.operator);
+        if (cmd.isPath()) {
+            this.rightPath = JsonPaths.split(cmd.value);
+            this.rightString = null;
+            this.rightNumber = Double.NaN;
+            this.numeric = false;
+        } else if (cmd.isNumber()) {
+            this.rightPath = null;
+            this.rightString = null;
+            this.rightNumber = Double.parseDouble(cmd.value);
+            this.numeric = true;
+        } else {
+            this.rightPath = null;
+            this.rightString = cmd.value;
+            this.rightNumber = Double.NaN;
+            this.numeric = false;
+        }
+    }
+
+    @Override
+    public boolean test(JsonNode record) {
+        JsonNode left = JsonPaths.resolve(record, leftPath);
+        if (rightPath != null) {
+            return Comparisons.compareNodes(left, operator, JsonPaths.resolve(record, rightPath));
+        }
+        if (numeric) {
+            return Comparisons.compareNumber(left, operator, rightNumber);
+        }
+        return Comparisons.compareString(left, operator, rightString);
+    }
+}
@@ -0,0 +1,34 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.SelectCommand;
+
+// Executa um SelectCommand; campos ausentes são omitidos, como faz o JSON.stringify com undefined.
+public final class InterpretedProjector implements RecordProjector {
+
+    private final String[][] paths;
+    private final String[] names;
+
+    public InterpretedProjector(SelectCommand cmd) {
+        this.paths = new String[cmd.fields.size()][];
+        this.names = new String[cmd.fields.size()];
+        for (int i = 0; i < cmd.fields.size(); i++) {
+            paths[i] = JsonPaths.split(cmd.fields.get(i));
+            names[i] = JsonPaths.projectedName(cmd.fields.get(i));
+        }
+    }
+
+    @Override
+    public ObjectNode project(JsonNode record) {
+        ObjectNode out = JsonNodeFactory.instance.objectNode();
+        for (int i = 0; i < paths.length; i++) {
+            JsonNode value = JsonPaths.resolve(record, paths[i]);
+            if (value != null && !value.isMissingNode()) {
+                out.set(names[i], value);
+            }
+        }
+        return out;
+    }
+}
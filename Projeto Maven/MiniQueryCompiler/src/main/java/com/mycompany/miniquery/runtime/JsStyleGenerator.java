@@ -0,0 +1,116 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.JsonWriteFeature;
+import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+
+// Gerador dos resultados com os valores escritos como no JSON.stringify: números no formato do
+// Number.prototype.toString do JS (1 e não 1.0, 1e+21, 1.5e-7, inteiros grandes arredondados
+// para double) e strings com os caracteres fora do ASCII sem escape, inclusive emojis. Os
+// escapes que restam (aspas, barra e controles) usam hexadecimal minúsculo, como o JS.
+final class JsStyleGenerator extends JsonGeneratorDelegate {
+
+    private JsStyleGenerator(JsonGenerator delegate) {
+        // Sem copiar métodos direto para o delegate: writeTree passa pelos writeNumber abaixo.
+        super(delegate, false);
+    }
+
+    // Gerador UTF-8 sobre 'out' com o codec do mapper.
+    static JsonGenerator create(ObjectMapper mapper, OutputStream out) throws IOException {
+        JsonGenerator generator = mapper.getFactory().createGenerator(
+                new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+        generator.configure(JsonWriteFeature.WRITE_HEX_UPPER_CASE.mappedFeature(), false);
+        generator.setCodec(mapper);
+        return new JsStyleGenerator(generator);
+    }
+
+    @Override
+    public void writeNumber(long v) throws IOException {
+        delegate.writeNumber(numberText(v));
+    }
+
+    @Override
+    public void writeNumber(BigInteger v) throws IOException {
+        delegate.writeNumber(numberText(v.doubleValue()));
+    }
+
+    @Override
+    public void writeNumber(double v) throws IOException {
+        delegate.writeNumber(numberText(v));
+    }
+
+    @Override
+    public void writeNumber(float v) throws IOException {
+        delegate.writeNumber(numberText(v));
+    }
+
+    @Override
+    public void writeNumber(BigDecimal v) throws IOException {
+        delegate.writeNumber(numberText(v.doubleValue()));
+    }
+
+    // Number.prototype.toString: os menores dígitos que voltam ao mesmo double, sem expoente
+    // entre 1e-7 e 1e21. NaN e infinitos viram null, como no JSON.stringify.
+    static String numberText(double value) {
+        if (!Double.isFinite(value)) {
+            return "null";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 0x1p53) {
+            return Long.toString((long) value);
+        }
+        BigDecimal shortest = shortest(Math.abs(value));
+        String digits = shortest.unscaledValue().toString();
+        int k = digits.length();
+        int n = k - shortest.scale(); // valor = 0.dígitos x 10^n
+        StringBuilder text = new StringBuilder(value < 0 ? "-" : "");
+        if (k <= n && n <= 21) {
+            text.append(digits);
+            for (int i = k; i < n; i++) {
+                text.append('0');
+            }
+        } else if (0 < n && n <= 21) {
+            text.append(digits, 0, n).append('.').append(digits, n, k);
+        } else if (-6 < n && n <= 0) {
+            text.append("0.");
+            for (int i = n; i < 0; i++) {
+                text.append('0');
+            }
+            text.append(digits);
+        } else {
+            int exponent = n - 1;
+            text.append(digits.charAt(0));
+            if (k > 1) {
+                text.append('.').append(digits, 1, k);
+            }
+            text.append('e').append(exponent < 0 ? '-' : '+').append(Math.abs(exponent));
+        }
+        return text.toString();
+    }
+
+    // O Double.toString do Java 17 às vezes usa um dígito a mais que o necessário: parte do seu
+    // tamanho e arredonda o valor exato para menos dígitos enquanto o double não muda.
+    private static BigDecimal shortest(double value) {
+        BigDecimal exact = new BigDecimal(value);
+        int precision = new BigDecimal(Double.toString(value)).stripTrailingZeros().precision();
+        BigDecimal best = exact.round(new MathContext(precision, RoundingMode.HALF_EVEN));
+        while (precision > 1) {
+            BigDecimal shorter = exact.round(new MathContext(precision - 1, RoundingMode.HALF_EVEN));
+            if (shorter.doubleValue() != value) {
+                break;
+            }
+            best = shorter;
+            precision--;
+        }
+        return best.stripTrailingZeros();
+    }
+}
@@ -0,0 +1,81 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.PrettyPrinter;
+import java.io.IOException;
+
+// Reproduz a indentação de JSON.stringify(x, null, 2). Junto com o JsStyleGenerator, que escreve
+// números e strings como o JS, a execução na JVM grava o mesmo arquivo que o script gerado.
+final class JsStylePrettyPrinter implements PrettyPrinter {
+
+    private int level;
+
+    @Override
+    public void writeRootValueSeparator(JsonGenerator gen) throws IOException {
+        gen.writeRaw('\n');
+    }
+
+    @Override
+    public void writeStartObject(JsonGenerator gen) throws IOException {
+        gen.writeRaw('{');
+        level++;
+    }
+
+    @Override
+    public void beforeObjectEntries(JsonGenerator gen) throws IOException {
+        newLine(gen);
+    }
+
+    @Override
+    public void writeObjectFieldValueSeparator(JsonGenerator gen) throws IOException {
+        gen.writeRaw(": ");
+    }
+
+    @Override
+    public void writeObjectEntrySeparator(JsonGenerator gen) throws IOException {
+        gen.writeRaw(',');
+        newLine(gen);
+    }
+
+    @Override
+    public void writeEndObject(JsonGenerator gen, int nrOfEntries) throws IOException {
+        level--;
+        if (nrOfEntries > 0) {
+            newLine(gen);
+        }
+        gen.writeRaw('}');
+    }
+
+    @Override
+    public void writeStartArray(JsonGenerator gen) throws IOException {
+        gen.writeRaw('[');
+        level++;
+    }
+
+    @Override
+    public void beforeArrayValues(JsonGenerator gen) throws IOException {
+        newLine(gen);
+    }
+
+    @Override
+    public void writeArrayValueSeparator(JsonGenerator gen) throws IOException {
+        gen.writeRaw(',');
+        newLine(gen);
+    }
+
+    @Override
+    public void writeEndArray(JsonGenerator gen, int nrOfValues) throws IOException {
+        level--;
+        if (nrOfValues > 0) {
+            newLine(gen);
+        }
+        gen.writeRaw(']');
+    }
+
+    private void newLine(JsonGenerator gen) throws IOException {
+        gen.writeRaw('\n');
+        for (int i = 0; i < level; i++) {
+            gen.writeRaw("  ");
+        }
+    }
+}
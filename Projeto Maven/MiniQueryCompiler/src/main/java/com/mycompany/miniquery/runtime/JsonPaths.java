@@ -0,0 +1,32 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+// Utilitários para caminhos MiniQuery (ex: .cliente.idade) sobre registros JSON.
+public final class JsonPaths {
+
+    private JsonPaths() {
+    }
+
+    // Quebra o caminho em segmentos uma única vez: ".cliente.idade" -> ["cliente", "idade"].
+    public static String[] split(String jsonPath) {
+        return jsonPath.substring(1).split("\\.");
+    }
+
+    // Nome do campo gerado pelo SELECT, o mesmo usado pelo JavaScriptGenerator (ex: cliente_nome).
+    public static String projectedName(String jsonPath) {
+        return jsonPath.substring(1).replace(".", "_");
+    }
+
+    // Percorre o registro seguindo os segmentos; retorna null quando o caminho não existe (como o '?.' do JS).
+    public static JsonNode resolve(JsonNode record, String[] segments) {
+        JsonNode current = record;
+        for (String segment : segments) {
+            if (current == null || !current.isObject()) {
+                return null;
+            }
+            current = current.get(segment);
+        }
+        return current;
+    }
+}
@@ -0,0 +1,60 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+
+// Decorador do ResultWriter de base que mede a gravação para o ExecutionMetrics: o tempo de cada
+// write() só nos registros amostrados, e o do close() (fim do arquivo e flush) sempre.
+final class MeasuredWriter extends ResultWriter {
+
+    private final ResultWriter target;
+    private final ExecutionMetrics metrics;
+
+    MeasuredWriter(ResultWriter target, ExecutionMetrics metrics) {
+        this.target = target;
+        this.metrics = metrics;
+    }
+
+    @Override
+    void write(JsonNode record) throws IOException {
+        write(record, null);
+    }
+
+    @Override
+    void write(JsonNode record, JsonNode[] key) throws IOException {
+        if (metrics.sampleWrite()) {
+            long start = System.nanoTime();
+            target.write(record, key);
+            metrics.write(System.nanoTime() - start);
+        } else {
+            target.write(record, key);
+            metrics.write(-1);
+        }
+    }
+
+    @Override
+    boolean isFull() {
+        return target.isFull();
+    }
+
+    @Override
+    long resultCount(long written) {
+        return target.resultCount(written);
+    }
+
+    @Override
+    JsonGenerator arrayGenerator() {
+        return target.arrayGenerator();
+    }
+
+    @Override
+    public void close() throws IOException {
+        long start = System.nanoTime();
+        try {
+            target.close();
+        } finally {
+            metrics.close(System.nanoTime() - start);
+        }
+    }
+}
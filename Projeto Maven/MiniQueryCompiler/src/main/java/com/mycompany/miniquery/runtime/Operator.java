@@ -0,0 +1,45 @@
+package com.mycompany.miniquery.runtime;
+
+// Operadores de comparação aceitos pelo FILTER, resolvidos uma vez na montagem do pipeline.
+public enum Operator {
+    GT(">"), LT("<"), GE(">="), LE("<="), EQ("=="), NE("!=");
+
+    public final String symbol;
+
+    Operator(String symbol) {
+        this.symbol = symbol;
+    }
+
+    public static Operator of(String symbol) {
+        for (Operator op : values()) {
+            if (op.symbol.equals(symbol)) {
+                return op;
+            }
+        }
+        throw new IllegalArgumentException("Operador desconhecido: " + symbol);
+    }
+
+    // Aplica o operador ao resultado de um compareTo (negativo, zero ou positivo).
+    public boolean matches(int comparison) {
+        switch (this) {
+            case GT: return comparison > 0;
+            case LT: return comparison < 0;
+            case GE: return comparison >= 0;
+            case LE: return comparison <= 0;
+            case EQ: return comparison == 0;
+            default: return comparison != 0;
+        }
+    }
+
+    // Versão numérica; qualquer comparação com NaN é falsa, exceto '!=' (como no JS).
+    public boolean matches(double left, double right) {
+        switch (this) {
+            case GT: return left > right;
+            case LT: return left < right;
+            case GE: return left >= right;
+            case LE: return left <= right;
+            case EQ: return left == right;
+            default: return left != right;
+        }
+    }
+}
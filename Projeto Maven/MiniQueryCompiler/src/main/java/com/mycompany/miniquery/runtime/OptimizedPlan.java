@@ -0,0 +1,116 @@
+package com.mycompany.miniquery.runtime;
+
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.Command;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.FilterCondition;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.GroupByCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.LimitCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.LoadCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.OrderByCommand;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// Consulta reescrita pelo QueryOptimizer: comandos equivalentes aos originais, os campos que o LOAD
+// precisa decodificar e as reescritas aplicadas, para o EXPLAIN.
+public final class OptimizedPlan {
+
+    private final List<Command> commands;
+    private final Set<String> readPaths;
+    private final String contradiction;
+    private final List<String> notes;
+    private final FilterStatistics statistics;
+
+    OptimizedPlan(List<Command> commands, Set<String> readPaths, String contradiction, List<String> notes,
+            FilterStatistics statistics) {
+        this.commands = Collections.unmodifiableList(commands);
+        this.readPaths = readPaths == null ? null : Collections.unmodifiableSet(readPaths);
+        this.contradiction = contradiction;
+        this.notes = Collections.unmodifiableList(notes);
+        this.statistics = statistics;
+    }
+
+    // Comandos na ordem de execução (LOAD, FILTERs, ORDER BY, SELECTs, LIMIT, GROUP BY, SAVE).
+    public List<Command> getCommands() {
+        return commands;
+    }
+
+    // Caminhos da origem lidos pela consulta; null quando o registro inteiro é usado.
+    public Set<String> getReadPaths() {
+        return readPaths;
+    }
+
+    // Verdadeiro quando os FILTERs não podem ser satisfeitos juntos: o resultado é vazio e o
+    // arquivo nem chega a ser lido.
+    public boolean isEmpty() {
+        return contradiction != null;
+    }
+
+    // Reescritas aplicadas, uma por linha do EXPLAIN.
+    public List<String> getNotes() {
+        return notes;
+    }
+
+    // Texto do EXPLAIN: o plano na ordem de execução e as reescritas que levaram a ele.
+    public String explain() {
+        StringBuilder out = new StringBuilder("PLANO DE EXECUÇÃO:\n");
+        if (contradiction != null) {
+            out.append("  RESULTADO VAZIO (o arquivo não é lido): ").append(contradiction).append('\n');
+        } else {
+            boolean ordered = false;
+            boolean grouped = false;
+            long limitBefore = -1;
+            for (int i = 0; i < commands.size(); i++) {
+                Command cmd = commands.get(i);
+                out.append("  ").append(cmd);
+                if (cmd instanceof LoadCommand) {
+                    out.append(readPaths == null ? "  [registro inteiro]" : "  [campos: " + String.join(", ", readPaths) + "]");
+                } else if (cmd instanceof FilterCondition) {
+                    QueryOptimizer.Estimate estimate = QueryOptimizer.estimate((FilterCondition) cmd, statistics);
+                    out.append(String.format(Locale.ROOT, "  [seletividade ~%.2f%s, custo %d]",
+                            estimate.selectivity, estimate.observed ? " observada" : "", estimate.cost));
+                } else if (cmd instanceof GroupByCommand) {
+                    grouped = true;
+                    out.append("  [agregação em hash: até " + GroupWriter.MAX_GROUPS + " grupos em memória, depois "
+                            + GroupWriter.PARTITIONS + " partições em disco]");
+                } else if (cmd instanceof OrderByCommand) {
+                    ordered = true;
+                    long limit = limitAfter(i);
+                    if (limitBefore >= 0 && limitBefore <= ExternalSort.RUN_ROWS) {
+                        out.append("  [em memória: até " + limitBefore + " registros]");
+                    } else if (limit >= 0 && limit <= ExternalSort.RUN_ROWS) {
+                        out.append("  [top-k: heap de " + limit + " registros]");
+                    } else {
+                        out.append("  [ordenação externa em lotes de " + ExternalSort.RUN_ROWS + " registros]");
+                    }
+                } else if (cmd instanceof LimitCommand && !ordered && !grouped) {
+                    limitBefore = Long.parseLong(((LimitCommand) cmd).count);
+                    out.append("  [interrompe a leitura]");
+                }
+                out.append('\n');
+            }
+        }
+        if (!notes.isEmpty()) {
+            out.append("OTIMIZAÇÕES:\n");
+            for (String note : notes) {
+                out.append("  - ").append(note).append('\n');
+            }
+        }
+        return out.toString().trim();
+    }
+
+    // Quantidade do LIMIT depois da posição 'index'; -1 se não houver.
+    private long limitAfter(int index) {
+        for (Command cmd : commands.subList(index + 1, commands.size())) {
+            if (cmd instanceof LimitCommand) {
+                return Long.parseLong(((LimitCommand) cmd).count);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return explain();
+    }
+}
@@ -0,0 +1,119 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+// Aplica ORDER BY e LIMIT ao resultado antes do ResultWriter de destino:
+//  - só LIMIT (ou LIMIT antes do ORDER BY): aceita os primeiros registros e, com isFull(), avisa
+//    que a leitura pode parar;
+//  - ORDER BY seguido de LIMIT até ExternalSort.RUN_ROWS: top-k estável em um heap de LIMIT
+//    registros, cujo topo é o pior candidato;
+//  - ORDER BY sem LIMIT (ou com um LIMIT maior): ExternalSort.
+// Os registros ordenados só chegam ao destino no close().
+final class OrderedWriter extends ResultWriter {
+
+    private final ResultWriter target;
+    private final RecordOrder order;
+    private final long limit;
+    private final boolean limitFirst;
+    private final PriorityQueue<Candidate> top;
+    private final ExternalSort sort;
+    private long accepted;
+
+    OrderedWriter(ObjectMapper mapper, ResultWriter target, RecordOrder order, long limit, boolean limitFirst) {
+        this.target = target;
+        this.order = order;
+        this.limit = limit;
+        this.limitFirst = limitFirst;
+        boolean topK = order != null && limit >= 0 && !limitFirst && limit <= ExternalSort.RUN_ROWS;
+        this.top = topK ? new PriorityQueue<>((int) Math.max(1, limit), worstFirst(order)) : null;
+        this.sort = order != null && !topK ? new ExternalSort(mapper, order) : null;
+    }
+
+    // Candidato do top-k; 'seq' desempata pela ordem de chegada.
+    private static final class Candidate {
+        final JsonNode[] key;
+        final JsonNode record;
+        final long seq;
+
+        Candidate(JsonNode[] key, JsonNode record, long seq) {
+            this.key = key;
+            this.record = record;
+            this.seq = seq;
+        }
+    }
+
+    private static Comparator<Candidate> bestFirst(RecordOrder order) {
+        return (a, b) -> {
+            int c = order.compare(a.key, b.key);
+            return c != 0 ? c : Long.compare(a.seq, b.seq);
+        };
+    }
+
+    private static Comparator<Candidate> worstFirst(RecordOrder order) {
+        return bestFirst(order).reversed();
+    }
+
+    @Override
+    void write(JsonNode record) throws IOException {
+        write(record, null);
+    }
+
+    @Override
+    void write(JsonNode record, JsonNode[] key) throws IOException {
+        if (isFull()) {
+            return;
+        }
+        long seq = accepted++;
+        if (order == null) {
+            target.write(record);
+        } else if (top != null) {
+            Candidate candidate = new Candidate(key, record, seq);
+            if (top.size() < limit) {
+                top.add(candidate);
+            } else if (limit > 0 && top.comparator().compare(candidate, top.peek()) > 0) {
+                top.poll();
+                top.add(candidate);
+            }
+        } else {
+            sort.add(key, record);
+        }
+    }
+
+    @Override
+    boolean isFull() {
+        return limit >= 0 && accepted >= limit && (order == null || limitFirst);
+    }
+
+    @Override
+    long resultCount(long written) {
+        return target.resultCount(limit < 0 ? written : Math.min(written, limit));
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (top != null) {
+                Candidate[] sorted = top.toArray(new Candidate[0]);
+                Arrays.sort(sorted, bestFirst(order));
+                for (Candidate candidate : sorted) {
+                    target.write(candidate.record);
+                }
+            } else if (sort != null) {
+                sort.drain(target, limitFirst ? -1 : limit);
+            }
+        } finally {
+            try {
+                if (sort != null) {
+                    sort.close();
+                }
+            } finally {
+                target.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.mycompany.miniquery.runtime;
+
+// Formato do arquivo gravado pelo SAVE (SAVE AS "x" FORMAT <formato>).
+public enum OutputFormat {
+    // Array indentado como JSON.stringify(x, null, 2); o padrão.
+    JSON,
+    // Array em uma única linha, como JSON.stringify(x).
+    COMPACT_JSON,
+    // Um registro por linha.
+    NDJSON,
+    // Formato colunar binário (format.ColumnarFile), lido de volta pelo LOAD sem parse de JSON.
+    COLUMNAR;
+
+    // Nome usado no SAVE (SaveCommand.format).
+    public static OutputFormat of(String name) {
+        for (OutputFormat format : values()) {
+            if (format.name().equals(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Formato de saída desconhecido: " + name);
+    }
+}
@@ -0,0 +1,328 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Varredura paralela de um array JSON grande. O arquivo é mapeado em memória (FileChannel.map) e uma
+// passada estrutural, que só acompanha aspas, escapes e profundidade, encontra as vírgulas entre os
+// elementos do array de topo. Cada trecho entre essas vírgulas é lido, filtrado e projetado em um
+// ForkJoinPool; os trechos são gravados no SAVE na ordem original, com no máximo 'threads * 2' em
+// andamento, então a memória fica limitada mesmo quando a saída é grande.
+final class ParallelScan {
+
+    // Abaixo disso, criar as tarefas custa mais que a varredura sequencial.
+    static final long MIN_BYTES = Long.getLong("miniquery.paralelo.minimo", 8L << 20);
+
+    // Tamanho mínimo de cada trecho; o alvo é dividir o arquivo em 'threads * CHUNKS_PER_THREAD' partes.
+    static final long MIN_CHUNK = Long.getLong("miniquery.paralelo.trecho", 1L << 20);
+
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final long WINDOW = 1L << 30;
+    private static final int BLOCK = 1 << 16;
+    private static final boolean[] STRUCTURAL = new boolean[256];
+
+    static {
+        for (char c : new char[] {'"', '[', ']', '{', '}', ','}) {
+            STRUCTURAL[c] = true;
+        }
+    }
+
+    private final ObjectMapper mapper;
+    private final int threads;
+
+    ParallelScan(ObjectMapper mapper, int threads) {
+        this.mapper = mapper;
+        this.threads = threads;
+    }
+
+    // Sem SAVE, o resultado é escrito em 'fallbackOutput' (que não é fechado). Devolve null, sem
+    // gravar nada, quando o arquivo não é um array JSON em UTF-8 bem formado; a varredura
+    // sequencial então reporta o erro como de costume.
+    ExecutionResult execute(QueryPipeline pipeline, OutputStream fallbackOutput) throws IOException {
+        Path source = Paths.get(pipeline.loadPath);
+        long read = 0;
+        long written = 0;
+        // Só a gravação em ordem, nesta thread; a serialização nos trechos corre junto com a leitura.
+        long writeNanos = 0;
+        long closeNanos = 0;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            List<long[]> chunks = split(channel);
+            if (chunks == null) {
+                return null;
+            }
+            OutputStream out = pipeline.savePath != null
+                    ? new BufferedOutputStream(Files.newOutputStream(Paths.get(pipeline.savePath)))
+                    : fallbackOutput;
+            try {
+                Deque<ForkJoinTask<ChunkResult>> running = new ArrayDeque<>();
+                int next = 0;
+                boolean first = true;
+                out.write('[');
+                while (next < chunks.size() || !running.isEmpty()) {
+                    while (next < chunks.size() && running.size() < threads * 2) {
+                        long[] chunk = chunks.get(next++);
+                        running.add(pool.submit(() -> process(channel, chunk, pipeline)));
+                    }
+                    ChunkResult result = join(running.poll());
+                    read += result.read;
+                    written += result.written;
+                    if (result.written > 0) {
+                        long writeStart = System.nanoTime();
+                        // O corpo do trecho começa com "\n  " e não tem vírgula final.
+                        if (!first) {
+                            out.write(',');
+                        }
+                        out.write(result.output, 1, result.length);
+                        first = false;
+                        writeNanos += System.nanoTime() - writeStart;
+                    }
+                }
+                if (!first) {
+                    out.write('\n');
+                }
+                out.write(']');
+                if (pipeline.savePath == null) {
+                    out.write('\n');
+                }
+            } finally {
+                long closeStart = System.nanoTime();
+                if (pipeline.savePath != null) {
+                    out.close();
+                } else {
+                    out.flush();
+                }
+                closeNanos = System.nanoTime() - closeStart;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        if (pipeline.metrics() != null) {
+            pipeline.metrics().writeAll(written, writeNanos);
+            pipeline.metrics().close(closeNanos);
+        }
+        return new ExecutionResult(read, written, pipeline.savePath);
+    }
+
+    // Passada estrutural: trechos [início, fim) com elementos inteiros do array de topo, separados
+    // na primeira vírgula de profundidade 1 depois de cada tamanho-alvo. O mapeamento é copiado em
+    // blocos para um byte[]; fora de strings o laço pula bytes que não são estruturais e dentro
+    // delas só procura aspas e barras.
+    private List<long[]> split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long target = Math.max(MIN_CHUNK, size / ((long) threads * CHUNKS_PER_THREAD));
+        List<long[]> chunks = new ArrayList<>();
+        byte[] block = new byte[BLOCK];
+        int depth = 0;
+        boolean inString = false;
+        int carry = 0; // uma barra no fim do bloco anterior escapa o primeiro byte deste
+        long start = -1;
+        long nextSplit = 0;
+
+        for (long base = 0; base < size; base += WINDOW) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, base, Math.min(WINDOW, size - base));
+            for (int offset = base == 0 && hasBom(window) ? 3 : 0; offset < window.limit(); offset += BLOCK) {
+                int limit = Math.min(BLOCK, window.limit() - offset);
+                window.get(offset, block, 0, limit);
+                long blockStart = base + offset;
+                int i = carry;
+                while (i < limit) {
+                    if (inString) {
+                        while (i < limit) {
+                            byte b = block[i];
+                            if (b == '"') {
+                                inString = false;
+                                i++;
+                                break;
+                            }
+                            i += b == '\\' ? 2 : 1;
+                        }
+                        continue;
+                    }
+                    if (depth > 0) {
+                        while (i < limit && !STRUCTURAL[block[i] & 0xFF]) {
+                            i++;
+                        }
+                        if (i == limit) {
+                            break;
+                        }
+                    }
+                    byte b = block[i++];
+                    switch (b) {
+                        case '"':
+                            inString = true;
+                            break;
+                        case '[':
+                        case '{':
+                            if (depth == 0) {
+                                if (b != '[') {
+                                    return null;
+                                }
+                                start = blockStart + i;
+                                nextSplit = start + target;
+                            }
+                            depth++;
+                            break;
+                        case ']':
+                        case '}':
+                            if (--depth < 0) {
+                                return null;
+                            }
+                            if (depth == 0) {
+                                long end = blockStart + i - 1;
+                                if (hasContent(channel, start, end)) {
+                                    chunks.add(new long[] {start, end});
+                                }
+                                return chunks;
+                            }
+                            break;
+                        case ',':
+                            if (depth == 1 && blockStart + i - 1 >= nextSplit) {
+                                chunks.add(new long[] {start, blockStart + i - 1});
+                                start = blockStart + i;
+                                nextSplit = start + target;
+                            }
+                            break;
+                        default:
+                            if (depth == 0 && !isWhitespace(b)) {
+                                return null;
+                            }
+                    }
+                }
+                carry = i - limit;
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasBom(MappedByteBuffer window) {
+        return window.limit() >= 3 && window.get(0) == (byte) 0xEF && window.get(1) == (byte) 0xBB
+                && window.get(2) == (byte) 0xBF;
+    }
+
+    // O último trecho pode ser só espaço (ex: "[ ]").
+    private static boolean hasContent(FileChannel channel, long start, long end) throws IOException {
+        if (end - start > 64) {
+            return true;
+        }
+        MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        for (int i = 0; i < bytes.limit(); i++) {
+            if (!isWhitespace(bytes.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    // Lê o trecho como um array ("[" + trecho + "]") e grava os resultados no formato do
+    // JsStylePrettyPrinter; o corpo devolvido fica sem os colchetes para ser concatenado.
+    private ChunkResult process(FileChannel channel, long[] chunk, QueryPipeline pipeline) throws IOException {
+        long length = chunk[1] - chunk[0];
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Elemento do array com mais de 2 GB em '" + pipeline.loadPath + "'");
+        }
+        MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], length);
+        InputStream in = new SequenceInputStream(Collections.enumeration(List.of(
+                new ByteArrayInputStream(new byte[] {'['}),
+                new ByteBufferBackedInputStream(bytes),
+                new ByteArrayInputStream(new byte[] {']'}))));
+
+        Output output = new Output();
+        long read = 0;
+        long written = 0;
+        RecordDecoder decoder = pipeline.decoder();
+        try (JsonParser parser = mapper.getFactory().createParser(in);
+             JsonGenerator generator = JsStyleGenerator.create(mapper, output)) {
+            generator.setPrettyPrinter(new JsStylePrettyPrinter());
+            parser.nextToken();
+            generator.writeStartArray();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() == null) {
+                    throw new IOException("Fim inesperado do arquivo '" + pipeline.loadPath + "'");
+                }
+                JsonNode record = decoder.read(mapper, parser);
+                read++;
+                JsonNode result = pipeline.process(record);
+                if (result != null) {
+                    generator.writeTree(result);
+                    written++;
+                }
+            }
+            generator.writeEndArray();
+        }
+        // A saída é "[" + corpo + "\n]" quando há resultados e "[]" quando não há.
+        return new ChunkResult(read, written, output.buffer(), written > 0 ? output.size() - 3 : 0);
+    }
+
+    private static ChunkResult join(ForkJoinTask<ChunkResult> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Execução interrompida", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static final class ChunkResult {
+        final long read;
+        final long written;
+        final byte[] output; // o corpo começa no índice 1, depois do "["
+        final int length;
+
+        ChunkResult(long read, long written, byte[] output, int length) {
+            this.read = read;
+            this.written = written;
+            this.output = output;
+            this.length = length;
+        }
+    }
+
+    // Expõe o array interno, evitando a cópia de toByteArray().
+    private static final class Output extends ByteArrayOutputStream {
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
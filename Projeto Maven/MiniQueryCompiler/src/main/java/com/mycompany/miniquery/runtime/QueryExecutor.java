@@ -0,0 +1,389 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mycompany.miniquery.cache.ResultCache;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.Command;
+import com.mycompany.miniquery.format.ColumnarFile;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// Executa uma consulta validada diretamente na JVM, sem gerar nem rodar JavaScript. A lista de
+// comandos passa antes pelo QueryOptimizer; um plano vazio (FILTERs que se contradizem, LIMIT 0)
+// nem lê o arquivo do LOAD.
+// O arquivo do LOAD (RecordSource) é lido em streaming, um registro por vez, e o resultado é
+// gravado incrementalmente no SAVE, no formato pedido (ResultWriter). Sem ORDER BY nem GROUP BY, a
+// memória fica constante: um LIMIT sem ORDER BY antes dele interrompe a leitura. O ORDER BY fica
+// com o OrderedWriter (top-k de LIMIT registros, ou ordenação externa em lotes gravados em disco) e
+// o GROUP BY com o GroupWriter, que guarda os acumulados de cada grupo e particiona em disco o que
+// passar do limite de grupos.
+// Se algum FILTER tem um índice persistido seletivo (FieldIndex), só os registros apontados por ele
+// são lidos; arquivos grandes podem ser divididos entre várias threads (ParallelScan), e o modo
+// colunar fica com o ColumnarExecutor. Com QueryPipeline.measure(), a execução preenche o
+// ExecutionMetrics, soma-o ao QueryStats (JMX) e guarda as seletividades observadas
+// (FilterStatistics).
+public class QueryExecutor {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ExecutionMode mode;
+    private final ColumnarExecutor columnar;
+    private final int threads;
+    private final ResultCache resultCache;
+
+    public QueryExecutor() {
+        this(ExecutionMode.INTERPRETED);
+    }
+
+    public QueryExecutor(ExecutionMode mode) {
+        this(mode, 1);
+    }
+
+    // Com 'threads' > 1, arquivos a partir de ParallelScan.MIN_BYTES são varridos em paralelo.
+    public QueryExecutor(ExecutionMode mode, int threads) {
+        this(mode, threads, null);
+    }
+
+    // Com 'resultCache', consultas com SAVE cujo plano e arquivo de entrada não mudaram desde uma
+    // execução anterior são atendidas por uma cópia do resultado guardado.
+    public QueryExecutor(ExecutionMode mode, int threads, ResultCache resultCache) {
+        this.mode = mode;
+        this.threads = threads;
+        this.resultCache = resultCache;
+        this.columnar = mode == ExecutionMode.COLUMNAR ? new ColumnarExecutor() : null;
+    }
+
+    public ExecutionResult execute(List<Command> commands) throws IOException {
+        return execute(QueryPipeline.from(QueryOptimizer.optimize(commands), mode), System.out);
+    }
+
+    // Sem SAVE, o resultado é escrito em 'fallbackOutput' (que não é fechado).
+    public ExecutionResult execute(QueryPipeline pipeline, OutputStream fallbackOutput) throws IOException {
+        start(pipeline);
+        String key = cacheKey(pipeline);
+        if (key != null && resultCache.materialize(key, Paths.get(pipeline.savePath))) {
+            return finish(pipeline, ExecutionResult.cached(pipeline.savePath));
+        }
+        ExecutionResult result = run(pipeline, fallbackOutput);
+        if (key != null) {
+            resultCache.store(key, plan(pipeline), pipeline.loadPath, Paths.get(pipeline.savePath));
+        }
+        return finish(pipeline, result);
+    }
+
+    private static void start(QueryPipeline pipeline) {
+        if (pipeline.metrics() != null) {
+            pipeline.metrics().start();
+        }
+    }
+
+    // Fecha as métricas da execução; as do cache só registram o arquivo copiado.
+    private static ExecutionResult finish(QueryPipeline pipeline, ExecutionResult result) throws IOException {
+        ExecutionMetrics metrics = pipeline.metrics();
+        if (metrics == null) {
+            return result;
+        }
+        long bytesWritten = pipeline.savePath == null ? -1 : Files.size(Paths.get(pipeline.savePath));
+        if (result.cached) {
+            metrics.markCached();
+            metrics.read(0);
+        }
+        metrics.finish(result.recordsRead, result.recordsWritten, bytesWritten);
+        if (metrics.isRepresentative()) {
+            FilterStatistics.record(pipeline.loadPath, metrics.isolatedSelectivities(), metrics.samples());
+        }
+        QueryStats.publish(metrics);
+        return result;
+    }
+
+    private ExecutionResult run(QueryPipeline pipeline, OutputStream fallbackOutput) throws IOException {
+        ExecutionMetrics metrics = pipeline.metrics();
+        if (pipeline.isEmpty()) {
+            openOutput(pipeline, fallbackOutput).close();
+            if (metrics != null) {
+                metrics.read(0);
+            }
+            return new ExecutionResult(0, 0, pipeline.savePath);
+        }
+        SourcePlan plan = SourcePlan.of(pipeline.getStageCommands());
+        if (columnar != null) {
+            String unsupported = plan.unsupported;
+            if (unsupported == null && plan.projection == null && ColumnarFile.isColumnar(Paths.get(pipeline.loadPath))) {
+                // Sem SELECT, o modo colunar relê os registros pela posição no JSON.
+                unsupported = "o arquivo do LOAD está no formato colunar e a consulta devolve os registros inteiros";
+            }
+            if (unsupported == null) {
+                ResultWriter writer;
+                ExecutionResult result;
+                try (ResultWriter opened = openOutput(pipeline, fallbackOutput)) {
+                    writer = opened;
+                    result = columnar.execute(pipeline, plan, opened);
+                }
+                return new ExecutionResult(result.recordsRead, writer.resultCount(result.recordsWritten), pipeline.savePath);
+            }
+            System.err.println("AVISO: consulta executada linha a linha: " + unsupported);
+        } else {
+            IndexPlanner.Candidates candidates = IndexPlanner.choose(pipeline);
+            if (candidates != null) {
+                return executeIndexed(pipeline, candidates, fallbackOutput);
+            }
+            Path source = Paths.get(pipeline.loadPath);
+            // Com ORDER BY, LIMIT ou GROUP BY a ordem de chegada dos registros importa.
+            if (threads > 1 && pipeline.saveFormat == OutputFormat.JSON && pipeline.order() == null && pipeline.limit() < 0
+                    && pipeline.group() == null
+                    && Files.isRegularFile(source) && Files.size(source) >= ParallelScan.MIN_BYTES) {
+                ExecutionResult result = new ParallelScan(mapper, threads).execute(pipeline, fallbackOutput);
+                if (result != null) {
+                    if (metrics != null) {
+                        metrics.markParallel();
+                        metrics.read(Files.size(source));
+                    }
+                    return result;
+                }
+            }
+        }
+        long read = 0;
+        long written = 0;
+        // Os FILTERs sobre a origem deixam o formato colunar pular blocos inteiros.
+        List<SourcePlan.Filter> filters = plan.unsupported == null ? plan.filters : null;
+        if (metrics != null && filters != null && ColumnarFile.isColumnar(Paths.get(pipeline.loadPath))) {
+            metrics.markPrefiltered();
+        }
+
+        ResultWriter writer;
+        try (RecordSource records = RecordSource.open(mapper, pipeline.loadPath, pipeline.decoder(), filters);
+             ResultWriter opened = openOutput(pipeline, fallbackOutput)) {
+
+            writer = opened;
+            JsonNode[] key = pipeline.newKey();
+            for (JsonNode record = records.next(); record != null && !writer.isFull(); record = records.next()) {
+                read++;
+                JsonNode output = pipeline.process(record, key);
+                if (output != null) {
+                    writer.write(output, key);
+                    written++;
+                    key = pipeline.newKey();
+                }
+            }
+            if (metrics != null) {
+                metrics.read(records.bytesRead());
+            }
+        }
+        return new ExecutionResult(read, writer.resultCount(written), pipeline.savePath);
+    }
+
+    // Executa várias consultas sobre o mesmo LOAD lendo o arquivo uma única vez: cada registro é
+    // decodificado com a união dos campos usados e passa pelo pipeline de todas as consultas, e cada
+    // resultado vai para o SAVE da sua consulta (ou para o 'fallbackOutputs' de mesma posição).
+    public List<ExecutionResult> executeShared(List<QueryPipeline> pipelines, List<OutputStream> fallbackOutputs)
+            throws IOException {
+        Path source = Paths.get(pipelines.get(0).loadPath).toAbsolutePath().normalize();
+        for (QueryPipeline pipeline : pipelines) {
+            if (!Paths.get(pipeline.loadPath).toAbsolutePath().normalize().equals(source)) {
+                throw new IllegalArgumentException("As consultas compartilhadas precisam ter o mesmo LOAD: "
+                        + pipelines.get(0).loadPath + " e " + pipeline.loadPath);
+            }
+        }
+        // As consultas atendidas pelo cache de resultados ficam fora da passada.
+        ExecutionResult[] results = new ExecutionResult[pipelines.size()];
+        String[] keys = new String[pipelines.size()];
+        List<QueryPipeline> pending = new ArrayList<>();
+        List<OutputStream> pendingOutputs = new ArrayList<>();
+        for (int i = 0; i < pipelines.size(); i++) {
+            QueryPipeline pipeline = pipelines.get(i);
+            start(pipeline);
+            keys[i] = cacheKey(pipeline);
+            if (keys[i] != null && resultCache.materialize(keys[i], Paths.get(pipeline.savePath))) {
+                results[i] = ExecutionResult.cached(pipeline.savePath);
+            } else {
+                pending.add(pipeline);
+                pendingOutputs.add(fallbackOutputs.get(i));
+            }
+        }
+        if (!pending.isEmpty()) {
+            List<ExecutionResult> scanned = scanShared(source, pending, pendingOutputs);
+            for (int i = 0, next = 0; i < pipelines.size(); i++) {
+                if (results[i] == null) {
+                    results[i] = scanned.get(next++);
+                    if (keys[i] != null) {
+                        QueryPipeline pipeline = pipelines.get(i);
+                        resultCache.store(keys[i], plan(pipeline), pipeline.loadPath, Paths.get(pipeline.savePath));
+                    }
+                }
+            }
+        }
+        List<ExecutionResult> finished = new ArrayList<>();
+        for (int i = 0; i < pipelines.size(); i++) {
+            finished.add(finish(pipelines.get(i), results[i]));
+        }
+        return finished;
+    }
+
+    private List<ExecutionResult> scanShared(Path source, List<QueryPipeline> pipelines, List<OutputStream> fallbackOutputs)
+            throws IOException {
+        List<ExecutionResult> results = new ArrayList<>();
+        if (pipelines.size() == 1 || columnar != null) {
+            if (columnar != null) {
+                // O dataset colunar fica em cache; basta carregar todas as colunas na primeira leitura.
+                Set<String> paths = new LinkedHashSet<>();
+                for (QueryPipeline pipeline : pipelines) {
+                    SourcePlan plan = SourcePlan.of(pipeline.getStageCommands());
+                    if (plan.unsupported == null && !pipeline.isEmpty()) {
+                        paths.addAll(plan.paths);
+                    }
+                }
+                columnar.preload(source, paths);
+            }
+            for (int i = 0; i < pipelines.size(); i++) {
+                results.add(run(pipelines.get(i), fallbackOutputs.get(i)));
+            }
+            return results;
+        }
+
+        Set<String> readPaths = new LinkedHashSet<>();
+        for (QueryPipeline pipeline : pipelines) {
+            if (!pipeline.isEmpty() && readPaths != null) {
+                if (pipeline.readPaths() == null) {
+                    readPaths = null;
+                } else {
+                    readPaths.addAll(pipeline.readPaths());
+                }
+            }
+        }
+        RecordDecoder decoder = RecordDecoder.of(readPaths);
+        long[] written = new long[pipelines.size()];
+        List<ResultWriter> writers = new ArrayList<>();
+        // A leitura para quando todas as consultas já têm o resultado completo (LIMIT).
+        long[] readBy = new long[pipelines.size()];
+        int open = 0;
+
+        try (RecordSource records = RecordSource.open(mapper, pipelines.get(0).loadPath, decoder, null)) {
+            try {
+                for (int i = 0; i < pipelines.size(); i++) {
+                    writers.add(openOutput(pipelines.get(i), fallbackOutputs.get(i)));
+                    open += pipelines.get(i).isEmpty() ? 0 : 1;
+                }
+                for (JsonNode record = records.next(); record != null && open > 0; record = records.next()) {
+                    for (int i = 0; i < pipelines.size(); i++) {
+                        QueryPipeline pipeline = pipelines.get(i);
+                        ResultWriter writer = writers.get(i);
+                        if (pipeline.isEmpty() || writer.isFull()) {
+                            continue;
+                        }
+                        readBy[i]++;
+                        JsonNode[] key = pipeline.newKey();
+                        JsonNode output = pipeline.process(record, key);
+                        if (output != null) {
+                            writer.write(output, key);
+                            written[i]++;
+                            open -= writer.isFull() ? 1 : 0;
+                        }
+                    }
+                }
+            } finally {
+                closeAll(writers);
+            }
+            // A passada é uma só: todas as consultas contam os bytes lidos por ela.
+            for (QueryPipeline pipeline : pipelines) {
+                if (pipeline.metrics() != null) {
+                    pipeline.metrics().read(pipeline.isEmpty() ? 0 : records.bytesRead());
+                }
+            }
+        }
+        for (int i = 0; i < pipelines.size(); i++) {
+            QueryPipeline pipeline = pipelines.get(i);
+            results.add(new ExecutionResult(readBy[i], writers.get(i).resultCount(written[i]), pipeline.savePath));
+        }
+        return results;
+    }
+
+    // Chave no cache de resultados; só consultas com SAVE são guardadas. Um plano vazio (FILTERs que se
+    // contradizem, LIMIT 0) não tem etapas e teria a chave de uma cópia do LOAD; como não lê o arquivo,
+    // fica fora do cache.
+    private String cacheKey(QueryPipeline pipeline) {
+        return resultCache == null || pipeline.savePath == null || pipeline.isEmpty() ? null
+                : resultCache.key(plan(pipeline), pipeline.loadPath);
+    }
+
+    // Plano normalizado: as etapas na ordem de execução e o formato do SAVE, sem o destino.
+    private static String plan(QueryPipeline pipeline) {
+        StringBuilder plan = new StringBuilder();
+        for (Command cmd : pipeline.getStageCommands()) {
+            plan.append(cmd).append('\n');
+        }
+        if (pipeline.saveFormat != OutputFormat.JSON) {
+            plan.append("FORMAT ").append(pipeline.saveFormat).append('\n');
+        }
+        return plan.toString();
+    }
+
+    // Fecha todas as saídas mesmo que alguma falhe; a primeira falha é relançada.
+    private static void closeAll(List<ResultWriter> writers) throws IOException {
+        IOException failure = null;
+        for (ResultWriter writer : writers) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Lê só os registros apontados pelo índice, na ordem do arquivo, e os passa pelo pipeline inteiro.
+    private ExecutionResult executeIndexed(QueryPipeline pipeline, IndexPlanner.Candidates candidates,
+                                           OutputStream fallbackOutput) throws IOException {
+        long read = 0;
+        long written = 0;
+        long bytes = 0;
+        ResultWriter writer;
+        try (RecordReader records = new RecordReader(Paths.get(pipeline.loadPath));
+             ResultWriter opened = openOutput(pipeline, fallbackOutput)) {
+
+            writer = opened;
+            JsonNode[] key = pipeline.newKey();
+            for (int i = 0; i < candidates.rows.length && !writer.isFull(); i++) {
+                int row = candidates.rows[i];
+                JsonNode record = records.read(candidates.index.recordOffset(row), candidates.index.recordLength(row));
+                read++;
+                bytes += candidates.index.recordLength(row);
+                JsonNode output = pipeline.process(record, key);
+                if (output != null) {
+                    writer.write(output, key);
+                    written++;
+                    key = pipeline.newKey();
+                }
+            }
+        }
+        if (pipeline.metrics() != null) {
+            pipeline.metrics().read(bytes);
+            pipeline.metrics().markPrefiltered();
+        }
+        return new ExecutionResult(read, writer.resultCount(written), pipeline.savePath);
+    }
+
+    // O GROUP BY agrega antes do ORDER BY/LIMIT, que recebem os grupos. Com métricas, o tempo de
+    // agrupar, ordenar e gravar conta como a fase de gravação.
+    private ResultWriter openOutput(QueryPipeline pipeline, OutputStream fallbackOutput) throws IOException {
+        ResultWriter writer = ResultWriter.open(mapper, pipeline.saveFormat, pipeline.savePath, fallbackOutput);
+        if (pipeline.order() != null || pipeline.limit() >= 0) {
+            writer = new OrderedWriter(mapper, writer, pipeline.order(), pipeline.limit(), pipeline.limitFirst());
+        }
+        if (pipeline.group() != null) {
+            writer = new GroupWriter(mapper, writer, pipeline);
+        }
+        return pipeline.metrics() == null ? writer : new MeasuredWriter(writer, pipeline.metrics());
+    }
+}
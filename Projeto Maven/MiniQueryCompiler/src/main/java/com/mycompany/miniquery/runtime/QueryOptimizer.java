@@ -0,0 +1,509 @@
+package com.mycompany.miniquery.runtime;
+
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.Command;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.FilterCondition;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.LimitCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.LoadCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.OrderByCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.SaveCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.SelectCommand;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Otimizador entre a validação e a execução. Os FILTERs são reescritos sobre o registro original
+// (SourcePlan) e, como não dependem da ordem, podem ser combinados e reordenados:
+//  - comparações de um caminho com constantes viram um intervalo (ex: > 18 e >= 21 -> >= 21);
+//  - filtros que não podem valer juntos (ex: > 30 e < 20) dão resultado vazio sem ler o arquivo;
+//  - filtros sempre verdadeiros (ex: campo removido por um SELECT com '!=') são descartados;
+//  - os restantes são ordenados por custo / (1 - seletividade), com números antes de strings;
+//  - o ORDER BY passa a usar os caminhos da origem, sem as chaves removidas por um SELECT;
+//  - LIMIT 0 dá resultado vazio sem ler o arquivo;
+//  - o GROUP BY e o ORDER BY/LIMIT dos grupos ficam depois dos SELECTs, como foram escritos;
+//  - o LOAD só decodifica os caminhos usados pelos FILTERs, pelo ORDER BY e pelo último SELECT (ou,
+//    sem SELECT, pelo GROUP BY) (RecordDecoder).
+// Consultas que a reescrita não representa exatamente seguem como foram escritas.
+public final class QueryOptimizer {
+
+    // Estimativa de um FILTER: fração das linhas que passam e custo relativo da comparação.
+    static final class Estimate {
+        final double selectivity;
+        final int cost;
+        final boolean observed;
+
+        Estimate(double selectivity, int cost, boolean observed) {
+            this.selectivity = selectivity;
+            this.cost = cost;
+            this.observed = observed;
+        }
+
+        // Ordem em que os filtros de uma conjunção devem ser avaliados (menor primeiro).
+        double rank() {
+            return cost / (1 - selectivity);
+        }
+    }
+
+    private QueryOptimizer() {
+    }
+
+    // Seletividades padrão (== 10%, intervalos 1/3, != 90%); o custo cresce de constantes
+    // numéricas para strings e comparações entre campos, e com a profundidade do caminho. A
+    // seletividade observada por execuções anteriores com --metricas (FilterStatistics) substitui a
+    // padrão; fica abaixo de 1 para que o rank de um filtro que nunca descarta nada continue finito.
+    static Estimate estimate(FilterCondition filter, FilterStatistics statistics) {
+        Operator op = Operator.of(filter.operator);
+        Double observed = statistics.selectivity(filter);
+        double selectivity = observed != null ? Math.min(observed, 0.999)
+                : op == Operator.EQ ? 0.1 : op == Operator.NE ? 0.9 : 1.0 / 3;
+        int cost = filter.isPath() ? 4 : filter.isNumber() ? 1 : 2;
+        cost += JsonPaths.split(filter.jsonPath).length - 1;
+        return new Estimate(selectivity, cost, observed != null);
+    }
+
+    public static OptimizedPlan optimize(List<Command> commands) {
+        LoadCommand load = null;
+        List<Command> stages = new ArrayList<>();
+        List<Command> saves = new ArrayList<>();
+        for (Command cmd : commands) {
+            if (cmd instanceof LoadCommand) {
+                if (load != null) {
+                    return unchanged(commands, "há mais de um LOAD");
+                }
+                load = (LoadCommand) cmd;
+            } else if (cmd instanceof SaveCommand) {
+                saves.add(cmd);
+            } else if (load == null) {
+                return unchanged(commands, describe(cmd) + " aparece antes do LOAD");
+            } else {
+                stages.add(cmd);
+            }
+        }
+        if (load == null) {
+            return unchanged(commands, "a consulta não possui LOAD");
+        }
+        SourcePlan plan = SourcePlan.of(stages);
+        if (plan.unsupported != null) {
+            return unchanged(commands, plan.unsupported);
+        }
+        if (plan.limit != null && Long.parseLong(plan.limit.count) == 0) {
+            return empty(load, saves, describe(plan.limit) + " não devolve registros", new ArrayList<>());
+        }
+
+        for (SourcePlan.Filter filter : plan.filters) {
+            if (filter.rightIsPath && (filter.left == null) != (filter.rightPath == null)) {
+                return unchanged(commands, describe(filter.command) + " compara com um campo removido por um SELECT anterior");
+            }
+        }
+
+        List<String> notes = new ArrayList<>();
+        // Intervalos por caminho e tipo da constante e filtros entre campos, na ordem em que aparecem.
+        Map<String, Range<Double>> numbers = new LinkedHashMap<>();
+        Map<String, Range<String>> texts = new LinkedHashMap<>();
+        Map<String, FilterCondition> pathFilters = new LinkedHashMap<>();
+        List<Object> slots = new ArrayList<>();
+        for (SourcePlan.Filter filter : plan.filters) {
+            String contradiction;
+            if (filter.rightIsPath) {
+                contradiction = addPathFilter(filter, pathFilters, slots, notes);
+            } else if (filter.left == null) {
+                if (filter.operator == Operator.NE) {
+                    notes.add(describe(filter.command) + " é sempre verdadeiro: o campo foi removido por um SELECT anterior");
+                    contradiction = null;
+                } else {
+                    contradiction = describe(filter.command) + " usa um campo removido por um SELECT anterior";
+                }
+            } else if (filter.numeric) {
+                contradiction = range(numbers, filter.left, slots).add(filter.number + 0.0, filter.command, notes);
+            } else if (filter.operator != Operator.EQ && filter.operator != Operator.NE
+                    && !Double.isNaN(Comparisons.toNumber(filter.text))) {
+                // Strings que o JS converte para número (ex: "", "1e3") são comparadas como número com
+                // valores que não são strings, fora da ordem das strings: o filtro segue como escrito.
+                slots.add(rewrite(filter.command, filter.left, null));
+                contradiction = null;
+            } else {
+                contradiction = range(texts, filter.left, slots).add(filter.text, filter.command, notes);
+            }
+            if (contradiction != null) {
+                return empty(load, saves, contradiction, notes);
+            }
+        }
+
+        List<FilterCondition> filters = new ArrayList<>();
+        for (Object slot : slots) {
+            if (slot instanceof FilterCondition) {
+                filters.add((FilterCondition) slot);
+                continue;
+            }
+            String contradiction = ((Range<?>) slot).resolve(filters, notes);
+            if (contradiction != null) {
+                return empty(load, saves, contradiction, notes);
+            }
+        }
+        // '==' fixa o tipo do valor: um número não passa em '==' nem em '<' ou '>' com uma string
+        // (Number(texto) é NaN), e uma string fixa é comparada como Number(string) com os números.
+        for (Range<Double> number : numbers.values()) {
+            Range<String> text = texts.get(number.path);
+            if (text == null) {
+                continue;
+            }
+            if (number.equal != null && text.constraint() != null) {
+                return empty(load, saves, describe(number.equal.source) + " contradiz "
+                        + describe(text.constraint().source) + ": o valor não pode ser número e string", notes);
+            }
+            if (text.equal != null && number.constraint() != null) {
+                Bound<Double> rejected = number.rejecting(Comparisons.toNumber(text.equal.value));
+                if (rejected != null) {
+                    return empty(load, saves, describe(text.equal.source) + " contradiz " + describe(rejected.source), notes);
+                }
+            }
+        }
+
+        FilterStatistics statistics = FilterStatistics.of(load.filePath);
+        List<FilterCondition> ordered = new ArrayList<>(filters);
+        ordered.sort(Comparator.comparingDouble(filter -> estimate(filter, statistics).rank()));
+        if (!ordered.equals(filters)) {
+            notes.add("FILTERs reordenados por seletividade e custo estimados");
+        }
+
+        List<Command> selects = new ArrayList<>();
+        for (Command cmd : stages) {
+            if (cmd instanceof SelectCommand) {
+                selects.add(cmd);
+            }
+        }
+        if (selects.size() > 1 && composable(plan.projection)) {
+            SelectCommand last = (SelectCommand) selects.get(selects.size() - 1);
+            SelectCommand composed = new SelectCommand(new ArrayList<>(plan.projection.values()), last.lineNumber);
+            notes.add(selects.size() + " SELECTs compostos em " + composed);
+            selects = List.of(composed);
+        }
+
+        OrderByCommand orderBy = orderBy(plan, notes);
+
+        Set<String> readPaths = null;
+        if (plan.projection != null || plan.groupBy != null) {
+            readPaths = new LinkedHashSet<>();
+            for (FilterCondition filter : ordered) {
+                readPaths.add(filter.jsonPath);
+                if (filter.isPath()) {
+                    readPaths.add(filter.value);
+                }
+            }
+            if (orderBy != null) {
+                readPaths.addAll(orderBy.fields);
+            }
+            if (plan.projection != null) {
+                readPaths.addAll(plan.projection.values());
+            } else {
+                // Sem SELECT, o GROUP BY lê a chave e os campos agregados direto da origem.
+                readPaths.add(plan.groupBy.keyPath);
+                readPaths.addAll(plan.groupBy.fields);
+            }
+        }
+
+        // O ORDER BY, já sobre a origem, vai antes dos SELECTs; o LIMIT mantém a posição em relação a ele.
+        List<Command> optimized = new ArrayList<>();
+        optimized.add(load);
+        optimized.addAll(ordered);
+        if (plan.limit != null && plan.limitFirst) {
+            optimized.add(plan.limit);
+        }
+        if (orderBy != null) {
+            optimized.add(orderBy);
+        }
+        optimized.addAll(selects);
+        if (plan.limit != null && !plan.limitFirst) {
+            optimized.add(plan.limit);
+        }
+        if (plan.groupBy != null) {
+            optimized.add(plan.groupBy);
+            optimized.addAll(plan.afterGroup);
+        }
+        optimized.addAll(saves);
+        return new OptimizedPlan(optimized, readPaths, null, notes, statistics);
+    }
+
+    // ORDER BY sobre os caminhos da origem. Chaves removidas por um SELECT anterior são ausentes em
+    // todos os registros e não mudam a ordem; sem nenhuma chave restante o ORDER BY é descartado.
+    private static OrderByCommand orderBy(SourcePlan plan, List<String> notes) {
+        if (plan.orderBy == null) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        List<Boolean> descending = new ArrayList<>();
+        for (int i = 0; i < plan.orderPaths.size(); i++) {
+            String path = plan.orderPaths.get(i);
+            if (path == null) {
+                notes.add("a chave " + plan.orderBy.fields.get(i) + " de " + describe(plan.orderBy)
+                        + " foi removida por um SELECT anterior e não muda a ordem");
+            } else {
+                fields.add(path);
+                descending.add(plan.orderBy.descending.get(i));
+            }
+        }
+        if (fields.isEmpty()) {
+            notes.add(describe(plan.orderBy) + " descartado: nenhuma chave existe nos registros");
+            return null;
+        }
+        if (fields.equals(plan.orderBy.fields)) {
+            return plan.orderBy;
+        }
+        return new OrderByCommand(fields, descending, plan.orderBy.lineNumber);
+    }
+
+    private static <T extends Comparable<T>> Range<T> range(Map<String, Range<T>> ranges, String path, List<Object> slots) {
+        Range<T> range = ranges.get(path);
+        if (range == null) {
+            range = new Range<>(path);
+            ranges.put(path, range);
+            slots.add(range);
+        }
+        return range;
+    }
+
+    // FILTER .a op .b (os dois caminhos presentes ou os dois removidos): o mesmo caminho dos dois
+    // lados tem resultado conhecido para ==, !=, < e >.
+    private static String addPathFilter(SourcePlan.Filter filter, Map<String, FilterCondition> pathFilters,
+            List<Object> slots, List<String> notes) {
+        Operator op = filter.operator;
+        if (filter.left == null) {
+            // Dois campos ausentes: só '==' é verdadeiro.
+            if (op != Operator.EQ) {
+                return describe(filter.command) + " compara dois campos removidos por SELECTs anteriores";
+            }
+            notes.add(describe(filter.command) + " é sempre verdadeiro: os dois campos foram removidos por SELECTs anteriores");
+            return null;
+        }
+        if (filter.left.equals(filter.rightPath)) {
+            if (op == Operator.NE || op == Operator.GT || op == Operator.LT) {
+                return describe(filter.command) + " compara o campo com ele mesmo e nunca é verdadeiro";
+            }
+            if (op == Operator.EQ) {
+                notes.add(describe(filter.command) + " compara o campo com ele mesmo e é sempre verdadeiro");
+                return null;
+            }
+        }
+        FilterCondition rewritten = rewrite(filter.command, filter.left, filter.rightPath);
+        String key = rewritten.jsonPath + " " + rewritten.operator + " " + rewritten.value;
+        FilterCondition previous = pathFilters.putIfAbsent(key, rewritten);
+        if (previous != null) {
+            notes.add(describe(filter.command) + " repete " + describe(previous));
+        } else {
+            slots.add(rewritten);
+        }
+        return null;
+    }
+
+    // Restrições de um caminho comparado com constantes de um tipo: limites, igualdade e exclusões (!=).
+    private static final class Range<T extends Comparable<T>> {
+        final String path;
+        final List<FilterCondition> sources = new ArrayList<>();
+        private Bound<T> lower;
+        private Bound<T> upper;
+        Bound<T> equal;
+        private final Map<T, FilterCondition> excluded = new LinkedHashMap<>();
+
+        Range(String path) {
+            this.path = path;
+        }
+
+        // Primeiro filtro além de '!=', que exige que o campo exista; null se só há exclusões.
+        Bound<T> constraint() {
+            return equal != null ? equal : lower != null ? lower : upper;
+        }
+
+        // Limite que o valor não satisfaz, ou null se passa pelos dois.
+        Bound<T> rejecting(T value) {
+            if (lower != null && !above(value, lower)) {
+                return lower;
+            }
+            return upper != null && !below(value, upper) ? upper : null;
+        }
+
+        // Devolve a descrição da contradição, se o novo filtro já torna o intervalo vazio.
+        String add(T value, FilterCondition source, List<String> notes) {
+            sources.add(source);
+            Bound<T> bound = new Bound<>(value, source);
+            switch (Operator.of(source.operator)) {
+                case GT:
+                case GE:
+                    if (lower == null || tighterLower(bound, lower)) {
+                        redundant(lower, bound, notes);
+                        lower = bound;
+                    } else {
+                        redundant(bound, lower, notes);
+                    }
+                    return null;
+                case LT:
+                case LE:
+                    if (upper == null || tighterUpper(bound, upper)) {
+                        redundant(upper, bound, notes);
+                        upper = bound;
+                    } else {
+                        redundant(bound, upper, notes);
+                    }
+                    return null;
+                case EQ:
+                    if (equal == null) {
+                        equal = bound;
+                    } else if (equal.value.compareTo(value) != 0) {
+                        return describe(source) + " contradiz " + describe(equal.source);
+                    } else {
+                        redundant(bound, equal, notes);
+                    }
+                    return null;
+                default:
+                    FilterCondition previous = excluded.putIfAbsent(value, source);
+                    if (previous != null) {
+                        notes.add(describe(source) + " repete " + describe(previous));
+                    }
+                    return null;
+            }
+        }
+
+        // Acrescenta a 'out' os filtros que restam do intervalo, ou devolve a contradição.
+        String resolve(List<FilterCondition> out, List<String> notes) {
+            if (lower != null && upper != null) {
+                int c = lower.value.compareTo(upper.value);
+                if (c > 0 || (c == 0 && !(lower.inclusive() && upper.inclusive()))) {
+                    return describe(lower.source) + " contradiz " + describe(upper.source);
+                }
+                // '>= 5' e '<= 5' não viram '== 5': os limites aceitam a string "5" e o '===' não.
+            }
+            if (equal != null) {
+                if (lower != null && !above(equal.value, lower)) {
+                    return describe(equal.source) + " contradiz " + describe(lower.source);
+                }
+                if (upper != null && !below(equal.value, upper)) {
+                    return describe(equal.source) + " contradiz " + describe(upper.source);
+                }
+                FilterCondition excludedEqual = excluded.get(equal.value);
+                if (excludedEqual != null) {
+                    return describe(equal.source) + " contradiz " + describe(excludedEqual);
+                }
+                redundant(lower, equal, notes);
+                redundant(upper, equal, notes);
+                for (FilterCondition exclusion : excluded.values()) {
+                    notes.add(describe(exclusion) + " é redundante com " + describe(equal.source));
+                }
+                out.add(rewrite(equal.source, path, null));
+                return null;
+            }
+            if (lower != null) {
+                out.add(rewrite(lower.source, path, null));
+            }
+            if (upper != null) {
+                out.add(rewrite(upper.source, path, null));
+            }
+            for (Map.Entry<T, FilterCondition> exclusion : excluded.entrySet()) {
+                // Fora do intervalo o '!=' já vale para todo valor que passa pelos limites.
+                if ((lower == null || above(exclusion.getKey(), lower)) && (upper == null || below(exclusion.getKey(), upper))
+                        && !(lower != null && lower.value.compareTo(exclusion.getKey()) == 0 && !lower.inclusive())
+                        && !(upper != null && upper.value.compareTo(exclusion.getKey()) == 0 && !upper.inclusive())) {
+                    out.add(rewrite(exclusion.getValue(), path, null));
+                } else {
+                    notes.add(describe(exclusion.getValue()) + " é redundante com os limites de " + path);
+                }
+            }
+            return null;
+        }
+
+        private static <T extends Comparable<T>> boolean tighterLower(Bound<T> candidate, Bound<T> current) {
+            int c = candidate.value.compareTo(current.value);
+            return c > 0 || (c == 0 && !candidate.inclusive() && current.inclusive());
+        }
+
+        private static <T extends Comparable<T>> boolean tighterUpper(Bound<T> candidate, Bound<T> current) {
+            int c = candidate.value.compareTo(current.value);
+            return c < 0 || (c == 0 && !candidate.inclusive() && current.inclusive());
+        }
+
+        // 'value' satisfaz o limite inferior / superior.
+        private static <T extends Comparable<T>> boolean above(T value, Bound<T> lower) {
+            int c = value.compareTo(lower.value);
+            return c > 0 || (c == 0 && lower.inclusive());
+        }
+
+        private static <T extends Comparable<T>> boolean below(T value, Bound<T> upper) {
+            int c = value.compareTo(upper.value);
+            return c < 0 || (c == 0 && upper.inclusive());
+        }
+
+        private static void redundant(Bound<?> dropped, Bound<?> kept, List<String> notes) {
+            if (dropped != null) {
+                notes.add(describe(dropped.source) + " é redundante com " + describe(kept.source));
+            }
+        }
+    }
+
+    private static final class Bound<T> {
+        final T value;
+        final FilterCondition source;
+
+        Bound(T value, FilterCondition source) {
+            this.value = value;
+            this.source = source;
+        }
+
+        boolean inclusive() {
+            return source.operator.length() == 2;
+        }
+    }
+
+    // O último SELECT vira um único SELECT sobre a origem quando cada nome gerado coincide com o
+    // caminho de origem (ex: SELECT .cliente seguido de SELECT .cliente_nome não coincide).
+    private static boolean composable(Map<String, String> projection) {
+        if (projection == null || projection.isEmpty()) {
+            return false;
+        }
+        for (Map.Entry<String, String> field : projection.entrySet()) {
+            if (!field.getKey().equals(JsonPaths.projectedName(field.getValue()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Mantém o comando original quando os caminhos não mudaram; 'rightPath' null = constante.
+    private static FilterCondition rewrite(FilterCondition cmd, String left, String rightPath) {
+        String value = rightPath == null ? cmd.value : rightPath;
+        if (cmd.jsonPath.equals(left) && cmd.value.equals(value)) {
+            return cmd;
+        }
+        return new FilterCondition(left, cmd.operator, value, rightPath == null ? cmd.operand : FilterCondition.Operand.PATH,
+                cmd.lineNumber);
+    }
+
+    private static OptimizedPlan unchanged(List<Command> commands, String reason) {
+        List<String> notes = new ArrayList<>();
+        notes.add("consulta executada como escrita: " + reason);
+        return new OptimizedPlan(commands, null, null, notes, FilterStatistics.NONE);
+    }
+
+    private static OptimizedPlan empty(LoadCommand load, List<Command> saves, String contradiction, List<String> notes) {
+        List<Command> commands = new ArrayList<>();
+        commands.add(load);
+        commands.addAll(saves);
+        return new OptimizedPlan(commands, null, contradiction, notes, FilterStatistics.NONE);
+    }
+
+    // Comando com a linha de origem, para o EXPLAIN.
+    static String describe(Command cmd) {
+        return text(cmd) + " (linha " + cmd.lineNumber + ")";
+    }
+
+    // Texto do comando; caminhos à direita do FILTER aparecem sem aspas.
+    public static String text(Command cmd) {
+        if (cmd instanceof FilterCondition) {
+            FilterCondition filter = (FilterCondition) cmd;
+            if (filter.isPath()) {
+                return "FILTER " + filter.jsonPath + " " + filter.operator + " " + filter.value;
+            }
+        }
+        return cmd.toString();
+    }
+}
@@ -0,0 +1,335 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.Command;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.FilterCondition;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.GroupByCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.LimitCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.LoadCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.OrderByCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.SaveCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.SelectCommand;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+// Forma executável de uma consulta validada: origem do LOAD, etapas FILTER/SELECT, GROUP BY,
+// ORDER BY/LIMIT e destino (e formato) do SAVE. O ORDER BY não é uma etapa: a chave de cada registro
+// é lida na posição do comando e a ordenação fica com o OrderedWriter, no fim. O GROUP BY também não:
+// ele vem depois de todas as etapas e fica com o GroupWriter, cujos grupos seguem para o ORDER BY/LIMIT.
+public final class QueryPipeline {
+
+    public final String loadPath;
+    public final String savePath;
+    public final OutputFormat saveFormat;
+    private final List<Command> stageCommands;
+    private final RecordStage[] stages;
+    // Chaves do ORDER BY e a etapa antes da qual são lidas; null sem ORDER BY.
+    private String[][] orderPaths;
+    private int orderStage;
+    private RecordOrder order;
+    private GroupByCommand group;
+    private long limit = -1;
+    private boolean limitFirst;
+    private Set<String> readPaths;
+    private RecordDecoder decoder = RecordDecoder.FULL;
+    private boolean empty;
+    private ExecutionMetrics metrics;
+
+    private QueryPipeline(String loadPath, String savePath, OutputFormat saveFormat, List<Command> stageCommands,
+                          List<RecordStage> stages) {
+        this.loadPath = loadPath;
+        this.savePath = savePath;
+        this.saveFormat = saveFormat;
+        this.stageCommands = Collections.unmodifiableList(stageCommands);
+        this.stages = stages.toArray(new RecordStage[0]);
+    }
+
+    // Pipeline do plano otimizado: decodifica só os campos usados e, se os FILTERs se contradizem,
+    // nem chega a ler o LOAD.
+    public static QueryPipeline from(OptimizedPlan plan, ExecutionMode mode) {
+        QueryPipeline pipeline = from(plan.getCommands(), mode);
+        pipeline.readPaths = plan.getReadPaths();
+        pipeline.decoder = RecordDecoder.of(plan.getReadPaths());
+        pipeline.empty = plan.isEmpty();
+        return pipeline;
+    }
+
+    public static QueryPipeline from(List<Command> commands) {
+        return from(commands, ExecutionMode.INTERPRETED);
+    }
+
+    // Monta o pipeline na ordem em que os comandos aparecem, como o JavaScriptGenerator.
+    public static QueryPipeline from(List<Command> commands, ExecutionMode mode) {
+        String loadPath = null;
+        String savePath = null;
+        OutputFormat saveFormat = OutputFormat.JSON;
+        List<Command> stageCommands = new ArrayList<>();
+        OrderByCommand orderBy = null;
+        LimitCommand limit = null;
+        GroupByCommand group = null;
+        int orderStage = 0;
+        boolean limitFirst = false;
+
+        for (Command cmd : commands) {
+            if (cmd instanceof LoadCommand) {
+                if (loadPath != null) {
+                    throw new IllegalArgumentException("Linha " + cmd.lineNumber + ": apenas um LOAD é suportado por consulta");
+                }
+                loadPath = ((LoadCommand) cmd).filePath;
+
+            } else if (cmd instanceof SaveCommand) {
+                // O script gerado grava cada SAVE com os dados daquele ponto; a JVM só grava o resultado final.
+                if (savePath != null) {
+                    throw new IllegalArgumentException("Linha " + cmd.lineNumber + ": apenas um SAVE é suportado por consulta na execução pela JVM");
+                }
+                savePath = ((SaveCommand) cmd).outputFile;
+                saveFormat = OutputFormat.of(((SaveCommand) cmd).format);
+
+            } else {
+                if (loadPath == null) {
+                    throw new IllegalArgumentException("Linha " + cmd.lineNumber + ": " + cmd + " aparece antes do LOAD");
+                }
+                if (cmd instanceof GroupByCommand) {
+                    if (group != null) {
+                        throw new IllegalArgumentException("Linha " + cmd.lineNumber + ": apenas um GROUP BY é suportado por consulta");
+                    }
+                    if (orderBy != null || limit != null) {
+                        throw new IllegalArgumentException("Linha " + cmd.lineNumber + ": GROUP BY depois do ORDER BY/LIMIT não é suportado");
+                    }
+                    group = (GroupByCommand) cmd;
+                } else if (group != null && (cmd instanceof FilterCondition || cmd instanceof SelectCommand)) {
+                    throw new IllegalArgumentException("Linha " + cmd.lineNumber + ": " + cmd + " depois do GROUP BY não é suportado");
+                } else if (cmd instanceof OrderByCommand) {
+                    if (orderBy != null) {
+                        throw new IllegalArgumentException("Linha " + cmd.lineNumber + ": apenas um ORDER BY é suportado por consulta");
+                    }
+                    orderBy = (OrderByCommand) cmd;
+                    orderStage = stageCount(stageCommands);
+                    limitFirst = limit != null;
+                } else if (cmd instanceof LimitCommand) {
+                    if (limit != null) {
+                        throw new IllegalArgumentException("Linha " + cmd.lineNumber + ": apenas um LIMIT é suportado por consulta");
+                    }
+                    limit = (LimitCommand) cmd;
+                    limitFirst = orderBy == null;
+                } else if (cmd instanceof FilterCondition && limit != null) {
+                    throw new IllegalArgumentException("Linha " + cmd.lineNumber + ": FILTER depois do LIMIT não é suportado");
+                } else if (!(cmd instanceof FilterCondition) && !(cmd instanceof SelectCommand)) {
+                    throw new IllegalArgumentException("Comando não suportado na execução: " + cmd);
+                }
+                stageCommands.add(cmd);
+            }
+        }
+        if (loadPath == null) {
+            throw new IllegalArgumentException("A consulta não possui comando LOAD");
+        }
+
+        List<Object> compiled = Collections.nCopies(stageCommands.size(), null);
+        if (mode == ExecutionMode.COMPILED || mode == ExecutionMode.VERIFIED) {
+            StageCompiler compiler = new StageCompiler();
+            compiled = compiler.compile(stageCommands);
+            if (compiler.getLastFailure() != null) {
+                System.err.println("AVISO: etapas executadas pelo interpretador: " + compiler.getLastFailure());
+            }
+        }
+        List<RecordStage> stages = new ArrayList<>();
+        for (int i = 0; i < stageCommands.size(); i++) {
+            Command cmd = stageCommands.get(i);
+            if (cmd instanceof FilterCondition || cmd instanceof SelectCommand) {
+                stages.add(toStage(cmd, compiled.get(i), mode));
+            }
+        }
+        QueryPipeline pipeline = new QueryPipeline(loadPath, savePath, saveFormat, stageCommands, stages);
+        pipeline.group = group;
+        if (orderBy != null) {
+            pipeline.orderPaths = new String[orderBy.fields.size()][];
+            boolean[] descending = new boolean[orderBy.fields.size()];
+            for (int i = 0; i < descending.length; i++) {
+                pipeline.orderPaths[i] = JsonPaths.split(orderBy.fields.get(i));
+                descending[i] = orderBy.descending.get(i);
+            }
+            pipeline.order = new RecordOrder(descending);
+            pipeline.orderStage = orderStage;
+        }
+        if (limit != null) {
+            pipeline.limit = Long.parseLong(limit.count);
+            pipeline.limitFirst = limitFirst;
+        }
+        return pipeline;
+    }
+
+    private static int stageCount(List<Command> commands) {
+        int count = 0;
+        for (Command cmd : commands) {
+            count += cmd instanceof FilterCondition || cmd instanceof SelectCommand ? 1 : 0;
+        }
+        return count;
+    }
+
+    // Usa a versão compilada quando existir; sem ela, o interpretador é o fallback.
+    private static RecordStage toStage(Command cmd, Object compiled, ExecutionMode mode) {
+        if (cmd instanceof FilterCondition) {
+            RecordPredicate interpreted = new InterpretedPredicate((FilterCondition) cmd);
+            RecordPredicate predicate = compiled == null ? interpreted : (RecordPredicate) compiled;
+            if (mode == ExecutionMode.VERIFIED && compiled != null) {
+                predicate = record -> {
+                    boolean expected = interpreted.test(record);
+                    if (((RecordPredicate) compiled).test(record) != expected) {
+                        throw divergence(cmd, record);
+                    }
+                    return expected;
+                };
+            }
+            RecordPredicate stage = predicate;
+            return record -> stage.test(record) ? record : null;
+        }
+
+        RecordProjector interpreted = new InterpretedProjector((SelectCommand) cmd);
+        RecordProjector projector = compiled == null ? interpreted : (RecordProjector) compiled;
+        if (mode == ExecutionMode.VERIFIED && compiled != null) {
+            projector = record -> {
+                ObjectNode expected = interpreted.project(record);
+                if (!((RecordProjector) compiled).project(record).equals(expected)) {
+                    throw divergence(cmd, record);
+                }
+                return expected;
+            };
+        }
+        return projector::project;
+    }
+
+    private static IllegalStateException divergence(Command cmd, JsonNode record) {
+        return new IllegalStateException(String.format(
+                "Linha %d: versões compilada e interpretada de '%s' divergem para o registro %s",
+                cmd.lineNumber, cmd, record));
+    }
+
+    // Verdadeiro quando o otimizador provou que nenhum registro passa pelos FILTERs.
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    // Caminhos da origem que a consulta lê; null = registro inteiro.
+    Set<String> readPaths() {
+        return readPaths;
+    }
+
+    RecordDecoder decoder() {
+        return decoder;
+    }
+
+    // Liga as métricas da execução (--metricas); o relatório fica completo depois do execute().
+    public ExecutionMetrics measure() {
+        if (metrics == null) {
+            metrics = new ExecutionMetrics(loadPath, stageCommands);
+        }
+        return metrics;
+    }
+
+    // Métricas da execução; null quando não foram ligadas.
+    ExecutionMetrics metrics() {
+        return metrics;
+    }
+
+    // Comandos FILTER/SELECT/GROUP BY/ORDER BY/LIMIT na ordem de execução.
+    public List<Command> getStageCommands() {
+        return stageCommands;
+    }
+
+    // Ordem do ORDER BY; null quando a consulta não ordena.
+    RecordOrder order() {
+        return order;
+    }
+
+    // GROUP BY da consulta; null quando ela não agrupa.
+    GroupByCommand group() {
+        return group;
+    }
+
+    // Quantidade do LIMIT; -1 sem LIMIT.
+    long limit() {
+        return limit;
+    }
+
+    // Verdadeiro quando o LIMIT vem antes do ORDER BY (ou não há ORDER BY): os primeiros registros
+    // que chegam ao fim do pipeline, na ordem do arquivo.
+    boolean limitFirst() {
+        return limitFirst;
+    }
+
+    // Vetor para a chave do ORDER BY de um registro (preenchido por process); null sem ORDER BY ou
+    // quando o ORDER BY se aplica aos grupos do GROUP BY.
+    JsonNode[] newKey() {
+        return orderPaths == null || group != null ? null : new JsonNode[orderPaths.length];
+    }
+
+    // Chave do ORDER BY lida no próprio registro (os grupos do GroupWriter); null sem ORDER BY.
+    JsonNode[] orderKey(JsonNode record) {
+        if (orderPaths == null) {
+            return null;
+        }
+        JsonNode[] key = new JsonNode[orderPaths.length];
+        readKey(record, key);
+        return key;
+    }
+
+    // Passa um registro por todas as etapas; null significa que ele foi filtrado.
+    public JsonNode process(JsonNode record) {
+        return process(record, null);
+    }
+
+    // Como process(record), preenchendo 'key' (se não for null) com a chave do ORDER BY.
+    JsonNode process(JsonNode record, JsonNode[] key) {
+        if (metrics != null) {
+            return processMeasured(record, key);
+        }
+        JsonNode current = record;
+        for (int i = 0; i < stages.length; i++) {
+            if (i == orderStage && key != null) {
+                readKey(current, key);
+            }
+            current = stages[i].apply(current);
+            if (current == null) {
+                return null;
+            }
+        }
+        if (orderStage == stages.length && key != null) {
+            readKey(current, key);
+        }
+        return current;
+    }
+
+    // Como process(record, key), contando os registros de cada etapa; o tempo só é medido nos
+    // registros amostrados, para que o System.nanoTime() não pese na execução.
+    private JsonNode processMeasured(JsonNode record, JsonNode[] key) {
+        int weight = metrics.sample();
+        if (weight > 0) {
+            metrics.sampleSourceFilters(stages, record, weight);
+        }
+        JsonNode current = record;
+        for (int i = 0; i < stages.length; i++) {
+            if (i == orderStage && key != null) {
+                readKey(current, key);
+            }
+            long start = weight > 0 ? System.nanoTime() : 0;
+            current = stages[i].apply(current);
+            metrics.stage(i, current != null, weight > 0 ? System.nanoTime() - start : 0, weight);
+            if (current == null) {
+                return null;
+            }
+        }
+        if (orderStage == stages.length && key != null) {
+            readKey(current, key);
+        }
+        return current;
+    }
+
+    private void readKey(JsonNode record, JsonNode[] key) {
+        for (int i = 0; i < key.length; i++) {
+            key[i] = JsonPaths.resolve(record, orderPaths[i]);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.mycompany.miniquery.runtime;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Totais das execuções medidas na JVM, expostos por JMX (jconsole, VisualVM) para quem usa o
+// QueryExecutor de dentro de um processo longo. O bean é registrado na primeira execução medida.
+public final class QueryStats implements QueryStatsMXBean {
+
+    public static final String OBJECT_NAME = "com.mycompany.miniquery:type=QueryStats";
+
+    private static final QueryStats INSTANCE = new QueryStats();
+    private static volatile boolean registered;
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder recordsRead = new LongAdder();
+    private final LongAdder recordsWritten = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final Map<String, Double> selectivities = new TreeMap<>();
+    private volatile String lastReport = "";
+
+    private QueryStats() {
+    }
+
+    public static QueryStats get() {
+        return INSTANCE;
+    }
+
+    // Soma uma execução terminada aos totais.
+    static void publish(ExecutionMetrics metrics) {
+        register();
+        QueryStats stats = INSTANCE;
+        stats.executions.increment();
+        stats.recordsRead.add(metrics.getRecordsRead());
+        stats.recordsWritten.add(metrics.getRecordsWritten());
+        stats.bytesRead.add(Math.max(0, metrics.getBytesRead()));
+        stats.bytesWritten.add(Math.max(0, metrics.getBytesWritten()));
+        stats.totalNanos.add(metrics.getTotalNanos());
+        if (metrics.isRepresentative()) {
+            synchronized (stats.selectivities) {
+                stats.selectivities.putAll(metrics.isolatedSelectivities());
+            }
+        }
+        stats.lastReport = metrics.toJson();
+    }
+
+    private static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        registered = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (JMException | SecurityException e) {
+            System.err.println("AVISO: métricas não publicadas por JMX: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    @Override
+    public long getRecordsRead() {
+        return recordsRead.sum();
+    }
+
+    @Override
+    public long getRecordsWritten() {
+        return recordsWritten.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    @Override
+    public String getLastReport() {
+        return lastReport;
+    }
+
+    @Override
+    public Map<String, Double> getObservedSelectivities() {
+        synchronized (selectivities) {
+            return new TreeMap<>(selectivities);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.mycompany.miniquery.runtime;
+
+import java.util.Map;
+
+// Interface JMX das métricas acumuladas das execuções com --metricas (QueryStats), publicada como
+// com.mycompany.miniquery:type=QueryStats.
+public interface QueryStatsMXBean {
+
+    long getExecutions();
+
+    long getRecordsRead();
+
+    long getRecordsWritten();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    long getTotalNanos();
+
+    // Relatório JSON da última execução (ExecutionMetrics.toJson).
+    String getLastReport();
+
+    // Seletividade isolada de cada FILTER sobre a origem observada na última execução que o avaliou.
+    Map<String, Double> getObservedSelectivities();
+}
@@ -0,0 +1,84 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Lê um registro do LOAD montando só os campos dos caminhos usados pela consulta; os demais são
+// pulados pelo parser (skipChildren) sem virar JsonNode. Um caminho que termina em um objeto
+// (ex: SELECT .cliente) mantém o objeto inteiro, então o registro podado resolve esses caminhos
+// exatamente como o original.
+final class RecordDecoder {
+
+    // Decodifica o registro inteiro (consulta sem SELECT).
+    static final RecordDecoder FULL = new RecordDecoder(null);
+
+    // Filhos por nome; null = o valor inteiro é necessário.
+    private static final class Field {
+        Map<String, Field> children = new HashMap<>();
+    }
+
+    private final Field root;
+
+    private RecordDecoder(Field root) {
+        this.root = root;
+    }
+
+    // 'paths' null decodifica tudo.
+    static RecordDecoder of(Collection<String> paths) {
+        if (paths == null) {
+            return FULL;
+        }
+        Field root = new Field();
+        for (String path : paths) {
+            Field current = root;
+            for (String segment : JsonPaths.split(path)) {
+                if (current.children == null) {
+                    break;
+                }
+                current = current.children.computeIfAbsent(segment, s -> new Field());
+            }
+            current.children = null;
+        }
+        return new RecordDecoder(root.children == null ? null : root);
+    }
+
+    // Campos de primeiro nível usados; null = todos.
+    Set<String> fields() {
+        return root == null ? null : root.children.keySet();
+    }
+
+    // O parser deve estar no primeiro token do registro; ao final, fica no último.
+    JsonNode read(ObjectMapper mapper, JsonParser parser) throws IOException {
+        return root == null ? mapper.readTree(parser) : read(mapper, parser, root);
+    }
+
+    private static JsonNode read(ObjectMapper mapper, JsonParser parser, Field field) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            // Fora de objetos nenhum caminho se resolve; o valor é mantido como está.
+            return mapper.readTree(parser);
+        }
+        ObjectNode out = JsonNodeFactory.instance.objectNode();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            Field child = field.children.get(name);
+            parser.nextToken();
+            if (child == null) {
+                parser.skipChildren();
+            } else if (child.children == null) {
+                out.set(name, mapper.readTree(parser));
+            } else {
+                out.set(name, read(mapper, parser, child));
+            }
+        }
+        return out;
+    }
+}
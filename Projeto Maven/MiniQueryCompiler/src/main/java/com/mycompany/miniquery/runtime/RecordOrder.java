@@ -0,0 +1,66 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.Comparator;
+
+// Ordem do ORDER BY sobre as chaves de cada registro, a mesma do compareValues do script gerado:
+// ausente/null < booleanos < números < strings < objetos e arrays (empatados entre si). DESC inverte
+// a comparação da sua chave; registros empatados ficam na ordem de chegada (as ordenações são estáveis).
+final class RecordOrder implements Comparator<JsonNode[]> {
+
+    private final boolean[] descending;
+
+    RecordOrder(boolean[] descending) {
+        this.descending = descending;
+    }
+
+    int keyCount() {
+        return descending.length;
+    }
+
+    @Override
+    public int compare(JsonNode[] a, JsonNode[] b) {
+        for (int i = 0; i < descending.length; i++) {
+            int c = compareValues(a[i], b[i]);
+            if (c != 0) {
+                return descending[i] ? -c : c;
+            }
+        }
+        return 0;
+    }
+
+    // Strings são comparadas por unidades UTF-16, como o '<' do JavaScript.
+    static int compareValues(JsonNode a, JsonNode b) {
+        int ra = rank(a);
+        int rb = rank(b);
+        if (ra != rb) {
+            return Integer.compare(ra, rb);
+        }
+        switch (ra) {
+            case 1:
+                return Boolean.compare(a.booleanValue(), b.booleanValue());
+            case 2: {
+                double x = a.doubleValue();
+                double y = b.doubleValue();
+                return x < y ? -1 : x > y ? 1 : 0;
+            }
+            case 3:
+                return Integer.signum(a.textValue().compareTo(b.textValue()));
+            default:
+                return 0;
+        }
+    }
+
+    private static int rank(JsonNode value) {
+        if (value == null || value.isNull()) {
+            return 0;
+        }
+        if (value.isBoolean()) {
+            return 1;
+        }
+        if (value.isNumber()) {
+            return 2;
+        }
+        return value.isTextual() ? 3 : 4;
+    }
+}
@@ -0,0 +1,9 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+// Condição de um FILTER avaliada sobre um único registro.
+public interface RecordPredicate {
+
+    boolean test(JsonNode record);
+}
@@ -0,0 +1,10 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+// Projeção de um SELECT: monta o objeto de saída a partir de um registro.
+public interface RecordProjector {
+
+    ObjectNode project(JsonNode record);
+}
@@ -0,0 +1,44 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Relê registros isolados do arquivo do LOAD a partir da posição (em bytes) e do tamanho guardados
+// em uma carga anterior, com leituras posicionais que reaproveitam o mesmo buffer.
+final class RecordReader implements Closeable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Path source;
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+    RecordReader(Path source) throws IOException {
+        this.source = source;
+        this.channel = FileChannel.open(source, StandardOpenOption.READ);
+    }
+
+    JsonNode read(long offset, int length) throws IOException {
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(Math.max(length, buffer.capacity() * 2));
+        }
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("O arquivo '" + source + "' foi alterado durante a leitura");
+            }
+        }
+        return MAPPER.readTree(buffer.array(), 0, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
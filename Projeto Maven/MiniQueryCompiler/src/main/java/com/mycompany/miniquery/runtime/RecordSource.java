@@ -0,0 +1,226 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mycompany.miniquery.format.ColumnarFile;
+import com.mycompany.miniquery.format.ColumnarFileReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+// Registros do arquivo do LOAD, na ordem, qualquer que seja o formato: array JSON, NDJSON (o
+// arquivo começa com '{' e tem um valor JSON por registro) ou o formato colunar do
+// SAVE ... FORMAT COLUMNAR, reconhecido pela assinatura no início do arquivo.
+abstract class RecordSource implements Closeable {
+
+    // 'filters' (os FILTERs reescritos sobre a origem, ou null) permite ao formato colunar pular
+    // blocos em que nenhum registro passaria.
+    static RecordSource open(ObjectMapper mapper, String loadPath, RecordDecoder decoder,
+                             List<SourcePlan.Filter> filters) throws IOException {
+        Path path = Paths.get(loadPath);
+        if (ColumnarFile.isColumnar(path)) {
+            return new Columnar(ColumnarFileReader.open(path), decoder, filters);
+        }
+        JsonParser parser = mapper.getFactory().createParser(path.toFile());
+        try {
+            JsonToken first = parser.nextToken();
+            if (first != JsonToken.START_ARRAY && first != JsonToken.START_OBJECT) {
+                throw new IOException("O arquivo '" + loadPath + "' não contém um array JSON");
+            }
+            return new Json(mapper, parser, loadPath, decoder, first == JsonToken.START_ARRAY);
+        } catch (IOException | RuntimeException e) {
+            parser.close();
+            throw e;
+        }
+    }
+
+    // Próximo registro; null no fim do arquivo.
+    abstract JsonNode next() throws IOException;
+
+    // Posição e tamanho em bytes do último registro devolvido, para relê-lo com o RecordReader;
+    // -1 quando o formato não permite.
+    long recordOffset() {
+        return -1;
+    }
+
+    int recordLength() {
+        return -1;
+    }
+
+    // Bytes do arquivo consumidos até aqui; -1 quando o formato não sabe (o colunar lê só os blocos
+    // e as colunas usadas).
+    long bytesRead() {
+        return -1;
+    }
+
+    private static final class Json extends RecordSource {
+        private final ObjectMapper mapper;
+        private final JsonParser parser;
+        private final String loadPath;
+        private final RecordDecoder decoder;
+        private final boolean array;
+        private boolean pending;
+        private long offset = -1;
+        private int length = -1;
+
+        Json(ObjectMapper mapper, JsonParser parser, String loadPath, RecordDecoder decoder, boolean array) {
+            this.mapper = mapper;
+            this.parser = parser;
+            this.loadPath = loadPath;
+            this.decoder = decoder;
+            this.array = array;
+            // No NDJSON o token atual já é o início do primeiro registro.
+            this.pending = !array;
+        }
+
+        @Override
+        JsonNode next() throws IOException {
+            JsonToken token = pending ? parser.currentToken() : parser.nextToken();
+            pending = false;
+            if (array ? token == JsonToken.END_ARRAY : token == null) {
+                return null;
+            }
+            if (token == null) {
+                throw new IOException("Fim inesperado do arquivo '" + loadPath + "'");
+            }
+            long start = parser.currentTokenLocation().getByteOffset();
+            JsonNode record = decoder.read(mapper, parser);
+            offset = start;
+            length = (int) (parser.currentLocation().getByteOffset() - start);
+            return record;
+        }
+
+        @Override
+        long recordOffset() {
+            return offset;
+        }
+
+        @Override
+        int recordLength() {
+            return length;
+        }
+
+        @Override
+        long bytesRead() {
+            return parser.currentLocation().getByteOffset();
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+
+    private static final class Columnar extends RecordSource {
+        private final ColumnarFileReader reader;
+        private final Set<String> fields;
+        private final List<SourcePlan.Filter> filters;
+        private final Iterator<ColumnarFile.Block> blocks;
+        private ColumnarFileReader.Rows rows;
+        private int next;
+
+        Columnar(ColumnarFileReader reader, RecordDecoder decoder, List<SourcePlan.Filter> filters) {
+            this.reader = reader;
+            this.fields = decoder.fields();
+            this.filters = filters;
+            this.blocks = reader.blocks().iterator();
+        }
+
+        @Override
+        JsonNode next() throws IOException {
+            while (rows == null || next == rows.size()) {
+                if (!blocks.hasNext()) {
+                    return null;
+                }
+                ColumnarFile.Block block = blocks.next();
+                if (!skip(block)) {
+                    rows = reader.read(block, fields);
+                    next = 0;
+                }
+            }
+            return rows.record(next++);
+        }
+
+        // Verdadeiro quando as estatísticas do bloco mostram que algum FILTER rejeita todas as linhas.
+        private boolean skip(ColumnarFile.Block block) {
+            if (filters == null || !block.hasColumns()) {
+                return false;
+            }
+            for (SourcePlan.Filter filter : filters) {
+                if (filter.left == null || filter.rightIsPath || filter.operator == Operator.NE) {
+                    continue;
+                }
+                String[] segments = JsonPaths.split(filter.left);
+                ColumnarFile.Chunk column = block.column(segments[0]);
+                if (column == null) {
+                    return true; // campo sempre ausente
+                }
+                if (column.type.equals(ColumnarFile.JSON) || segments.length > 1 && column.type.equals(ColumnarFile.OBJECT)) {
+                    continue;
+                }
+                if (segments.length > 1) {
+                    return true; // caminho dentro de um valor que não é objeto
+                }
+                if (!mayMatch(filter, column)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Se alguma linha da coluna pode passar no filtro, pela semântica de Comparisons: '==' exige o
+        // tipo da constante, null vale 0 em '<', '<=', '>' e '>=' e strings, booleanos e números se
+        // convertem entre si nessas comparações.
+        private static boolean mayMatch(SourcePlan.Filter filter, ColumnarFile.Chunk column) {
+            Operator op = filter.operator;
+            double number = filter.numeric ? filter.number : Comparisons.toNumber(filter.text);
+            if (column.nulls > 0 && op != Operator.EQ && op.matches(0, number)) {
+                return true;
+            }
+            String type = column.type;
+            boolean numbers = type.equals(ColumnarFile.LONG) || type.equals(ColumnarFile.DOUBLE)
+                    || type.equals(ColumnarFile.NUMBER);
+            boolean texts = type.equals(ColumnarFile.STRING);
+            if (type.equals(ColumnarFile.NULLS) || (op == Operator.EQ && (filter.numeric ? !numbers : !texts))) {
+                return false;
+            }
+            if (filter.numeric ? numbers : texts) {
+                return column.min == null || inRange(filter, column.min, column.max);
+            }
+            if (type.equals(ColumnarFile.OBJECT)) {
+                // Objetos valem "[object Object]": NaN contra números, texto contra strings.
+                return !filter.numeric;
+            }
+            // Strings contra um número, ou números e booleanos contra uma string.
+            return !Double.isNaN(number);
+        }
+
+        // Se algum valor entre 'min' e 'max' pode satisfazer o filtro.
+        private static boolean inRange(SourcePlan.Filter filter, JsonNode min, JsonNode max) {
+            Operator op = filter.operator;
+            if (filter.numeric) {
+                switch (op) {
+                    case GT: case GE: return op.matches(max.doubleValue(), filter.number);
+                    case LT: case LE: return op.matches(min.doubleValue(), filter.number);
+                    default: return min.doubleValue() <= filter.number && filter.number <= max.doubleValue();
+                }
+            }
+            switch (op) {
+                case GT: case GE: return op.matches(max.textValue().compareTo(filter.text));
+                case LT: case LE: return op.matches(min.textValue().compareTo(filter.text));
+                default: return min.textValue().compareTo(filter.text) <= 0 && filter.text.compareTo(max.textValue()) <= 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
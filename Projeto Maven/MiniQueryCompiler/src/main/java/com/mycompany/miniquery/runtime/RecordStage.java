@@ -0,0 +1,9 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+// Etapa do pipeline por registro; retorna null quando o registro deve ser descartado.
+public interface RecordStage {
+
+    JsonNode apply(JsonNode record);
+}
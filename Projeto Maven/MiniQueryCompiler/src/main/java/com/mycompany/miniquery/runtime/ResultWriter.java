@@ -0,0 +1,136 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mycompany.miniquery.format.ColumnarFileWriter;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+// Destino dos registros do resultado, no formato do SAVE. O close() termina o arquivo (fecha o
+// array JSON ou grava o rodapé do formato colunar).
+abstract class ResultWriter implements Closeable {
+
+    // Sem SAVE, grava em 'fallbackOutput', que não é fechado.
+    static ResultWriter open(ObjectMapper mapper, OutputFormat format, String savePath, OutputStream fallbackOutput)
+            throws IOException {
+        OutputStream out = savePath != null
+                ? new BufferedOutputStream(Files.newOutputStream(Paths.get(savePath)))
+                : fallbackOutput;
+        if (format == OutputFormat.COLUMNAR) {
+            return new Columnar(new ColumnarFileWriter(out, savePath != null));
+        }
+        JsonGenerator generator = JsStyleGenerator.create(mapper, out);
+        if (savePath == null) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+        if (format == OutputFormat.NDJSON) {
+            return new Lines(generator);
+        }
+        if (format == OutputFormat.JSON) {
+            generator.setPrettyPrinter(new JsStylePrettyPrinter());
+        }
+        return new Array(generator, savePath == null);
+    }
+
+    abstract void write(JsonNode record) throws IOException;
+
+    // Registro com a chave do ORDER BY (QueryPipeline.newKey); só o OrderedWriter a usa.
+    void write(JsonNode record, JsonNode[] key) throws IOException {
+        write(record);
+    }
+
+    // Verdadeiro quando o LIMIT já foi atingido e a leitura pode parar.
+    boolean isFull() {
+        return false;
+    }
+
+    // Registros que chegaram ao destino final quando 'written' foram gravados neste writer (os
+    // decoradores descontam o LIMIT ou contam os grupos); válido depois do close().
+    long resultCount(long written) {
+        return written;
+    }
+
+    // Gerador posicionado dentro do array JSON do resultado, para quem grava cada registro campo a
+    // campo (ColumnarExecutor); null nos formatos que não são um array JSON.
+    JsonGenerator arrayGenerator() {
+        return null;
+    }
+
+    // JSON e COMPACT_JSON: um array com um elemento por registro.
+    private static final class Array extends ResultWriter {
+        private final JsonGenerator generator;
+        private final boolean newLine;
+
+        Array(JsonGenerator generator, boolean newLine) throws IOException {
+            this.generator = generator;
+            this.newLine = newLine;
+            generator.writeStartArray();
+        }
+
+        @Override
+        void write(JsonNode record) throws IOException {
+            generator.writeTree(record);
+        }
+
+        @Override
+        JsonGenerator arrayGenerator() {
+            return generator;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                generator.writeEndArray();
+                if (newLine) {
+                    generator.writeRaw('\n');
+                }
+            } finally {
+                generator.close();
+            }
+        }
+    }
+
+    // NDJSON: cada registro em uma linha, terminada por '\n'.
+    private static final class Lines extends ResultWriter {
+        private final JsonGenerator generator;
+
+        Lines(JsonGenerator generator) {
+            this.generator = generator;
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        void write(JsonNode record) throws IOException {
+            generator.writeTree(record);
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    private static final class Columnar extends ResultWriter {
+        private final ColumnarFileWriter writer;
+
+        Columnar(ColumnarFileWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        void write(JsonNode record) throws IOException {
+            writer.write(record);
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
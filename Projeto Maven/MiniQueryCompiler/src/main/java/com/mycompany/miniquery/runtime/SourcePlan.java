@@ -0,0 +1,162 @@
+package com.mycompany.miniquery.runtime;
+
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.Command;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.FilterCondition;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.GroupByCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.LimitCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.OrderByCommand;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.SelectCommand;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Etapas FILTER/SELECT reescritas sobre o registro original do LOAD: cada FILTER vira uma condição
+// sobre caminhos da origem e os SELECTs se reduzem à projeção final. Como os filtros são condições
+// sobre a mesma linha, a ordem entre eles não importa; basta traduzir os caminhos que passam por
+// um SELECT (ex: .cliente_nome -> .cliente.nome). As chaves do ORDER BY também são traduzidas; o
+// LIMIT só é representado com todos os FILTERs antes dele. O GROUP BY é o último comando sobre a
+// origem: o ORDER BY e o LIMIT depois dele se aplicam aos grupos e não aparecem no plano.
+final class SourcePlan {
+
+    // Filtro já reescrito para caminhos do registro original; null = caminho sempre ausente.
+    static final class Filter {
+        final String left;
+        final Operator operator;
+        final String rightPath;
+        final boolean numeric;
+        final double number;
+        final String text;
+        final boolean rightIsPath;
+        final FilterCondition command;
+
+        Filter(String left, FilterCondition cmd, String rightPath) {
+            this.command = cmd;
+            this.left = left;
+            this.operator = Operator.of(cmd.operator);
+            this.rightIsPath = cmd.isPath();
+            this.rightPath = rightPath;
+            this.numeric = cmd.isNumber();
+            this.number = numeric ? Double.parseDouble(cmd.value) : Double.NaN;
+            this.text = rightIsPath || numeric ? null : cmd.value;
+        }
+    }
+
+    final List<Filter> filters = new ArrayList<>();
+    // Projeção final (nome -> caminho na origem), na ordem do SELECT; null = registro inteiro.
+    Map<String, String> projection;
+    // ORDER BY da consulta e suas chaves na origem (null = campo removido por um SELECT anterior).
+    OrderByCommand orderBy;
+    final List<String> orderPaths = new ArrayList<>();
+    LimitCommand limit;
+    // O LIMIT vem antes do ORDER BY (ou não há ORDER BY).
+    boolean limitFirst;
+    // GROUP BY da consulta, sobre os registros já projetados; null quando ela não agrupa.
+    GroupByCommand groupBy;
+    // ORDER BY/LIMIT depois do GROUP BY, na ordem em que aparecem.
+    final List<Command> afterGroup = new ArrayList<>();
+    // Caminhos da origem lidos pelos filtros, pelo ORDER BY e pela projeção.
+    final Set<String> paths = new LinkedHashSet<>();
+    // Motivo para não reescrever a consulta; null quando a reescrita é exata.
+    String unsupported;
+
+    static SourcePlan of(List<Command> stageCommands) {
+        SourcePlan plan = new SourcePlan();
+        for (Command cmd : stageCommands) {
+            if (cmd instanceof GroupByCommand) {
+                if (plan.groupBy != null || plan.orderBy != null || plan.limit != null) {
+                    plan.unsupported = "o GROUP BY da linha " + cmd.lineNumber + " não é o último comando sobre os registros";
+                    return plan;
+                }
+                plan.groupBy = (GroupByCommand) cmd;
+                continue;
+            }
+            if (plan.groupBy != null) {
+                if (cmd instanceof FilterCondition || cmd instanceof SelectCommand) {
+                    plan.unsupported = cmd + " (linha " + cmd.lineNumber + ") vem depois do GROUP BY";
+                    return plan;
+                }
+                plan.afterGroup.add(cmd);
+                continue;
+            }
+            if (cmd instanceof OrderByCommand) {
+                if (plan.orderBy != null) {
+                    plan.unsupported = "há mais de um ORDER BY";
+                    return plan;
+                }
+                plan.orderBy = (OrderByCommand) cmd;
+                for (String field : plan.orderBy.fields) {
+                    plan.orderPaths.add(source(plan.projection, field));
+                }
+                plan.limitFirst = plan.limit != null;
+                continue;
+            }
+            if (cmd instanceof LimitCommand) {
+                if (plan.limit != null) {
+                    plan.unsupported = "há mais de um LIMIT";
+                    return plan;
+                }
+                plan.limit = (LimitCommand) cmd;
+                plan.limitFirst = plan.orderBy == null;
+                continue;
+            }
+            if (cmd instanceof FilterCondition) {
+                if (plan.limit != null) {
+                    plan.unsupported = "o FILTER da linha " + cmd.lineNumber + " vem depois do LIMIT";
+                    return plan;
+                }
+                FilterCondition filter = (FilterCondition) cmd;
+                String left = source(plan.projection, filter.jsonPath);
+                String right = filter.isPath() ? source(plan.projection, filter.value) : null;
+                plan.filters.add(new Filter(left, filter, right));
+                continue;
+            }
+            SelectCommand select = (SelectCommand) cmd;
+            Map<String, String> projection = new LinkedHashMap<>();
+            Set<String> names = new HashSet<>();
+            for (String field : select.fields) {
+                String name = JsonPaths.projectedName(field);
+                if (!names.add(name)) {
+                    // No ObjectNode o último campo presente vence, o que depende de cada linha.
+                    plan.unsupported = "o SELECT da linha " + cmd.lineNumber + " gera o campo '" + name + "' mais de uma vez";
+                    return plan;
+                }
+                String path = source(plan.projection, field);
+                if (path != null) {
+                    projection.put(name, path);
+                }
+            }
+            plan.projection = projection;
+        }
+        for (Filter filter : plan.filters) {
+            if (filter.left != null) {
+                plan.paths.add(filter.left);
+            }
+            if (filter.rightPath != null) {
+                plan.paths.add(filter.rightPath);
+            }
+        }
+        for (String path : plan.orderPaths) {
+            if (path != null) {
+                plan.paths.add(path);
+            }
+        }
+        if (plan.projection != null) {
+            plan.paths.addAll(plan.projection.values());
+        }
+        return plan;
+    }
+
+    // Caminho no registro original; null se o campo não sobreviveu ao último SELECT.
+    private static String source(Map<String, String> projection, String path) {
+        if (projection == null) {
+            return path;
+        }
+        String first = JsonPaths.split(path)[0];
+        String base = projection.get(first);
+        return base == null ? null : base + path.substring(1 + first.length());
+    }
+}
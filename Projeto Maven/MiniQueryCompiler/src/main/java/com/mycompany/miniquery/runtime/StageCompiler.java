@@ -0,0 +1,253 @@
+package com.mycompany.miniquery.runtime;
+
+import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.Command;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.FilterCondition;
+import com.mycompany.miniquery.compiler.MiniQueryBaseProcessor.SelectCommand;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+// Compila os FILTER/SELECT validados em classes geradas em tempo de execução: os caminhos
+// são percorridos de forma desenrolada e as constantes já chegam tipadas (double/String),
+// o que permite ao JIT inlinar as etapas no laço de registros. As classes são definidas
+// como hidden classes (Lookup.defineHiddenClass); se o javac não estiver disponível
+// (ex: executando em um JRE), as etapas voltam para o interpretador.
+public final class StageCompiler {
+
+    private static final String PACKAGE = StageCompiler.class.getPackageName();
+
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private String lastFailure;
+
+    // Compila todas as etapas de uma vez (uma única chamada ao javac); a lista retornada
+    // contém RecordPredicate/RecordProjector na mesma ordem, ou null onde a compilação falhou.
+    public List<Object> compile(List<Command> stageCommands) {
+        Map<String, String> sources = new LinkedHashMap<>();
+        for (int i = 0; i < stageCommands.size(); i++) {
+            Command cmd = stageCommands.get(i);
+            String className = "CompiledStage" + i;
+            if (cmd instanceof FilterCondition) {
+                sources.put(className, predicateSource(className, (FilterCondition) cmd));
+            } else if (cmd instanceof SelectCommand) {
+                sources.put(className, projectorSource(className, (SelectCommand) cmd));
+            }
+        }
+
+        List<Object> stages = new ArrayList<>();
+        Map<String, byte[]> classes = sources.isEmpty() ? Map.of() : javac(sources);
+        for (int i = 0; i < stageCommands.size(); i++) {
+            byte[] bytes = classes.get("CompiledStage" + i);
+            stages.add(bytes == null ? null : instantiate(bytes));
+        }
+        return stages;
+    }
+
+    // Motivo da última falha de compilação (null se tudo compilou).
+    public String getLastFailure() {
+        return lastFailure;
+    }
+
+    private String predicateSource(String className, FilterCondition cmd) {
+        Operator op = Operator.of(cmd.operator);
+        StringBuilder src = header(className, "RecordPredicate");
+        src.append("    public boolean test(JsonNode record) {\n");
+        appendWalk(src, "left", JsonPaths.split(cmd.jsonPath));
+
+        if (cmd.isPath()) {
+            appendWalk(src, "right", JsonPaths.split(cmd.value));
+            src.append("        return Comparisons.compareNodes(left, Operator.").append(op.name()).append(", right);\n");
+        } else if (cmd.isNumber()) {
+            // Números comparados direto; os demais valores passam pela conversão do JS em Comparisons.
+            String constant = Double.toString(Double.parseDouble(cmd.value)) + "d";
+            src.append("        if (left == null || !left.isNumber()) return Comparisons.compareNumber(left, Operator.")
+                    .append(op.name()).append(", ").append(constant).append(");\n");
+            src.append("        return left.doubleValue() ").append(javaOperator(op)).append(' ').append(constant).append(";\n");
+        } else {
+            String literal = javaString(cmd.value);
+            src.append("        if (left == null || !left.isTextual()) return Comparisons.compareString(left, Operator.")
+                    .append(op.name()).append(", ").append(literal).append(");\n");
+            if (op == Operator.EQ || op == Operator.NE) {
+                src.append("        return ").append(op == Operator.NE ? "!" : "")
+                        .append(literal).append(".equals(left.textValue());\n");
+            } else {
+                src.append("        return left.textValue().compareTo(").append(literal).append(") ")
+                        .append(javaOperator(op)).append(" 0;\n");
+            }
+        }
+        src.append("    }\n}\n");
+        return src.toString();
+    }
+
+    private String projectorSource(String className, SelectCommand cmd) {
+        StringBuilder src = header(className, "RecordProjector");
+        src.append("    public ObjectNode project(JsonNode record) {\n");
+        src.append("        ObjectNode out = JsonNodeFactory.instance.objectNode();\n");
+        for (int i = 0; i < cmd.fields.size(); i++) {
+            String field = cmd.fields.get(i);
+            String variable = "v" + i;
+            appendWalk(src, variable, JsonPaths.split(field));
+            src.append("        if (").append(variable).append(" != null && !").append(variable).append(".isMissingNode()) ")
+                    .append("out.set(").append(javaString(JsonPaths.projectedName(field))).append(", ")
+                    .append(variable).append(");\n");
+        }
+        src.append("        return out;\n    }\n}\n");
+        return src.toString();
+    }
+
+    private StringBuilder header(String className, String interfaceName) {
+        StringBuilder src = new StringBuilder();
+        src.append("package ").append(PACKAGE).append(";\n\n");
+        src.append("import com.fasterxml.jackson.databind.JsonNode;\n");
+        src.append("import com.fasterxml.jackson.databind.node.JsonNodeFactory;\n");
+        src.append("import com.fasterxml.jackson.databind.node.ObjectNode;\n\n");
+        src.append("final class ").append(className).append(" implements ").append(interfaceName).append(" {\n");
+        return src;
+    }
+
+    // Percurso desenrolado do caminho: uma linha por segmento, sem laço nem split em tempo de execução.
+    private void appendWalk(StringBuilder src, String variable, String[] segments) {
+        src.append("        JsonNode ").append(variable).append(" = record;\n");
+        for (String segment : segments) {
+            src.append("        ").append(variable).append(" = ").append(variable).append(" != null && ")
+                    .append(variable).append(".isObject() ? ").append(variable).append(".get(")
+                    .append(javaString(segment)).append(") : null;\n");
+        }
+    }
+
+    private String javaOperator(Operator op) {
+        return op == Operator.EQ ? "==" : op.symbol;
+    }
+
+    private String javaString(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                literal.append('\\').append(c);
+            } else if (c < 0x20) {
+                literal.append(String.format("\\%03o", (int) c));
+            } else if (c > 0x7e) {
+                literal.append(String.format("\\u%04x", (int) c));
+            } else {
+                literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    private Map<String, byte[]> javac(Map<String, String> sources) {
+        lastFailure = null;
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            lastFailure = "javac indisponível nesta JVM";
+            return Map.of();
+        }
+
+        List<JavaFileObject> units = new ArrayList<>();
+        for (Map.Entry<String, String> entry : sources.entrySet()) {
+            units.add(new SourceFile(entry.getKey(), entry.getValue()));
+        }
+
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        StringWriter diagnostics = new StringWriter();
+        // O file manager padrão mantém jars do classpath abertos: fecha ao fim de cada compilação.
+        try (StandardJavaFileManager standard = compiler.getStandardFileManager(null, null, null)) {
+            JavaFileManager fileManager = new ForwardingJavaFileManager<>(standard) {
+                @Override
+                public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+                    String simpleName = className.substring(className.lastIndexOf('.') + 1);
+                    return new ClassFile(simpleName, classes);
+                }
+            };
+
+            List<String> options = Arrays.asList("-classpath", classpath(), "-proc:none", "-g:none");
+            boolean ok = compiler.getTask(diagnostics, fileManager, null, options, null, units).call();
+            if (!ok) {
+                lastFailure = diagnostics.toString();
+                return Map.of();
+            }
+        } catch (IOException e) {
+            lastFailure = e.toString();
+            return Map.of();
+        }
+        return classes;
+    }
+
+    // Classpath mínimo para o javac: as classes do MiniQuery e do Jackson, de onde quer que tenham sido carregadas.
+    private String classpath() {
+        List<String> entries = new ArrayList<>();
+        for (Class<?> type : new Class<?>[] {StageCompiler.class, JsonNode.class, TreeNode.class}) {
+            try {
+                entries.add(Paths.get(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toString());
+            } catch (Exception e) {
+                entries.add(System.getProperty("java.class.path"));
+            }
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private Object instantiate(byte[] bytes) {
+        try {
+            MethodHandles.Lookup hidden = lookup.defineHiddenClass(bytes, true);
+            return hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable t) {
+            lastFailure = t.toString();
+            return null;
+        }
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+        private final String source;
+
+        SourceFile(String className, String source) {
+            super(URI.create("string:///" + PACKAGE.replace('.', '/') + "/" + className + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    private static final class ClassFile extends SimpleJavaFileObject {
+        private final String className;
+        private final Map<String, byte[]> classes;
+
+        ClassFile(String className, Map<String, byte[]> classes) {
+            super(URI.create("bytes:///" + className + Kind.CLASS.extension), Kind.CLASS);
+            this.className = className;
+            this.classes = classes;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return new ByteArrayOutputStream() {
+                @Override
+                public void close() {
+                    classes.put(className, toByteArray());
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.mycompany.miniquery.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+// Cliente do CompileServer. Imprime exatamente a mesma saída que o Main, mas sem
+// inicializar o ANTLR neste processo.
+public class CompileClient implements Closeable {
+
+    private final SocketChannel channel;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    public CompileClient(SocketAddress address) throws IOException {
+        this.channel = CompileProtocol.connect(address);
+        this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    public static void main(String[] args) {
+        boolean ndjson = false;
+        boolean stats = false;
+        String filePath = null;
+        for (String arg : args) {
+            if (arg.equals("--ndjson")) {
+                ndjson = true;
+            } else if (arg.equals("--estatisticas")) {
+                stats = true;
+            } else if (!arg.startsWith("--")) {
+                filePath = arg;
+            }
+        }
+        if (filePath == null && !stats) {
+            System.err.println("Uso: java -cp <caminho-do-jar> com.mycompany.miniquery.server.CompileClient "
+                    + "[--porta=<n> | --socket=<arquivo>] [--ndjson] [--estatisticas] <arquivo-de-entrada.mq>");
+            return;
+        }
+
+        try (CompileClient client = new CompileClient(CompileProtocol.address(args))) {
+            if (stats) {
+                System.out.println(client.stats());
+            }
+            if (filePath != null) {
+                String input = Files.readString(Paths.get(filePath), StandardCharsets.UTF_8);
+                System.out.println(client.compile(input, ndjson));
+            }
+        } catch (IOException e) {
+            System.err.println("ERRO: Não foi possível falar com o servidor de compilação: " + e.getMessage());
+        }
+    }
+
+    public String compile(String input, boolean ndjson) throws IOException {
+        out.writeByte(ndjson ? CompileProtocol.COMPILE_NDJSON : CompileProtocol.COMPILE);
+        CompileProtocol.writeBlock(out, Paths.get("").toAbsolutePath().toString());
+        CompileProtocol.writeBlock(out, input);
+        out.flush();
+        return CompileProtocol.readBlock(in);
+    }
+
+    public String stats() throws IOException {
+        out.writeByte(CompileProtocol.STATS);
+        out.flush();
+        return CompileProtocol.readBlock(in);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,90 @@
+package com.mycompany.miniquery.server;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+// Protocolo entre CompileClient e CompileServer. Cada requisição é um byte de operação
+// seguido de blocos (int com o tamanho + bytes UTF-8); a resposta é um único bloco.
+// COMPILE e COMPILE_NDJSON enviam o diretório de trabalho do cliente, contra o qual os caminhos
+// relativos do LOAD são resolvidos, e o código-fonte. Uma conexão pode enviar várias requisições em sequência.
+final class CompileProtocol {
+
+    static final byte COMPILE = 'C';
+    static final byte COMPILE_NDJSON = 'N';
+    static final byte STATS = 'S';
+
+    static final int DEFAULT_PORT = 7345;
+
+    // Maior bloco aceito; um tamanho acima disso indica um cliente com defeito ou malicioso.
+    static final int MAX_BLOCK_BYTES = 16 * 1024 * 1024;
+
+    private CompileProtocol() {
+    }
+
+    static void writeBlock(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readBlock(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_BLOCK_BYTES) {
+            throw new IOException("Tamanho de bloco inválido: " + length + " (máximo " + MAX_BLOCK_BYTES + ")");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Lê o código da próxima operação; -1 quando o cliente encerrou a conexão.
+    static int readOperation(DataInputStream in) throws IOException {
+        try {
+            return in.readByte();
+        } catch (EOFException e) {
+            return -1;
+        }
+    }
+
+    // Endereço a partir das opções de linha de comando: --socket=<arquivo> (Unix domain socket)
+    // ou --porta=<n> (TCP em loopback).
+    static SocketAddress address(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--socket=")) {
+                return UnixDomainSocketAddress.of(Paths.get(arg.substring("--socket=".length())));
+            }
+        }
+        int port = DEFAULT_PORT;
+        for (String arg : args) {
+            if (arg.startsWith("--porta=")) {
+                port = Integer.parseInt(arg.substring("--porta=".length()));
+            }
+        }
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    static ServerSocketChannel openServer(SocketAddress address) throws IOException {
+        return address instanceof UnixDomainSocketAddress
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                : ServerSocketChannel.open();
+    }
+
+    static SocketChannel connect(SocketAddress address) throws IOException {
+        SocketChannel channel = address instanceof UnixDomainSocketAddress
+                ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                : SocketChannel.open();
+        channel.connect(address);
+        return channel;
+    }
+}
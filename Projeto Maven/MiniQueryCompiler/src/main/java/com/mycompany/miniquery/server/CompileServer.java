@@ -0,0 +1,114 @@
+package com.mycompany.miniquery.server;
+
+import com.mycompany.miniquery.MiniQueryCompiler;
+import com.mycompany.miniquery.cache.CompilationCache;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Servidor de compilação de longa duração: mantém uma JVM aquecida e atende requisições
+// do CompileClient por um Unix domain socket ou por TCP em loopback.
+// O MiniQueryLexer/MiniQueryParser gerados pelo ANTLR guardam o ATN desserializado e o cache
+// de DFA em campos estáticos, então todas as compilações deste processo compartilham o mesmo
+// cache de predição; o custo de inicialização é pago uma única vez, no aquecimento.
+public class CompileServer {
+
+    private static final String WARMUP_PROGRAM =
+            "LOAD \"warmup.json\"\nFILTER .a.b >= 1\nFILTER .c != \"x\"\nSELECT .a, .c\nSAVE AS \"out.json\"\n";
+
+    private final MiniQueryCompiler compiler;
+    private final MiniQueryCompiler ndjsonCompiler;
+    private final CompilationCache cache;
+
+    public CompileServer(CompilationCache cache) {
+        this.cache = cache;
+        this.compiler = new MiniQueryCompiler(false, cache);
+        this.ndjsonCompiler = new MiniQueryCompiler(true, cache);
+    }
+
+    public static void main(String[] args) throws IOException {
+        SocketAddress address = CompileProtocol.address(args);
+        Path cacheDir = null;
+        for (String arg : args) {
+            if (arg.startsWith("--cache-dir=")) {
+                cacheDir = Paths.get(arg.substring("--cache-dir=".length()));
+            }
+        }
+        CompileServer server = new CompileServer(new CompilationCache(1024, cacheDir, 256L * 1024 * 1024));
+        server.warmUp();
+        server.serve(address);
+    }
+
+    // Compila um programa de exemplo para desserializar o ATN e povoar o DFA antes da primeira requisição.
+    public void warmUp() {
+        new MiniQueryCompiler().compile(WARMUP_PROGRAM, new ArrayList<>());
+    }
+
+    public void serve(SocketAddress address) throws IOException {
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        }
+        ExecutorService workers = newPerConnectionExecutor();
+        try (ServerSocketChannel server = CompileProtocol.openServer(address)) {
+            server.bind(address);
+            System.out.println("Servidor MiniQuery aguardando requisições em " + address);
+            while (true) {
+                SocketChannel client = server.accept();
+                workers.execute(() -> handle(client));
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private void handle(SocketChannel client) {
+        try (client;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(client)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)))) {
+            int operation;
+            while ((operation = CompileProtocol.readOperation(in)) != -1) {
+                String response;
+                if (operation == CompileProtocol.COMPILE || operation == CompileProtocol.COMPILE_NDJSON) {
+                    Path clientDirectory = Paths.get(CompileProtocol.readBlock(in));
+                    String input = CompileProtocol.readBlock(in);
+                    response = (operation == CompileProtocol.COMPILE ? compiler : ndjsonCompiler)
+                            .compile(input, clientDirectory);
+                } else if (operation == CompileProtocol.STATS) {
+                    response = cache.getStats();
+                } else {
+                    response = "💥 Operação desconhecida: " + operation;
+                }
+                CompileProtocol.writeBlock(out, response);
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Conexão encerrada com erro: " + e.getMessage());
+        }
+    }
+
+    // Uma thread por conexão: virtual threads quando a JVM oferece (Java 21+), senão um pool elástico.
+    private static ExecutorService newPerConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "miniquery-compile");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}